@@ -25,6 +25,7 @@ import edu.cmu.tetrad.algcomparison.algorithm.Algorithm;
 import edu.cmu.tetrad.algcomparison.algorithm.Algorithms;
 import edu.cmu.tetrad.algcomparison.algorithm.ExternalAlgorithm;
 import edu.cmu.tetrad.algcomparison.algorithm.MultiDataSetAlgorithm;
+import edu.cmu.tetrad.algcomparison.independence.CachingIndependenceWrapper;
 import edu.cmu.tetrad.algcomparison.independence.FisherZ;
 import edu.cmu.tetrad.algcomparison.independence.IndependenceWrapper;
 import edu.cmu.tetrad.algcomparison.score.BdeuScore;
@@ -39,10 +40,12 @@ import edu.cmu.tetrad.algcomparison.statistic.Statistics;
 import edu.cmu.tetrad.algcomparison.utils.HasKnowledge;
 import edu.cmu.tetrad.algcomparison.utils.HasParameterValues;
 import edu.cmu.tetrad.algcomparison.utils.HasParameters;
+import edu.cmu.tetrad.algcomparison.utils.TakesIndependenceWrapper;
 import edu.cmu.tetrad.algcomparison.utils.TakesInitialGraph;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.DagToPag2;
+import edu.cmu.tetrad.search.PValueCache;
 import edu.cmu.tetrad.search.SearchGraphUtils;
 import edu.cmu.tetrad.util.*;
 import org.reflections.Reflections;
@@ -80,8 +83,10 @@ public class Comparison {
     private boolean parallelized = true;
     private boolean savePatterns = false;
     private boolean savePags = false;
+    private boolean saveColumnarData = false;
     private ArrayList<String> dirs = null;
     private ComparisonGraph comparisonGraph = ComparisonGraph.true_DAG;
+    private PValueCache pValueCache = null;
 
     public void compareFromFiles(String filePath, Algorithms algorithms,
                                  Statistics statistics, Parameters parameters) {
@@ -228,6 +233,15 @@ public class Comparison {
         List<AlgorithmWrapper> algorithmWrappers = new ArrayList<>();
 
         for (Algorithm algorithm : algorithms.getAlgorithms()) {
+            if (pValueCache != null && algorithm instanceof TakesIndependenceWrapper) {
+                TakesIndependenceWrapper takesTest = (TakesIndependenceWrapper) algorithm;
+                IndependenceWrapper test = takesTest.getIndependenceWrapper();
+
+                if (test != null && !(test instanceof CachingIndependenceWrapper)) {
+                    takesTest.setIndependenceWrapper(new CachingIndependenceWrapper(test, pValueCache));
+                }
+            }
+
             List<Integer> _dims = new ArrayList<>();
             List<String> varyingParameters = new ArrayList<>();
 
@@ -538,11 +552,8 @@ public class Comparison {
 
                     GraphUtils.saveGraph(graph, file2, false);
 
-                    File file = new File(dir2, "data." + (j + 1) + ".txt");
-                    Writer out = new FileWriter(file);
                     DataModel dataModel = (DataModel) simulationWrapper.getDataModel(j);
-                    DataWriter.writeRectangularData((DataSet) dataModel, out, '\t');
-                    out.close();
+                    saveData((DataSet) dataModel, dir2, j);
 
                     if (isSavePatterns()) {
                         File file3 = new File(dir3, "pattern." + (j + 1) + ".txt");
@@ -626,11 +637,8 @@ public class Comparison {
 
                 GraphUtils.saveGraph(graph, file2, false);
 
-                File file = new File(dir2, "data." + (j + 1) + ".txt");
-                Writer out = new FileWriter(file);
                 DataModel dataModel = simulation.getDataModel(j);
-                DataWriter.writeRectangularData((DataSet) dataModel, out, '\t');
-                out.close();
+                saveData((DataSet) dataModel, dir2, j);
 
                 if (isSavePatterns()) {
                     File file3 = new File(dir3, "pattern." + (j + 1) + ".txt");
@@ -1071,6 +1079,21 @@ public class Comparison {
         this.savePatterns = savePatterns;
     }
 
+    /**
+     * @return True if data should be saved in the binary columnar format rather than as text.
+     */
+    public boolean isSaveColumnarData() {
+        return saveColumnarData;
+    }
+
+    /**
+     * @param saveColumnarData True if data should be saved in the binary columnar format, as
+     *                         data/data.n.tcd, rather than as tab-delimited text, as data/data.n.txt.
+     */
+    public void setSaveColumnarData(boolean saveColumnarData) {
+        this.saveColumnarData = saveColumnarData;
+    }
+
     /**
      * @return True if patterns should be saved out.
      */
@@ -1145,6 +1168,19 @@ public class Comparison {
         this.comparisonGraph = comparisonGraph;
     }
 
+    public PValueCache getPValueCache() {
+        return pValueCache;
+    }
+
+    /**
+     * Sets a cache for the p values of the independence tests used by the algorithms, or null for none. Algorithms
+     * that take an independence wrapper then share p values with each other, across values of alpha, and with later
+     * comparisons that use the same cache file.
+     */
+    public void setPValueCache(PValueCache pValueCache) {
+        this.pValueCache = pValueCache;
+    }
+
 
     private class AlgorithmTask extends RecursiveTask<Boolean> {
         private List<AlgorithmSimulationWrapper> algorithmSimulationWrappers;
@@ -1198,6 +1234,17 @@ public class Comparison {
     }
 
 
+    // Saves the jth data set in the given directory, as text or in the columnar format.
+    private void saveData(DataSet dataSet, File dir, int j) throws IOException {
+        if (isSaveColumnarData()) {
+            DataWriter.writeColumnarData(dataSet, new File(dir, "data." + (j + 1) + ColumnarDataFile.EXTENSION));
+        } else {
+            Writer out = new FileWriter(new File(dir, "data." + (j + 1) + ".txt"));
+            DataWriter.writeRectangularData(dataSet, out, '\t');
+            out.close();
+        }
+    }
+
     private void deleteFilesThenDirectory(File dir) {
         if (dir == null) return;
 
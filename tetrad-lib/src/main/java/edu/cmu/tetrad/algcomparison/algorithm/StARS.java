@@ -3,15 +3,16 @@ package edu.cmu.tetrad.algcomparison.algorithm;
 import edu.cmu.tetrad.algcomparison.utils.TakesInitialGraph;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.Graph;
-import edu.cmu.tetrad.graph.GraphUtils;
-import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.ForkJoinPoolInstance;
 import edu.cmu.tetrad.util.Parameters;
+import edu.pitt.csb.stability.EdgeFrequencies;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * StARS
@@ -68,7 +69,7 @@ public class StARS implements Algorithm, TakesInitialGraph {
         double _lambda = Double.NaN;
 
         for (double lambda = low; lambda <= high; lambda += 0.5) {
-            double D = getD(parameters, parameter, lambda, samples, algorithm);
+            double D = getD(parameters, parameter, lambda, samples, algorithm, beta);
             System.out.println("lambda = " + lambda + " D = " + D);
 
             if (D > maxD && D < beta) {
@@ -145,11 +146,15 @@ public class StARS implements Algorithm, TakesInitialGraph {
         return algorithm.search(dataSet, _parameters);
     }
 
+    // The total instability over the samples, or a lower bound on it, if that is at least beta, in which case the
+    // searches for the remaining samples are skipped. Adjacencies are counted as each search finishes.
     private static double getD(Parameters params, String paramName, double paramValue, final List<DataSet> samples,
-            Algorithm algorithm) {
+            Algorithm algorithm, final double beta) {
         params.set(paramName, paramValue);
 
-        List<Graph> graphs = new ArrayList<>();
+        final EdgeFrequencies frequencies = new EdgeFrequencies(samples.get(0).getVariables());
+        final AtomicBoolean over = new AtomicBoolean(false);
+        final AtomicInteger next = new AtomicInteger(0);
 
 //        for (DataSet d : samples) {
 //            Graph e = GraphUtils.undirectedGraph(algorithm.search(d, params));
@@ -173,10 +178,19 @@ public class StARS implements Algorithm, TakesInitialGraph {
             @Override
             protected void compute() {
                 if (to - from <= chunk) {
-                    for (int s = from; s < to; s++) {
-                        Graph e = algorithm.search(samples.get(s), params);
-                        e = GraphUtils.replaceNodes(e, samples.get(0).getVariables());
-                        graphs.add(e);
+
+                    // Each worker takes the next sample until all are taken or D is known to be at least beta.
+                    while (!over.get()) {
+                        int s = next.getAndIncrement();
+                        if (s >= samples.size()) {
+                            return;
+                        }
+
+                        frequencies.add(algorithm.search(samples.get(s), params));
+
+                        if (frequencies.getInstabilityBounds(samples.size())[0] >= beta) {
+                            over.set(true);
+                        }
                     }
                 } else {
                     final int mid = (to + from) / 2;
@@ -193,38 +207,9 @@ public class StARS implements Algorithm, TakesInitialGraph {
 
         final int chunk = 1;
 
-        pool.invoke(new StabilityAction(chunk, 0, samples.size()));
-
-        int p = samples.get(0).getNumColumns();
-        List<Node> nodes = graphs.get(0).getNodes();
-
-        double D = 0.0;
-        int count = 0;
-
-        for (int i = 0; i < p; i++) {
-            for (int j = i + 1; j < p; j++) {
-                double theta = 0.0;
-                Node x = nodes.get(i);
-                Node y = nodes.get(j);
-
-                for (int k = 0; k < graphs.size(); k++) {
-                    if (graphs.get(k).isAdjacentTo(x, y)) {
-                        theta += 1.0;
-                    }
-                }
-
-                theta /= graphs.size();
-                double xsi = 2 * theta * (1.0 - theta);
-
-//                if (xsi != 0){
-                D += xsi;
-                count++;
-//                }
-            }
-        }
+        pool.invoke(new StabilityAction(chunk, 0, Math.min(samples.size(), pool.getParallelism())));
 
-        D /= (double) count;
-        return D;
+        return frequencies.getInstabilityBounds(samples.size())[0];
     }
 
     private static double getValue(double value, Parameters parameters) {
@@ -57,7 +57,13 @@ public class CpcStable implements Algorithm, HasKnowledge, TakesIndependenceWrap
             search.setDepth(parameters.getInt(Params.DEPTH));
             search.setKnowledge(knowledge);
             search.setFasType(edu.cmu.tetrad.search.PcAll.FasType.STABLE);
-            search.setConcurrent(edu.cmu.tetrad.search.PcAll.Concurrent.NO);
+
+            if (parameters.getBoolean(Params.CONCURRENT_FAS)) {
+                search.setConcurrent(edu.cmu.tetrad.search.PcAll.Concurrent.YES);
+            } else {
+                search.setConcurrent(edu.cmu.tetrad.search.PcAll.Concurrent.NO);
+            }
+
             search.setColliderDiscovery(edu.cmu.tetrad.search.PcAll.ColliderDiscovery.CONSERVATIVE);
             search.setConflictRule(edu.cmu.tetrad.search.PcAll.ConflictRule.PRIORITY);
             search.setVerbose(parameters.getBoolean(Params.VERBOSE));
@@ -111,6 +117,7 @@ public class CpcStable implements Algorithm, HasKnowledge, TakesIndependenceWrap
     public List<String> getParameters() {
         List<String> parameters = new ArrayList<>();
         parameters.add(Params.DEPTH);
+        parameters.add(Params.CONCURRENT_FAS);
 
         parameters.add(Params.VERBOSE);
         return parameters;
@@ -58,7 +58,13 @@ public class PcStable implements Algorithm, TakesInitialGraph, HasKnowledge, Tak
             search.setDepth(parameters.getInt(Params.DEPTH));
             search.setKnowledge(knowledge);
             search.setFasType(edu.cmu.tetrad.search.PcAll.FasType.STABLE);
-            search.setConcurrent(edu.cmu.tetrad.search.PcAll.Concurrent.NO);
+
+            if (parameters.getBoolean(Params.CONCURRENT_FAS)) {
+                search.setConcurrent(edu.cmu.tetrad.search.PcAll.Concurrent.YES);
+            } else {
+                search.setConcurrent(edu.cmu.tetrad.search.PcAll.Concurrent.NO);
+            }
+
             search.setColliderDiscovery(edu.cmu.tetrad.search.PcAll.ColliderDiscovery.FAS_SEPSETS);
             search.setConflictRule(PcAll.ConflictRule.PRIORITY);
             search.setVerbose(parameters.getBoolean(Params.VERBOSE));
@@ -116,6 +122,7 @@ public class PcStable implements Algorithm, TakesInitialGraph, HasKnowledge, Tak
     public List<String> getParameters() {
         List<String> parameters = new ArrayList<>();
         parameters.add(Params.DEPTH);
+        parameters.add(Params.CONCURRENT_FAS);
 
         parameters.add(Params.VERBOSE);
 
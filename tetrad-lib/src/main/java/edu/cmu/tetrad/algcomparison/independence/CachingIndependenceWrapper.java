@@ -0,0 +1,70 @@
+package edu.cmu.tetrad.algcomparison.independence;
+
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataType;
+import edu.cmu.tetrad.search.CachingIndependenceTest;
+import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.search.PValueCache;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+
+import java.util.List;
+
+/**
+ * Wraps the tests made by another independence wrapper in a CachingIndependenceTest, so that p values are shared
+ * across algorithms, alpha values and runs. The test is described to the cache by the wrapper's class and the values
+ * of its parameters other than alpha.
+ *
+ * @author jdramsey
+ */
+public class CachingIndependenceWrapper implements IndependenceWrapper {
+
+    static final long serialVersionUID = 23L;
+    private final IndependenceWrapper wrapper;
+    private final transient PValueCache cache;
+
+    public CachingIndependenceWrapper(IndependenceWrapper wrapper, PValueCache cache) {
+        if (wrapper == null) {
+            throw new NullPointerException("Independence wrapper not provided.");
+        }
+
+        if (cache == null) {
+            throw new NullPointerException("Cache not provided.");
+        }
+
+        this.wrapper = wrapper;
+        this.cache = cache;
+    }
+
+    @Override
+    public IndependenceTest getTest(DataModel dataSet, Parameters parameters) {
+        IndependenceTest test = wrapper.getTest(dataSet, parameters);
+        StringBuilder description = new StringBuilder(wrapper.getClass().getName());
+
+        for (String param : wrapper.getParameters()) {
+            if (Params.ALPHA.equals(param)) continue;
+            description.append(' ').append(param).append('=').append(parameters.get(param));
+        }
+
+        return new CachingIndependenceTest(test, cache, description.toString());
+    }
+
+    @Override
+    public String getDescription() {
+        return wrapper.getDescription();
+    }
+
+    @Override
+    public DataType getDataType() {
+        return wrapper.getDataType();
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return wrapper.getParameters();
+    }
+
+    public IndependenceWrapper getWrapper() {
+        return wrapper;
+    }
+}
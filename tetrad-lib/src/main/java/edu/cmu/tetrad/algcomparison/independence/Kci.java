@@ -33,6 +33,22 @@ public class Kci implements IndependenceWrapper {
         kci.setNumBootstraps(parameters.getInt("kciNumBootstraps"));
         kci.setThreshold(parameters.getDouble("thresholdForNumEigenvalues"));
         kci.setEpsilon(parameters.getDouble("kciEpsilon"));
+
+        switch (parameters.getInt("kciKernelApproximation")) {
+            case 1:
+                kci.setKernelApproximation(edu.cmu.tetrad.search.Kci.KernelApproximation.NONE);
+                break;
+            case 2:
+                kci.setKernelApproximation(edu.cmu.tetrad.search.Kci.KernelApproximation.NYSTROM);
+                break;
+            case 3:
+                kci.setKernelApproximation(edu.cmu.tetrad.search.Kci.KernelApproximation.RANDOM_FOURIER_FEATURES);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a choice.");
+        }
+
+        kci.setRank(parameters.getInt("kciRank"));
         return kci;
     }
 
@@ -55,6 +71,8 @@ public class Kci implements IndependenceWrapper {
         params.add("kciNumBootstraps");
         params.add("thresholdForNumEigenvalues");
         params.add("kciEpsilon");
+        params.add("kciKernelApproximation");
+        params.add("kciRank");
         return params;
     }
 }
\ No newline at end of file
@@ -163,7 +163,15 @@ public class LinearFisherModel implements Simulation, TakesData {
                 dataSet = DataUtils.reorderColumns(dataSet);
             }
 
-            dataSets.add(saveLatentVars ? dataSet : DataUtils.restrictToMeasured(dataSet));
+            if (!saveLatentVars) {
+                dataSet = DataUtils.restrictToMeasured(dataSet);
+            }
+
+            if (parameters.getBoolean(Params.SINGLE_PRECISION)) {
+                dataSet = DataUtils.toSinglePrecision(dataSet);
+            }
+
+            dataSets.add(dataSet);
         }
     }
 
@@ -212,6 +220,7 @@ public class LinearFisherModel implements Simulation, TakesData {
         parameters.add(Params.RANDOMIZE_COLUMNS);
         parameters.add(Params.MEASUREMENT_VARIANCE);
         parameters.add(Params.SAVE_LATENT_VARS);
+        parameters.add(Params.SINGLE_PRECISION);
         parameters.add(Params.STANDARDIZE);
 
         return parameters;
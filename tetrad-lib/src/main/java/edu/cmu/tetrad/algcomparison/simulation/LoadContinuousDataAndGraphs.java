@@ -1,5 +1,6 @@
 package edu.cmu.tetrad.algcomparison.simulation;
 
+import edu.cmu.tetrad.data.ColumnarDataFile;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.data.DataReader;
 import edu.cmu.tetrad.data.DataSet;
@@ -44,6 +45,13 @@ public class LoadContinuousDataAndGraphs implements Simulation {
                     edu.cmu.tetrad.graph.GraphUtils.circleLayout(this.graphs.get(i), 225, 200, 150);
 
                     File file1 = new File(path + "/data/data." + (i + 1) + ".txt");
+                    File columnarFile = new File(path + "/data/data." + (i + 1) + ColumnarDataFile.EXTENSION);
+
+                    if (!file1.exists() && columnarFile.exists()) {
+                        System.out.println("Loading data from " + columnarFile.getAbsolutePath());
+                        dataSets.add(new DataReader().parseColumnar(columnarFile));
+                        continue;
+                    }
 
                     System.out.println("Loading data from " + file1.getAbsolutePath());
                     DataReader reader = new DataReader();
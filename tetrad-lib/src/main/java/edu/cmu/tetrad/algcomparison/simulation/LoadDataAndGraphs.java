@@ -44,6 +44,13 @@ public class LoadDataAndGraphs implements Simulation {
                     GraphUtils.circleLayout(this.graphs.get(i), 225, 200, 150);
 
                     File file1 = new File(path + "/data/data." + (i + 1) + ".txt");
+                    File columnarFile = new File(path + "/data/data." + (i + 1) + ColumnarDataFile.EXTENSION);
+
+                    if (!file1.exists() && columnarFile.exists()) {
+                        System.out.println("Loading data from " + columnarFile.getAbsolutePath());
+                        dataSets.add(new DataReader().parseColumnar(columnarFile));
+                        continue;
+                    }
 
                     System.out.println("Loading data from " + file1.getAbsolutePath());
 
@@ -89,6 +89,10 @@ public class SemSimulation implements Simulation {
                 dataSet = DataUtils.reorderColumns(dataSet);
             }
 
+            if (parameters.getBoolean(Params.SINGLE_PRECISION)) {
+                dataSet = DataUtils.toSinglePrecision(dataSet);
+            }
+
             dataSet.setName("" + (i + 1));
             dataSets.add(dataSet);
         }
@@ -130,6 +134,7 @@ public class SemSimulation implements Simulation {
         parameters.add(Params.RANDOMIZE_COLUMNS);
         parameters.add(Params.SAMPLE_SIZE);
         parameters.add(Params.SAVE_LATENT_VARS);
+        parameters.add(Params.SINGLE_PRECISION);
         parameters.add(Params.STANDARDIZE);
 
         return parameters;
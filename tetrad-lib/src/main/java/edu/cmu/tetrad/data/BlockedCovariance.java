@@ -0,0 +1,242 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes covariance matrices from columns of data, one tile of pairs of columns at a time. For a tile
+ * of columns I by columns J, the rows are taken in chunks; the centred values of the columns in J for a
+ * chunk are packed row by row into a small panel, and each column i in I adds x_i[k] times row k of the
+ * panel to its row of the tile. The tile and the panels stay in cache, and the innermost loop runs over
+ * contiguous arrays with no reduction, a shape the JIT can vectorize. Tiles are done in parallel on the
+ * fork-join pool.
+ * <p>
+ * Each sum of products is still accumulated in row order, so the results are exactly those of summing
+ * the products over the rows for one pair of columns at a time.
+ *
+ * @author Joseph Ramsey
+ */
+public final class BlockedCovariance {
+
+    // The number of columns on a side of a tile.
+    private static final int TILE = 64;
+
+    // The number of rows packed into a panel at a time.
+    private static final int CHUNK = 128;
+
+    private BlockedCovariance() {
+    }
+
+    /**
+     * @param columns The data, column by column; the columns must all be the same length and have no
+     *                missing values. They are not modified.
+     * @return the covariance matrix of the columns, dividing by n - 1.
+     */
+    public static TetradMatrix covariance(double[][] columns) {
+        int n = columns.length == 0 ? 0 : columns[0].length;
+        double[] means = new double[columns.length];
+
+        for (int j = 0; j < columns.length; j++) {
+            double sum = 0.0;
+
+            for (int k = 0; k < n; k++) {
+                sum += columns[j][k];
+            }
+
+            means[j] = sum / n;
+        }
+
+        TetradMatrix cov = new TetradMatrix(columns.length, columns.length);
+        compute(columns, means, null, null, n - 1, cov);
+        return cov;
+    }
+
+    /**
+     * Sets out(i, j) and out(j, i) to the sum over k of w_k (x_i[r_k] - means[i]) (x_j[r_k] - means[j]),
+     * divided by the divisor, for each pair of columns i and j, where r_k is rows[k] and w_k is weights[k].
+     *
+     * @param rows    The rows to use, in order, or null to use all rows of the columns.
+     * @param weights A weight for each row used, or null to weight each row 1.
+     */
+    static void compute(double[][] columns, double[] means, int[] rows, double[] weights,
+                        double divisor, TetradMatrix out) {
+        int numBlocks = (columns.length + TILE - 1) / TILE;
+        int numTiles = numBlocks * (numBlocks + 1) / 2;
+
+        if (numTiles == 0) {
+            return;
+        }
+
+        int n = rows != null ? rows.length : columns[0].length;
+
+        if (weights != null && weights.length != n) {
+            throw new IllegalArgumentException("Expecting " + n + " weights: " + weights.length);
+        }
+
+        ForkJoinPoolInstance.getInstance().getPool().invoke(
+                new TileTask(columns, means, rows, weights, n, divisor, out, 0, numTiles));
+    }
+
+    private static class TileTask extends RecursiveAction {
+        private final double[][] columns;
+        private final double[] means;
+        private final int[] rows;
+        private final double[] weights;
+        private final int n;
+        private final double divisor;
+        private final TetradMatrix out;
+
+        // The tiles of the lower triangle, numbered row by row, from tile 'from' up to tile 'to'.
+        private final int from;
+        private final int to;
+
+        TileTask(double[][] columns, double[] means, int[] rows, double[] weights, int n, double divisor,
+                 TetradMatrix out, int from, int to) {
+            this.columns = columns;
+            this.means = means;
+            this.rows = rows;
+            this.weights = weights;
+            this.n = n;
+            this.divisor = divisor;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int bi = 0;
+
+                while ((bi + 1) * (bi + 2) / 2 <= from) {
+                    bi++;
+                }
+
+                int bj = from - bi * (bi + 1) / 2;
+                tile(bi * TILE, Math.min((bi + 1) * TILE, columns.length),
+                        bj * TILE, Math.min((bj + 1) * TILE, columns.length));
+            } else {
+                int mid = (from + to) / 2;
+
+                TileTask left = new TileTask(columns, means, rows, weights, n, divisor, out, from, mid);
+                TileTask right = new TileTask(columns, means, rows, weights, n, divisor, out, mid, to);
+
+                left.fork();
+                right.compute();
+                left.join();
+            }
+        }
+
+        private void tile(int i0, int i1, int j0, int j1) {
+            int ni = i1 - i0;
+            int nj = j1 - j0;
+            boolean diagonal = i0 == j0;
+
+            // sums[ii * nj + jj] is the sum for columns i0 + ii and j0 + jj.
+            double[] sums = new double[ni * nj];
+
+            // panelI[ii * CHUNK + k] is the weighted centred value of column i0 + ii in row k of the chunk;
+            // panelJ[k * nj + jj] is the centred value of column j0 + jj in row k of the chunk.
+            double[] panelI = new double[ni * CHUNK];
+            double[] panelJ = new double[CHUNK * nj];
+
+            for (int k0 = 0; k0 < n; k0 += CHUNK) {
+                int kn = Math.min(CHUNK, n - k0);
+
+                for (int jj = 0; jj < nj; jj++) {
+                    double[] x = columns[j0 + jj];
+                    double m = means[j0 + jj];
+
+                    for (int k = 0; k < kn; k++) {
+                        int r = rows == null ? k0 + k : rows[k0 + k];
+                        panelJ[k * nj + jj] = x[r] - m;
+                    }
+                }
+
+                for (int ii = 0; ii < ni; ii++) {
+                    double[] x = columns[i0 + ii];
+                    double m = means[i0 + ii];
+                    int offset = ii * CHUNK;
+
+                    for (int k = 0; k < kn; k++) {
+                        int r = rows == null ? k0 + k : rows[k0 + k];
+                        double d = x[r] - m;
+                        panelI[offset + k] = weights == null ? d : weights[k0 + k] * d;
+                    }
+                }
+
+                // Four columns of I at a time, so that each row of the panel is loaded once for the four. On
+                // the diagonal, the sums above the diagonal that this also gives are not used.
+                int ii = 0;
+
+                for (; ii + 4 <= ni; ii += 4) {
+                    int offset = ii * nj;
+                    int width = diagonal ? ii + 4 : nj;
+
+                    for (int k = 0; k < kn; k++) {
+                        double a0 = panelI[ii * CHUNK + k];
+                        double a1 = panelI[(ii + 1) * CHUNK + k];
+                        double a2 = panelI[(ii + 2) * CHUNK + k];
+                        double a3 = panelI[(ii + 3) * CHUNK + k];
+                        int row = k * nj;
+
+                        for (int jj = 0; jj < width; jj++) {
+                            double b = panelJ[row + jj];
+                            sums[offset + jj] += a0 * b;
+                            sums[offset + nj + jj] += a1 * b;
+                            sums[offset + 2 * nj + jj] += a2 * b;
+                            sums[offset + 3 * nj + jj] += a3 * b;
+                        }
+                    }
+                }
+
+                for (; ii < ni; ii++) {
+                    int offset = ii * nj;
+                    int width = diagonal ? ii + 1 : nj;
+
+                    for (int k = 0; k < kn; k++) {
+                        double a = panelI[ii * CHUNK + k];
+                        int row = k * nj;
+
+                        for (int jj = 0; jj < width; jj++) {
+                            sums[offset + jj] += a * panelJ[row + jj];
+                        }
+                    }
+                }
+            }
+
+            for (int ii = 0; ii < ni; ii++) {
+                int width = diagonal ? ii + 1 : nj;
+
+                for (int jj = 0; jj < width; jj++) {
+                    double v = sums[ii * nj + jj] / divisor;
+                    out.set(i0 + ii, j0 + jj, v);
+                    out.set(j0 + jj, i0 + ii, v);
+                }
+            }
+        }
+    }
+}
@@ -70,25 +70,8 @@ public final class BootstrapSampler {
         //   this.logger.log("sampleSize", String.valueOf(newSampleSize));
         //Number of samples in input dataset
         int oldSampleSize = dataSet.getNumRows();
-        int ncols = dataSet.getNumColumns();
-
-        DataSet newDataSet = new ColtDataSet(newSampleSize, dataSet.getVariables());
-//        List<Integer> indices = new ArrayList<Integer>();
-
-        // Without replacement.
-
-        // (keeping order)
-//        for (int row = 0; row < newSampleSize; row++) {
-//            indices.add(RandomUtil.getInstance().nextInt(oldSampleSize));
-//        }
-//
-//        Collections.sort(indices);
-//
-//        for (int row = 0; row < indices.size(); row++) {
-//            for (int col = 0; col < ncols; col++) {
-//                newDataSet.setObject(row, col, dataSet.getObject(indices.get(row), col));
-//            }
-//        }
+
+        int[] rows = new int[newSampleSize];
         Set<Integer> oldCases = new HashSet<>();
 
         // (not keeping order)
@@ -103,11 +86,12 @@ public final class BootstrapSampler {
                 oldCases.add(oldCase);
             }
 
-            for (int col = 0; col < ncols; col++) {
-                newDataSet.setObject(row, col, dataSet.getObject(oldCase, col));
-            }
+            rows[row] = oldCase;
         }
 
+        // A view of the sampled rows of a BoxDataSet; other data sets are copied.
+        DataSet newDataSet = DataUtils.viewRows(dataSet, rows);
+
         newDataSet.setKnowledge(dataSet.getKnowledge().copy());
 
         return newDataSet;
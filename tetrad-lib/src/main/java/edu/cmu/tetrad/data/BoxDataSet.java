@@ -362,6 +362,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
         }
 
         variables.add(variable);
+        copyViewedRows();
 
         if (dataBox instanceof MixedDataBox) {
             ((MixedDataBox) dataBox).addVariable(variable);
@@ -874,13 +875,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      * integer, or DiscreteVariable.MISSING_VALUE if the value is missing.
      */
     public final int getInt(int row, int column) {
-        Number value = dataBox.get(row, column);
-
-        if (value == null) {
-            return DiscreteVariable.MISSING_VALUE;
-        } else {
-            return value.intValue();
-        }
+        return dataBox.getInt(row, column);
     }
 
     /**
@@ -890,13 +885,23 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      * returned.
      */
     public final double getDouble(int row, int column) {
-        Number value = dataBox.get(row, column);
+        return dataBox.getDouble(row, column);
+    }
 
-        if (value == null) {
-            return ContinuousVariable.getDoubleMissingValue();
-        } else {
-            return value.doubleValue();
-        }
+    /**
+     * @return the values in the given column. For data boxes that store
+     * columns this is the stored array, which must not be modified.
+     */
+    public final double[] getDoubleColumn(int column) {
+        return dataBox.getDoubleColumn(column);
+    }
+
+    /**
+     * @return the values in the given column. For data boxes that store
+     * columns this is the stored array, which must not be modified.
+     */
+    public final int[] getIntColumn(int column) {
+        return dataBox.getIntColumn(column);
     }
 
 //    /**
@@ -1018,12 +1023,7 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
 
         for (int i = 0; i < dataBox.numRows(); i++) {
             for (int j = 0; j < dataBox.numCols(); j++) {
-                Number number = dataBox.get(i, j);
-                if (number == null) {
-                    copy.set(i, j, Double.NaN);
-                } else {
-                    copy.set(i, j, number.doubleValue());
-                }
+                copy.set(i, j, dataBox.getDouble(i, j));
             }
         }
 
@@ -1294,6 +1294,8 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      * @param cols The number of columns in the redimensioned data.
      */
     private void resize(int rows, int cols) {
+        copyViewedRows();
+
         if (dataBox instanceof DoubleDataBox) {
             DoubleDataBox ddb = (DoubleDataBox) this.dataBox;
             double[][] data = ddb.getData();
@@ -1317,6 +1319,17 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
         }
     }
 
+    /**
+     * Replaces a box that views the rows of another, as for a bootstrap sample,
+     * with a copy of those rows in a box of the other's type, so that the
+     * columns can be changed.
+     */
+    private void copyViewedRows() {
+        if (dataBox instanceof RowIndexedDataBox) {
+            this.dataBox = dataBox.copy();
+        }
+    }
+
     /**
      * @return the set of case multipliers..
      */
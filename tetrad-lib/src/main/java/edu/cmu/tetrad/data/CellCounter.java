@@ -0,0 +1,214 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.util.MultiDimIntTable;
+
+import java.util.Arrays;
+
+/**
+ * Counts the rows of discrete columns falling in each cell of a table over them. The mixed-radix index of
+ * each row's cell, (...(v_0 * d_1 + v_1) * d_2 + ...) * d_m-1 + v_m-1 for values v_i of columns with d_i
+ * categories, as in MultiDimIntTable, is computed a block of rows at a time, one column at a time, so
+ * that each column is read straight through. Counts are accumulated in an array when the table has no
+ * more cells than there are rows and otherwise, since most cells must then be empty, in a hash table of
+ * the cells that occur, so the time taken depends on the number of rows alone. Rows with a missing value
+ * in any column are skipped.
+ * <p>
+ * The index blocks, count array and hash table are kept for each thread and reused, so counting makes no
+ * garbage once they have grown to size.
+ *
+ * @author Joseph Ramsey
+ */
+public final class CellCounter {
+
+    // The number of rows indexed at a time.
+    private static final int BLOCK = 1024;
+
+    private static final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    private CellCounter() {
+    }
+
+    /**
+     * Adds to counts[c] the number of rows in cell c.
+     *
+     * @param columns      The columns; rows whose value in any of them is missingValue are skipped.
+     * @param dims         The number of categories of each column; every other value must be less.
+     * @param rows         The rows to count, by index into the columns, or null for rows 0 to numRows - 1.
+     * @param numRows      The number of rows to count.
+     * @param missingValue The value for missing values.
+     * @param counts       An array of length at least the product of the dims.
+     */
+    public static void count(int[][] columns, int[] dims, int[] rows, int numRows, int missingValue,
+                             int[] counts) {
+        Buffers b = buffers.get();
+
+        for (int start = 0; start < numRows; start += BLOCK) {
+            int n = Math.min(BLOCK, numRows - start);
+            index(columns, dims, rows, start, n, missingValue, b);
+
+            int[] index = b.index;
+            int[] skip = b.skip;
+
+            for (int r = 0; r < n; r++) {
+                if (skip[r] == 0) counts[index[r]]++;
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of the rows in each cell to the given table, whose dimensions must be the dims.
+     * Arguments are as for the other count method.
+     */
+    public static void count(int[][] columns, int[] dims, int[] rows, int numRows, int missingValue,
+                             MultiDimIntTable table) {
+        long numCells = 1;
+
+        for (int dim : dims) {
+            numCells *= dim;
+        }
+
+        Buffers b = buffers.get();
+
+        if (numCells <= Math.max(numRows, BLOCK)) {
+            int[] counts = b.counts((int) numCells);
+            count(columns, dims, rows, numRows, missingValue, counts);
+
+            for (int c = 0; c < numCells; c++) {
+                if (counts[c] != 0) table.increment(c, counts[c]);
+            }
+        } else {
+            b.clearHash(numRows);
+
+            for (int start = 0; start < numRows; start += BLOCK) {
+                int n = Math.min(BLOCK, numRows - start);
+                index(columns, dims, rows, start, n, missingValue, b);
+
+                for (int r = 0; r < n; r++) {
+                    if (b.skip[r] == 0) b.hashIncrement(b.index[r]);
+                }
+            }
+
+            for (int k = 0; k < b.numUsed; k++) {
+                int slot = b.used[k];
+                table.increment(b.keys[slot], b.hashCounts[slot]);
+            }
+        }
+    }
+
+    // Computes the cell indices of rows start to start + n - 1 into b.index, setting b.skip for rows with
+    // missing values.
+    private static void index(int[][] columns, int[] dims, int[] rows, int start, int n, int missingValue,
+                              Buffers b) {
+        int[] index = b.index;
+        int[] skip = b.skip;
+
+        Arrays.fill(index, 0, n, 0);
+        Arrays.fill(skip, 0, n, 0);
+
+        for (int j = 0; j < columns.length; j++) {
+            int[] column = columns[j];
+            int dim = dims[j];
+
+            if (rows == null) {
+                for (int r = 0; r < n; r++) {
+                    int v = column[start + r];
+                    index[r] = index[r] * dim + v;
+                    skip[r] |= v == missingValue ? 1 : 0;
+                }
+            } else {
+                for (int r = 0; r < n; r++) {
+                    int v = column[rows[start + r]];
+                    index[r] = index[r] * dim + v;
+                    skip[r] |= v == missingValue ? 1 : 0;
+                }
+            }
+        }
+    }
+
+    // The reusable buffers of a thread.
+    private static final class Buffers {
+        private final int[] index = new int[BLOCK];
+        private final int[] skip = new int[BLOCK];
+        private int[] counts = new int[0];
+
+        // An open-addressing hash table from cell indices to counts; keys[slot] is -1 for an empty slot, and
+        // used lists the slots in use.
+        private int[] keys = new int[0];
+        private int[] hashCounts = new int[0];
+        private int[] used = new int[0];
+        private int numUsed;
+
+        // Returns the count array, zeroed for the given number of cells.
+        private int[] counts(int numCells) {
+            if (counts.length < numCells) {
+                counts = new int[numCells];
+            } else {
+                Arrays.fill(counts, 0, numCells, 0);
+            }
+
+            return counts;
+        }
+
+        // Empties the hash table, making it big enough for the given number of rows.
+        private void clearHash(int numRows) {
+            int capacity = Integer.highestOneBit(Math.max(16, 2 * numRows - 1)) << 1;
+
+            if (keys.length < capacity) {
+                keys = new int[capacity];
+                hashCounts = new int[capacity];
+                used = new int[capacity / 2];
+                Arrays.fill(keys, -1);
+            } else {
+                for (int k = 0; k < numUsed; k++) {
+                    keys[used[k]] = -1;
+                }
+            }
+
+            numUsed = 0;
+        }
+
+        private void hashIncrement(int cell) {
+            int mask = keys.length - 1;
+            int slot = (cell * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask);
+
+            while (keys[slot] != cell) {
+                if (keys[slot] == -1) {
+                    keys[slot] = cell;
+                    hashCounts[slot] = 0;
+                    used[numUsed++] = slot;
+                    break;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            hashCounts[slot]++;
+        }
+    }
+}
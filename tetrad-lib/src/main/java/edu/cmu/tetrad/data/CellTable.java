@@ -56,6 +56,20 @@ public final class CellTable {
         this.table = new MultiDimIntTable(dims);
     }
 
+    /**
+     * Resets the table to the given dimensions and fills it with the given counts, which are in the order
+     * of MultiDimIntTable; there must be at least as many as there are cells.
+     */
+    public synchronized final void setCounts(int[] dims, int[] counts) {
+        table.reset(dims);
+
+        for (int c = 0; c < table.getNumCells(); c++) {
+            if (counts[c] != 0) {
+                table.increment(c, counts[c]);
+            }
+        }
+    }
+
     @SuppressWarnings({"ConstantConditions"})
     public synchronized final void addToTable(DataSet dataSet, int[] indices) {
         int[] dims = new int[indices.length];
@@ -68,25 +82,33 @@ public final class CellTable {
 
         table.reset(dims);
 
-        int[] coords = new int[indices.length];
+        DataBox box = dataSet instanceof BoxDataSet ? ((BoxDataSet) dataSet).getDataBox() : null;
 
-        points:
-        for (int i = 0; i < dataSet.getNumRows(); i++) {
-            for (int j = 0; j < indices.length; j++) {
-                try {
-                    coords[j] = dataSet.getInt(i, indices[j]);
-                } catch (Exception e) {
-                    e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-                    coords[j] = dataSet.getInt(i, j);
-                }
+        // Packed data are counted 64 rows at a time.
+        if (box instanceof PackedDiscreteDataBox && getMissingValue() == DiscreteVariable.MISSING_VALUE) {
+            int[] counts = new int[table.getNumCells()];
+            ((PackedDiscreteDataBox) box).count(indices, dims, counts);
+            setCounts(dims, counts);
+            return;
+        }
 
-                if (coords[j] == getMissingValue()) {
-                    continue points;
-                }
-            }
+        // If the data set is a view of rows of another, count from the other's columns; row i is rows[i] of them.
+        int[][] columns = new int[indices.length][];
+        int[] rows = null;
 
-            table.increment(coords, 1);
+        if (box instanceof RowIndexedDataBox) {
+            rows = ((RowIndexedDataBox) box).getRows();
+
+            for (int j = 0; j < indices.length; j++) {
+                columns[j] = ((RowIndexedDataBox) box).getParent().getIntColumn(indices[j]);
+            }
+        } else {
+            for (int j = 0; j < indices.length; j++) {
+                columns[j] = dataSet.getIntColumn(indices[j]);
+            }
         }
+
+        CellCounter.count(columns, dims, rows, dataSet.getNumRows(), getMissingValue(), table);
     }
 
     /**
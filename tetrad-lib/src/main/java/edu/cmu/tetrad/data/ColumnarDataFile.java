@@ -0,0 +1,302 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes and reads data sets in a binary columnar format. A file is a header followed by one block per
+ * column. The header gives the number of rows, the variables with their types and categories, and the
+ * knowledge, if any. Continuous columns are stored as little-endian doubles, with NaN for missing values,
+ * and discrete columns as little-endian ints, with -99 for missing values. Each block starts at a multiple
+ * of 8 bytes.
+ * <p>
+ * Reading a file maps its columns into memory rather than loading them, so the data stay off the heap and
+ * even a very large file opens at once; see MappedDataBox.
+ *
+ * @author Joseph Ramsey
+ */
+public final class ColumnarDataFile {
+
+    /**
+     * The usual extension of files in this format.
+     */
+    public static final String EXTENSION = ".tcd";
+
+    private static final byte[] MAGIC = "TETRADCD".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private static final byte CONTINUOUS = 0;
+    private static final byte DISCRETE = 1;
+
+    private ColumnarDataFile() {
+    }
+
+    /**
+     * Writes the given data set to the given file. Case IDs and multipliers are not written.
+     */
+    public static void write(DataSet dataSet, File file) throws IOException {
+        int numRows = dataSet.getNumRows();
+        List<Node> variables = dataSet.getVariables();
+
+        if (8L * numRows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rows for a columnar data file: " + numRows);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+
+        header.writeInt(numRows);
+        header.writeInt(variables.size());
+
+        for (Node variable : variables) {
+            if (variable instanceof ContinuousVariable) {
+                header.writeByte(CONTINUOUS);
+                header.writeUTF(variable.getName());
+            } else if (variable instanceof DiscreteVariable) {
+                List<String> categories = ((DiscreteVariable) variable).getCategories();
+                header.writeByte(DISCRETE);
+                header.writeUTF(variable.getName());
+                header.writeInt(categories.size());
+
+                for (String category : categories) {
+                    header.writeUTF(category);
+                }
+            } else {
+                throw new IllegalArgumentException("Only continuous and discrete variables can be written: "
+                        + variable);
+            }
+        }
+
+        IKnowledge knowledge = dataSet.getKnowledge();
+
+        if (knowledge != null && !knowledge.isEmpty()) {
+            StringWriter writer = new StringWriter();
+            DataWriter.saveKnowledge(knowledge, writer);
+            byte[] text = writer.toString().getBytes(StandardCharsets.UTF_8);
+            header.writeBoolean(true);
+            header.writeInt(text.length);
+            header.write(text);
+        } else {
+            header.writeBoolean(false);
+        }
+
+        header.flush();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer start = ByteBuffer.allocate(MAGIC.length + 8);
+            start.put(MAGIC).putInt(VERSION).putInt(bytes.size());
+            start.flip();
+            writeFully(channel, start);
+            writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()));
+
+            long position = MAGIC.length + 8 + bytes.size();
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (int j = 0; j < variables.size(); j++) {
+                position = pad(channel, position);
+                boolean continuous = variables.get(j) instanceof ContinuousVariable;
+                int width = continuous ? 8 : 4;
+
+                for (int i = 0; i < numRows; i++) {
+                    if (buf.remaining() < width) {
+                        buf.flip();
+                        writeFully(channel, buf);
+                        buf.clear();
+                    }
+
+                    if (continuous) {
+                        buf.putDouble(dataSet.getDouble(i, j));
+                    } else {
+                        buf.putInt(dataSet.getInt(i, j));
+                    }
+                }
+
+                buf.flip();
+                writeFully(channel, buf);
+                buf.clear();
+
+                position += (long) width * numRows;
+            }
+
+            pad(channel, position);
+        }
+    }
+
+    /**
+     * Opens the data set in the given file, which must be in this format. The columns are mapped into
+     * memory, not read.
+     */
+    public static DataSet read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(MAGIC.length + 8);
+            readFully(channel, start, 0);
+
+            byte[] magic = new byte[MAGIC.length];
+            start.get(magic);
+
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("Not a columnar data file: " + file);
+            }
+
+            int version = start.getInt();
+
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported columnar data file version: " + version);
+            }
+
+            int headerLength = start.getInt();
+            ByteBuffer headerBytes = ByteBuffer.allocate(headerLength);
+            readFully(channel, headerBytes, MAGIC.length + 8);
+
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes.array()));
+
+            int numRows = header.readInt();
+            int numColumns = header.readInt();
+            List<Node> variables = new ArrayList<>();
+
+            for (int j = 0; j < numColumns; j++) {
+                byte type = header.readByte();
+                String name = header.readUTF();
+
+                if (type == CONTINUOUS) {
+                    variables.add(new ContinuousVariable(name));
+                } else if (type == DISCRETE) {
+                    int numCategories = header.readInt();
+                    List<String> categories = new ArrayList<>();
+
+                    for (int k = 0; k < numCategories; k++) {
+                        categories.add(header.readUTF());
+                    }
+
+                    variables.add(new DiscreteVariable(name, categories));
+                } else {
+                    throw new IllegalArgumentException("Unknown column type: " + type);
+                }
+            }
+
+            IKnowledge knowledge = null;
+
+            if (header.readBoolean()) {
+                byte[] text = new byte[header.readInt()];
+                header.readFully(text);
+                knowledge = new DataReader().parseKnowledge(new String(text, StandardCharsets.UTF_8).toCharArray());
+            }
+
+            DoubleBuffer[] doubleColumns = new DoubleBuffer[numColumns];
+            IntBuffer[] intColumns = new IntBuffer[numColumns];
+            long position = MAGIC.length + 8 + headerLength;
+
+            for (int j = 0; j < numColumns; j++) {
+                position = align(position);
+
+                if (variables.get(j) instanceof ContinuousVariable) {
+                    long size = 8L * numRows;
+                    doubleColumns[j] = map(channel, position, size).asDoubleBuffer();
+                    position += size;
+                } else {
+                    long size = 4L * numRows;
+                    intColumns[j] = map(channel, position, size).asIntBuffer();
+                    position += size;
+                }
+            }
+
+            DataSet dataSet = new BoxDataSet(new MappedDataBox(variables, numRows, doubleColumns, intColumns),
+                    variables);
+            dataSet.setName(file.getName());
+
+            if (knowledge != null) {
+                dataSet.setKnowledge(knowledge);
+            }
+
+            return dataSet;
+        }
+    }
+
+    /**
+     * @return true if the given file begins as a file in this format does.
+     */
+    public static boolean isColumnar(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < MAGIC.length) {
+                return false;
+            }
+
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            readFully(channel, magic, 0);
+            return Arrays.equals(magic.array(), MAGIC);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (position + size > channel.size()) {
+            throw new IllegalArgumentException("Columnar data file is truncated.");
+        }
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static long pad(FileChannel channel, long position) throws IOException {
+        long aligned = align(position);
+
+        if (aligned > position) {
+            writeFully(channel, ByteBuffer.allocate((int) (aligned - position)));
+        }
+
+        return aligned;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + buf.position());
+
+            if (n < 0) {
+                throw new EOFException("Columnar data file is truncated.");
+            }
+        }
+
+        buf.flip();
+    }
+}
@@ -29,7 +29,6 @@ import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
-import org.apache.commons.math3.linear.RealMatrix;
 
 /**
  * Stores a covariance matrix together with variable names and sample size,
@@ -90,8 +89,6 @@ public class CovarianceMatrix implements ICovarianceMatrix {
      */
     private IKnowledge knowledge = new Knowledge2();
 
-    private double[][] vectors = null;
-
     //=============================CONSTRUCTORS=========================//
     /**
      * Constructs a new covariance matrix from the given data set.
@@ -99,47 +96,139 @@ public class CovarianceMatrix implements ICovarianceMatrix {
      * @throws IllegalArgumentException if this is not a continuous data set.
      */
     public CovarianceMatrix(DataSet dataSet) {
+        this(dataSet, null);
+    }
+
+    /**
+     * Constructs a new covariance matrix from the given data set, counting row k as though it appeared
+     * weights[k] times; a bootstrap sample, for instance, may be given as the number of times each
+     * original row was drawn, without copying any rows. The sample size is the rounded sum of the weights.
+     *
+     * @param weights Nonnegative weights, one for each row of the data set, or null to weight each row 1.
+     * @throws IllegalArgumentException if this is not a continuous data set.
+     */
+    public CovarianceMatrix(DataSet dataSet, double[] weights) {
         if (!dataSet.isContinuous()) {
             throw new IllegalArgumentException("Not a continuous data set.");
         }
 
+        if (weights != null && weights.length != dataSet.getNumRows()) {
+            throw new IllegalArgumentException("Expecting " + dataSet.getNumRows() + " weights: " + weights.length);
+        }
+
         this.matrix = new TetradMatrix(dataSet.getNumColumns(), dataSet.getNumColumns());
 
         this.variables = Collections.unmodifiableList(dataSet.getVariables());
-        this.sampleSize = dataSet.getNumRows();
+        this.sampleSize = weights == null ? dataSet.getNumRows() : (int) Math.round(StatUtils.sum(weights));
+
+        // Column views of the data; these are not copied, so they must not be modified. If the data set
+        // is a view of rows of another, the columns are those of the other, and row k is rows[k] of them.
+        final double[][] vectors = new double[variables.size()][];
+        final int[] rows;
+
+        // The weight of each row of the vectors, or null if each row has weight 1.
+        final double[] _weights;
+
+        DataBox box = dataSet instanceof BoxDataSet ? ((BoxDataSet) dataSet).getDataBox() : null;
+
+        if (box instanceof RowIndexedDataBox) {
+            DataBox parent = ((RowIndexedDataBox) box).getParent();
+            int[] viewRows = ((RowIndexedDataBox) box).getRows();
+
+            for (int i = 0; i < variables.size(); i++) {
+                vectors[i] = parent.getDoubleColumn(i);
+            }
+
+            // A view covering much of its parent, as a bootstrap sample does, is done in one pass over the
+            // parent in row order, each row weighted by the number of times it is selected.
+            if (weights != null || 2 * viewRows.length >= parent.numRows()) {
+                rows = null;
+                _weights = new double[parent.numRows()];
+
+                for (int k = 0; k < viewRows.length; k++) {
+                    _weights[viewRows[k]] += weights == null ? 1.0 : weights[k];
+                }
+            } else {
+                rows = viewRows;
+                _weights = null;
+            }
+        } else {
+            rows = null;
+            _weights = weights;
+
+            for (int i = 0; i < variables.size(); i++) {
+                vectors[i] = dataSet.getDoubleColumn(i);
+            }
+        }
+
+        final int n = rows != null ? rows.length : _weights != null ? _weights.length : dataSet.getNumRows();
 
-        if (dataSet instanceof BoxDataSet) {
+        final double[] means = new double[variables.size()];
+        boolean missing = false;
 
-            DataBox box = ((BoxDataSet) dataSet).getDataBox().copy();
+        for (int i = 0; i < variables.size(); i++) {
+            double sum = 0.0;
+            double count = 0.0;
+
+            for (int k = 0; k < n; k++) {
+                int r = rows == null ? k : rows[k];
+                double w = _weights == null ? 1.0 : _weights[r];
+                double v = vectors[i][r];
 
-            if (box instanceof VerticalDoubleDataBox) {
-                if (!dataSet.getVariables().equals(variables)) {
-                    throw new IllegalArgumentException();
+                if (w == 0) {
+                    continue;
                 }
 
-                vectors = ((VerticalDoubleDataBox) box).getVariableVectors();
+                if (Double.isNaN(v)) {
+                    missing = true;
+                    continue;
+                }
 
-//                final TetradMatrix doubleData = dataSet.getDoubleData();
-//                DataUtils.remean(doubleData, means);
+                sum += w * v;
+                count += w;
             }
 
+            means[i] = sum / count;
         }
 
-        if (vectors == null) {
-            final TetradMatrix doubleData = dataSet.getDoubleData().copy();
-            TetradVector means = DataUtils.means(doubleData);
-            DataUtils.demean(doubleData, means);
+        // With no missing values, every pair of columns is summed over the same rows, so the sums can be
+        // done a tile of pairs at a time.
+        if (!missing) {
+            int[] used = rows;
+            double[] usedWeights = null;
+            double count = n;
 
-            final RealMatrix realMatrix = doubleData.getRealMatrix();
+            if (_weights != null) {
+                int m = 0;
 
-            vectors = new double[variables.size()][];
+                for (double w : _weights) {
+                    if (w != 0) m++;
+                }
+
+                used = new int[m];
+                usedWeights = new double[m];
+                count = 0.0;
+                m = 0;
+
+                for (int r = 0; r < _weights.length; r++) {
+                    if (_weights[r] != 0) {
+                        used[m] = r;
+                        usedWeights[m++] = _weights[r];
+                        count += _weights[r];
+                    }
+                }
+            }
+
+            BlockedCovariance.compute(vectors, means, used, usedWeights, count - 1, matrix);
 
             for (int i = 0; i < variables.size(); i++) {
-                vectors[i] = realMatrix.getColumnVector(i).toArray();
+                if (matrix.get(i, i) == 0) {
+                    System.out.println("    Zero variance! " + variables.get(i));
+                }
             }
-        }
 
-        TetradVector means = DataUtils.means(vectors);
+            return;
+        }
 
         int NTHREADS = Runtime.getRuntime().availableProcessors() * 10;
         int _chunk = variables.size() / NTHREADS + 1;
@@ -164,17 +253,22 @@ public class CovarianceMatrix implements ICovarianceMatrix {
                     for (int i = from; i < to; i++) {
                         double d = 0.0D;
 
-                        int count = 0;
+                        double count = 0.0;
 
                         double[] v1 = vectors[i];
+                        double m1 = means[i];
+
+                        for (int k = 0; k < n; ++k) {
+                            int r = rows == null ? k : rows[k];
+                            double w = _weights == null ? 1.0 : _weights[r];
 
-                        for (int k = 0; k < sampleSize; ++k) {
-                            if (Double.isNaN(v1[k])) {
+                            if (w == 0 || Double.isNaN(v1[r])) {
                                 continue;
                             }
 
-                            d += v1[k] * v1[k];
-                            count++;
+                            double d1 = v1[r] - m1;
+                            d += w * d1 * d1;
+                            count += w;
                         }
 
                         double v = d;
@@ -225,18 +319,26 @@ public class CovarianceMatrix implements ICovarianceMatrix {
 
                             double[] v1 = vectors[i];
                             double[] v2 = vectors[j];
-                            int count = 0;
+                            double m1 = means[i];
+                            double m2 = means[j];
+                            double count = 0.0;
+
+                            for (int k = 0; k < n; k++) {
+                                int r = rows == null ? k : rows[k];
+                                double w = _weights == null ? 1.0 : _weights[r];
 
-                            for (int k = 0; k < sampleSize; k++) {
-                                if (Double.isNaN(v1[k])) {
+                                if (w == 0) {
                                     continue;
                                 }
-                                if (Double.isNaN(v2[k])) {
+                                if (Double.isNaN(v1[r])) {
+                                    continue;
+                                }
+                                if (Double.isNaN(v2[r])) {
                                     continue;
                                 }
 
-                                d += v1[k] * v2[k];
-                                count++;
+                                d += w * (v1[r] - m1) * (v2[r] - m2);
+                                count += w;
                             }
 
                             double v = d;
@@ -268,11 +370,6 @@ public class CovarianceMatrix implements ICovarianceMatrix {
 
         RestOfThemTask task2 = new RestOfThemTask(chunk, 0, variables.size());
         ForkJoinPoolInstance.getInstance().getPool().invoke(task2);
-
-        DataUtils.demean(vectors, means);
-
-        this.variables = Collections.unmodifiableList(dataSet.getVariables());
-        this.sampleSize = dataSet.getNumRows();
     }
 
     /**
@@ -99,16 +99,46 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
 
     private double[][] vectors = null;
 
+    // The mean-centered columns if the data are stored as floats, in which case vectors is null.
+    private float[][] floatVectors = null;
+
     private double[] variances;
 
+    // The weight of each row of the vectors, or null if each row has weight 1. If there are weights,
+    // the vectors are not mean-centered, and means holds their weighted means.
+    private double[] weights = null;
+
+    private double[] means = null;
+
+    // Row k of the data is row viewRows[k] of the vectors, or null if these are the same.
+    private int[] viewRows = null;
+
+    // The weight of each row of the data if they are a view and weights were given, or null.
+    private double[] viewWeights = null;
+
+    // The most memory, in bytes, to use to remember covariances once computed; 0 if they are not
+    // remembered, or SHARED_CACHE_SIZE if they are remembered within the shared budget.
+    private long cacheSize = SHARED_CACHE_SIZE;
+
+    // The covariances computed so far that are still remembered, or null if cacheSize is 0.
+    private transient CovarianceTileCache cache;
+
+    /**
+     * The cache size, the default, for remembering covariances within MemoryBudget.shared(), which all
+     * caches not given a budget of their own draw on together, so that many matrices alive at once, as in
+     * resampling, do not each take their own share of the heap.
+     */
+    public static final long SHARED_CACHE_SIZE = -1;
+
 
     //=============================CONSTRUCTORS=========================//
 
     /**
      * Constructs a new covariance matrix from the given data set. If dataSet is
-     * a BoxDataSet with a VerticalDoubleDataBox, the data will be mean-centered
+     * a BoxDataSet with a VerticalDoubleDataBox or VerticalFloatDataBox, the data will be mean-centered
      * by the constructor; is non-mean-centered version of the data is needed,
-     * the data should be copied before being send into the constructor.
+     * the data should be copied before being send into the constructor. For float data, sums are
+     * accumulated in double, and covariances are rounded to float.
      *
      * @throws IllegalArgumentException if this is not a continuous data set.
      */
@@ -117,10 +147,29 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
     }
 
     public CovarianceMatrixOnTheFly(DataSet dataSet, boolean verbose) {
+        this(dataSet, null, verbose);
+    }
+
+    /**
+     * Constructs a new covariance matrix from the given data set, counting row k as though it appeared
+     * weights[k] times. The data are not modified, and the weights are not copied. The sample size is
+     * the rounded sum of the weights.
+     *
+     * @param weights Nonnegative weights, one for each row of the data set, or null to weight each row 1.
+     */
+    public CovarianceMatrixOnTheFly(DataSet dataSet, double[] weights) {
+        this(dataSet, weights, false);
+    }
+
+    private CovarianceMatrixOnTheFly(DataSet dataSet, double[] rowWeights, boolean verbose) {
         if (!dataSet.isContinuous()) {
             throw new IllegalArgumentException("Not a continuous data set.");
         }
 
+        if (rowWeights != null && rowWeights.length != dataSet.getNumRows()) {
+            throw new IllegalArgumentException("Expecting " + dataSet.getNumRows() + " weights: " + rowWeights.length);
+        }
+
         this.variables = Collections.unmodifiableList(dataSet.getVariables());
         this.sampleSize = dataSet.getNumRows();
 
@@ -132,7 +181,60 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
 
             DataBox box = ((BoxDataSet) dataSet).getDataBox();
 
-            if (box instanceof VerticalDoubleDataBox) {
+            if (box instanceof RowIndexedDataBox && (rowWeights != null
+                    || 2 * box.numRows() >= ((RowIndexedDataBox) box).getParent().numRows())) {
+                if (verbose) {
+                    System.out.println("Getting vectors from the parent of a RowIndexedDataBox");
+                }
+
+                // Each covariance is a pass over the parent's rows, weighted by the number of times each
+                // is selected, so the view's rows are never copied.
+                DataBox parent = ((RowIndexedDataBox) box).getParent();
+                viewRows = ((RowIndexedDataBox) box).getRows();
+                viewWeights = rowWeights;
+                vectors = new double[variables.size()][];
+
+                for (int i = 0; i < variables.size(); i++) {
+                    vectors[i] = parent.getDoubleColumn(i);
+                }
+
+                weights = new double[parent.numRows()];
+
+                for (int k = 0; k < viewRows.length; k++) {
+                    weights[viewRows[k]] += rowWeights == null ? 1.0 : rowWeights[k];
+                }
+            } else if (rowWeights != null) {
+                vectors = new double[variables.size()][];
+
+                for (int i = 0; i < variables.size(); i++) {
+                    vectors[i] = dataSet.getDoubleColumn(i);
+                }
+
+                weights = rowWeights;
+            } else if (box instanceof VerticalFloatDataBox) {
+                if (verbose) {
+                    System.out.println("Getting vectors from VerticalFloatDataBox");
+                }
+
+                floatVectors = ((VerticalFloatDataBox) box).getVariableVectors();
+
+                for (float[] v : floatVectors) {
+                    double sum = 0.0;
+                    int count = 0;
+
+                    for (float x : v) {
+                        if (Float.isNaN(x)) continue;
+                        sum += x;
+                        count++;
+                    }
+
+                    double mean = sum / count;
+
+                    for (int k = 0; k < v.length; k++) {
+                        v[k] = (float) (v[k] - mean);
+                    }
+                }
+            } else if (box instanceof VerticalDoubleDataBox) {
                 if (verbose) {
                     System.out.println("Getting vectors from VerticalDoubleDataBox");
                 }
@@ -178,7 +280,17 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
 
         }
 
-        if (vectors == null) {
+        if (vectors == null && rowWeights != null) {
+            vectors = new double[variables.size()][];
+
+            for (int i = 0; i < variables.size(); i++) {
+                vectors[i] = dataSet.getDoubleColumn(i);
+            }
+
+            weights = rowWeights;
+        }
+
+        if (vectors == null && floatVectors == null) {
             if (verbose) {
                 System.out.println("Copying data");
             }
@@ -214,6 +326,30 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
             System.out.println("Calculating variances");
         }
 
+        if (weights != null) {
+            if (verbose) {
+                System.out.println("Calculating weighted means");
+            }
+
+            this.means = new double[variables.size()];
+
+            for (int i = 0; i < variables.size(); i++) {
+                double sum = 0.0;
+                double count = 0.0;
+
+                for (int k = 0; k < weights.length; k++) {
+                    double w = weights[k];
+                    if (w == 0 || Double.isNaN(vectors[i][k])) continue;
+                    sum += w * vectors[i][k];
+                    count += w;
+                }
+
+                means[i] = sum / count;
+            }
+
+            this.sampleSize = (int) Math.round(StatUtils.sum(weights));
+        }
+
         this.variances = new double[variables.size()];
 
         class VarianceTask extends RecursiveTask<Boolean> {
@@ -231,6 +367,16 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
             protected Boolean compute() {
                 if (to - from <= chunk) {
                     for (int i = from; i < to; i++) {
+                        if (weights != null) {
+                            variances[i] = weightedValue(i, i);
+                            continue;
+                        }
+
+                        if (floatVectors != null) {
+                            variances[i] = floatValue(i, i, null);
+                            continue;
+                        }
+
                         double d = 0.0D;
 
                         int count = 0;
@@ -289,6 +435,8 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
             System.out.println("Done with variances.");
         }
 
+        setCacheSize(cacheSize);
+
 
     }
 
@@ -450,6 +598,25 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
             return variances[i];
         }
 
+        CovarianceTileCache cache = this.cache;
+
+        if (cache != null) {
+            return cache.get(i, j);
+        }
+
+        return computeValue(i, j);
+    }
+
+    // The covariance of columns i and j over all rows, for i != j.
+    private double computeValue(int i, int j) {
+        if (floatVectors != null) {
+            return floatValue(i, j, null);
+        }
+
+        if (weights != null) {
+            return weightedValue(i, j);
+        }
+
         double d = 0.0D;
 
         double[] v1 = vectors[i];
@@ -475,6 +642,14 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
 //            return variances[i];
 //        }
 
+        if (floatVectors != null) {
+            return floatValue(i, j, rows);
+        }
+
+        if (weights != null) {
+            return weightedValue(i, j, rows);
+        }
+
         double d = 0.0D;
 
         double[] v1 = vectors[i];
@@ -496,6 +671,65 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
         return v;
     }
 
+    // The weighted covariance of columns i and j over all rows, skipping rows where either is missing.
+    private double weightedValue(int i, int j) {
+        double[] v1 = vectors[i];
+        double[] v2 = vectors[j];
+        double m1 = means[i];
+        double m2 = means[j];
+        double d = 0.0;
+        double count = 0.0;
+
+        for (int k = 0; k < weights.length; k++) {
+            double w = weights[k];
+            if (w == 0 || Double.isNaN(v1[k]) || Double.isNaN(v2[k])) continue;
+            d += w * (v1[k] - m1) * (v2[k] - m2);
+            count += w;
+        }
+
+        return d / (count - 1);
+    }
+
+    // The same over the given rows of the data, each with its own weight; for a view, that is the weight
+    // given for the row, or 1, not the total weight of its row of the vectors.
+    private double weightedValue(int i, int j, int[] rows) {
+        double[] v1 = vectors[i];
+        double[] v2 = vectors[j];
+        double m1 = means[i];
+        double m2 = means[j];
+        double d = 0.0;
+        double count = 0.0;
+
+        for (int row : rows) {
+            int k = viewRows == null ? row : viewRows[row];
+            double w = viewRows == null ? weights[k] : viewWeights == null ? 1.0 : viewWeights[row];
+            if (w == 0 || Double.isNaN(v1[k]) || Double.isNaN(v2[k])) continue;
+            d += w * (v1[k] - m1) * (v2[k] - m2);
+            count += w;
+        }
+
+        return d / (count - 1);
+    }
+
+    // The covariance of columns i and j of float data over the given rows, or all rows if rows is null,
+    // skipping rows where either is missing. The sums are in double; the result is rounded to float.
+    private double floatValue(int i, int j, int[] rows) {
+        float[] v1 = floatVectors[i];
+        float[] v2 = floatVectors[j];
+        int n = rows == null ? v1.length : rows.length;
+        double d = 0.0;
+        int count = 0;
+
+        for (int m = 0; m < n; m++) {
+            int k = rows == null ? m : rows[m];
+            if (Float.isNaN(v1[k]) || Float.isNaN(v2[k])) continue;
+            d += (double) v1[k] * v2[k];
+            count++;
+        }
+
+        return (float) (d / (count - 1));
+    }
+
     public void setMatrix(TetradMatrix matrix) {
         this.matrix = matrix;
         checkMatrix();
@@ -638,6 +872,60 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
         this.variables = variables;
     }
 
+    /**
+     * Sets the most memory, in bytes, to use to remember covariances once they are computed, so that
+     * they need not be computed again. Covariances are remembered in tiles of 64 x 64, as floats if the
+     * data are floats; when the memory is used up, the least recently used tiles are forgotten. If the
+     * size is 0, nothing is remembered; if it is SHARED_CACHE_SIZE, the default, covariances are
+     * remembered within the budget shared by all caches. Covariances remembered so far are forgotten.
+     */
+    public void setCacheSize(long cacheSize) {
+        if (cacheSize < 0 && cacheSize != SHARED_CACHE_SIZE) {
+            throw new IllegalArgumentException("Cache size must be >= 0 or SHARED_CACHE_SIZE: " + cacheSize);
+        }
+
+        if (this.cache != null) {
+            this.cache.close();
+        }
+
+        MemoryBudget budget = cacheSize == SHARED_CACHE_SIZE ? MemoryBudget.shared()
+                : cacheSize > 0 ? new MemoryBudget(cacheSize) : null;
+
+        this.cacheSize = cacheSize;
+        this.cache = budget != null ? new CovarianceTileCache(budget, this::computeValue,
+                floatVectors != null) : null;
+    }
+
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @return the number of calls to getValue(i, j), i != j, whose covariance was remembered, since the
+     * cache size was last set.
+     */
+    public long getCacheHits() {
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    /**
+     * @return the number of calls to getValue(i, j), i != j, whose covariance had to be computed, since
+     * the cache size was last set.
+     */
+    public long getCacheMisses() {
+        return cache == null ? 0 : cache.getMisses();
+    }
+
+    /**
+     * @return the fraction of calls to getValue(i, j), i != j, whose covariance was remembered, or 0 if
+     * there have been none.
+     */
+    public double getCacheHitRate() {
+        long hits = getCacheHits();
+        long total = hits + getCacheMisses();
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
     public boolean isVerbose() {
         return verbose;
     }
@@ -819,6 +1107,8 @@ public class CovarianceMatrixOnTheFly implements ICovarianceMatrix {
         if (selectedVariables == null) {
             selectedVariables = new HashSet<>();
         }
+
+        setCacheSize(cacheSize);
     }
 }
 
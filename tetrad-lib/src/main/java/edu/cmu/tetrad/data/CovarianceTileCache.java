@@ -0,0 +1,220 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.util.MemoryBudget;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers entries of a symmetric matrix that are expensive to compute, such as the covariances of
+ * CovarianceMatrixOnTheFly, within a memory budget, which may be shared with other caches. Entries are kept
+ * in square tiles of the lower triangle, allocated when an entry in them is first computed; when the budget
+ * has no room for another tile, the least recently used tile of its segment is dropped to make room. The
+ * tiles are spread over several segments, each with its own lock, so that threads seldom wait on one
+ * another; recency is kept within each segment.
+ *
+ * @author Joseph Ramsey
+ */
+final class CovarianceTileCache {
+
+    /**
+     * Computes an entry of the matrix.
+     */
+    interface Entries {
+        double compute(int i, int j);
+    }
+
+    // The number of entries on a side of a tile.
+    static final int TILE = 64;
+
+    // The number of segments; a power of 2.
+    private static final int SEGMENTS = 16;
+
+    private final Entries entries;
+
+    // True if entries are kept as floats.
+    private final boolean singlePrecision;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // The account the tiles are reserved from, and the approximate size of a tile in bytes, with its flags
+    // and overhead.
+    private final MemoryBudget.Account account;
+    private final long tileBytes;
+
+    /**
+     * @param budget          The memory to reserve tiles from. At least one tile per segment is kept, even
+     *                        if the budget has no room for it.
+     * @param entries         Computes entries that are not in the cache; for i > j, it is given (i, j).
+     * @param singlePrecision True if entries are to be kept as floats, in half the memory; entries
+     *                        computed should then be floats already.
+     */
+    CovarianceTileCache(MemoryBudget budget, Entries entries, boolean singlePrecision) {
+        for (int s = 0; s < SEGMENTS; s++) {
+            segments[s] = new Segment();
+        }
+
+        this.entries = entries;
+        this.singlePrecision = singlePrecision;
+        this.tileBytes = (singlePrecision ? 4L : 8L) * TILE * TILE + TILE * TILE / 8 + 128;
+        this.account = budget.open(this);
+    }
+
+    /**
+     * @return entry (i, j), computing it if it is not in the cache. Entry (i, j) is entry (j, i).
+     */
+    double get(int i, int j) {
+        if (i < j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+
+        long key = ((long) (i / TILE) << 32) | (j / TILE);
+        int index = (i % TILE) * TILE + j % TILE;
+        Segment segment = segments[(int) ((key * 0x9E3779B97F4A7C15L) >>> 60) & (SEGMENTS - 1)];
+
+        synchronized (segment) {
+            Tile tile = segment.get(key);
+
+            if (tile != null && tile.has(index)) {
+                hits.increment();
+                return tile.get(index);
+            }
+        }
+
+        misses.increment();
+        double value = entries.compute(i, j);
+
+        synchronized (segment) {
+            Tile tile = segment.get(key);
+
+            if (tile == null) {
+                tile = new Tile(singlePrecision);
+
+                // If there is no room for another tile, the least recently used one makes room.
+                if (account.reserve(tileBytes)) {
+                    tile.reserved = true;
+                } else if (!segment.isEmpty()) {
+                    Iterator<Tile> eldest = segment.values().iterator();
+                    tile.reserved = eldest.next().reserved;
+                    eldest.remove();
+                }
+
+                segment.put(key, tile);
+            }
+
+            tile.set(index, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * @return the number of entries found in the cache.
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of entries computed because they were not in the cache.
+     */
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Forgets all entries and returns their memory to the budget.
+     */
+    void close() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+
+        account.close();
+    }
+
+    /**
+     * @return the number of tiles held.
+     */
+    int getNumTiles() {
+        int n = 0;
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                n += segment.size();
+            }
+        }
+
+        return n;
+    }
+
+    private static class Tile {
+
+        // The entries; one of these is null.
+        private final double[] values;
+        private final float[] floatValues;
+
+        // Bit k is set if entry k has been computed.
+        private final long[] computed = new long[TILE * TILE / 64];
+
+        // True if the tile's memory is reserved from the budget.
+        private boolean reserved = false;
+
+        Tile(boolean singlePrecision) {
+            values = singlePrecision ? null : new double[TILE * TILE];
+            floatValues = singlePrecision ? new float[TILE * TILE] : null;
+        }
+
+        boolean has(int index) {
+            return (computed[index >>> 6] & (1L << index)) != 0;
+        }
+
+        double get(int index) {
+            return values != null ? values[index] : floatValues[index];
+        }
+
+        void set(int index, double value) {
+            if (values != null) {
+                values[index] = value;
+            } else {
+                floatValues[index] = (float) value;
+            }
+
+            computed[index >>> 6] |= 1L << index;
+        }
+    }
+
+    // Tiles by key, in order of access, least recent first.
+    private static class Segment extends LinkedHashMap<Long, Tile> {
+        Segment() {
+            super(16, 0.75f, true);
+        }
+    }
+}
@@ -58,6 +58,57 @@ public interface DataBox extends TetradSerializable {
      */
     Number get(int row, int col);
 
+    /**
+     * @return the value at the given row and column as a double, or Double.NaN
+     * if the value is missing. This is the same as get(row, col).doubleValue(),
+     * but implementations should override it to avoid boxing the value.
+     */
+    default double getDouble(int row, int col) {
+        Number value = get(row, col);
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    /**
+     * @return the value at the given row and column as an int, or
+     * DiscreteVariable.MISSING_VALUE if the value is missing. This is the same
+     * as get(row, col).intValue(), but implementations should override it to
+     * avoid boxing the value.
+     */
+    default int getInt(int row, int col) {
+        Number value = get(row, col);
+        return value == null ? DiscreteVariable.MISSING_VALUE : value.intValue();
+    }
+
+    /**
+     * @return the values in the given column, as by getDouble(row, col). Boxes
+     * that store their columns as double arrays return the stored array
+     * itself, which must not be modified; others return a new array.
+     */
+    default double[] getDoubleColumn(int col) {
+        double[] column = new double[numRows()];
+
+        for (int i = 0; i < column.length; i++) {
+            column[i] = getDouble(i, col);
+        }
+
+        return column;
+    }
+
+    /**
+     * @return the values in the given column, as by getInt(row, col). Boxes
+     * that store their columns as int arrays return the stored array itself,
+     * which must not be modified; others return a new array.
+     */
+    default int[] getIntColumn(int col) {
+        int[] column = new int[numRows()];
+
+        for (int i = 0; i < column.length; i++) {
+            column[i] = getInt(i, col);
+        }
+
+        return column;
+    }
+
     /**
      * @return a copy of this data box.
      */
@@ -114,6 +114,11 @@ public final class DataReader implements IDataReader {
      */
     private boolean readVariablesLowercase = false;
 
+    /**
+     * True if tabular files should be memory-mapped and parsed in parallel chunks of lines.
+     */
+    private boolean parallel = false;
+
     /**
      * Constructs a new data parser.
      */
@@ -229,6 +234,20 @@ public final class DataReader implements IDataReader {
      */
     @Override
     public DataSet parseTabular(File file) throws IOException {
+        if (parallel && !idsSupplied) {
+            DataSet dataSet = new MappedTabularParser(delimiterType, commentMarker, quoteChar,
+                    missingValueMarker, varNamesSupplied, maxIntegralDiscrete, knownVariables,
+                    readVariablesLowercase).parse(file);
+
+            if (dataSet != null) {
+                dataSet.setName(file.getName());
+
+                this.logger.log("info", "\nData set loaded!");
+                this.logger.reset();
+                return dataSet;
+            }
+        }
+
         FileReader reader = null, reader2 = null;
 
         try {
@@ -265,6 +284,19 @@ public final class DataReader implements IDataReader {
         }
     }
 
+    /**
+     * Opens a data set written by DataWriter.writeColumnarData. The columns are memory-mapped rather
+     * than read, so the data stay off the heap.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    public DataSet parseColumnar(File file) throws IOException {
+        DataSet dataSet = ColumnarDataFile.read(file);
+        this.logger.log("info", "\nData set loaded!");
+        this.logger.reset();
+        return dataSet;
+    }
+
     /**
      * Parses the given character array for a tabular data set, returning a
      * RectangularDataSet if successful. Log messages are written to the
@@ -1144,6 +1176,19 @@ public final class DataReader implements IDataReader {
         this.readVariablesLowercase = readVariablesLowercase;
     }
 
+    /**
+     * If true, parseTabular(File) memory-maps the file and parses chunks of its lines in parallel
+     * straight into the columns of a BoxDataSet. Files with /variables or /knowledge sections, quoted
+     * tokens or case IDs are read the regular way.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
     public void setReadVariablesUppercase(boolean readVariablesUppercase) {
         this.readVariablesLowercase = readVariablesUppercase;
     }
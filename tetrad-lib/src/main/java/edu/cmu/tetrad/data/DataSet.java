@@ -124,6 +124,20 @@ public interface DataSet extends KnowledgeTransferable, DataModel, TetradSeriali
      */
     int getInt(int row, int column);
 
+    /**
+     * @return the values in the given column, as by getDouble(row, column).
+     * This may be the array in which the data set stores the column, so it
+     * must not be modified.
+     */
+    double[] getDoubleColumn(int column);
+
+    /**
+     * @return the values in the given column, as by getInt(row, column).
+     * This may be the array in which the data set stores the column, so it
+     * must not be modified.
+     */
+    int[] getIntColumn(int column);
+
     /**
      * @return the name of the data set.
      */
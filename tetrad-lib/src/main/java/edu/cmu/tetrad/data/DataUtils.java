@@ -1457,10 +1457,7 @@ public final class DataUtils {
             availRows.remove(index);
         }
 
-        int[] cols = new int[data.getNumColumns()];
-        for (int i = 0; i < cols.length; i++) cols[i] = i;
-
-        return ColtDataSet.makeData(data.getVariables(), data.getDoubleData().getSelection(rows, cols));
+        return viewRows(data, rows);
     }
 
     /**
@@ -1476,10 +1473,7 @@ public final class DataUtils {
             rows[i] = RandomUtil.getInstance().nextInt(actualSampleSize);
         }
 
-        int[] cols = new int[data.getNumColumns()];
-        for (int i = 0; i < cols.length; i++) cols[i] = i;
-
-        return ColtDataSet.makeData(data.getVariables(), data.getDoubleData().getSelection(rows, cols));
+        return viewRows(data, rows);
     }
 
     /**
@@ -1502,12 +1496,86 @@ public final class DataUtils {
             rows[i] = samples.get(i);
         }
 
+        return viewRows(data, rows);
+    }
+
+    /**
+     * @return a data set whose i'th row is row rows[i] of the given data set;
+     * rows may repeat. For a BoxDataSet this is a view of its data box, so
+     * nothing is copied, and writing to it does not change the given data set.
+     * Other data sets are copied.
+     */
+    public static DataSet viewRows(DataSet data, int[] rows) {
+        if (data instanceof BoxDataSet) {
+            DataBox box = new RowIndexedDataBox(((BoxDataSet) data).getDataBox(), rows);
+            return new BoxDataSet(box, new ArrayList<>(data.getVariables()));
+        }
+
         int[] cols = new int[data.getNumColumns()];
         for (int i = 0; i < cols.length; i++) cols[i] = i;
 
         return ColtDataSet.makeData(data.getVariables(), data.getDoubleData().getSelection(rows, cols));
     }
 
+    /**
+     * @return a copy of the given continuous data set whose values are stored as floats, in half the
+     * memory, or the data set itself if they already are. Covariances of such a data set are computed
+     * by CovarianceMatrixOnTheFly from the floats, summing in double.
+     */
+    public static DataSet toSinglePrecision(DataSet data) {
+        if (!data.isContinuous()) {
+            throw new IllegalArgumentException("Not a continuous data set.");
+        }
+
+        if (data instanceof BoxDataSet && ((BoxDataSet) data).getDataBox() instanceof VerticalFloatDataBox) {
+            return data;
+        }
+
+        float[][] columns = new float[data.getNumColumns()][data.getNumRows()];
+
+        for (int j = 0; j < columns.length; j++) {
+            for (int i = 0; i < columns[j].length; i++) {
+                columns[j][i] = (float) data.getDouble(i, j);
+            }
+        }
+
+        DataSet _data = new BoxDataSet(new VerticalFloatDataBox(columns), data.getVariables());
+        _data.setName(data.getName());
+        _data.setKnowledge(data.getKnowledge());
+        return _data;
+    }
+
+    /**
+     * @return a copy of the given discrete data set whose values are packed into as few bits as the
+     * numbers of categories allow, or the data set itself if they already are. See PackedDiscreteDataBox.
+     */
+    public static DataSet toBitPacked(DataSet data) {
+        if (!data.isDiscrete()) {
+            throw new IllegalArgumentException("Not a discrete data set.");
+        }
+
+        DataBox box = data instanceof BoxDataSet ? ((BoxDataSet) data).getDataBox() : null;
+
+        if (box instanceof PackedDiscreteDataBox) {
+            return data;
+        }
+
+        if (box == null) {
+            box = new VerticalIntDataBox(data.getNumRows(), data.getNumColumns());
+
+            for (int i = 0; i < data.getNumRows(); i++) {
+                for (int j = 0; j < data.getNumColumns(); j++) {
+                    box.set(i, j, data.getInt(i, j));
+                }
+            }
+        }
+
+        DataSet _data = new BoxDataSet(new PackedDiscreteDataBox(box, data.getVariables()), data.getVariables());
+        _data.setName(data.getName());
+        _data.setKnowledge(data.getKnowledge());
+        return _data;
+    }
+
     /**
      * Subtracts the mean of each column from each datum that column.
      */
@@ -24,6 +24,7 @@ package edu.cmu.tetrad.data;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.NumberFormatUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
@@ -222,6 +223,19 @@ public final class DataWriter {
         out.close();
     }
 
+    /**
+     * Writes a dataset to file in the binary columnar format of ColumnarDataFile, which can be opened
+     * again without loading the data onto the heap. The dataset may have continuous and/or discrete
+     * columns.
+     *
+     * @param dataSet The data set to save.
+     * @param file    The file to write, conventionally with extension ColumnarDataFile.EXTENSION.
+     * @throws IOException If there is some problem writing the file.
+     */
+    public static void writeColumnarData(DataSet dataSet, File file) throws IOException {
+        ColumnarDataFile.write(dataSet, file);
+    }
+
     public static void saveKnowledge(IKnowledge knowledge, Writer out) throws IOException {
         StringBuilder buf = new StringBuilder();
         buf.append("/knowledge");
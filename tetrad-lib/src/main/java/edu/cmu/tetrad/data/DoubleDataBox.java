@@ -113,6 +113,31 @@ public class DoubleDataBox implements DataBox {
         }
     }
 
+    @Override
+    public double getDouble(int row, int col) {
+        return data[row][col];
+    }
+
+    @Override
+    public int getInt(int row, int col) {
+        double datum = data[row][col];
+        return Double.isNaN(datum) ? DiscreteVariable.MISSING_VALUE : (int) datum;
+    }
+
+    /**
+     * @return a copy of the given column; the data are stored by rows.
+     */
+    @Override
+    public double[] getDoubleColumn(int col) {
+        double[] column = new double[data.length];
+
+        for (int i = 0; i < data.length; i++) {
+            column[i] = data[i][col];
+        }
+
+        return column;
+    }
+
     /**
      * @return a copy of this data box.
      */
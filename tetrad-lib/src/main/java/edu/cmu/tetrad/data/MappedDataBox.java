@@ -0,0 +1,285 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A data box whose columns are memory-mapped from a file written by ColumnarDataFile, so that the data
+ * stay off the heap. Continuous columns are doubles and discrete columns are ints, as in MixedDataBox.
+ * The file is never modified; the first time a value in a column is set, the column is copied to the
+ * heap. Serializing the box writes a MixedDataBox copy of it.
+ *
+ * @author Joseph Ramsey
+ */
+public class MappedDataBox implements DataBox {
+    static final long serialVersionUID = 23L;
+
+    private final List<Node> variables;
+    private final int numRows;
+
+    // The mapped columns; for each column, one of these is non-null, as the column is continuous or
+    // discrete.
+    private final transient DoubleBuffer[] doubleColumns;
+    private final transient IntBuffer[] intColumns;
+
+    // Heap copies of the columns that have been written to.
+    private final transient double[][] doubleCopies;
+    private final transient int[][] intCopies;
+
+    /**
+     * Constructs a box over the given mapped columns, which must each have numRows values.
+     */
+    public MappedDataBox(List<Node> variables, int numRows, DoubleBuffer[] doubleColumns, IntBuffer[] intColumns) {
+        if (doubleColumns.length != variables.size() || intColumns.length != variables.size()) {
+            throw new IllegalArgumentException("Expecting one column per variable.");
+        }
+
+        for (int j = 0; j < variables.size(); j++) {
+            if ((doubleColumns[j] == null) == (intColumns[j] == null)) {
+                throw new IllegalArgumentException("Column " + j + " must be either continuous or discrete.");
+            }
+
+            if ((doubleColumns[j] != null ? doubleColumns[j].limit() : intColumns[j].limit()) != numRows) {
+                throw new IllegalArgumentException("Column " + j + " does not have " + numRows + " rows.");
+            }
+        }
+
+        this.variables = variables;
+        this.numRows = numRows;
+        this.doubleColumns = doubleColumns;
+        this.intColumns = intColumns;
+        this.doubleCopies = new double[variables.size()][];
+        this.intCopies = new int[variables.size()][];
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static MappedDataBox serializableInstance() {
+        try {
+            List<Node> variables = new ArrayList<>();
+            variables.add(new ContinuousVariable("X"));
+            variables.add(new DiscreteVariable("Y", 2));
+
+            File file = File.createTempFile("serializable", ColumnarDataFile.EXTENSION);
+            file.deleteOnExit();
+            ColumnarDataFile.write(new BoxDataSet(new MixedDataBox(variables, 3), variables), file);
+
+            return (MappedDataBox) ((BoxDataSet) ColumnarDataFile.read(file)).getDataBox();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numCols() {
+        return variables.size();
+    }
+
+    /**
+     * Sets the value at the given row and column, copying the column to the heap first if need be. A
+     * null value is missing.
+     */
+    public void set(int row, int col, Number value) {
+        if (doubleColumns[col] != null) {
+            double[] column = doubleCopy(col);
+            column[row] = value == null ? Double.NaN : value.doubleValue();
+        } else {
+            int[] column = intCopy(col);
+            column[row] = value == null ? -99 : value.intValue();
+        }
+    }
+
+    /**
+     * @return the value at the given row and column, or null if it is missing.
+     */
+    public Number get(int row, int col) {
+        if (doubleColumns[col] != null) {
+            double v = getDouble(row, col);
+            return Double.isNaN(v) ? null : v;
+        } else {
+            int v = getInt(row, col);
+            return v == -99 ? null : v;
+        }
+    }
+
+    @Override
+    public double getDouble(int row, int col) {
+        if (doubleColumns[col] != null) {
+            double[] copy = doubleCopies[col];
+            return copy != null ? copy[row] : doubleColumns[col].get(row);
+        } else {
+            int v = getInt(row, col);
+            return v == -99 ? Double.NaN : v;
+        }
+    }
+
+    @Override
+    public int getInt(int row, int col) {
+        if (intColumns[col] != null) {
+            int[] copy = intCopies[col];
+            return copy != null ? copy[row] : intColumns[col].get(row);
+        } else {
+            return (int) getDouble(row, col);
+        }
+    }
+
+    /**
+     * @return the heap copy of the column if it has been written to, which must not be modified, or
+     * else a new array.
+     */
+    @Override
+    public double[] getDoubleColumn(int col) {
+        if (doubleColumns[col] != null) {
+            if (doubleCopies[col] != null) {
+                return doubleCopies[col];
+            }
+
+            double[] column = new double[numRows];
+            doubleColumns[col].duplicate().get(column);
+            return column;
+        }
+
+        return DataBox.super.getDoubleColumn(col);
+    }
+
+    /**
+     * @return the heap copy of the column if it has been written to, which must not be modified, or
+     * else a new array.
+     */
+    @Override
+    public int[] getIntColumn(int col) {
+        if (intColumns[col] != null) {
+            if (intCopies[col] != null) {
+                return intCopies[col];
+            }
+
+            int[] column = new int[numRows];
+            intColumns[col].duplicate().get(column);
+            return column;
+        }
+
+        return DataBox.super.getIntColumn(col);
+    }
+
+    /**
+     * @return the mapped column if the variable is continuous and the column has not been written to,
+     * or else null. The buffer is shared and should be duplicated before its position is changed.
+     */
+    public DoubleBuffer getMappedDoubleColumn(int col) {
+        return doubleCopies[col] == null ? doubleColumns[col] : null;
+    }
+
+    /**
+     * @return the mapped column if the variable is discrete and the column has not been written to,
+     * or else null. The buffer is shared and should be duplicated before its position is changed.
+     */
+    public IntBuffer getMappedIntColumn(int col) {
+        return intCopies[col] == null ? intColumns[col] : null;
+    }
+
+    /**
+     * @return a copy of the data, on the heap, in a MixedDataBox.
+     */
+    public DataBox copy() {
+        double[][] continuousData = new double[variables.size()][];
+        int[][] discreteData = new int[variables.size()][];
+
+        for (int j = 0; j < variables.size(); j++) {
+            if (doubleColumns[j] != null) {
+                continuousData[j] = doubleCopies[j] != null ? doubleCopies[j].clone() : getDoubleColumn(j);
+            } else {
+                discreteData[j] = intCopies[j] != null ? intCopies[j].clone() : getIntColumn(j);
+            }
+        }
+
+        return new MixedDataBox(variables, numRows, continuousData, discreteData);
+    }
+
+    /**
+     * @return a copy of the given rows and columns, on the heap, in a MixedDataBox.
+     */
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        List<Node> newVars = new ArrayList<>();
+        double[][] continuousData = new double[cols.length][];
+        int[][] discreteData = new int[cols.length][];
+
+        for (int j = 0; j < cols.length; j++) {
+            int col = cols[j];
+            newVars.add(variables.get(col));
+
+            if (doubleColumns[col] != null) {
+                continuousData[j] = new double[rows.length];
+                for (int i = 0; i < rows.length; i++) continuousData[j][i] = getDouble(rows[i], col);
+            } else {
+                discreteData[j] = new int[rows.length];
+                for (int i = 0; i < rows.length; i++) discreteData[j][i] = getInt(rows[i], col);
+            }
+        }
+
+        return new MixedDataBox(newVars, rows.length, continuousData, discreteData);
+    }
+
+    public DataBox like() {
+        return new MixedDataBox(variables, numRows);
+    }
+
+    private double[] doubleCopy(int col) {
+        synchronized (doubleCopies) {
+            if (doubleCopies[col] == null) {
+                double[] column = new double[numRows];
+                doubleColumns[col].duplicate().get(column);
+                doubleCopies[col] = column;
+            }
+
+            return doubleCopies[col];
+        }
+    }
+
+    private int[] intCopy(int col) {
+        synchronized (intCopies) {
+            if (intCopies[col] == null) {
+                int[] column = new int[numRows];
+                intColumns[col].duplicate().get(column);
+                intCopies[col] = column;
+            }
+
+            return intCopies[col];
+        }
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return copy();
+    }
+}
@@ -0,0 +1,876 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.NamingProtocol;
+import edu.cmu.tetrad.util.TetradLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a plain tabular data file--a row of variable names, if supplied, followed by rows of data--by
+ * memory-mapping it, splitting it into chunks of whole lines, and parsing the chunks in parallel straight
+ * into column arrays. Variable types are guessed from a sample of the first rows and then checked against
+ * the values in all rows, so the variables and values are those DataReader's regular two passes give.
+ * <p>
+ * Files with /variables or /knowledge sections, quoted tokens, case IDs or a delimiter other than
+ * whitespace, tab, comma or colon are not handled; for these, parse() returns null, and DataReader
+ * reads the file the regular way.
+ *
+ * @author Joseph Ramsey
+ */
+final class MappedTabularParser {
+
+    // The number of data rows used to guess the types of the columns.
+    private static final int SAMPLE_ROWS = 1000;
+
+    // Bounds on the number of bytes in a chunk.
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 26;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // The delimiter byte, or 0 if tokens are separated by runs of whitespace.
+    private final byte delimiter;
+
+    private final byte[] commentMarker;
+    private final byte quoteChar;
+    private final String missingValueMarker;
+    private final boolean varNamesSupplied;
+    private final int maxIntegralDiscrete;
+    private final List<Node> knownVariables;
+    private final boolean readVariablesLowercase;
+
+    private final TetradLogger logger = TetradLogger.getInstance();
+
+    MappedTabularParser(DelimiterType delimiterType, String commentMarker, char quoteChar,
+                        String missingValueMarker, boolean varNamesSupplied, int maxIntegralDiscrete,
+                        List<Node> knownVariables, boolean readVariablesLowercase) {
+        if (delimiterType == DelimiterType.WHITESPACE) {
+            this.delimiter = 0;
+        } else if (delimiterType == DelimiterType.TAB) {
+            this.delimiter = '\t';
+        } else if (delimiterType == DelimiterType.COMMA) {
+            this.delimiter = ',';
+        } else if (delimiterType == DelimiterType.COLON) {
+            this.delimiter = ':';
+        } else {
+            this.delimiter = -1;
+        }
+
+        this.commentMarker = commentMarker.getBytes(StandardCharsets.UTF_8);
+        this.quoteChar = quoteChar < 128 ? (byte) quoteChar : -1;
+        this.missingValueMarker = missingValueMarker;
+        this.varNamesSupplied = varNamesSupplied;
+        this.maxIntegralDiscrete = maxIntegralDiscrete;
+        this.knownVariables = knownVariables;
+        this.readVariablesLowercase = readVariablesLowercase;
+    }
+
+    /**
+     * @return the data set in the given file, or null if the file needs features this parser does not
+     * handle.
+     */
+    DataSet parse(File file) throws IOException {
+        if (delimiter == -1 || quoteChar == -1) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size == 0) {
+                throw new IllegalArgumentException("Data source is empty.");
+            }
+
+            // The start of the file, holding the variable names and the rows sampled for types.
+            ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_CHUNK_SIZE));
+            int headLimit = head.limit();
+            boolean headIsFile = headLimit == size;
+
+            int pos = skipToLine(head, 0, headLimit);
+
+            if (pos == headLimit) {
+                throw new IllegalArgumentException("Data source is empty.");
+            }
+
+            int end = lineEnd(head, pos, headLimit);
+
+            if (!headIsFile && end == headLimit) {
+                return null;
+            }
+
+            if (!isPlain(head, pos, end)) {
+                return null;
+            }
+
+            List<String> varNames = new ArrayList<>();
+
+            if (varNamesSupplied) {
+                int _end = end > pos && head.get(end - 1) == '\t' ? end - 1 : end;
+
+                for (String name : tokens(head, pos, _end)) {
+                    if ("".equals(name)) {
+                        throw new IllegalArgumentException("Line 1: Expected variable name, got empty token.");
+                    }
+
+                    if (varNames.contains(name)) {
+                        throw new IllegalArgumentException("Line 1: Duplicate variable name (" + name + ").");
+                    }
+
+                    varNames.add(readVariablesLowercase ? name.toLowerCase() : name);
+                }
+
+                pos = skipToLine(head, nextLine(head, end, headLimit), headLimit);
+            } else {
+                int numTokens = tokens(head, pos, end).size();
+
+                for (int i = 0; i < numTokens; i++) {
+                    varNames.add("X" + (i + 1));
+                }
+            }
+
+            long dataStart = pos;
+            int numColumns = varNames.size();
+
+            // Guess the column types from the first rows.
+            List<Set<String>> sample = new ArrayList<>();
+
+            for (int i = 0; i < numColumns; i++) {
+                sample.add(new HashSet<String>());
+            }
+
+            int sampled = 0;
+
+            while (pos < headLimit && sampled < SAMPLE_ROWS) {
+                end = lineEnd(head, pos, headLimit);
+
+                if (!headIsFile && end == headLimit) {
+                    break;
+                }
+
+                if (!isPlain(head, pos, end)) {
+                    return null;
+                }
+
+                List<String> tokens = tokens(head, pos, end);
+
+                for (int i = 0; i < Math.min(numColumns, tokens.size()); i++) {
+                    String token = tokens.get(i);
+
+                    if (!"".equals(token) && !missingValueMarker.equals(token)) {
+                        sample.get(i).add(token);
+                    }
+                }
+
+                sampled++;
+                pos = skipToLine(head, nextLine(head, end, headLimit), headLimit);
+            }
+
+            boolean[] categorical = new boolean[numColumns];
+
+            for (int i = 0; i < numColumns; i++) {
+                Node known = knownVariable(varNames.get(i));
+
+                if (known != null) {
+                    categorical[i] = !(known instanceof ContinuousVariable);
+                } else {
+                    Set<String> strings = sample.get(i);
+                    categorical[i] = strings.isEmpty() || !isDouble(strings) || isIntegral(strings);
+                }
+            }
+
+            long[] bounds = chunkBounds(channel, dataStart, size);
+            int numChunks = bounds.length - 1;
+
+            // Count the rows in each chunk, so that each can be parsed into its place in the columns.
+            List<Callable<Integer>> counts = new ArrayList<>();
+
+            for (int c = 0; c < numChunks; c++) {
+                final long from = bounds[c];
+                final long to = bounds[c + 1];
+
+                counts.add(() -> countRows(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from)));
+            }
+
+            int[] rowOffsets = new int[numChunks + 1];
+            int c0 = 0;
+
+            for (Integer count : invokeAll(counts)) {
+                if (count == -1) {
+                    return null;
+                }
+
+                rowOffsets[c0 + 1] = rowOffsets[c0] + count;
+                c0++;
+            }
+
+            int numRows = rowOffsets[numChunks];
+
+            // Parse. A column guessed to be continuous that turns out to have a value that is not a number
+            // is parsed again as categorical; this happens at most once.
+            while (true) {
+                double[][] doubles = new double[numColumns][];
+                int[][] codes = new int[numColumns][];
+
+                for (int i = 0; i < numColumns; i++) {
+                    if (categorical[i]) {
+                        codes[i] = new int[numRows];
+                    } else {
+                        doubles[i] = new double[numRows];
+                    }
+                }
+
+                final boolean[] _categorical = categorical;
+                List<Callable<Chunk>> tasks = new ArrayList<>();
+
+                for (int c = 0; c < numChunks; c++) {
+                    final Chunk chunk = new Chunk(bounds[c], bounds[c + 1], rowOffsets[c], numColumns,
+                            _categorical, doubles, codes);
+
+                    tasks.add(() -> {
+                        chunk.parse(channel.map(FileChannel.MapMode.READ_ONLY, chunk.from, chunk.to - chunk.from));
+                        return chunk;
+                    });
+                }
+
+                List<Chunk> chunks = invokeAll(tasks);
+
+                boolean[] failed = new boolean[numColumns];
+                boolean anyFailed = false;
+
+                for (Chunk chunk : chunks) {
+                    for (int i = 0; i < numColumns; i++) {
+                        if (chunk.failed[i] && !(knownVariable(varNames.get(i)) instanceof ContinuousVariable)) {
+                            failed[i] = true;
+                            anyFailed = true;
+                        }
+                    }
+                }
+
+                if (anyFailed) {
+                    categorical = categorical.clone();
+                    for (int i = 0; i < numColumns; i++) categorical[i] |= failed[i];
+                    continue;
+                }
+
+                if (chunks.stream().anyMatch(chunk -> chunk.rowsWithTooFewTokens > 0 || chunk.rowsWithTooManyTokens > 0)) {
+                    int tooFew = 0;
+                    int tooMany = 0;
+
+                    for (Chunk chunk : chunks) {
+                        tooFew += chunk.rowsWithTooFewTokens;
+                        tooMany += chunk.rowsWithTooManyTokens;
+                    }
+
+                    this.logger.log("info", tooFew + " rows had too few tokens and " + tooMany
+                            + " rows had too many; expected " + numColumns + " tokens.");
+                }
+
+                this.logger.log("info", "\nNumber of data rows = " + numRows);
+
+                return makeDataSet(varNames, numRows, categorical, doubles, codes, chunks);
+            }
+        }
+    }
+
+    //============================PRIVATE METHODS========================//
+
+    // Converts the parsed columns into variables and a data set. The categorical columns hold codes into
+    // the dictionaries of the chunks; these are merged, and each column becomes discrete or continuous by
+    // the same rules DataReader uses.
+    private DataSet makeDataSet(List<String> varNames, int numRows, boolean[] categorical,
+                                double[][] doubles, int[][] codes, List<Chunk> chunks) {
+        List<Node> variables = new ArrayList<>();
+        boolean anyContinuous = false;
+        boolean anyDiscrete = false;
+
+        for (int i = 0; i < varNames.size(); i++) {
+            String name = varNames.get(i);
+            Node known = knownVariable(name);
+
+            if (!categorical[i]) {
+                variables.add(known != null ? known : new ContinuousVariable(name));
+                anyContinuous = true;
+                continue;
+            }
+
+            Set<String> strings = new HashSet<>();
+
+            for (Chunk chunk : chunks) {
+                strings.addAll(chunk.dictionaries[i]);
+            }
+
+            Node variable;
+
+            if (known != null) {
+                variable = known;
+            } else if (isDouble(strings) && !isIntegral(strings)) {
+                variable = new ContinuousVariable(name);
+            } else {
+                name = legalName(name);
+                List<String> categories = new ArrayList<>(strings);
+
+                if (isIntegral(strings) && strings.size() > maxIntegralDiscrete) {
+                    variable = new ContinuousVariable(name);
+                } else {
+                    Collections.sort(categories);
+                    variable = new DiscreteVariable(name, categories);
+                }
+            }
+
+            variables.add(variable);
+
+            if (variable instanceof ContinuousVariable) {
+                doubles[i] = new double[numRows];
+                anyContinuous = true;
+            } else {
+                anyDiscrete = true;
+            }
+
+            Map<String, Integer> categoryIndices = new HashMap<>();
+
+            if (variable instanceof DiscreteVariable) {
+                List<String> categories = ((DiscreteVariable) variable).getCategories();
+                for (int k = 0; k < categories.size(); k++) categoryIndices.put(categories.get(k), k);
+            }
+
+            // Recode the column, one chunk at a time.
+            for (Chunk chunk : chunks) {
+                List<String> dictionary = chunk.dictionaries[i];
+
+                if (variable instanceof ContinuousVariable) {
+                    double[] values = new double[dictionary.size()];
+
+                    for (int k = 0; k < values.length; k++) {
+                        try {
+                            values[k] = Double.parseDouble(dictionary.get(k));
+                        } catch (NumberFormatException e) {
+                            values[k] = Double.NaN;
+                        }
+                    }
+
+                    for (int r = chunk.rowOffset; r < chunk.rowOffset + chunk.numRows; r++) {
+                        int code = codes[i][r];
+                        doubles[i][r] = code == -1 ? Double.NaN : values[code];
+                    }
+                } else {
+                    int[] recode = new int[dictionary.size()];
+
+                    for (int k = 0; k < recode.length; k++) {
+                        Integer index = categoryIndices.get(dictionary.get(k));
+                        recode[k] = index == null ? -99 : index;
+                    }
+
+                    for (int r = chunk.rowOffset; r < chunk.rowOffset + chunk.numRows; r++) {
+                        int code = codes[i][r];
+                        codes[i][r] = code == -1 ? -99 : recode[code];
+                    }
+                }
+            }
+
+            if (variable instanceof ContinuousVariable) {
+                codes[i] = null;
+            }
+        }
+
+        for (int i = 0; i < variables.size(); i++) {
+            Node node = variables.get(i);
+
+            if (node instanceof ContinuousVariable) {
+                this.logger.log("info", node + " --> Continuous");
+            } else {
+                this.logger.log("info", node + " --> " + ((DiscreteVariable) node).getCategories());
+            }
+        }
+
+        DataBox box;
+
+        if (!anyDiscrete && !variables.isEmpty()) {
+            box = new VerticalDoubleDataBox(doubles);
+        } else if (!anyContinuous && !variables.isEmpty()) {
+            box = new VerticalIntDataBox(codes);
+        } else {
+            box = new MixedDataBox(variables, numRows, doubles, codes);
+        }
+
+        return new BoxDataSet(box, variables);
+    }
+
+    // Parses the rows between two line starts in the file into the columns, starting at a given row.
+    private class Chunk {
+        private final long from;
+        private final long to;
+        private final int rowOffset;
+        private final boolean[] categorical;
+        private final double[][] doubles;
+        private final int[][] codes;
+
+        private int numRows = 0;
+
+        // The distinct strings in each categorical column, in order of appearance; codes index these.
+        private final List<String>[] dictionaries;
+
+        // True for a continuous column if it has a value that is not a number.
+        private final boolean[] failed;
+
+        private int rowsWithTooFewTokens = 0;
+        private int rowsWithTooManyTokens = 0;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Chunk(long from, long to, int rowOffset, int numColumns, boolean[] categorical,
+              double[][] doubles, int[][] codes) {
+            this.from = from;
+            this.to = to;
+            this.rowOffset = rowOffset;
+            this.categorical = categorical;
+            this.doubles = doubles;
+            this.codes = codes;
+            this.dictionaries = new List[numColumns];
+            this.failed = new boolean[numColumns];
+
+            for (int i = 0; i < numColumns; i++) {
+                dictionaries[i] = new ArrayList<>();
+            }
+        }
+
+        void parse(ByteBuffer buf) {
+            int numColumns = categorical.length;
+            int limit = buf.limit();
+            int[] starts = new int[numColumns];
+            int[] ends = new int[numColumns];
+
+            List<Map<String, Integer>> indices = new ArrayList<>();
+
+            for (int i = 0; i < numColumns; i++) {
+                indices.add(categorical[i] ? new HashMap<String, Integer>() : null);
+            }
+
+            int pos = skipToLine(buf, 0, limit);
+
+            while (pos < limit) {
+                int end = lineEnd(buf, pos, limit);
+                int row = rowOffset + numRows;
+                int numTokens = tokenize(buf, pos, end, starts, ends);
+
+                if (numTokens < numColumns) rowsWithTooFewTokens++;
+                if (numTokens > numColumns) rowsWithTooManyTokens++;
+
+                for (int i = 0; i < numColumns; i++) {
+                    boolean missing = i >= numTokens || isMissing(buf, starts[i], ends[i]);
+
+                    if (categorical[i]) {
+                        if (missing) {
+                            codes[i][row] = -1;
+                        } else {
+                            String token = string(buf, starts[i], ends[i]);
+                            Integer code = indices.get(i).get(token);
+
+                            if (code == null) {
+                                code = dictionaries[i].size();
+                                dictionaries[i].add(token);
+                                indices.get(i).put(token, code);
+                            }
+
+                            codes[i][row] = code;
+                        }
+                    } else if (missing) {
+                        doubles[i][row] = Double.NaN;
+                    } else {
+                        double value = parseDouble(buf, starts[i], ends[i]);
+
+                        if (Double.isNaN(value) && !isNaNLiteral(buf, starts[i], ends[i])) {
+                            failed[i] = true;
+                        }
+
+                        doubles[i][row] = value;
+                    }
+                }
+
+                numRows++;
+                pos = skipToLine(buf, nextLine(buf, end, limit), limit);
+            }
+        }
+    }
+
+    // Counts the data rows in a chunk, or returns -1 if one of them is not plain.
+    private int countRows(ByteBuffer buf) {
+        int limit = buf.limit();
+        int count = 0;
+        int pos = skipToLine(buf, 0, limit);
+
+        while (pos < limit) {
+            int end = lineEnd(buf, pos, limit);
+
+            if (!isPlain(buf, pos, end)) {
+                return -1;
+            }
+
+            count++;
+            pos = skipToLine(buf, nextLine(buf, end, limit), limit);
+        }
+
+        return count;
+    }
+
+    // Splits the data into chunks beginning at line starts; returns the chunk starts followed by the end.
+    private static long[] chunkBounds(FileChannel channel, long dataStart, long size) throws IOException {
+        long numBytes = size - dataStart;
+        long target = numBytes / (4L * Runtime.getRuntime().availableProcessors()) + 1;
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, target));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(dataStart);
+        long pos = dataStart;
+
+        while (size - pos > chunkSize) {
+            pos = nextLineStart(channel, pos + chunkSize, size);
+            if (pos >= size) break;
+            bounds.add(pos);
+        }
+
+        bounds.add(size);
+
+        long[] _bounds = new long[bounds.size()];
+        for (int i = 0; i < _bounds.length; i++) _bounds[i] = bounds.get(i);
+        return _bounds;
+    }
+
+    // The position just after the first newline at or after pos, or size if there is none.
+    private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+
+        while (pos < size) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) break;
+
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+
+            pos += n;
+        }
+
+        return size;
+    }
+
+    // The position of the next line at or after pos that is neither blank nor a comment, or limit.
+    private int skipToLine(ByteBuffer buf, int pos, int limit) {
+        while (pos < limit) {
+            int end = lineEnd(buf, pos, limit);
+
+            if (end > pos && !startsWith(buf, pos, end, commentMarker)) {
+                return pos;
+            }
+
+            pos = nextLine(buf, end, limit);
+        }
+
+        return limit;
+    }
+
+    // The end of the line starting at pos, not counting a carriage return before the newline.
+    private static int lineEnd(ByteBuffer buf, int pos, int limit) {
+        int end = pos;
+        while (end < limit && buf.get(end) != '\n') end++;
+        return end > pos && buf.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    // The start of the line after the one ending at end.
+    private static int nextLine(ByteBuffer buf, int end, int limit) {
+        while (end < limit && buf.get(end) != '\n') end++;
+        return Math.min(end + 1, limit);
+    }
+
+    // False if the line is a section marker or has a quote in it.
+    private boolean isPlain(ByteBuffer buf, int start, int end) {
+        if (buf.get(start) == '/') {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) == quoteChar) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Finds the tokens in the line, trimmed of spaces, storing the bounds of as many as fit; returns the
+    // number of tokens in the line.
+    private int tokenize(ByteBuffer buf, int start, int end, int[] starts, int[] ends) {
+        int count = 0;
+        int pos = start;
+
+        if (delimiter == 0) {
+            while (pos < end) {
+                while (pos < end && isWhitespace(buf.get(pos))) pos++;
+                if (pos == end) break;
+
+                int tokenStart = pos;
+                while (pos < end && !isWhitespace(buf.get(pos))) pos++;
+
+                if (count < starts.length) {
+                    starts[count] = tokenStart;
+                    ends[count] = pos;
+                }
+
+                count++;
+            }
+        } else {
+            while (true) {
+                int tokenStart = pos;
+                while (pos < end && buf.get(pos) != delimiter) pos++;
+
+                if (count < starts.length) {
+                    int s = tokenStart;
+                    int e = pos;
+                    while (s < e && buf.get(s) == ' ') s++;
+                    while (e > s && buf.get(e - 1) == ' ') e--;
+                    starts[count] = s;
+                    ends[count] = e;
+                }
+
+                count++;
+
+                if (pos == end) break;
+                pos++;
+            }
+        }
+
+        return count;
+    }
+
+    private List<String> tokens(ByteBuffer buf, int start, int end) {
+        int numTokens = tokenize(buf, start, end, new int[0], new int[0]);
+        int[] starts = new int[numTokens];
+        int[] ends = new int[numTokens];
+        tokenize(buf, start, end, starts, ends);
+
+        List<String> tokens = new ArrayList<>();
+
+        for (int i = 0; i < numTokens; i++) {
+            tokens.add(string(buf, starts[i], ends[i]));
+        }
+
+        return tokens;
+    }
+
+    private boolean isMissing(ByteBuffer buf, int start, int end) {
+        if (start == end) {
+            return true;
+        }
+
+        if (end - start != missingValueMarker.length()) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) != missingValueMarker.charAt(i - start)) return false;
+        }
+
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    private static boolean startsWith(ByteBuffer buf, int start, int end, byte[] prefix) {
+        if (prefix.length == 0 || end - start < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf.get(start + i) != prefix[i]) return false;
+        }
+
+        return true;
+    }
+
+    private static String string(ByteBuffer buf, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) bytes[i - start] = buf.get(i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Parses a number, returning NaN if it is not one. Numbers of up to 15 significant digits with a
+    // power of ten of at most 22 are computed directly, with one correctly rounded operation; anything
+    // else goes to Double.parseDouble, so the results are always the same as that gives.
+    private static double parseDouble(ByteBuffer buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+
+        if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            negative = buf.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean digits = false;
+
+        while (i < end && buf.get(i) >= '0' && buf.get(i) <= '9') {
+            mantissa = 10 * mantissa + (buf.get(i) - '0');
+            if (mantissa != 0) significant++;
+            digits = true;
+            i++;
+        }
+
+        if (i < end && buf.get(i) == '.') {
+            i++;
+
+            while (i < end && buf.get(i) >= '0' && buf.get(i) <= '9') {
+                mantissa = 10 * mantissa + (buf.get(i) - '0');
+                if (mantissa != 0) significant++;
+                exponent--;
+                digits = true;
+                i++;
+            }
+        }
+
+        if (digits && i < end && (buf.get(i) == 'e' || buf.get(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+
+            if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+                negativeExponent = buf.get(i) == '-';
+                i++;
+            }
+
+            int e = 0;
+            boolean exponentDigits = false;
+
+            while (i < end && buf.get(i) >= '0' && buf.get(i) <= '9' && e < 10000) {
+                e = 10 * e + (buf.get(i) - '0');
+                exponentDigits = true;
+                i++;
+            }
+
+            if (!exponentDigits) {
+                digits = false;
+            }
+
+            exponent += negativeExponent ? -e : e;
+        }
+
+        if (digits && i == end && significant <= 15 && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+
+        try {
+            return Double.parseDouble(string(buf, start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isNaNLiteral(ByteBuffer buf, int start, int end) {
+        String s = string(buf, start, end).trim();
+        return s.equals("NaN") || s.equals("+NaN") || s.equals("-NaN");
+    }
+
+    private Node knownVariable(String name) {
+        for (Node variable : knownVariables) {
+            if (variable.getName().equals(name)) {
+                return variable;
+            }
+        }
+
+        return null;
+    }
+
+    private static String legalName(String name) {
+        if (name.contains(" ")) {
+            name = name.replaceAll(" ", "_");
+        }
+
+        if (!NamingProtocol.isLegalName(name)) {
+            throw new IllegalArgumentException("This cannot be used as a variable name: " + name + ".");
+        }
+
+        return name;
+    }
+
+    private static boolean isIntegral(Set<String> strings) {
+        for (String s : strings) {
+            try {
+                Integer.parseInt(s);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isDouble(Set<String> strings) {
+        for (String s : strings) {
+            try {
+                Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>();
+
+        try {
+            for (Future<T> future : ForkJoinPoolInstance.getInstance().getPool().invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+
+        return results;
+    }
+}
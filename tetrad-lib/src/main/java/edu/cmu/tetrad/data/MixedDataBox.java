@@ -192,6 +192,55 @@ public class MixedDataBox implements DataBox {
         throw new IllegalArgumentException("Indices out of range.");
     }
 
+    @Override
+    public double getDouble(int row, int col) {
+        if (continuousData[col] != null) {
+            return continuousData[col][row];
+        } else if (discreteData[col] != null) {
+            int v = discreteData[col][row];
+            return v == -99 ? Double.NaN : v;
+        }
+
+        throw new IllegalArgumentException("Indices out of range.");
+    }
+
+    @Override
+    public int getInt(int row, int col) {
+        if (continuousData[col] != null) {
+            return (int) continuousData[col][row];
+        } else if (discreteData[col] != null) {
+            return discreteData[col][row];
+        }
+
+        throw new IllegalArgumentException("Indices out of range.");
+    }
+
+    /**
+     * @return the stored column if the variable is continuous, which must not
+     * be modified, or else a new array.
+     */
+    @Override
+    public double[] getDoubleColumn(int col) {
+        if (continuousData[col] != null) {
+            return continuousData[col];
+        }
+
+        return DataBox.super.getDoubleColumn(col);
+    }
+
+    /**
+     * @return the stored column if the variable is discrete, which must not
+     * be modified, or else a new array.
+     */
+    @Override
+    public int[] getIntColumn(int col) {
+        if (discreteData[col] != null) {
+            return discreteData[col];
+        }
+
+        return DataBox.super.getIntColumn(col);
+    }
+
     /**
      * @return a copy of this continuousData box.
      */
@@ -935,6 +935,32 @@ public final class NumberObjectDataSet
         }
     }
 
+    /**
+     * @return a new array with the values in the given column.
+     */
+    public final double[] getDoubleColumn(int column) {
+        double[] values = new double[getNumRows()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getDouble(i, column);
+        }
+
+        return values;
+    }
+
+    /**
+     * @return a new array with the values in the given column.
+     */
+    public final int[] getIntColumn(int column) {
+        int[] values = new int[getNumRows()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getInt(i, column);
+        }
+
+        return values;
+    }
+
 //    /**
 //     * Sets the case multiplier for the given case to the given number (must be
 //     * >= 1).
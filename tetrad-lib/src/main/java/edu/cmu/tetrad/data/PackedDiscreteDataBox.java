@@ -0,0 +1,451 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores discrete data in as few bits as the numbers of categories allow: a column for a variable with k
+ * categories takes ceil(log2(k)) bits per row, so binary data take one bit per cell, a 32nd of a
+ * VerticalIntDataBox. Each column is kept as bit planes: plane b holds bit b of the value of each row, 64
+ * rows to a word, and a separate mask, allocated only if needed, marks the missing values.
+ * <p>
+ * Laid out this way, the rows of a word having a given combination of values are found with a few bitwise
+ * operations and counted with Long.bitCount, 64 rows at a time; see count(). CellTable and BDeuScore count
+ * this way when given data in a box of this kind.
+ *
+ * @author Joseph Ramsey
+ */
+public class PackedDiscreteDataBox implements DataBox {
+    static final long serialVersionUID = 23L;
+
+    private final List<Node> variables;
+    private final int numRows;
+
+    // The number of 64-bit words per plane.
+    private final int numWords;
+
+    // planes[j][b][w], bit r of it, is bit b of the value in column j of row 64 * w + r.
+    private final long[][][] planes;
+
+    // missing[j][w], bit r of it, is set if the value in column j of row 64 * w + r is missing; missing[j]
+    // is null if no value in column j is.
+    private final long[][] missing;
+
+    /**
+     * Constructs a box of the given number of rows for the given discrete variables, consisting entirely
+     * of missing values.
+     */
+    public PackedDiscreteDataBox(List<Node> variables, int numRows) {
+        this.variables = new ArrayList<>(variables);
+        this.numRows = numRows;
+        this.numWords = (numRows + 63) >>> 6;
+        this.planes = new long[variables.size()][][];
+        this.missing = new long[variables.size()][];
+
+        for (int j = 0; j < variables.size(); j++) {
+            if (!(variables.get(j) instanceof DiscreteVariable)) {
+                throw new IllegalArgumentException("Only discrete variables can be packed: " + variables.get(j));
+            }
+
+            int numCategories = ((DiscreteVariable) variables.get(j)).getNumCategories();
+            planes[j] = new long[numBits(numCategories)][numWords];
+            missing[j] = new long[numWords];
+
+            for (int w = 0; w < numWords; w++) {
+                missing[j][w] = -1L;
+            }
+        }
+    }
+
+    /**
+     * Copies the data from the given data box, whose columns are the given discrete variables, into a new
+     * packed box.
+     */
+    public PackedDiscreteDataBox(DataBox dataBox, List<Node> variables) {
+        this(variables, dataBox.numRows());
+
+        for (int j = 0; j < variables.size(); j++) {
+            int[] column = dataBox.getIntColumn(j);
+            boolean anyMissing = false;
+
+            for (int i = 0; i < numRows; i++) {
+                if (column[i] == DiscreteVariable.MISSING_VALUE) {
+                    anyMissing = true;
+                } else {
+                    setBits(i, j, column[i]);
+                }
+            }
+
+            if (!anyMissing) {
+                missing[j] = null;
+            } else {
+                for (int w = 0; w < numWords; w++) {
+                    missing[j][w] = 0L;
+                }
+
+                for (int i = 0; i < numRows; i++) {
+                    if (column[i] == DiscreteVariable.MISSING_VALUE) {
+                        missing[j][i >>> 6] |= 1L << i;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static PackedDiscreteDataBox serializableInstance() {
+        List<Node> variables = new ArrayList<>();
+        variables.add(new DiscreteVariable("X", 2));
+        variables.add(new DiscreteVariable("Y", 3));
+        return new PackedDiscreteDataBox(variables, 4);
+    }
+
+    /**
+     * @return the number of bits per value needed for a variable with the given number of categories.
+     */
+    public static int numBits(int numCategories) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(numCategories - 1));
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numCols() {
+        return variables.size();
+    }
+
+    /**
+     * Sets the value at the given row and column. A null value, or DiscreteVariable.MISSING_VALUE, is
+     * missing.
+     *
+     * @throws IllegalArgumentException if the value does not fit in the bits of the column.
+     */
+    public void set(int row, int col, Number value) {
+        int v = value == null ? DiscreteVariable.MISSING_VALUE : value.intValue();
+
+        if (v != DiscreteVariable.MISSING_VALUE && (v < 0 || v >= 1 << planes[col].length)) {
+            throw new IllegalArgumentException("Value out of range for " + variables.get(col) + ": " + v);
+        }
+
+        synchronized (planes[col]) {
+            if (v == DiscreteVariable.MISSING_VALUE) {
+                if (missing[col] == null) {
+                    missing[col] = new long[numWords];
+                }
+
+                missing[col][row >>> 6] |= 1L << row;
+                setBits(row, col, 0);
+            } else {
+                if (missing[col] != null) {
+                    missing[col][row >>> 6] &= ~(1L << row);
+                }
+
+                setBits(row, col, v);
+            }
+        }
+    }
+
+    /**
+     * @return the value at the given row and column, or null if it is missing.
+     */
+    public Number get(int row, int col) {
+        int v = getInt(row, col);
+        return v == DiscreteVariable.MISSING_VALUE ? null : v;
+    }
+
+    @Override
+    public int getInt(int row, int col) {
+        long[] mask = missing[col];
+        int w = row >>> 6;
+
+        if (mask != null && (mask[w] & (1L << row)) != 0) {
+            return DiscreteVariable.MISSING_VALUE;
+        }
+
+        long[][] p = planes[col];
+        int v = 0;
+
+        for (int b = 0; b < p.length; b++) {
+            v |= (int) ((p[b][w] >>> row) & 1L) << b;
+        }
+
+        return v;
+    }
+
+    @Override
+    public double getDouble(int row, int col) {
+        int v = getInt(row, col);
+        return v == DiscreteVariable.MISSING_VALUE ? Double.NaN : v;
+    }
+
+    /**
+     * @return the column, unpacked into a new array.
+     */
+    @Override
+    public int[] getIntColumn(int col) {
+        int[] column = new int[numRows];
+
+        for (int i = 0; i < numRows; i++) {
+            column[i] = getInt(i, col);
+        }
+
+        return column;
+    }
+
+    /**
+     * @return the number of bits per value in the given column.
+     */
+    public int getNumBits(int col) {
+        return planes[col].length;
+    }
+
+    /**
+     * Counts the rows having each combination of values of the given columns, skipping rows where any of
+     * them is missing. The count for values (v_0, v_1, ..., v_m-1) of cols[0], cols[1], ..., cols[m - 1] is
+     * added to counts[(...(v_0 * dims[1] + v_1) * dims[2] + ...) * dims[m - 1] + v_m-1], the order of
+     * MultiDimIntTable.
+     * <p>
+     * For each word of 64 rows, the rows having each value of each column are found from the bit planes,
+     * and the combinations are formed by ANDing these, skipping any that are empty, and counted by
+     * Long.bitCount. If there are more combinations than rows in a word, the rows are counted one at a
+     * time instead, from cell indices assembled a plane at a time.
+     *
+     * @param cols   The columns.
+     * @param dims   The number of values of each column, which must be greater than every value in it.
+     * @param counts An array of length at least the product of the dims.
+     */
+    public void count(int[] cols, int[] dims, int[] counts) {
+        int m = cols.length;
+
+        // masks[i][a] holds the rows of the current word where column cols[i] has value a.
+        long[][] masks = new long[m][];
+
+        for (int i = 0; i < m; i++) {
+            if (dims[i] > 1 << planes[cols[i]].length) {
+                throw new IllegalArgumentException("Column " + cols[i] + " cannot have " + dims[i] + " values.");
+            }
+
+            masks[i] = new long[dims[i]];
+        }
+
+        long[][][] p = new long[m][][];
+
+        for (int i = 0; i < m; i++) {
+            p[i] = planes[cols[i]];
+        }
+
+        long[] rows = new long[m];
+        int[] values = new int[m];
+        int[] index = new int[m];
+
+        long numCells = 1;
+        for (int dim : dims) numCells *= dim;
+        int[] cells = numCells > 64 ? new int[64] : null;
+
+        for (int w = 0; w < numWords; w++) {
+            long valid = w == numWords - 1 && (numRows & 63) != 0 ? (1L << numRows) - 1 : -1L;
+
+            for (int i = 0; i < m; i++) {
+                long[] mask = missing[cols[i]];
+
+                if (mask != null) {
+                    valid &= ~mask[w];
+                }
+            }
+
+            if (valid == 0) {
+                continue;
+            }
+
+            if (cells != null) {
+                addRows(p, w, dims, counts, valid, cells);
+                continue;
+            }
+
+            for (int i = 0; i < m; i++) {
+                for (int a = 0; a < dims[i]; a++) {
+                    long mask = valid;
+
+                    for (int b = 0; b < p[i].length; b++) {
+                        mask &= ((a >>> b) & 1) != 0 ? p[i][b][w] : ~p[i][b][w];
+                    }
+
+                    masks[i][a] = mask;
+                }
+            }
+
+            add(masks, p, w, dims, counts, valid, rows, values, index);
+        }
+    }
+
+    // Adds the counts of the given rows of word w one row at a time, for tables with more cells than rows.
+    private static void addRows(long[][][] p, int w, int[] dims, int[] counts, long valid, int[] cells) {
+        Arrays.fill(cells, 0);
+
+        for (int k = 0; k < p.length; k++) {
+            for (int r = 0; r < 64; r++) {
+                cells[r] *= dims[k];
+            }
+
+            for (int b = 0; b < p[k].length; b++) {
+                long x = p[k][b][w];
+
+                for (int r = 0; r < 64; r++) {
+                    cells[r] += (int) ((x >>> r) & 1) << b;
+                }
+            }
+        }
+
+        for (long r = valid; r != 0; r &= r - 1) {
+            counts[cells[Long.numberOfTrailingZeros(r)]]++;
+        }
+    }
+
+    // Adds the counts of the given rows of word w for each combination of values of the columns, whose
+    // value masks and bit planes are given. The masks of a column partition the rows, so the values of a
+    // column are tried only until the rows run out, and once there are fewer rows left than values to try,
+    // the rest of each row's cell index is read off the planes instead. The last three arrays are scratch
+    // space, one entry per column.
+    private static void add(long[][] masks, long[][][] p, int w, int[] dims, int[] counts, long valid,
+                            long[] rows, int[] values, int[] index) {
+        int m = masks.length;
+        rows[0] = valid;
+        index[0] = 0;
+        values[0] = -1;
+        int i = 0;
+
+        while (i >= 0) {
+            int a = ++values[i];
+
+            if (a == dims[i] || rows[i] == 0) {
+                i--;
+                continue;
+            }
+
+            long _rows = rows[i] & masks[i][a];
+
+            if (_rows == 0) {
+                continue;
+            }
+
+            rows[i] &= ~_rows;
+
+            if (i == m - 1) {
+                counts[index[i] * dims[i] + a] += Long.bitCount(_rows);
+            } else if (Long.bitCount(_rows) < dims[i + 1]) {
+                int prefix = index[i] * dims[i] + a;
+
+                for (long r = _rows; r != 0; r &= r - 1) {
+                    int row = Long.numberOfTrailingZeros(r);
+                    int cell = prefix;
+
+                    for (int k = i + 1; k < m; k++) {
+                        int value = 0;
+
+                        for (int b = 0; b < p[k].length; b++) {
+                            value |= (int) ((p[k][b][w] >>> row) & 1) << b;
+                        }
+
+                        cell = cell * dims[k] + value;
+                    }
+
+                    counts[cell]++;
+                }
+            } else {
+                rows[i + 1] = _rows;
+                index[i + 1] = index[i] * dims[i] + a;
+                values[++i] = -1;
+            }
+        }
+    }
+
+    /**
+     * @return a copy of this data box.
+     */
+    public DataBox copy() {
+        return viewSelection(allRows(), allColumns());
+    }
+
+    /**
+     * @return a box of missing values, of the same size and variables.
+     */
+    public DataBox like() {
+        return new PackedDiscreteDataBox(variables, numRows);
+    }
+
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        List<Node> newVars = new ArrayList<>();
+
+        for (int col : cols) {
+            newVars.add(variables.get(col));
+        }
+
+        PackedDiscreteDataBox box = new PackedDiscreteDataBox(newVars, rows.length);
+
+        for (int j = 0; j < cols.length; j++) {
+            for (int i = 0; i < rows.length; i++) {
+                box.set(i, j, getInt(rows[i], cols[j]));
+            }
+
+            if (missing[cols[j]] == null) {
+                box.missing[j] = null;
+            }
+        }
+
+        return box;
+    }
+
+    private void setBits(int row, int col, int v) {
+        long[][] p = planes[col];
+        int w = row >>> 6;
+        long bit = 1L << row;
+
+        for (int b = 0; b < p.length; b++) {
+            if (((v >>> b) & 1) != 0) {
+                p[b][w] |= bit;
+            } else {
+                p[b][w] &= ~bit;
+            }
+        }
+    }
+
+    private int[] allRows() {
+        int[] rows = new int[numRows];
+        for (int i = 0; i < numRows; i++) rows[i] = i;
+        return rows;
+    }
+
+    private int[] allColumns() {
+        int[] cols = new int[variables.size()];
+        for (int j = 0; j < cols.length; j++) cols[j] = j;
+        return cols;
+    }
+}
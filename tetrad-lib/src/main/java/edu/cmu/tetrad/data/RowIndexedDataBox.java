@@ -0,0 +1,199 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+/**
+ * A view of the rows of another data box, given by an array of row indices
+ * into it, which may repeat, as for a bootstrap sample. Row i of this box is
+ * row rows[i] of the parent; nothing is copied. Setting a value first copies
+ * the selected rows out of the parent, so the parent is never modified.
+ *
+ * @author Joseph Ramsey
+ */
+public class RowIndexedDataBox implements DataBox {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The box whose rows are viewed.
+     */
+    private DataBox parent;
+
+    /**
+     * Row i of this box is row rows[i] of the parent.
+     */
+    private int[] rows;
+
+    /**
+     * True once the selected rows have been copied out of the original parent.
+     */
+    private boolean copied = false;
+
+    /**
+     * Constructs a view of the given rows of the given box. If the parent is
+     * itself a RowIndexedDataBox that has not been written to, the view is of
+     * its parent instead.
+     */
+    public RowIndexedDataBox(DataBox parent, int[] rows) {
+        if (parent == null) {
+            throw new NullPointerException("Parent data box not provided.");
+        }
+
+        for (int row : rows) {
+            if (row < 0 || row >= parent.numRows()) {
+                throw new IllegalArgumentException("Row out of range: " + row);
+            }
+        }
+
+        if (parent instanceof RowIndexedDataBox && !((RowIndexedDataBox) parent).copied) {
+            RowIndexedDataBox _parent = (RowIndexedDataBox) parent;
+            int[] _rows = new int[rows.length];
+
+            for (int i = 0; i < rows.length; i++) {
+                _rows[i] = _parent.rows[rows[i]];
+            }
+
+            this.parent = _parent.parent;
+            this.rows = _rows;
+        } else {
+            this.parent = parent;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static RowIndexedDataBox serializableInstance() {
+        return new RowIndexedDataBox(new VerticalDoubleDataBox(4, 4), new int[]{0, 0, 3});
+    }
+
+    public int numRows() {
+        return rows.length;
+    }
+
+    public int numCols() {
+        return parent.numCols();
+    }
+
+    /**
+     * Sets the value at the given row and column. The first call copies the
+     * selected rows out of the parent.
+     */
+    public void set(int row, int col, Number value) {
+        synchronized (this) {
+            if (!copied) {
+                parent = parent.viewSelection(rows, allColumns());
+
+                int[] _rows = new int[rows.length];
+                for (int i = 0; i < _rows.length; i++) _rows[i] = i;
+                rows = _rows;
+                copied = true;
+            }
+        }
+
+        parent.set(rows[row], col, value);
+    }
+
+    public Number get(int row, int col) {
+        return parent.get(rows[row], col);
+    }
+
+    @Override
+    public double getDouble(int row, int col) {
+        return parent.getDouble(rows[row], col);
+    }
+
+    @Override
+    public int getInt(int row, int col) {
+        return parent.getInt(rows[row], col);
+    }
+
+    /**
+     * @return a new array with the values in the given column.
+     */
+    @Override
+    public double[] getDoubleColumn(int col) {
+        double[] column = new double[rows.length];
+
+        for (int i = 0; i < rows.length; i++) {
+            column[i] = parent.getDouble(rows[i], col);
+        }
+
+        return column;
+    }
+
+    /**
+     * @return a new array with the values in the given column.
+     */
+    @Override
+    public int[] getIntColumn(int col) {
+        int[] column = new int[rows.length];
+
+        for (int i = 0; i < rows.length; i++) {
+            column[i] = parent.getInt(rows[i], col);
+        }
+
+        return column;
+    }
+
+    /**
+     * @return the box whose rows are viewed. Row i of this box is row
+     * getRows()[i] of it.
+     */
+    public DataBox getParent() {
+        return parent;
+    }
+
+    /**
+     * @return the row indices into the parent, which must not be modified.
+     */
+    public int[] getRows() {
+        return rows;
+    }
+
+    /**
+     * @return a copy of the selected rows, in a box of the parent's type.
+     */
+    public DataBox copy() {
+        return parent.viewSelection(rows, allColumns());
+    }
+
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        int[] _rows = new int[rows.length];
+
+        for (int i = 0; i < rows.length; i++) {
+            _rows[i] = this.rows[rows[i]];
+        }
+
+        return parent.viewSelection(_rows, cols);
+    }
+
+    public DataBox like() {
+        return parent.like().viewSelection(rows, allColumns());
+    }
+
+    private int[] allColumns() {
+        int[] cols = new int[numCols()];
+        for (int j = 0; j < cols.length; j++) cols[j] = j;
+        return cols;
+    }
+}
@@ -0,0 +1,498 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Pattern;
+
+/**
+ * Builds a covariance matrix from rows that are seen once each and never all held in memory, so that
+ * data sets too large for the heap can be searched over with scores and tests that take an
+ * ICovarianceMatrix, such as SemBicScore and IndTestFisherZ.
+ * <p>
+ * The running state is the number of rows, the means, and the matrix of sums of products of deviations
+ * from the means. Rows are added one at a time by Welford's update, and the states for two sets of rows
+ * are combined by the pairwise update of Chan, Golub and LeVeque, which avoids the cancellation in
+ * sums of squares minus squared sums. Each block of rows is merged into the running state as it
+ * arrives, with the rows of the matrix of sums of products updated in parallel, so only the one matrix
+ * and the current block are in memory, and the result does not depend on the number of threads.
+ * <p>
+ * Rows with a missing (NaN) value are skipped.
+ *
+ * @author Joseph Ramsey
+ */
+public final class StreamingCovariance {
+
+    /**
+     * The default number of rows in a block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 10000;
+
+    private final List<Node> variables;
+
+    // The number of rows added.
+    private long n = 0;
+
+    private final double[] means;
+
+    // Sums of products of deviations from the means; only the upper triangle is kept.
+    private final double[][] comoments;
+
+    public StreamingCovariance(List<Node> variables) {
+        this.variables = new ArrayList<>(variables);
+        this.means = new double[variables.size()];
+        this.comoments = new double[variables.size()][variables.size()];
+    }
+
+    /**
+     * Adds a row, unless it has a missing value.
+     */
+    public void addRow(double[] row) {
+        int p = means.length;
+
+        if (row.length != p) {
+            throw new IllegalArgumentException("Expecting " + p + " values: " + row.length);
+        }
+
+        if (hasMissing(row)) {
+            return;
+        }
+
+        n++;
+        double[] delta = new double[p];
+
+        for (int i = 0; i < p; i++) {
+            delta[i] = row[i] - means[i];
+            means[i] += delta[i] / n;
+        }
+
+        for (int i = 0; i < p; i++) {
+            double d = row[i] - means[i];
+            double[] c = comoments[i];
+
+            for (int j = i; j < p; j++) {
+                c[j] += delta[j] * d;
+            }
+        }
+    }
+
+    /**
+     * Adds the given rows, skipping any with missing values. The means and sums of products for the
+     * block are found from the block alone and then merged in, without a second matrix.
+     */
+    public void addBlock(double[][] rows) {
+        int p = means.length;
+        double[] sums = new double[p];
+        int nB = 0;
+
+        for (double[] row : rows) {
+            if (row.length != p) {
+                throw new IllegalArgumentException("Expecting " + p + " values: " + row.length);
+            }
+
+            if (hasMissing(row)) continue;
+
+            for (int i = 0; i < p; i++) {
+                sums[i] += row[i];
+            }
+
+            nB++;
+        }
+
+        if (nB == 0) {
+            return;
+        }
+
+        // The deviations of the complete rows from the means of the block, so that the sums of products
+        // are of small numbers, and the differences between the means of the block and the means so far.
+        double[][] deviations = new double[nB][];
+        double[] delta = new double[p];
+        int k = 0;
+
+        for (int i = 0; i < p; i++) {
+            sums[i] /= nB;
+            delta[i] = sums[i] - means[i];
+        }
+
+        for (double[] row : rows) {
+            if (hasMissing(row)) continue;
+            double[] d = new double[p];
+
+            for (int i = 0; i < p; i++) {
+                d[i] = row[i] - sums[i];
+            }
+
+            deviations[k++] = d;
+        }
+
+        double f = (double) n * nB / (n + nB);
+        ForkJoinPoolInstance.getInstance().getPool().invoke(new BlockTask(deviations, delta, f, 0, p));
+
+        for (int i = 0; i < p; i++) {
+            means[i] += delta[i] * nB / (n + nB);
+        }
+
+        n += nB;
+    }
+
+    /**
+     * Adds the rows added to the other to this one.
+     */
+    public void merge(StreamingCovariance other) {
+        if (other.means.length != means.length) {
+            throw new IllegalArgumentException("Different numbers of variables.");
+        }
+
+        if (other.n == 0) {
+            return;
+        }
+
+        int p = means.length;
+        double nA = n;
+        double nB = other.n;
+        double total = nA + nB;
+        double[] delta = new double[p];
+
+        for (int i = 0; i < p; i++) {
+            delta[i] = other.means[i] - means[i];
+        }
+
+        double f = nA * nB / total;
+
+        for (int i = 0; i < p; i++) {
+            double[] c = comoments[i];
+            double[] cB = other.comoments[i];
+            double di = f * delta[i];
+
+            for (int j = i; j < p; j++) {
+                c[j] += cB[j] + di * delta[j];
+            }
+        }
+
+        for (int i = 0; i < p; i++) {
+            means[i] += delta[i] * nB / total;
+        }
+
+        n += other.n;
+    }
+
+    /**
+     * @return the number of rows added, not counting those with missing values.
+     */
+    public long getSampleSize() {
+        return n;
+    }
+
+    /**
+     * @return the means of the variables.
+     */
+    public double[] getMeans() {
+        return means.clone();
+    }
+
+    /**
+     * @return the covariance matrix of the rows added so far, dividing by n - 1.
+     */
+    public ICovarianceMatrix getCovarianceMatrix() {
+        if (n < 2) {
+            throw new IllegalStateException("At least two complete rows are needed: " + n);
+        }
+
+        if (n > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many rows for a covariance matrix: " + n);
+        }
+
+        int p = means.length;
+        TetradMatrix matrix = new TetradMatrix(p, p);
+
+        for (int i = 0; i < p; i++) {
+            for (int j = i; j < p; j++) {
+                double v = comoments[i][j] / (n - 1);
+                matrix.set(i, j, v);
+                matrix.set(j, i, v);
+            }
+        }
+
+        return new CovarianceMatrix(variables, matrix, (int) n);
+    }
+
+    //============================STATIC METHODS========================//
+
+    /**
+     * @return the covariance matrix of the rows in the given blocks, each of which is an array of rows.
+     * Each block is taken from the iterator once the one before it has been added, so only one is in memory.
+     */
+    public static ICovarianceMatrix covariance(List<Node> variables, Iterator<double[][]> blocks) {
+        return accumulate(variables, blocks).getCovarianceMatrix();
+    }
+
+    /**
+     * @return the covariance matrix of the given data set, read in blocks of rows. For a data set opened
+     * from a columnar data file, the data are read from the mapped file and not copied onto the heap.
+     */
+    public static ICovarianceMatrix covariance(DataSet dataSet, int blockSize) {
+        if (!dataSet.isContinuous()) {
+            throw new IllegalArgumentException("Not a continuous data set.");
+        }
+
+        return covariance(dataSet.getVariables(), new DataSetBlocks(dataSet, blockSize));
+    }
+
+    /**
+     * @return the covariance matrix of the continuous data set in the given columnar data file, which
+     * is memory-mapped and read in blocks of rows.
+     */
+    public static ICovarianceMatrix covariance(File columnarFile) throws IOException {
+        return covariance(ColumnarDataFile.read(columnarFile), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @return the covariance matrix of the continuous data in the given delimited text file, whose first
+     * line is the variable names. The file is read a block of lines at a time. Tokens that are empty or
+     * equal to the missing value marker are missing; any other token that is not a number is an error, as
+     * is a line with more or fewer values than there are variables.
+     */
+    public static ICovarianceMatrix covariance(File textFile, DelimiterType delimiterType,
+                                               String missingValueMarker) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(textFile))) {
+            Pattern delimiter = delimiterType.getPattern();
+            String header = reader.readLine();
+
+            if (header == null) {
+                throw new IllegalArgumentException("Data source is empty.");
+            }
+
+            List<Node> variables = new ArrayList<>();
+
+            for (String name : delimiter.split(header.trim())) {
+                variables.add(new ContinuousVariable(name.trim()));
+            }
+
+            try {
+                return covariance(variables, new TextBlocks(reader, delimiter, missingValueMarker,
+                        variables.size(), DEFAULT_BLOCK_SIZE));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    //============================PRIVATE METHODS========================//
+
+    private static StreamingCovariance accumulate(List<Node> variables, Iterator<double[][]> blocks) {
+        StreamingCovariance total = new StreamingCovariance(variables);
+
+        while (blocks.hasNext()) {
+            total.addBlock(blocks.next());
+        }
+
+        return total;
+    }
+
+    private static boolean hasMissing(double[] row) {
+        for (double v : row) {
+            if (Double.isNaN(v)) return true;
+        }
+
+        return false;
+    }
+
+    // Adds the sums of products of the deviations of a block to rows 'from' up to 'to' of the comoments,
+    // with the term for the difference in means of the pairwise update.
+    private class BlockTask extends RecursiveAction {
+        private final double[][] deviations;
+        private final double[] delta;
+        private final double f;
+        private final int from;
+        private final int to;
+
+        BlockTask(double[][] deviations, double[] delta, double f, int from, int to) {
+            this.deviations = deviations;
+            this.delta = delta;
+            this.f = f;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int p = delta.length;
+            long work = (long) deviations.length * (to - from) * (2L * p - from - to) / 2;
+
+            if (to - from == 1 || work < 100000) {
+                double[] sums = new double[p];
+
+                for (int i = from; i < to; i++) {
+                    Arrays.fill(sums, i, p, 0.0);
+
+                    for (double[] d : deviations) {
+                        double di = d[i];
+
+                        for (int j = i; j < p; j++) {
+                            sums[j] += di * d[j];
+                        }
+                    }
+
+                    double[] c = comoments[i];
+                    double di = f * delta[i];
+
+                    for (int j = i; j < p; j++) {
+                        c[j] += sums[j] + di * delta[j];
+                    }
+                }
+            } else {
+                int mid = (from + to) / 2;
+
+                BlockTask left = new BlockTask(deviations, delta, f, from, mid);
+                BlockTask right = new BlockTask(deviations, delta, f, mid, to);
+
+                left.fork();
+                right.compute();
+                left.join();
+            }
+        }
+    }
+
+    // Blocks of rows of a data set.
+    private static class DataSetBlocks implements Iterator<double[][]> {
+        private final DataSet dataSet;
+        private final int blockSize;
+        private int next = 0;
+
+        DataSetBlocks(DataSet dataSet, int blockSize) {
+            if (blockSize < 1) {
+                throw new IllegalArgumentException("Block size must be at least 1: " + blockSize);
+            }
+
+            this.dataSet = dataSet;
+            this.blockSize = blockSize;
+        }
+
+        public boolean hasNext() {
+            return next < dataSet.getNumRows();
+        }
+
+        public double[][] next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            int numRows = Math.min(blockSize, dataSet.getNumRows() - next);
+            double[][] block = new double[numRows][dataSet.getNumColumns()];
+
+            for (int j = 0; j < dataSet.getNumColumns(); j++) {
+                for (int i = 0; i < numRows; i++) {
+                    block[i][j] = dataSet.getDouble(next + i, j);
+                }
+            }
+
+            next += numRows;
+            return block;
+        }
+    }
+
+    // Blocks of rows of a delimited text file.
+    private static class TextBlocks implements Iterator<double[][]> {
+        private final BufferedReader reader;
+        private final Pattern delimiter;
+        private final String missingValueMarker;
+        private final int numColumns;
+        private final int blockSize;
+        private String line;
+
+        // True if the delimiter is whitespace, so that whitespace at the ends of a line is not a delimiter.
+        private final boolean whitespace;
+
+        // The line number of line in the file, counting the header as line 1.
+        private int lineNumber = 1;
+
+        TextBlocks(BufferedReader reader, Pattern delimiter, String missingValueMarker, int numColumns,
+                   int blockSize) {
+            this.reader = reader;
+            this.delimiter = delimiter;
+            this.missingValueMarker = missingValueMarker;
+            this.numColumns = numColumns;
+            this.blockSize = blockSize;
+            this.whitespace = delimiter.matcher(" ").matches();
+            advance();
+        }
+
+        public boolean hasNext() {
+            return line != null;
+        }
+
+        public double[][] next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            List<double[]> rows = new ArrayList<>();
+
+            while (line != null && rows.size() < blockSize) {
+                String[] tokens = delimiter.split(whitespace ? line.trim() : line, -1);
+                double[] row = new double[numColumns];
+
+                if (tokens.length != numColumns) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": Expected " + numColumns
+                            + " values, got " + tokens.length + ".");
+                }
+
+                for (int j = 0; j < numColumns; j++) {
+                    String token = tokens[j].trim();
+
+                    if (token.isEmpty() || token.equals(missingValueMarker)) {
+                        row[j] = Double.NaN;
+                    } else {
+                        try {
+                            row[j] = Double.parseDouble(token);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Line " + lineNumber + ", column " + (j + 1)
+                                    + ": Expected a number, got " + token + ".");
+                        }
+                    }
+                }
+
+                rows.add(row);
+                advance();
+            }
+
+            return rows.toArray(new double[rows.size()][]);
+        }
+
+        private void advance() {
+            try {
+                do {
+                    line = reader.readLine();
+                    lineNumber++;
+                } while (line != null && line.trim().isEmpty());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
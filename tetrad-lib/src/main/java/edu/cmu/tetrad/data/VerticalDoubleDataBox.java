@@ -121,6 +121,24 @@ public class VerticalDoubleDataBox implements DataBox {
         return data[col][row];
     }
 
+    @Override
+    public double getDouble(int row, int col) {
+        return data[col][row];
+    }
+
+    @Override
+    public int getInt(int row, int col) {
+        return (int) data[col][row];
+    }
+
+    /**
+     * @return the stored column, which must not be modified.
+     */
+    @Override
+    public double[] getDoubleColumn(int col) {
+        return data[col];
+    }
+
     public double[][] getVariableVectors() {
         return data;
     }
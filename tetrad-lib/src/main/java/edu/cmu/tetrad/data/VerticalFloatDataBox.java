@@ -0,0 +1,188 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+/**
+ * Stores a 2D array of float data, column by column, in half the memory of a VerticalDoubleDataBox.
+ * Values set are rounded to float. Note that the missing value marker for this box is Float.NaN.
+ *
+ * @author Joseph Ramsey
+ */
+public class VerticalFloatDataBox implements DataBox {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The stored float data, by column.
+     */
+    private final float[][] data;
+
+    /**
+     * Constructs an 2D float array consisting entirely of missing values (Float.NaN).
+     */
+    public VerticalFloatDataBox(int rows, int cols) {
+        this.data = new float[cols][rows];
+
+        for (int j = 0; j < cols; j++) {
+            for (int i = 0; i < rows; i++) {
+                data[j][i] = Float.NaN;
+            }
+        }
+    }
+
+    /**
+     * Constructs a new data box using the given 2D float data array, by column, as data.
+     */
+    public VerticalFloatDataBox(float[][] data) {
+        int length = data[0].length;
+
+        for (float[] datum : data) {
+            if (datum.length != length) {
+                throw new IllegalArgumentException("All columns must have same length.");
+            }
+        }
+
+        this.data = data;
+    }
+
+    /**
+     * Copies the data from the given data box into this one, rounding to float.
+     */
+    public VerticalFloatDataBox(DataBox dataBox) {
+        data = new float[dataBox.numCols()][dataBox.numRows()];
+
+        for (int i = 0; i < dataBox.numRows(); i++) {
+            for (int j = 0; j < dataBox.numCols(); j++) {
+                data[j][i] = (float) dataBox.getDouble(i, j);
+            }
+        }
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static BoxDataSet serializableInstance() {
+        return new BoxDataSet(new ShortDataBox(4, 4), null);
+    }
+
+    /**
+     * @return the number of rows in this data box.
+     */
+    public int numRows() {
+        return data[0].length;
+    }
+
+    /**
+     * @return the number of columns in this data box.
+     */
+    public int numCols() {
+        return data.length;
+    }
+
+    /**
+     * Sets the value at the given row/column to the given Number value.
+     * The value used is number.floatValue().
+     */
+    public void set(int row, int col, Number value) {
+        if (value == null) {
+            synchronized (data[col]) {
+                data[col][row] = Float.NaN;
+            }
+        } else {
+            synchronized (data[col]) {
+                data[col][row] = value.floatValue();
+            }
+        }
+    }
+
+    /**
+     * @return the Number value at the given row and column. If the value
+     * is missing (Float.NaN), null, is returned.
+     */
+    public Number get(int row, int col) {
+        float datum = data[col][row];
+        return Float.isNaN(datum) ? null : datum;
+    }
+
+    @Override
+    public double getDouble(int row, int col) {
+        return data[col][row];
+    }
+
+    @Override
+    public int getInt(int row, int col) {
+        return (int) data[col][row];
+    }
+
+    @Override
+    public double[] getDoubleColumn(int col) {
+        float[] column = data[col];
+        double[] copy = new double[column.length];
+
+        for (int i = 0; i < column.length; i++) {
+            copy[i] = column[i];
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return the stored columns, which are not copied.
+     */
+    public float[][] getVariableVectors() {
+        return data;
+    }
+
+    /**
+     * @return a copy of this data box.
+     */
+    public DataBox copy() {
+        float[][] copy = new float[data.length][];
+
+        for (int j = 0; j < data.length; j++) {
+            copy[j] = data[j].clone();
+        }
+
+        return new VerticalFloatDataBox(copy);
+    }
+
+    /**
+     * @return a DataBox of type VerticalFloatDataBox, but with the given dimensions.
+     */
+    public DataBox like() {
+        return new VerticalFloatDataBox(numRows(), numCols());
+    }
+
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        float[][] selection = new float[cols.length][rows.length];
+
+        for (int j = 0; j < cols.length; j++) {
+            float[] column = data[cols[j]];
+
+            for (int i = 0; i < rows.length; i++) {
+                selection[j][i] = column[rows[i]];
+            }
+        }
+
+        return new VerticalFloatDataBox(selection);
+    }
+}
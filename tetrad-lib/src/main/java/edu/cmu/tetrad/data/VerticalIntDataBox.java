@@ -125,6 +125,25 @@ public class VerticalIntDataBox implements DataBox {
         }
     }
 
+    @Override
+    public double getDouble(int row, int col) {
+        int datum = data[col][row];
+        return datum == -99 ? Double.NaN : datum;
+    }
+
+    @Override
+    public int getInt(int row, int col) {
+        return data[col][row];
+    }
+
+    /**
+     * @return the stored column, which must not be modified.
+     */
+    @Override
+    public int[] getIntColumn(int col) {
+        return data[col];
+    }
+
     public int[][] getVariableVectors() {
         return data;
     }
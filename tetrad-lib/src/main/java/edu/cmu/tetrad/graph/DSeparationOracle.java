@@ -0,0 +1,509 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers d-connection queries for a fixed graph. The graph is compiled once into int arrays: for each
+ * node, its neighbors and whether each edge has an arrowhead at the node, together with a bitset of
+ * ancestors for every node. A query is then a Bayes-ball style reachability pass over (node, incoming
+ * edge) states using only these arrays; the ancestors of the conditioning set are the union of the
+ * ancestor bitsets of its members. Answers are remembered, so repeated queries cost a hash lookup.
+ * <p>
+ * The semantics are those of GraphUtils.isDConnectedTo, including the treatment of underline triples.
+ * The graph must not be changed after the oracle is built. The ancestor bitsets take n^2 / 8 bytes for
+ * n nodes. Instances are thread safe.
+ *
+ * @author Joseph Ramsey
+ */
+public final class DSeparationOracle {
+
+    // The default bound on the number of remembered answers.
+    public static final int DEFAULT_MAX_MEMO_SIZE = 1000000;
+
+    private final List<Node> nodes;
+    private final Map<Node, Integer> indices;
+
+    // adj[i] lists the neighbors of node i, one entry per edge.
+    private final int[][] adj;
+
+    // arrowAt[i][k] is true if the k-th edge of i has an arrowhead at i.
+    private final boolean[][] arrowAt;
+
+    // tailAt[i][k] is true if the k-th edge of i has a tail at i.
+    private final boolean[][] tailAt;
+
+    // back[i][k] is the position of the k-th edge of i in the neighbor list of adj[i][k].
+    private final int[][] back;
+
+    // The (node, incoming edge) state for edge k of node i is numbered offset[i] + k.
+    private final int[] offset;
+    private final int numStates;
+
+    // The node of each state.
+    private final int[] stateNode;
+
+    // ancestors[i] has a bit set for each ancestor of i, including i itself.
+    private final long[][] ancestors;
+
+    // Underline triples (a, b, c), encoded with a < c; empty for most graphs.
+    private final Set<Long> underlines = new HashSet<>();
+
+    private final Map<Key, Boolean> memo = new ConcurrentHashMap<>();
+    private final int maxMemoSize;
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    public DSeparationOracle(Graph graph) {
+        this(graph, DEFAULT_MAX_MEMO_SIZE);
+    }
+
+    /**
+     * @param maxMemoSize The maximum number of answers to remember; 0 turns the memo off. Once the memo
+     *                    is full it is cleared.
+     */
+    public DSeparationOracle(Graph graph, int maxMemoSize) {
+        if (graph == null) {
+            throw new NullPointerException("Graph not provided.");
+        }
+
+        if (maxMemoSize < 0) {
+            throw new IllegalArgumentException("Max memo size must be at least 0: " + maxMemoSize);
+        }
+
+        this.maxMemoSize = maxMemoSize;
+        this.nodes = new ArrayList<>(graph.getNodes());
+        this.indices = new HashMap<>();
+
+        int n = nodes.size();
+
+        for (int i = 0; i < n; i++) {
+            indices.put(nodes.get(i), i);
+        }
+
+        this.adj = new int[n][];
+        this.arrowAt = new boolean[n][];
+        this.tailAt = new boolean[n][];
+        this.back = new int[n][];
+        this.offset = new int[n];
+
+        int states = 0;
+
+        for (int i = 0; i < n; i++) {
+            Node node = nodes.get(i);
+            List<Edge> edges = graph.getEdges(node);
+
+            adj[i] = new int[edges.size()];
+            arrowAt[i] = new boolean[edges.size()];
+            tailAt[i] = new boolean[edges.size()];
+            back[i] = new int[edges.size()];
+            offset[i] = states;
+            states += edges.size();
+
+            for (int k = 0; k < edges.size(); k++) {
+                Edge edge = edges.get(k);
+                adj[i][k] = indices.get(edge.getDistalNode(node));
+                arrowAt[i][k] = edge.getProximalEndpoint(node) == Endpoint.ARROW;
+                tailAt[i][k] = edge.getProximalEndpoint(node) == Endpoint.TAIL;
+            }
+        }
+
+        this.numStates = states;
+        this.stateNode = new int[states];
+
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(stateNode, offset[i], offset[i] + adj[i].length, i);
+        }
+
+        // Match each edge with its other end. Parallel edges between two nodes are paired in order.
+        Map<Long, Deque<Integer>> pending = new HashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < adj[i].length; k++) {
+                int j = adj[i][k];
+                if (j < i) continue;
+                long pair = (long) i * n + j;
+                Deque<Integer> slots = pending.get(pair);
+                if (slots == null) pending.put(pair, slots = new ArrayDeque<>());
+                slots.addLast(k);
+            }
+        }
+
+        for (int j = 0; j < n; j++) {
+            for (int m = 0; m < adj[j].length; m++) {
+                int i = adj[j][m];
+                if (i > j) continue;
+                int k = pending.get((long) i * n + j).removeFirst();
+                back[i][k] = m;
+                back[j][m] = k;
+            }
+        }
+
+        this.ancestors = calcAncestors();
+
+        for (Triple triple : graph.getUnderLines()) {
+            Integer a = indices.get(triple.getX());
+            Integer b = indices.get(triple.getY());
+            Integer c = indices.get(triple.getZ());
+
+            if (a != null && b != null && c != null) {
+                underlines.add(tripleKey(a, b, c));
+            }
+        }
+    }
+
+    /**
+     * @return true iff x is d-connected to y given z.
+     */
+    public boolean isDConnectedTo(Node x, Node y, List<Node> z) {
+        int[] _z = new int[z.size()];
+
+        for (int i = 0; i < z.size(); i++) {
+            _z[i] = indexOf(z.get(i));
+        }
+
+        return isDConnectedTo(indexOf(x), indexOf(y), _z);
+    }
+
+    public boolean isDSeparatedFrom(Node x, Node y, List<Node> z) {
+        return !isDConnectedTo(x, y, z);
+    }
+
+    /**
+     * @return true iff node x is d-connected to node y given the nodes z, all given by their indices in
+     * getNodes().
+     */
+    public boolean isDConnectedTo(int x, int y, int[] z) {
+        if (maxMemoSize == 0) {
+            return reachable(x, y, z);
+        }
+
+        Key key = new Key(x, y, z);
+        Boolean connected = memo.get(key);
+
+        if (connected == null) {
+            connected = reachable(x, y, z);
+
+            if (memo.size() >= maxMemoSize) {
+                memo.clear();
+            }
+
+            memo.put(key, connected);
+        }
+
+        return connected;
+    }
+
+    /**
+     * @return true iff a is an ancestor of b; every node is an ancestor of itself.
+     */
+    public boolean isAncestorOf(int a, int b) {
+        return get(ancestors[b], a);
+    }
+
+    /**
+     * @return the nodes of the graph, in the order used for indices.
+     */
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * @return the index of the node, or -1 if it is not in the graph.
+     */
+    public int getIndex(Node node) {
+        Integer index = indices.get(node);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the number of remembered answers.
+     */
+    public int getMemoSize() {
+        return memo.size();
+    }
+
+    public void clearMemo() {
+        memo.clear();
+    }
+
+    private int indexOf(Node node) {
+        Integer index = indices.get(node);
+
+        if (index == null) {
+            throw new IllegalArgumentException("Not a node in the graph: " + node);
+        }
+
+        return index;
+    }
+
+    private boolean reachable(int x, int y, int[] z) {
+        if (x == y) {
+            return true;
+        }
+
+        Scratch s = scratch.get();
+        s.ensureCapacity(nodes.size(), numStates);
+
+        long[] inZ = s.inZ;
+        long[] ancZ = s.ancZ;
+
+        for (int _z : z) {
+            set(inZ, _z);
+            long[] anc = ancestors[_z];
+
+            for (int w = 0; w < anc.length; w++) {
+                ancZ[w] |= anc[w];
+            }
+        }
+
+        long[] visited = s.visited;
+        int[] queue = s.queue;
+        int head = 0;
+        int tail = 0;
+        boolean connected = false;
+
+        // A state is a node b together with the edge by which b was entered.
+        for (int k = 0; k < adj[x].length; k++) {
+            int b = adj[x][k];
+
+            if (b == y) {
+                connected = true;
+                break;
+            }
+
+            int state = offset[b] + back[x][k];
+
+            if (!get(visited, state)) {
+                set(visited, state);
+                queue[tail++] = state;
+            }
+        }
+
+        search:
+        while (!connected && head < tail) {
+            int state = queue[head++];
+            int b = stateNode[state];
+            int j = state - offset[b];
+            int a = adj[b][j];
+            boolean arrowIn = arrowAt[b][j];
+            boolean bInZ = get(inZ, b);
+
+            for (int k = 0; k < adj[b].length; k++) {
+                int c = adj[b][k];
+                if (c == a) continue;
+
+                boolean collider = arrowIn && arrowAt[b][k];
+                boolean pass;
+
+                if ((!collider || (!underlines.isEmpty() && underlines.contains(tripleKey(a, b, c)))) && !bInZ) {
+                    pass = true;
+                } else {
+                    pass = collider && get(ancZ, b);
+                }
+
+                if (!pass) continue;
+
+                if (c == y) {
+                    connected = true;
+                    break search;
+                }
+
+                int next = offset[c] + back[b][k];
+
+                if (!get(visited, next)) {
+                    set(visited, next);
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        // Leave the scratch space clean for the next query.
+        for (int i = 0; i < tail; i++) {
+            clear(visited, queue[i]);
+        }
+
+        for (int _z : z) {
+            clear(inZ, _z);
+        }
+
+        Arrays.fill(ancZ, 0L);
+
+        return connected;
+    }
+
+    // Ancestor sets, filled in topological order over directed edges; nodes on directed cycles are
+    // filled in by searching back over parents.
+    private long[][] calcAncestors() {
+        int n = nodes.size();
+        int words = (n + 63) >>> 6;
+        long[][] ancestors = new long[n][];
+        int[] numParents = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < adj[i].length; k++) {
+                if (isParent(i, k)) numParents[i]++;
+            }
+        }
+
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (numParents[i] == 0) queue[tail++] = i;
+        }
+
+        while (head < tail) {
+            int i = queue[head++];
+            long[] anc = new long[words];
+            set(anc, i);
+
+            for (int k = 0; k < adj[i].length; k++) {
+                if (isParent(i, k)) {
+                    long[] parentAnc = ancestors[adj[i][k]];
+
+                    for (int w = 0; w < words; w++) {
+                        anc[w] |= parentAnc[w];
+                    }
+                }
+            }
+
+            ancestors[i] = anc;
+
+            for (int k = 0; k < adj[i].length; k++) {
+                int c = adj[i][k];
+
+                if (isParent(c, back[i][k]) && --numParents[c] == 0) {
+                    queue[tail++] = c;
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (ancestors[i] != null) continue;
+
+            long[] anc = new long[words];
+            int[] stack = new int[n];
+            int size = 0;
+            set(anc, i);
+            stack[size++] = i;
+
+            while (size > 0) {
+                int t = stack[--size];
+
+                for (int k = 0; k < adj[t].length; k++) {
+                    int p = adj[t][k];
+
+                    if (isParent(t, k) && !get(anc, p)) {
+                        set(anc, p);
+                        stack[size++] = p;
+                    }
+                }
+            }
+
+            ancestors[i] = anc;
+        }
+
+        return ancestors;
+    }
+
+    // True if the k-th edge of i is directed into i.
+    private boolean isParent(int i, int k) {
+        return arrowAt[i][k] && tailAt[adj[i][k]][back[i][k]];
+    }
+
+    private long tripleKey(int a, int b, int c) {
+        long n = nodes.size();
+        return (Math.min(a, c) * n + b) * n + Math.max(a, c);
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+
+    // Per-thread work space, reused across queries.
+    private static class Scratch {
+        long[] inZ = new long[0];
+        long[] ancZ = new long[0];
+        long[] visited = new long[0];
+        int[] queue = new int[0];
+
+        void ensureCapacity(int numNodes, int numStates) {
+            int nodeWords = (numNodes + 63) >>> 6;
+            int stateWords = (numStates + 63) >>> 6;
+
+            if (inZ.length < nodeWords) {
+                inZ = new long[nodeWords];
+                ancZ = new long[nodeWords];
+            }
+
+            if (visited.length < stateWords) {
+                visited = new long[stateWords];
+                queue = new int[numStates];
+            }
+        }
+    }
+
+    // A query, with x and y ordered and z sorted, since d-connection is symmetric in x and y.
+    private static final class Key {
+        private final int x;
+        private final int y;
+        private final int[] z;
+        private final int hashCode;
+
+        Key(int x, int y, int[] z) {
+            this.x = Math.min(x, y);
+            this.y = Math.max(x, y);
+            this.z = z.clone();
+            Arrays.sort(this.z);
+            this.hashCode = 31 * (31 * this.x + this.y) + Arrays.hashCode(this.z);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return x == key.x && y == key.y && Arrays.equals(z, key.z);
+        }
+    }
+}
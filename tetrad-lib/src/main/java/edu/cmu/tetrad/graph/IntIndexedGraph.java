@@ -0,0 +1,1551 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.*;
+
+/**
+ * <p>Stores a graph with its nodes numbered 0, 1, ..., n - 1 in the order in which they were added. For each
+ * node the graph keeps an array of the indices of its adjacent nodes, an array of the connecting edges, and
+ * arrays of the endpoints at either end of each, so that adjacency, parent and child queries by index are
+ * answered by scanning a primitive array, without hashing nodes or allocating lists. The int methods
+ * (isAdjacentTo(int, int), isParentOf(int, int), getParents(int, int[]), etc.) are meant for search hot
+ * paths; the Graph methods taking Nodes look the nodes up once and then use the same arrays.</p>
+ * <p>At most one edge may connect a pair of nodes, and edges from a node to itself may not be added. Reads
+ * may be made concurrently from several threads, but not concurrently with changes to the graph.</p>
+ * <p>new IntIndexedGraph(graph) and new EdgeListGraph(intIndexedGraph) convert to and from the other graph
+ * types.</p>
+ *
+ * @author Joseph Ramsey
+ * @see EdgeListGraph
+ */
+public class IntIndexedGraph implements Graph, TripleClassifier {
+    static final long serialVersionUID = 23L;
+
+    // Endpoint codes stored in the near and far arrays.
+    private static final byte TAIL = 1;
+    private static final byte ARROW = 2;
+    private static final byte CIRCLE = 3;
+    private static final byte OTHER = 4;
+
+    /**
+     * The nodes of the graph, by index.
+     *
+     * @serial
+     */
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * Map from nodes to their indices.
+     *
+     * @serial
+     */
+    private Map<Node, Integer> indices = new HashMap<>();
+
+    /**
+     * A hash from node names to nodes.
+     *
+     * @serial
+     */
+    private Map<String, Node> namesHash = new HashMap<>();
+
+    // For node i, adj[i][k] for k < degree[i] is the index of the k'th adjacent node, edges[i][k] is the edge
+    // connecting them, and near[i][k] and far[i][k] are the endpoint codes at i and at the adjacent node.
+    private int[][] adj = new int[0][];
+    private Edge[][] edges = new Edge[0][];
+    private byte[][] near = new byte[0][];
+    private byte[][] far = new byte[0][];
+    private int[] degree = new int[0];
+
+    private int numEdges = 0;
+
+    /**
+     * @serial
+     */
+    private Set<Triple> ambiguousTriples = new HashSet<>();
+
+    /**
+     * @serial
+     */
+    private Set<Triple> underLineTriples = new HashSet<>();
+
+    /**
+     * @serial
+     */
+    private Set<Triple> dottedUnderLineTriples = new HashSet<>();
+
+    /**
+     * The set of highlighted edges.
+     */
+    private Set<Edge> highlightedEdges = new HashSet<>();
+
+    private boolean pattern = false;
+
+    private boolean pag = false;
+
+    private Map<String, Object> attributes = new HashMap<>();
+
+    /**
+     * Fires property change events.
+     */
+    private transient PropertyChangeSupport pcs;
+
+    //==============================CONSTUCTORS===========================//
+
+    /**
+     * Constructs a new (empty) graph.
+     */
+    public IntIndexedGraph() {
+    }
+
+    /**
+     * Constructs a new graph with the given nodes and no edges.
+     */
+    public IntIndexedGraph(List<Node> nodes) {
+        if (nodes == null) {
+            throw new NullPointerException();
+        }
+
+        ensureCapacity(nodes.size());
+
+        for (Node node : nodes) {
+            if (!addNode(node)) {
+                throw new IllegalArgumentException();
+            }
+        }
+    }
+
+    /**
+     * Constructs a graph with the nodes, edges, triples and attributes of the given graph.
+     *
+     * @throws IllegalArgumentException if the given graph has more than one edge between some pair of nodes,
+     *                                  or an edge from a node to itself.
+     */
+    public IntIndexedGraph(Graph graph) throws IllegalArgumentException {
+        if (graph == null) {
+            throw new NullPointerException("Graph must not be null.");
+        }
+
+        ensureCapacity(graph.getNumNodes());
+        transferNodesAndEdges(graph);
+        transferAttributes(graph);
+
+        this.ambiguousTriples = graph.getAmbiguousTriples();
+        this.underLineTriples = graph.getUnderLines();
+        this.dottedUnderLineTriples = graph.getDottedUnderlines();
+
+        for (Edge edge : graph.getEdges()) {
+            if (graph.isHighlighted(edge)) {
+                setHighlighted(edge, true);
+            }
+        }
+
+        this.pag = graph.isPag();
+        this.pattern = graph.isPattern();
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static IntIndexedGraph serializableInstance() {
+        return new IntIndexedGraph();
+    }
+
+    //===========================INDEX METHODS============================//
+
+    /**
+     * @return the index of the given node, or -1 if it is not in the graph.
+     */
+    public int getIndex(Node node) {
+        Integer index = indices.get(node);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the node with the given index.
+     */
+    public Node getNode(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * @return the number of nodes adjacent to node i.
+     */
+    public int getDegree(int i) {
+        return degree[i];
+    }
+
+    /**
+     * @return the index of the k'th node adjacent to node i, for k < getDegree(i).
+     */
+    public int getAdjacent(int i, int k) {
+        if (k >= degree[i]) throw new IndexOutOfBoundsException("Node " + i + " has degree " + degree[i]);
+        return adj[i][k];
+    }
+
+    /**
+     * @return the k'th edge connected to node i, for k < getDegree(i).
+     */
+    public Edge getEdge(int i, int k) {
+        if (k >= degree[i]) throw new IndexOutOfBoundsException("Node " + i + " has degree " + degree[i]);
+        return edges[i][k];
+    }
+
+    public boolean isAdjacentTo(int i, int j) {
+        return degree[i] <= degree[j] ? indexOf(adj[i], degree[i], j) != -1 : indexOf(adj[j], degree[j], i) != -1;
+    }
+
+    /**
+     * @return the edge connecting nodes i and j, or null if there is none.
+     */
+    public Edge getEdgeBetween(int i, int j) {
+        int k = slot(i, j);
+        return k == -1 ? null : edges[i][k];
+    }
+
+    /**
+     * @return true iff i --> j.
+     */
+    public boolean isParentOf(int i, int j) {
+        int k = slot(i, j);
+        return k != -1 && near[i][k] == TAIL && far[i][k] == ARROW;
+    }
+
+    /**
+     * @return true iff i --- j.
+     */
+    public boolean isUndirected(int i, int j) {
+        int k = slot(i, j);
+        return k != -1 && near[i][k] == TAIL && far[i][k] == TAIL;
+    }
+
+    /**
+     * @return true iff i *-> j <-* k.
+     */
+    public boolean isDefCollider(int i, int j, int k) {
+        int a = slot(j, i);
+        if (a == -1 || near[j][a] != ARROW) return false;
+        int b = slot(j, k);
+        return b != -1 && near[j][b] == ARROW;
+    }
+
+    /**
+     * Puts the indices of the parents of node i into the given array, which must have room for getDegree(i)
+     * entries.
+     *
+     * @return the number of parents.
+     */
+    public int getParents(int i, int[] parents) {
+        int count = 0;
+        int[] _adj = adj[i];
+        byte[] _near = near[i];
+        byte[] _far = far[i];
+
+        for (int k = 0; k < degree[i]; k++) {
+            if (_near[k] == ARROW && _far[k] == TAIL) parents[count++] = _adj[k];
+        }
+
+        return count;
+    }
+
+    /**
+     * Puts the indices of the children of node i into the given array, which must have room for getDegree(i)
+     * entries.
+     *
+     * @return the number of children.
+     */
+    public int getChildren(int i, int[] children) {
+        int count = 0;
+        int[] _adj = adj[i];
+        byte[] _near = near[i];
+        byte[] _far = far[i];
+
+        for (int k = 0; k < degree[i]; k++) {
+            if (_near[k] == TAIL && _far[k] == ARROW) children[count++] = _adj[k];
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the number of parents of node i.
+     */
+    public int getIndegree(int i) {
+        int count = 0;
+
+        for (int k = 0; k < degree[i]; k++) {
+            if (near[i][k] == ARROW && far[i][k] == TAIL) count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the number of children of node i.
+     */
+    public int getOutdegree(int i) {
+        int count = 0;
+
+        for (int k = 0; k < degree[i]; k++) {
+            if (near[i][k] == TAIL && far[i][k] == ARROW) count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return an EdgeListGraph with the same nodes, edges, triples and attributes as this graph.
+     */
+    public EdgeListGraph toEdgeListGraph() {
+        return new EdgeListGraph(this);
+    }
+
+    //===============================PUBLIC METHODS========================//
+
+    public boolean addBidirectedEdge(Node node1, Node node2) {
+        return addEdge(Edges.bidirectedEdge(node1, node2));
+    }
+
+    public boolean addDirectedEdge(Node node1, Node node2) {
+        return addEdge(Edges.directedEdge(node1, node2));
+    }
+
+    public boolean addUndirectedEdge(Node node1, Node node2) {
+        return addEdge(Edges.undirectedEdge(node1, node2));
+    }
+
+    public boolean addNondirectedEdge(Node node1, Node node2) {
+        return addEdge(Edges.nondirectedEdge(node1, node2));
+    }
+
+    public boolean addPartiallyOrientedEdge(Node node1, Node node2) {
+        return addEdge(Edges.partiallyOrientedEdge(node1, node2));
+    }
+
+    /**
+     * Adds an edge to the graph.
+     *
+     * @return true if the edge was added or is already in the graph; false if a different edge already connects
+     * its nodes or it connects a node to itself.
+     */
+    public boolean addEdge(Edge edge) {
+        if (edge == null) throw new NullPointerException();
+
+        int i = getIndex(edge.getNode1());
+        int j = getIndex(edge.getNode2());
+
+        if (i == -1 || j == -1) {
+            throw new NullPointerException("Can't add an edge unless both " +
+                    "nodes are in the graph: " + edge);
+        }
+
+        if (i == j) return false;
+
+        int k = slot(i, j);
+
+        if (k != -1) {
+            return edges[i][k].equals(edge);
+        }
+
+        link(i, j, edge);
+        link(j, i, edge);
+        numEdges++;
+
+        firePropertyChange("edgeAdded", null, edge);
+        return true;
+    }
+
+    public boolean addNode(Node node) {
+        if (node == null) {
+            throw new NullPointerException();
+        }
+
+        if (indices.containsKey(node)) return true;
+
+        int i = nodes.size();
+        ensureCapacity(i + 1);
+
+        nodes.add(node);
+        indices.put(node, i);
+        namesHash.put(node.getName(), node);
+
+        adj[i] = new int[4];
+        edges[i] = new Edge[4];
+        near[i] = new byte[4];
+        far[i] = new byte[4];
+        degree[i] = 0;
+
+        if (node.getNodeType() != NodeType.ERROR) {
+            firePropertyChange("nodeAdded", null, node);
+        }
+
+        return true;
+    }
+
+    public void addPropertyChangeListener(PropertyChangeListener l) {
+        getPcs().addPropertyChangeListener(l);
+    }
+
+    /**
+     * Removes all nodes (and therefore all edges) from the graph.
+     */
+    public void clear() {
+        nodes = new ArrayList<>();
+        indices = new HashMap<>();
+        namesHash = new HashMap<>();
+        adj = new int[0][];
+        edges = new Edge[0][];
+        near = new byte[0][];
+        far = new byte[0][];
+        degree = new int[0];
+        numEdges = 0;
+        highlightedEdges.clear();
+    }
+
+    public boolean containsEdge(Edge edge) {
+        int i = getIndex(edge.getNode1());
+        int j = getIndex(edge.getNode2());
+        if (i == -1 || j == -1) return false;
+        Edge _edge = getEdgeBetween(i, j);
+        return _edge != null && _edge.equals(edge);
+    }
+
+    public boolean containsNode(Node node) {
+        return indices.containsKey(node);
+    }
+
+    public boolean existsDirectedCycle() {
+
+        // Repeatedly remove nodes with no parents; a cycle remains iff some node is never removed.
+        int n = nodes.size();
+        int[] indegree = new int[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+
+        for (int i = 0; i < n; i++) {
+            indegree[i] = getIndegree(i);
+            if (indegree[i] == 0) queue[tail++] = i;
+        }
+
+        while (head < tail) {
+            int i = queue[head++];
+
+            for (int k = 0; k < degree[i]; k++) {
+                if (near[i][k] == TAIL && far[i][k] == ARROW) {
+                    int j = adj[i][k];
+                    if (--indegree[j] == 0) queue[tail++] = j;
+                }
+            }
+        }
+
+        return tail < n;
+    }
+
+    /**
+     * @return true iff there is a directed path of length at least one from node1 to node2.
+     */
+    public boolean existsDirectedPathFromTo(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return false;
+
+        int n = nodes.size();
+        boolean[] visited = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        queue[tail++] = i;
+
+        while (head < tail) {
+            int a = queue[head++];
+
+            for (int k = 0; k < degree[a]; k++) {
+                if (near[a][k] == TAIL && far[a][k] == ARROW) {
+                    int b = adj[a][k];
+                    if (b == j) return true;
+                    if (visited[b]) continue;
+                    visited[b] = true;
+                    queue[tail++] = b;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    public boolean existsUndirectedPathFromTo(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return false;
+
+        int n = nodes.size();
+        boolean[] visited = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        queue[tail++] = i;
+        visited[i] = true;
+
+        while (head < tail) {
+            int a = queue[head++];
+
+            for (int k = 0; k < degree[a]; k++) {
+                int b = adj[a][k];
+                if (b == j) return true;
+                if (visited[b]) continue;
+                visited[b] = true;
+                queue[tail++] = b;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean existsSemiDirectedPathFromTo(Node node1, Set<Node> nodes) {
+        int i = getIndex(node1);
+        if (i == -1) return false;
+
+        int n = this.nodes.size();
+        boolean[] targets = new boolean[n];
+
+        for (Node node : nodes) {
+            int j = getIndex(node);
+            if (j != -1) targets[j] = true;
+        }
+
+        boolean[] visited = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        queue[tail++] = i;
+        visited[i] = true;
+
+        while (head < tail) {
+            int a = queue[head++];
+
+            for (int k = 0; k < degree[a]; k++) {
+                if (near[a][k] == TAIL || near[a][k] == CIRCLE) {
+                    int b = adj[a][k];
+                    if (targets[b]) return true;
+                    if (visited[b]) continue;
+                    visited[b] = true;
+                    queue[tail++] = b;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Determines whether an inducing path exists between node1 and node2, given
+     * a set O of observed nodes and a set sem of conditioned nodes.
+     */
+    public boolean existsInducingPath(Node node1, Node node2) {
+        return node1 == node2 || existsDirectedPathFromTo(node2, node1);
+    }
+
+    /**
+     * Determines whether a trek exists between two nodes in the graph.  A trek
+     * exists if there is a directed path between the two nodes or else, for
+     * some third node in the graph, there is a path to each of the two nodes in
+     * question.
+     */
+    public boolean existsTrek(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return false;
+
+        boolean[] ancestors1 = ancestors(new int[]{i});
+        boolean[] ancestors2 = ancestors(new int[]{j});
+
+        for (int k = 0; k < ancestors1.length; k++) {
+            if (ancestors1[k] && ancestors2[k]) return true;
+        }
+
+        return false;
+    }
+
+    public int hashCode() {
+        int hashCode = 0;
+        int sum = 0;
+
+        for (Node node : nodes) {
+            sum += node.hashCode();
+        }
+
+        hashCode += 23 * sum;
+        sum = 0;
+
+        for (Edge edge : getEdges()) {
+            sum += edge.hashCode();
+        }
+
+        hashCode += 41 * sum;
+
+        return hashCode;
+    }
+
+    /**
+     * @return true iff the given object is a graph that is equal to this graph,
+     * in the sense that it contains the same nodes and the edges are
+     * isomorphic.
+     */
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof Graph)) return false;
+
+        Graph graph = (Graph) o;
+        return new HashSet<>(graph.getNodeNames()).equals(new HashSet<>(getNodeNames())) &&
+                new HashSet<>(graph.getEdges()).equals(getEdges());
+    }
+
+    /**
+     * Resets the graph so that it is fully connects it using #-# edges, where #
+     * is the given endpoint.
+     */
+    public void fullyConnect(Endpoint endpoint) {
+        removeAllEdges();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                addEdge(new Edge(nodes.get(i), nodes.get(j), endpoint, endpoint));
+            }
+        }
+    }
+
+    public void reorientAllWith(Endpoint endpoint) {
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int k = 0; k < degree[i]; k++) {
+                int j = adj[i][k];
+                if (j < i) continue;
+                replace(i, j, k, new Edge(nodes.get(i), nodes.get(j), endpoint, endpoint));
+            }
+        }
+    }
+
+    public List<Node> getAdjacentNodes(Node node) {
+        int i = getIndex(node);
+        if (i == -1) return new ArrayList<>();
+        List<Node> adjacents = new ArrayList<>(degree[i]);
+
+        for (int k = 0; k < degree[i]; k++) {
+            adjacents.add(nodes.get(adj[i][k]));
+        }
+
+        return adjacents;
+    }
+
+    public List<Node> getAncestors(List<Node> nodes) {
+        return toNodeList(ancestors(toIndices(nodes)));
+    }
+
+    public List<Node> getChildren(Node node) {
+        int i = getIndex(node);
+        if (i == -1) return new ArrayList<>();
+        int[] children = new int[degree[i]];
+        return toNodeList(children, getChildren(i, children));
+    }
+
+    public int getConnectivity() {
+        int connectivity = 0;
+
+        for (int i = 0; i < nodes.size(); i++) {
+            connectivity = Math.max(connectivity, degree[i]);
+        }
+
+        return connectivity;
+    }
+
+    public List<Node> getDescendants(List<Node> nodes) {
+        return toNodeList(descendants(toIndices(nodes)));
+    }
+
+    /**
+     * @return the edge connecting node1 and node2, or null if there is none.
+     */
+    public Edge getEdge(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return null;
+        return getEdgeBetween(i, j);
+    }
+
+    public Edge getDirectedEdge(Node node1, Node node2) {
+        Edge edge = getEdge(node1, node2);
+
+        if (edge != null && Edges.isDirectedEdge(edge) && edge.getProximalEndpoint(node2) == Endpoint.ARROW) {
+            return edge;
+        }
+
+        return null;
+    }
+
+    public List<Edge> getEdges(Node node) {
+        int i = getIndex(node);
+        if (i == -1) return new ArrayList<>();
+        return new ArrayList<>(Arrays.asList(edges[i]).subList(0, degree[i]));
+    }
+
+    public List<Edge> getEdges(Node node1, Node node2) {
+        List<Edge> _edges = new ArrayList<>(1);
+        Edge edge = getEdge(node1, node2);
+        if (edge != null) _edges.add(edge);
+        return _edges;
+    }
+
+    public Set<Edge> getEdges() {
+        Set<Edge> _edges = new HashSet<>();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int k = 0; k < degree[i]; k++) {
+                if (adj[i][k] > i) _edges.add(edges[i][k]);
+            }
+        }
+
+        return _edges;
+    }
+
+    /**
+     * @return the endpoint along the edge from node to node2 at the node2 end.
+     */
+    public Endpoint getEndpoint(Node node1, Node node2) {
+        Edge edge = getEdge(node1, node2);
+        return edge == null ? null : edge.getProximalEndpoint(node2);
+    }
+
+    /**
+     * @return a matrix of endpoints for the nodes in this graph, with nodes in
+     * the same order as getNodes().
+     */
+    public Endpoint[][] getEndpointMatrix() {
+        int size = nodes.size();
+        Endpoint[][] endpoints = new Endpoint[size][size];
+
+        for (int i = 0; i < size; i++) {
+            for (int k = 0; k < degree[i]; k++) {
+                endpoints[i][adj[i][k]] = edges[i][k].getProximalEndpoint(nodes.get(adj[i][k]));
+            }
+        }
+
+        return endpoints;
+    }
+
+    public int getIndegree(Node node) {
+        int i = getIndex(node);
+        return i == -1 ? 0 : getIndegree(i);
+    }
+
+    public int getDegree(Node node) {
+        int i = getIndex(node);
+        return i == -1 ? 0 : degree[i];
+    }
+
+    public Node getNode(String name) {
+        return namesHash.get(name);
+    }
+
+    public List<Node> getNodes() {
+        return new ArrayList<>(nodes);
+    }
+
+    public List<String> getNodeNames() {
+        List<String> names = new ArrayList<>();
+
+        for (Node node : nodes) {
+            names.add(node.getName());
+        }
+
+        return names;
+    }
+
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    public int getNumEdges(Node node) {
+        return getDegree(node);
+    }
+
+    public int getNumNodes() {
+        return nodes.size();
+    }
+
+    public int getOutdegree(Node node) {
+        int i = getIndex(node);
+        return i == -1 ? 0 : getOutdegree(i);
+    }
+
+    public List<Node> getParents(Node node) {
+        int i = getIndex(node);
+        if (i == -1) return new ArrayList<>();
+        int[] parents = new int[degree[i]];
+        return toNodeList(parents, getParents(i, parents));
+    }
+
+    public boolean isAdjacentTo(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        return i != -1 && j != -1 && isAdjacentTo(i, j);
+    }
+
+    /**
+     * Determines whether one node is an ancestor of another.
+     */
+    public boolean isAncestorOf(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return false;
+        return i == j || ancestors(new int[]{j})[i];
+    }
+
+    public boolean possibleAncestor(Node node1, Node node2) {
+        return existsSemiDirectedPathFromTo(node1, Collections.singleton(node2));
+    }
+
+    /**
+     * Determines whether one node is a child of another.
+     */
+    public boolean isChildOf(Node node1, Node node2) {
+        return isParentOf(node2, node1);
+    }
+
+    public boolean isParentOf(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        return i != -1 && j != -1 && isParentOf(i, j);
+    }
+
+    public boolean isProperAncestorOf(Node node1, Node node2) {
+        return node1 != node2 && isAncestorOf(node1, node2);
+    }
+
+    public boolean isProperDescendentOf(Node node1, Node node2) {
+        return node1 != node2 && isAncestorOf(node2, node1);
+    }
+
+    public boolean isDescendentOf(Node node1, Node node2) {
+        return isAncestorOf(node2, node1);
+    }
+
+    /**
+     * @return true iff node2 is a definite nondecendent of node1
+     */
+    public boolean defNonDescendent(Node node1, Node node2) {
+        return !(possibleAncestor(node1, node2));
+    }
+
+    /**
+     * @return true iff node2 *-> node1 or node2 *-> node3 with a tail or circle at node2, or there are
+     * circles at node2 on both edges and node1 and node2 are not adjacent, as EdgeListGraph has it.
+     */
+    public boolean isDefNoncollider(Node node1, Node node2, Node node3) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        int k = getIndex(node3);
+        if (i == -1 || j == -1 || k == -1) return false;
+
+        int a = slot(j, i);
+        int b = slot(j, k);
+
+        if (a != -1 && pointsAway(near[j][a], far[j][a])) return true;
+        if (b != -1 && pointsAway(near[j][b], far[j][b])) return true;
+
+        return a != -1 && b != -1 && near[j][a] == CIRCLE && near[j][b] == CIRCLE && !isAdjacentTo(i, j);
+    }
+
+    public boolean isDefCollider(Node node1, Node node2, Node node3) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        int k = getIndex(node3);
+        return i != -1 && j != -1 && k != -1 && isDefCollider(i, j, k);
+    }
+
+    public boolean isDConnectedTo(Node node1, Node node2, List<Node> z) {
+        return GraphUtils.isDConnectedTo(node1, node2, z, this);
+    }
+
+    public boolean isPattern() {
+        return pattern;
+    }
+
+    public void setPattern(boolean pattern) {
+        this.pattern = pattern;
+    }
+
+    public boolean isPag() {
+        return pag;
+    }
+
+    public void setPag(boolean pag) {
+        this.pag = pag;
+    }
+
+    public boolean isDSeparatedFrom(Node node1, Node node2, List<Node> z) {
+        return !isDConnectedTo(node1, node2, z);
+    }
+
+    /**
+     * Calculated on an EdgeListGraph copy of this graph, as it is rarely used.
+     */
+    public boolean possDConnectedTo(Node node1, Node node2, List<Node> condNodes) {
+        return new EdgeListGraph(this).possDConnectedTo(node1, node2, condNodes);
+    }
+
+    public boolean isDirectedFromTo(Node node1, Node node2) {
+        return isParentOf(node1, node2);
+    }
+
+    public boolean isUndirectedFromTo(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        return i != -1 && j != -1 && isUndirected(i, j);
+    }
+
+    /**
+     * Calculated on an EdgeListGraph copy of this graph, as it is rarely used.
+     *
+     * @return true if the given edge is definitely visible (Jiji, pg 25)
+     * @throws IllegalArgumentException if the given edge is not a directed edge
+     *                                  in the graph
+     */
+    public boolean defVisible(Edge edge) {
+        return new EdgeListGraph(this).defVisible(edge);
+    }
+
+    public boolean isExogenous(Node node) {
+        return getIndegree(node) == 0;
+    }
+
+    /**
+     * Nodes adjacent to the given node with the given proximal endpoint.
+     */
+    public List<Node> getNodesInTo(Node node, Endpoint endpoint) {
+        int i = getIndex(node);
+        List<Node> _nodes = new ArrayList<>(4);
+        if (i == -1) return _nodes;
+        byte code = code(endpoint);
+
+        for (int k = 0; k < degree[i]; k++) {
+            if (near[i][k] == code && (code != OTHER || edges[i][k].getProximalEndpoint(node) == endpoint)) {
+                _nodes.add(nodes.get(adj[i][k]));
+            }
+        }
+
+        return _nodes;
+    }
+
+    /**
+     * Nodes adjacent to the given node with the given distal endpoint.
+     */
+    public List<Node> getNodesOutTo(Node node, Endpoint endpoint) {
+        int i = getIndex(node);
+        List<Node> _nodes = new ArrayList<>(4);
+        if (i == -1) return _nodes;
+        byte code = code(endpoint);
+
+        for (int k = 0; k < degree[i]; k++) {
+            if (far[i][k] == code && (code != OTHER || edges[i][k].getDistalEndpoint(node) == endpoint)) {
+                _nodes.add(nodes.get(adj[i][k]));
+            }
+        }
+
+        return _nodes;
+    }
+
+    public boolean removeEdge(Edge edge) {
+        if (!containsEdge(edge)) {
+            return false;
+        }
+
+        int i = getIndex(edge.getNode1());
+        int j = getIndex(edge.getNode2());
+
+        unlink(i, slot(i, j));
+        unlink(j, slot(j, i));
+        numEdges--;
+
+        highlightedEdges.remove(edge);
+        firePropertyChange("edgeRemoved", edge, null);
+        return true;
+    }
+
+    public boolean removeEdge(Node node1, Node node2) {
+        return removeEdges(node1, node2);
+    }
+
+    public boolean removeEdges(Node node1, Node node2) {
+        Edge edge = getEdge(node1, node2);
+        return edge != null && removeEdge(edge);
+    }
+
+    public boolean removeEdges(Collection<Edge> edges) {
+        boolean change = false;
+
+        for (Edge edge : new ArrayList<>(edges)) {
+            boolean _change = removeEdge(edge);
+            change = change || _change;
+        }
+
+        return change;
+    }
+
+    /**
+     * Removes a node from the graph. The node with the highest index takes the index of the removed node.
+     */
+    public boolean removeNode(Node node) {
+        int i = getIndex(node);
+
+        if (i == -1) {
+            return false;
+        }
+
+        boolean changed = degree[i] > 0;
+
+        while (degree[i] > 0) {
+            removeEdge(edges[i][degree[i] - 1]);
+        }
+
+        int last = nodes.size() - 1;
+
+        if (i != last) {
+            Node lastNode = nodes.get(last);
+
+            // Move the last node into slot i, renumbering it in its neighbors' arrays.
+            for (int k = 0; k < degree[last]; k++) {
+                int j = adj[last][k];
+                adj[j][slot(j, last)] = i;
+            }
+
+            nodes.set(i, lastNode);
+            indices.put(lastNode, i);
+            adj[i] = adj[last];
+            edges[i] = edges[last];
+            near[i] = near[last];
+            far[i] = far[last];
+            degree[i] = degree[last];
+        }
+
+        nodes.remove(last);
+        indices.remove(node);
+        namesHash.remove(node.getName());
+        adj[last] = null;
+        edges[last] = null;
+        near[last] = null;
+        far[last] = null;
+        degree[last] = 0;
+
+        firePropertyChange("nodeRemoved", node, null);
+        return changed;
+    }
+
+    public boolean removeNodes(List<Node> nodes) {
+        boolean changed = false;
+
+        for (Node node : new ArrayList<>(nodes)) {
+            boolean _changed = removeNode(node);
+            changed = changed || _changed;
+        }
+
+        return changed;
+    }
+
+    /**
+     * If there is currently an edge from node1 to node2, sets the endpoint at
+     * node2 to the given endpoint; if there is no such edge, adds an edge --#
+     * where # is the given endpoint.
+     */
+    public boolean setEndpoint(Node from, Node to, Endpoint endPoint) throws IllegalArgumentException {
+        if (endPoint == null) {
+            throw new NullPointerException();
+        }
+
+        int i = getIndex(from);
+        int j = getIndex(to);
+        int k = i == -1 || j == -1 ? -1 : slot(i, j);
+
+        if (k == -1) {
+            return addEdge(new Edge(from, to, Endpoint.TAIL, endPoint));
+        }
+
+        Edge edge = edges[i][k];
+        replace(i, j, k, new Edge(from, to, edge.getProximalEndpoint(from), endPoint));
+        return true;
+    }
+
+    public Graph subgraph(List<Node> nodes) {
+        IntIndexedGraph graph = new IntIndexedGraph(nodes);
+
+        for (int i = 0; i < graph.nodes.size(); i++) {
+            int _i = getIndex(graph.nodes.get(i));
+            if (_i == -1) continue;
+
+            for (int k = 0; k < degree[_i]; k++) {
+                int j = graph.getIndex(this.nodes.get(adj[_i][k]));
+                if (j > i) graph.addEdge(edges[_i][k]);
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * @return a string representation of the graph.
+     */
+    public String toString() {
+        return GraphUtils.graphToText(this).toString();
+    }
+
+    public void transferNodesAndEdges(Graph graph) throws IllegalArgumentException {
+        if (graph == null) {
+            throw new NullPointerException("No graph was provided.");
+        }
+
+        for (Node node : graph.getNodes()) {
+            if (!addNode(node)) {
+                throw new IllegalArgumentException();
+            }
+        }
+
+        for (Edge edge : graph.getEdges()) {
+            if (!addEdge(edge)) {
+                throw new IllegalArgumentException("Only one edge per pair of distinct nodes may be added: " + edge);
+            }
+        }
+    }
+
+    public void transferAttributes(Graph graph) throws IllegalArgumentException {
+        if (graph == null) {
+            throw new NullPointerException("No graph was provided.");
+        }
+
+        this.attributes.putAll(graph.getAllAttributes());
+    }
+
+    public Set<Triple> getAmbiguousTriples() {
+        return new HashSet<>(ambiguousTriples);
+    }
+
+    public Set<Triple> getUnderLines() {
+        return new HashSet<>(underLineTriples);
+    }
+
+    public Set<Triple> getDottedUnderlines() {
+        return new HashSet<>(dottedUnderLineTriples);
+    }
+
+    public boolean isAmbiguousTriple(Node x, Node y, Node z) {
+        return ambiguousTriples.contains(new Triple(x, y, z));
+    }
+
+    public boolean isUnderlineTriple(Node x, Node y, Node z) {
+        return underLineTriples.contains(new Triple(x, y, z));
+    }
+
+    public boolean isDottedUnderlineTriple(Node x, Node y, Node z) {
+        return dottedUnderLineTriples.contains(new Triple(x, y, z));
+    }
+
+    public void addAmbiguousTriple(Node x, Node y, Node z) {
+        ambiguousTriples.add(new Triple(x, y, z));
+    }
+
+    public void addUnderlineTriple(Node x, Node y, Node z) {
+        Triple triple = new Triple(x, y, z);
+
+        if (!triple.alongPathIn(this)) {
+            return;
+        }
+
+        underLineTriples.add(triple);
+    }
+
+    public void addDottedUnderlineTriple(Node x, Node y, Node z) {
+        Triple triple = new Triple(x, y, z);
+
+        if (!triple.alongPathIn(this)) {
+            return;
+        }
+
+        dottedUnderLineTriples.add(triple);
+    }
+
+    public void removeAmbiguousTriple(Node x, Node y, Node z) {
+        ambiguousTriples.remove(new Triple(x, y, z));
+    }
+
+    public void removeUnderlineTriple(Node x, Node y, Node z) {
+        underLineTriples.remove(new Triple(x, y, z));
+    }
+
+    public void removeDottedUnderlineTriple(Node x, Node y, Node z) {
+        dottedUnderLineTriples.remove(new Triple(x, y, z));
+    }
+
+    public void setAmbiguousTriples(Set<Triple> triples) {
+        ambiguousTriples.clear();
+
+        for (Triple triple : triples) {
+            addAmbiguousTriple(triple.getX(), triple.getY(), triple.getZ());
+        }
+    }
+
+    public void setUnderLineTriples(Set<Triple> triples) {
+        underLineTriples.clear();
+
+        for (Triple triple : triples) {
+            addUnderlineTriple(triple.getX(), triple.getY(), triple.getZ());
+        }
+    }
+
+    public void setDottedUnderLineTriples(Set<Triple> triples) {
+        dottedUnderLineTriples.clear();
+
+        for (Triple triple : triples) {
+            addDottedUnderlineTriple(triple.getX(), triple.getY(), triple.getZ());
+        }
+    }
+
+    public List<Node> getCausalOrdering() {
+        return GraphUtils.getCausalOrdering(this);
+    }
+
+    public void setHighlighted(Edge edge, boolean highlighted) {
+        highlightedEdges.add(edge);
+    }
+
+    public boolean isHighlighted(Edge edge) {
+        return highlightedEdges.contains(edge);
+    }
+
+    public boolean isParameterizable(Node node) {
+        return true;
+    }
+
+    public boolean isTimeLagModel() {
+        return false;
+    }
+
+    public TimeLagGraph getTimeLagGraph() {
+        return null;
+    }
+
+    public void removeTriplesNotInGraph() {
+        removeTriplesNotInGraph(ambiguousTriples);
+        removeTriplesNotInGraph(underLineTriples);
+        removeTriplesNotInGraph(dottedUnderLineTriples);
+    }
+
+    public List<Node> getSepset(Node n1, Node n2) {
+        return GraphUtils.getSepset(n1, n2, this);
+    }
+
+    /**
+     * Replaces the nodes of the graph, in index order, with the given nodes.
+     */
+    public void setNodes(List<Node> nodes) {
+        if (nodes.size() != this.nodes.size()) {
+            throw new IllegalArgumentException("Sorry, there is a mismatch in the number of variables " +
+                    "you are trying to set.");
+        }
+
+        this.nodes = new ArrayList<>(nodes);
+        this.indices = new HashMap<>();
+        this.namesHash = new HashMap<>();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            indices.put(nodes.get(i), i);
+            namesHash.put(nodes.get(i).getName(), nodes.get(i));
+        }
+    }
+
+    public Map<String, Object> getAllAttributes() {
+        return attributes;
+    }
+
+    public Object getAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    public void removeAttribute(String key) {
+        attributes.remove(key);
+    }
+
+    public void addAttribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+
+    /**
+     * @return the names of the triple classifications. Coordinates with <code>getTriplesList</code>
+     */
+    public List<String> getTriplesClassificationTypes() {
+        List<String> names = new ArrayList<>();
+        names.add("Underlines");
+        names.add("Dotted Underlines");
+        names.add("Ambiguous Triples");
+        return names;
+    }
+
+    /**
+     * @return the list of triples corresponding to <code>getTripleClassificationNames</code> for the given
+     * node.
+     */
+    public List<List<Triple>> getTriplesLists(Node node) {
+        List<List<Triple>> triplesList = new ArrayList<>();
+        triplesList.add(GraphUtils.getUnderlinedTriplesFromGraph(node, this));
+        triplesList.add(GraphUtils.getDottedUnderlinedTriplesFromGraph(node, this));
+        triplesList.add(GraphUtils.getAmbiguousTriplesFromGraph(node, this));
+        return triplesList;
+    }
+
+    //===============================PRIVATE METHODS======================//
+
+    // The position of j in i's adjacency arrays, or -1.
+    private int slot(int i, int j) {
+        return indexOf(adj[i], degree[i], j);
+    }
+
+    // True iff an edge with these endpoint codes at its near and far ends points towards the far end.
+    private static boolean pointsAway(byte near, byte far) {
+        return far == ARROW && (near == TAIL || near == CIRCLE);
+    }
+
+    private static int indexOf(int[] array, int length, int value) {
+        for (int k = 0; k < length; k++) {
+            if (array[k] == value) return k;
+        }
+
+        return -1;
+    }
+
+    // Appends j and the edge to i's arrays.
+    private void link(int i, int j, Edge edge) {
+        int d = degree[i];
+
+        if (d == adj[i].length) {
+            int capacity = 2 * d;
+            adj[i] = Arrays.copyOf(adj[i], capacity);
+            edges[i] = Arrays.copyOf(edges[i], capacity);
+            near[i] = Arrays.copyOf(near[i], capacity);
+            far[i] = Arrays.copyOf(far[i], capacity);
+        }
+
+        Node node = nodes.get(i);
+        adj[i][d] = j;
+        edges[i][d] = edge;
+        near[i][d] = code(edge.getProximalEndpoint(node));
+        far[i][d] = code(edge.getDistalEndpoint(node));
+        degree[i] = d + 1;
+    }
+
+    // Removes the k'th entry from i's arrays by moving the last entry into its place.
+    private void unlink(int i, int k) {
+        int last = --degree[i];
+        adj[i][k] = adj[i][last];
+        edges[i][k] = edges[i][last];
+        near[i][k] = near[i][last];
+        far[i][k] = far[i][last];
+        edges[i][last] = null;
+    }
+
+    // Replaces the edge between i and j, the k'th entry in i's arrays, with the given edge.
+    private void replace(int i, int j, int k, Edge edge) {
+        Edge old = edges[i][k];
+        int l = slot(j, i);
+
+        edges[i][k] = edge;
+        near[i][k] = code(edge.getProximalEndpoint(nodes.get(i)));
+        far[i][k] = code(edge.getDistalEndpoint(nodes.get(i)));
+        edges[j][l] = edge;
+        near[j][l] = far[i][k];
+        far[j][l] = near[i][k];
+
+        if (highlightedEdges.remove(old)) highlightedEdges.add(edge);
+
+        firePropertyChange("edgeRemoved", old, null);
+        firePropertyChange("edgeAdded", null, edge);
+    }
+
+    private void removeAllEdges() {
+        for (int i = 0; i < nodes.size(); i++) {
+            Arrays.fill(edges[i], null);
+            degree[i] = 0;
+        }
+
+        numEdges = 0;
+        highlightedEdges.clear();
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= degree.length) return;
+        int capacity = Math.max(n, 2 * degree.length);
+        adj = Arrays.copyOf(adj, capacity);
+        edges = Arrays.copyOf(edges, capacity);
+        near = Arrays.copyOf(near, capacity);
+        far = Arrays.copyOf(far, capacity);
+        degree = Arrays.copyOf(degree, capacity);
+    }
+
+    // The given nodes and their ancestors, marked by index.
+    private boolean[] ancestors(int[] start) {
+        return closure(start, ARROW, TAIL);
+    }
+
+    // The given nodes and their descendants, marked by index.
+    private boolean[] descendants(int[] start) {
+        return closure(start, TAIL, ARROW);
+    }
+
+    // Closure of the start nodes under steps along edges with the given endpoint codes at the near and far ends.
+    private boolean[] closure(int[] start, byte nearCode, byte farCode) {
+        int n = nodes.size();
+        boolean[] visited = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+
+        for (int i : start) {
+            if (!visited[i]) {
+                visited[i] = true;
+                queue[tail++] = i;
+            }
+        }
+
+        while (head < tail) {
+            int a = queue[head++];
+
+            for (int k = 0; k < degree[a]; k++) {
+                if (near[a][k] == nearCode && far[a][k] == farCode) {
+                    int b = adj[a][k];
+                    if (visited[b]) continue;
+                    visited[b] = true;
+                    queue[tail++] = b;
+                }
+            }
+        }
+
+        return visited;
+    }
+
+    private int[] toIndices(List<Node> nodes) {
+        int[] _indices = new int[nodes.size()];
+        int count = 0;
+
+        for (Node node : nodes) {
+            int i = getIndex(node);
+            if (i != -1) _indices[count++] = i;
+        }
+
+        return Arrays.copyOf(_indices, count);
+    }
+
+    private List<Node> toNodeList(boolean[] marked) {
+        List<Node> _nodes = new ArrayList<>();
+
+        for (int i = 0; i < marked.length; i++) {
+            if (marked[i]) _nodes.add(nodes.get(i));
+        }
+
+        return _nodes;
+    }
+
+    private List<Node> toNodeList(int[] _indices, int count) {
+        List<Node> _nodes = new ArrayList<>(count);
+
+        for (int k = 0; k < count; k++) {
+            _nodes.add(nodes.get(_indices[k]));
+        }
+
+        return _nodes;
+    }
+
+    private void removeTriplesNotInGraph(Set<Triple> triples) {
+        for (Triple triple : new HashSet<>(triples)) {
+            if (!containsNode(triple.getX()) || !containsNode(triple.getY()) || !containsNode(triple.getZ())) {
+                triples.remove(triple);
+                continue;
+            }
+
+            if (!isAdjacentTo(triple.getX(), triple.getY()) || !isAdjacentTo(triple.getY(), triple.getZ())) {
+                triples.remove(triple);
+            }
+        }
+    }
+
+    private static byte code(Endpoint endpoint) {
+        if (endpoint == Endpoint.TAIL) return TAIL;
+        if (endpoint == Endpoint.ARROW) return ARROW;
+        if (endpoint == Endpoint.CIRCLE) return CIRCLE;
+        return OTHER;
+    }
+
+    private PropertyChangeSupport getPcs() {
+        if (pcs == null) {
+            pcs = new PropertyChangeSupport(this);
+        }
+        return pcs;
+    }
+
+    private void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+        if (pcs != null && pcs.hasListeners(null)) {
+            pcs.firePropertyChange(propertyName, oldValue, newValue);
+        }
+    }
+
+    /**
+     * Adds semantic checks to the default deserialization method. This method
+     * must have the standard signature for a readObject method, and the body of
+     * the method must begin with "s.defaultReadObject();". Other than that, any
+     * semantic checks can be specified and do not need to stay the same from
+     * version to version. A readObject method of this form may be added to any
+     * class, even if Tetrad sessions were previously saved out using a version
+     * of the class that didn't include it. (That's what the
+     * "s.defaultReadObject();" is for. See J. Bloch, Effective Java, for help.
+     *
+     * @throws java.io.IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (nodes == null || indices == null || adj == null || edges == null || degree == null) {
+            throw new NullPointerException();
+        }
+
+        if (ambiguousTriples == null) {
+            ambiguousTriples = new HashSet<>();
+        }
+
+        if (highlightedEdges == null) {
+            highlightedEdges = new HashSet<>();
+        }
+
+        if (underLineTriples == null) {
+            underLineTriples = new HashSet<>();
+        }
+
+        if (dottedUnderLineTriples == null) {
+            dottedUnderLineTriples = new HashSet<>();
+        }
+    }
+}
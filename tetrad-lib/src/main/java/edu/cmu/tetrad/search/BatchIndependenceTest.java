@@ -0,0 +1,45 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.List;
+
+/**
+ * Implemented by independence tests that can answer x _||_ y | z for many y at once more cheaply than one at a time,
+ * for instance by factoring the conditioning block once and reusing the factorization for every y. Adjacency searches
+ * use testAll when the test implements this interface.
+ *
+ * @author Joseph Ramsey
+ */
+public interface BatchIndependenceTest extends IndependenceTest {
+
+    /**
+     * Tests x _||_ y | z for each y in ys. The judgments are the same as those of isIndependent(x, y, z), up to
+     * rounding.
+     *
+     * @param pValues If not null, the p value of the test for ys.get(i) is put in pValues[i].
+     * @return an array whose i'th entry is true iff x _||_ ys.get(i) | z.
+     */
+    boolean[] testAll(Node x, List<Node> ys, List<Node> z, double[] pValues);
+}
@@ -0,0 +1,309 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wraps an independence test and remembers its p values in a PValueCache, so that a fact tested once is not tested
+ * again, in this run or a later one. Facts are keyed by a fingerprint of the data, a description of the test, the
+ * names of x and y (in either order) and the names of the conditioning variables (in any order). Since the p value
+ * does not depend on the significance level, one cache serves every alpha; x _||_ y | z is judged true iff the p
+ * value is greater than alpha. The wrapped test should judge independence in that way and report p values; facts
+ * whose p value is NaN are not cached.
+ * <p>
+ * The description of the test must distinguish any settings other than alpha that change p values. If the wrapped
+ * test has neither a data set nor a covariance matrix, there is nothing to fingerprint, and every call is passed
+ * through.
+ *
+ * @author Joseph Ramsey
+ */
+public class CachingIndependenceTest implements IndependenceTest {
+
+    private final IndependenceTest test;
+    private final PValueCache cache;
+    private final String testDescription;
+
+    // Identifies the data, or null if there is none.
+    private final String fingerprint;
+
+    private double pValue = Double.NaN;
+
+    /**
+     * Caches p values for the test, described by its class name.
+     */
+    public CachingIndependenceTest(IndependenceTest test, PValueCache cache) {
+        this(test, cache, test.getClass().getName());
+    }
+
+    /**
+     * @param testDescription Identifies the test and any settings other than alpha that change its p values.
+     */
+    public CachingIndependenceTest(IndependenceTest test, PValueCache cache, String testDescription) {
+        this(test, cache, testDescription, fingerprint(test));
+    }
+
+    private CachingIndependenceTest(IndependenceTest test, PValueCache cache, String testDescription,
+                                    String fingerprint) {
+        if (test == null) {
+            throw new NullPointerException("Test not provided.");
+        }
+
+        if (cache == null) {
+            throw new NullPointerException("Cache not provided.");
+        }
+
+        if (testDescription == null) {
+            throw new NullPointerException("Test description not provided.");
+        }
+
+        this.test = test;
+        this.cache = cache;
+        this.testDescription = testDescription;
+        this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public IndependenceTest indTestSubset(List<Node> vars) {
+        return new CachingIndependenceTest(test.indTestSubset(vars), cache, testDescription, fingerprint);
+    }
+
+    @Override
+    public boolean isIndependent(Node x, Node y, List<Node> z) {
+        if (fingerprint == null) {
+            boolean independent = test.isIndependent(x, y, z);
+            this.pValue = test.getPValue();
+            return independent;
+        }
+
+        long[] key = key(x, y, z);
+        double p = cache.get(key);
+
+        if (Double.isNaN(p)) {
+            boolean independent = test.isIndependent(x, y, z);
+            p = test.getPValue();
+            this.pValue = p;
+
+            if (Double.isNaN(p)) {
+                return independent;
+            }
+
+            cache.put(key, p);
+        }
+
+        this.pValue = p;
+        return p > getAlpha();
+    }
+
+    @Override
+    public boolean isIndependent(Node x, Node y, Node... z) {
+        return isIndependent(x, y, Arrays.asList(z));
+    }
+
+    @Override
+    public boolean isDependent(Node x, Node y, List<Node> z) {
+        return !isIndependent(x, y, z);
+    }
+
+    @Override
+    public boolean isDependent(Node x, Node y, Node... z) {
+        return isDependent(x, y, Arrays.asList(z));
+    }
+
+    @Override
+    public double getPValue() {
+        return pValue;
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return test.getVariables();
+    }
+
+    @Override
+    public Node getVariable(String name) {
+        return test.getVariable(name);
+    }
+
+    @Override
+    public List<String> getVariableNames() {
+        return test.getVariableNames();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return test.determines(z, y);
+    }
+
+    @Override
+    public double getAlpha() {
+        return test.getAlpha();
+    }
+
+    @Override
+    public void setAlpha(double alpha) {
+        test.setAlpha(alpha);
+    }
+
+    @Override
+    public DataModel getData() {
+        return test.getData();
+    }
+
+    @Override
+    public ICovarianceMatrix getCov() {
+        return test.getCov();
+    }
+
+    @Override
+    public List<DataSet> getDataSets() {
+        return test.getDataSets();
+    }
+
+    @Override
+    public int getSampleSize() {
+        return test.getSampleSize();
+    }
+
+    @Override
+    public List<TetradMatrix> getCovMatrices() {
+        return test.getCovMatrices();
+    }
+
+    @Override
+    public double getScore() {
+        return getAlpha() - getPValue();
+    }
+
+    @Override
+    public void setVerbose(boolean verbose) {
+        test.setVerbose(verbose);
+    }
+
+    @Override
+    public boolean isVerbose() {
+        return test.isVerbose();
+    }
+
+    /**
+     * @return the wrapped test.
+     */
+    public IndependenceTest getTest() {
+        return test;
+    }
+
+    public PValueCache getCache() {
+        return cache;
+    }
+
+    public String toString() {
+        return test.toString();
+    }
+
+    /**
+     * @return a hash of the variable names and values of the test's data set or covariance matrix, or null if it has
+     * neither.
+     */
+    public static String fingerprint(IndependenceTest test) {
+        DataModel data = test.getData();
+
+        if (data instanceof DataSet) {
+            DataSet dataSet = (DataSet) data;
+            long h = 17;
+
+            for (Node node : dataSet.getVariables()) {
+                h = 31 * h + node.getName().hashCode();
+            }
+
+            h = 31 * h + dataSet.getNumRows();
+
+            for (int j = 0; j < dataSet.getNumColumns(); j++) {
+                boolean continuous = dataSet.getVariable(j) instanceof ContinuousVariable;
+
+                for (int i = 0; i < dataSet.getNumRows(); i++) {
+                    long v = continuous
+                            ? Double.doubleToLongBits(dataSet.getDouble(i, j))
+                            : dataSet.getInt(i, j);
+                    h = 0x9e3779b97f4a7c15L * (h ^ v) + j;
+                }
+            }
+
+            return "data:" + Long.toHexString(h);
+        }
+
+        ICovarianceMatrix cov = data instanceof ICovarianceMatrix ? (ICovarianceMatrix) data : test.getCov();
+
+        if (cov != null) {
+            long h = 19;
+
+            for (Node node : cov.getVariables()) {
+                h = 31 * h + node.getName().hashCode();
+            }
+
+            h = 31 * h + cov.getSampleSize();
+
+            for (int i = 0; i < cov.getDimension(); i++) {
+                for (int j = 0; j <= i; j++) {
+                    h = 0x9e3779b97f4a7c15L * (h ^ Double.doubleToLongBits(cov.getValue(i, j))) + i;
+                }
+            }
+
+            return "cov:" + Long.toHexString(h);
+        }
+
+        return null;
+    }
+
+    private long[] key(Node x, Node y, List<Node> z) {
+        String _x = x.getName();
+        String _y = y.getName();
+
+        if (_x.compareTo(_y) > 0) {
+            String t = _x;
+            _x = _y;
+            _y = t;
+        }
+
+        List<String> _z = new ArrayList<>();
+        for (Node node : z) _z.add(node.getName());
+        Collections.sort(_z);
+
+        String[] parts = new String[4 + _z.size()];
+        parts[0] = fingerprint;
+        parts[1] = testDescription;
+        parts[2] = _x;
+        parts[3] = _y;
+        for (int i = 0; i < _z.size(); i++) parts[4 + i] = _z.get(i);
+
+        return PValueCache.key(parts);
+    }
+}
@@ -0,0 +1,144 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.List;
+
+/**
+ * Wraps a score and remembers local scores in a LocalScoreCache, so that repeated calls to
+ * localScore(i, parents) for the same i and parent set are only calculated once. Score differences
+ * are calculated as localScore(y, z + x) - localScore(y, z) from cached local scores, which is how
+ * the decomposable scores (SemBicScore, BDeuScore, ConditionalGaussianScore, etc.) define them;
+ * it should not be used to wrap scores whose localScoreDiff is defined otherwise, such as GraphScore.
+ * <p>
+ * The cache is thread safe, so a single instance may be handed to FGES.
+ *
+ * @author Joseph Ramsey
+ */
+public class CachingScore implements Score {
+
+    private final Score score;
+    private final LocalScoreCache cache;
+
+    public CachingScore(Score score) {
+        this(score, new LocalScoreCache());
+    }
+
+    public CachingScore(Score score, int maxCacheSize) {
+        this(score, new LocalScoreCache(maxCacheSize));
+    }
+
+    public CachingScore(Score score, LocalScoreCache cache) {
+        if (score == null) {
+            throw new NullPointerException("Score not provided.");
+        }
+
+        if (cache == null) {
+            throw new NullPointerException("Cache not provided.");
+        }
+
+        this.score = score;
+        this.cache = cache;
+    }
+
+    @Override
+    public double localScore(int node, int... parents) {
+        double _score = cache.get(node, parents);
+
+        if (Double.isNaN(_score)) {
+            _score = score.localScore(node, parents);
+            cache.add(node, parents, _score);
+        }
+
+        return _score;
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y, int[] z) {
+        return localScore(y, append(z, x)) - localScore(y, z);
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y) {
+        return localScore(y, x) - localScore(y);
+    }
+
+    @Override
+    public double localScore(int node, int parent) {
+        return localScore(node, new int[]{parent});
+    }
+
+    @Override
+    public double localScore(int node) {
+        return localScore(node, new int[0]);
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return score.getVariables();
+    }
+
+    @Override
+    public boolean isEffectEdge(double bump) {
+        return score.isEffectEdge(bump);
+    }
+
+    @Override
+    public int getSampleSize() {
+        return score.getSampleSize();
+    }
+
+    @Override
+    public Node getVariable(String targetName) {
+        return score.getVariable(targetName);
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return score.getMaxDegree();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return score.determines(z, y);
+    }
+
+    /**
+     * @return the wrapped score.
+     */
+    public Score getScore() {
+        return score;
+    }
+
+    public LocalScoreCache getCache() {
+        return cache;
+    }
+
+    private int[] append(int[] parents, int extra) {
+        int[] all = new int[parents.length + 1];
+        System.arraycopy(parents, 0, all, 0, parents.length);
+        all[parents.length] = extra;
+        return all;
+    }
+}
@@ -0,0 +1,387 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.util.MemoryBudget;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Partitions the rows of a mixed data set into cells, one for each combination of values of given discrete
+ * columns that occurs, and gives the covariances of continuous columns within each cell, for the
+ * conditional Gaussian likelihood. The partition for a set of columns is made by refining a partition kept
+ * for a set with one column fewer, if there is one, and the sums and cross products of the continuous
+ * columns within the cells of a partition are kept with it, so that the covariances over a cell cost only
+ * the number of continuous columns squared once they have been asked for. Partitions and sums are kept up
+ * to a memory budget; once it is used up, new ones are computed but not kept. They may be asked for from
+ * several threads at once.
+ * <p>
+ * Rows missing a value of any of the discrete columns are in no cell.
+ *
+ * @author Joseph Ramsey
+ */
+public final class CellPartitions {
+
+    // The discrete columns and their numbers of categories, or null and 0 for columns that are not
+    // discrete.
+    private final int[][] discreteData;
+    private final int[] dims;
+
+    // The continuous columns, less their means, or null for columns that are not continuous.
+    private final double[][] continuousData;
+
+    private final int numRows;
+
+    // The partitions for sets of sorted columns, and the account their approximate size in bytes is
+    // reserved from.
+    private final Map<Key, Partition> partitions = new ConcurrentHashMap<>();
+    private final MemoryBudget.Account account;
+
+    /**
+     * Constructs partitions for the given columns, keeping them within the budget shared by all caches that
+     * are not given one of their own, so that the partitions of many likelihoods together stay within it.
+     */
+    public CellPartitions(int[][] discreteData, int[] dims, double[][] continuousData) {
+        this(discreteData, dims, continuousData, MemoryBudget.shared());
+    }
+
+    /**
+     * Constructs partitions for the given columns, keeping at most about the given number of bytes of them.
+     */
+    public CellPartitions(int[][] discreteData, int[] dims, double[][] continuousData, long maxBytes) {
+        this(discreteData, dims, continuousData, new MemoryBudget(maxBytes));
+    }
+
+    /**
+     * Constructs partitions for the given columns, keeping them within the given budget. A column may be
+     * given as discrete, with the given number of categories, as continuous, or as both, as for a continuous
+     * column with a discretized copy; an array has null for a column not given in it.
+     *
+     * @param discreteData   The discrete columns, with values 0, ..., dims[j] - 1, or -99 if missing.
+     * @param dims           The numbers of categories of the discrete columns.
+     * @param continuousData The continuous columns. These are not modified.
+     * @param budget         The memory budget.
+     */
+    public CellPartitions(int[][] discreteData, int[] dims, double[][] continuousData, MemoryBudget budget) {
+        if (discreteData.length != dims.length || continuousData.length != dims.length) {
+            throw new IllegalArgumentException("Expecting one entry per column.");
+        }
+
+        this.discreteData = discreteData;
+        this.dims = dims;
+        this.account = budget.open(this);
+        this.continuousData = new double[dims.length][];
+
+        int numRows = -1;
+
+        for (int j = 0; j < dims.length; j++) {
+            int n = discreteData[j] != null ? discreteData[j].length
+                    : continuousData[j] != null ? continuousData[j].length : -1;
+
+            if (n == -1) continue;
+
+            if (numRows != -1 && n != numRows) {
+                throw new IllegalArgumentException("Column " + j + " does not have " + numRows + " rows.");
+            }
+
+            numRows = n;
+        }
+
+        this.numRows = Math.max(numRows, 0);
+
+        // Sums of cross products are taken about the means, so as not to lose precision.
+        for (int j = 0; j < dims.length; j++) {
+            double[] column = continuousData[j];
+            if (column == null) continue;
+
+            double mean = 0.0;
+            for (double x : column) mean += x;
+            mean /= column.length;
+
+            double[] centered = new double[column.length];
+            for (int i = 0; i < column.length; i++) centered[i] = column[i] - mean;
+            this.continuousData[j] = centered;
+        }
+    }
+
+    /**
+     * @return the partition of the rows by the values of the given discrete columns, which need not be
+     * sorted. For no columns, the partition has a single cell of all of the rows.
+     */
+    public Partition getPartition(int[] cols) {
+        int[] sorted = cols.clone();
+        Arrays.sort(sorted);
+
+        for (int l = 0; l < sorted.length; l++) {
+            if (dims[sorted[l]] == 0) {
+                throw new IllegalArgumentException("Not discrete: column " + sorted[l]);
+            }
+
+            if (l > 0 && sorted[l] == sorted[l - 1]) {
+                throw new IllegalArgumentException("Column " + sorted[l] + " is repeated.");
+            }
+        }
+
+        return getSortedPartition(sorted);
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the approximate size in bytes of the partitions and sums kept.
+     */
+    public long getNumBytes() {
+        return account.getNumBytes();
+    }
+
+    private Partition getSortedPartition(int[] cols) {
+        Key key = new Key(cols);
+        Partition partition = partitions.get(key);
+
+        if (partition != null) {
+            return partition;
+        }
+
+        int m = cols.length;
+
+        if (m == 0) {
+            partition = new Partition(new int[numRows], 1, new int[]{numRows});
+        } else {
+
+            // Refine a kept partition for all but one of the columns if there is one, and otherwise the
+            // partition for all but the last.
+            Partition coarser = null;
+            int col = cols[m - 1];
+
+            for (int l = m - 1; l >= 0 && coarser == null; l--) {
+                coarser = partitions.get(new Key(remove(cols, l)));
+                col = cols[l];
+            }
+
+            if (coarser == null) {
+                coarser = getSortedPartition(Arrays.copyOf(cols, m - 1));
+                col = cols[m - 1];
+            }
+
+            partition = refine(coarser, col);
+        }
+
+        long bytes = 64 + 4L * m + 4L * numRows + 4L * partition.numCells;
+
+        if (account.reserve(bytes)) {
+            Partition kept = partitions.putIfAbsent(key, partition);
+
+            if (kept != null) {
+                account.release(bytes);
+                return kept;
+            }
+
+            partition.kept = true;
+        }
+
+        return partition;
+    }
+
+    // Splits each cell of the given partition by the values of the given column, numbering the new cells
+    // in the order of their first rows.
+    private Partition refine(Partition partition, int col) {
+        int d = dims[col];
+        int[] column = discreteData[col];
+        int[] ids = new int[partition.numCells * d];
+        Arrays.fill(ids, -1);
+
+        int[] labels = new int[numRows];
+        int[] sizes = new int[Math.min(partition.numCells * d, numRows)];
+        int numCells = 0;
+
+        for (int i = 0; i < numRows; i++) {
+            int label = partition.labels[i];
+            int value = column[i];
+
+            if (label == -1 || value == -99) {
+                labels[i] = -1;
+                continue;
+            }
+
+            int index = label * d + value;
+
+            if (ids[index] == -1) {
+                ids[index] = numCells++;
+            }
+
+            labels[i] = ids[index];
+            sizes[labels[i]]++;
+        }
+
+        return new Partition(labels, numCells, Arrays.copyOf(sizes, numCells));
+    }
+
+    private static int[] remove(int[] cols, int l) {
+        int[] _cols = new int[cols.length - 1];
+        System.arraycopy(cols, 0, _cols, 0, l);
+        System.arraycopy(cols, l + 1, _cols, l, cols.length - l - 1);
+        return _cols;
+    }
+
+    /**
+     * A partition of the rows into cells, numbered from 0, with the sums of the continuous columns within
+     * its cells.
+     */
+    public final class Partition {
+
+        // The cell of each row, or -1 for none; the number of cells; and the number of rows in each.
+        private final int[] labels;
+        private final int numCells;
+        private final int[] sizes;
+
+        // Sums over each cell of the continuous columns and of their cross products, by column or pair.
+        private final Map<Integer, double[]> sums = new ConcurrentHashMap<>();
+        private final Map<Long, double[]> products = new ConcurrentHashMap<>();
+
+        // Whether the partition is kept, in which case so may be its sums.
+        private volatile boolean kept;
+
+        private Partition(int[] labels, int numCells, int[] sizes) {
+            this.labels = labels;
+            this.numCells = numCells;
+            this.sizes = sizes;
+        }
+
+        /**
+         * @return the number of cells, none of which are empty.
+         */
+        public int getNumCells() {
+            return numCells;
+        }
+
+        /**
+         * @return the number of rows in the given cell.
+         */
+        public int getSize(int cell) {
+            return sizes[cell];
+        }
+
+        /**
+         * @return the bias-corrected covariance matrix of the given continuous columns over the rows in the
+         * given cell.
+         */
+        public TetradMatrix getCovariance(int cell, int[] cols) {
+            int k = cols.length;
+            double n = sizes[cell];
+            double[] means = new double[k];
+
+            for (int a = 0; a < k; a++) {
+                means[a] = getSums(cols[a])[cell] / n;
+            }
+
+            TetradMatrix cov = new TetradMatrix(k, k);
+
+            for (int a = 0; a < k; a++) {
+                for (int b = a; b < k; b++) {
+                    double s = (getProducts(cols[a], cols[b])[cell] - n * means[a] * means[b]) / (n - 1);
+                    cov.set(a, b, s);
+                    cov.set(b, a, s);
+                }
+            }
+
+            return cov;
+        }
+
+        private double[] getSums(int col) {
+            double[] s = sums.get(col);
+            if (s != null) return s;
+
+            double[] x = continuous(col);
+            s = new double[numCells];
+
+            for (int i = 0; i < numRows; i++) {
+                int label = labels[i];
+                if (label != -1) s[label] += x[i];
+            }
+
+            if (kept && account.reserve(64 + 8L * numCells) && sums.putIfAbsent(col, s) != null) {
+                account.release(64 + 8L * numCells);
+            }
+
+            return s;
+        }
+
+        private double[] getProducts(int col1, int col2) {
+            long key = ((long) Math.min(col1, col2) << 32) | Math.max(col1, col2);
+            double[] s = products.get(key);
+            if (s != null) return s;
+
+            double[] x = continuous(col1);
+            double[] y = continuous(col2);
+            s = new double[numCells];
+
+            for (int i = 0; i < numRows; i++) {
+                int label = labels[i];
+                if (label != -1) s[label] += x[i] * y[i];
+            }
+
+            if (kept && account.reserve(64 + 8L * numCells) && products.putIfAbsent(key, s) != null) {
+                account.release(64 + 8L * numCells);
+            }
+
+            return s;
+        }
+
+        private double[] continuous(int col) {
+            if (continuousData[col] == null) {
+                throw new IllegalArgumentException("Not continuous: column " + col);
+            }
+
+            return continuousData[col];
+        }
+    }
+
+    // A set of sorted columns, as a key.
+    private static final class Key {
+        private final int[] cols;
+        private final int hashCode;
+
+        private Key(int[] cols) {
+            this.cols = cols;
+            this.hashCode = Arrays.hashCode(cols);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(cols, ((Key) o).cols);
+        }
+    }
+}
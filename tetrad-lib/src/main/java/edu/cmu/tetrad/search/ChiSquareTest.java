@@ -55,6 +55,16 @@ public class ChiSquareTest {
      */
     private CellTable cellTable;
 
+    /**
+     * Counts the data for the cell table.
+     */
+    private DiscreteCounts counts;
+
+    /**
+     * Holds the counts for the cell table. (Reused.)
+     */
+    private int[] countBuffer = new int[0];
+
     /**
      * The significance level of the test.
      */
@@ -86,6 +96,7 @@ public class ChiSquareTest {
         this.alpha = alpha;
         this.cellTable = new CellTable(null);
         this.getCellTable().setMissingValue(DiscreteVariable.MISSING_VALUE);
+        this.counts = new DiscreteCounts(dataSet);
     }
 
     /**
@@ -97,7 +108,7 @@ public class ChiSquareTest {
 
         // Reset the cell table for the columns referred to in
         // 'testIndices.' Do cell coefs for those columns.
-        this.getCellTable().addToTable(getDataSet(), testIndices);
+        addToTable(testIndices);
 
         // Indicator arrays to tell the cell table which margins
         // to calculate. For x _||_ y | z1, z2, ..., we want to
@@ -223,7 +234,7 @@ public class ChiSquareTest {
 
         // Reset the cell table for the columns referred to in
         // 'testIndices.' Do cell coefs for those columns.
-        this.getCellTable().addToTable(getDataSet(), testIndices);
+        addToTable(testIndices);
 
         // Indicator arrays to tell the cell table which margins
         // to calculate. For x _||_ y | z1, z2, ..., we want to
@@ -371,6 +382,34 @@ public class ChiSquareTest {
 
     //================================PRIVATE==============================//
 
+    /**
+     * Resets the cell table to the counts for the variables at the given indices.
+     */
+    protected synchronized void addToTable(int[] testIndices) {
+        int[] dims = selectFromArray(getDims(), testIndices);
+        long numCells = 1;
+
+        for (int dim : dims) {
+            numCells *= dim;
+        }
+
+        // A table with more cells than there are rows is mostly empty, so it is counted afresh, sparsely,
+        // rather than kept.
+        if (numCells > dataSet.getNumRows()) {
+            getCellTable().addToTable(getDataSet(), testIndices);
+            return;
+        }
+
+        if (countBuffer.length < numCells) {
+            countBuffer = new int[(int) numCells];
+        } else {
+            Arrays.fill(countBuffer, 0, (int) numCells, 0);
+        }
+
+        counts.count(testIndices, countBuffer);
+        getCellTable().setCounts(dims, countBuffer);
+    }
+
     public int[] selectFromArray(int[] arr, int[] indices) {
         int[] retArr = new int[indices.length];
 
@@ -0,0 +1,209 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+
+import java.util.Arrays;
+
+/**
+ * The regression of a variable y onto a list of parents, kept as the Cholesky factor L of the parents'
+ * covariance matrix together with w = L^-1 cov(parents, y), so that the residual variance of y is
+ * var(y) - w'w. Adding a parent extends L by one row, and removing a parent deletes a row and restores
+ * triangularity with Givens rotations, both in O(p^2) time for p parents rather than the O(p^3) needed
+ * to invert the parents' covariance matrix from scratch.
+ * <p>
+ * Instances are immutable; rows of L are shared between a regression and the ones derived from it.
+ *
+ * @author Joseph Ramsey
+ */
+final class CholeskyRegression {
+
+    // Relative size of a new diagonal element below which the parents are taken to be linearly dependent.
+    private static final double TOLERANCE = 1e-10;
+
+    private final int y;
+    private final int[] parents;
+
+    // Lower triangular factor, stored by rows; row i has i + 1 entries.
+    private final double[][] l;
+    private final double[] w;
+    private final double varY;
+    private final double residualVariance;
+
+    private CholeskyRegression(int y, int[] parents, double[][] l, double[] w, double varY) {
+        this.y = y;
+        this.parents = parents;
+        this.l = l;
+        this.w = w;
+        this.varY = varY;
+
+        double ww = 0.0;
+        for (double _w : w) ww += _w * _w;
+        this.residualVariance = varY - ww;
+    }
+
+    /**
+     * @return the regression of y onto no parents.
+     */
+    static CholeskyRegression empty(ICovarianceMatrix cov, int y) {
+        return new CholeskyRegression(y, new int[0], new double[0][], new double[0], cov.getValue(y, y));
+    }
+
+    /**
+     * @return the regression of y onto the given parents, built up one parent at a time, or null if the
+     * parents are linearly dependent.
+     */
+    static CholeskyRegression regress(ICovarianceMatrix cov, int y, int[] parents) {
+        CholeskyRegression regression = empty(cov, y);
+
+        for (int parent : parents) {
+            regression = regression.extend(cov, parent);
+            if (regression == null) return null;
+        }
+
+        return regression;
+    }
+
+    /**
+     * @return the regression with x added as the last parent, or null if x is linearly dependent on
+     * the existing parents.
+     */
+    CholeskyRegression extend(ICovarianceMatrix cov, int x) {
+        int p = parents.length;
+        double[] row = new double[p + 1];
+        double ll = 0.0;
+        double lw = 0.0;
+
+        // Forward substitution for L row = cov(parents, x).
+        for (int k = 0; k < p; k++) {
+            double[] lk = l[k];
+            double sum = cov.getValue(parents[k], x);
+
+            for (int m = 0; m < k; m++) {
+                sum -= lk[m] * row[m];
+            }
+
+            row[k] = sum / lk[k];
+            ll += row[k] * row[k];
+            lw += row[k] * w[k];
+        }
+
+        double varX = cov.getValue(x, x);
+        double d2 = varX - ll;
+
+        if (!(d2 > TOLERANCE * varX)) {
+            return null;
+        }
+
+        double d = Math.sqrt(d2);
+        row[p] = d;
+
+        double[][] _l = Arrays.copyOf(l, p + 1);
+        _l[p] = row;
+
+        double[] _w = Arrays.copyOf(w, p + 1);
+        _w[p] = (cov.getValue(x, y) - lw) / d;
+
+        int[] _parents = Arrays.copyOf(parents, p + 1);
+        _parents[p] = x;
+
+        return new CholeskyRegression(y, _parents, _l, _w, varY);
+    }
+
+    /**
+     * @return the regression with the given parent removed. The parent must be one of the parents.
+     */
+    CholeskyRegression remove(int x) {
+        int p = parents.length;
+        int k = indexOf(x);
+
+        if (k == -1) {
+            throw new IllegalArgumentException("Not a parent: " + x);
+        }
+
+        // Drop row k. Rows below it keep one entry too many and are copied so they can be rotated.
+        double[][] _l = new double[p - 1][];
+        System.arraycopy(l, 0, _l, 0, k);
+
+        for (int i = k + 1; i < p; i++) {
+            _l[i - 1] = Arrays.copyOf(l[i], i + 1);
+        }
+
+        double[] _w = Arrays.copyOf(w, p);
+
+        // Rotate columns (j, j + 1) to zero the entry just above the diagonal in row j.
+        for (int j = k; j < p - 1; j++) {
+            double a = _l[j][j];
+            double b = _l[j][j + 1];
+            double r = Math.hypot(a, b);
+            double c = a / r;
+            double s = b / r;
+
+            for (int i = j; i < p - 1; i++) {
+                double[] li = _l[i];
+                double u = li[j];
+                double v = li[j + 1];
+                li[j] = c * u + s * v;
+                li[j + 1] = -s * u + c * v;
+            }
+
+            double u = _w[j];
+            double v = _w[j + 1];
+            _w[j] = c * u + s * v;
+            _w[j + 1] = -s * u + c * v;
+        }
+
+        for (int i = k; i < p - 1; i++) {
+            _l[i] = Arrays.copyOf(_l[i], i + 1);
+        }
+
+        int[] _parents = new int[p - 1];
+        System.arraycopy(parents, 0, _parents, 0, k);
+        System.arraycopy(parents, k + 1, _parents, k, p - 1 - k);
+
+        return new CholeskyRegression(y, _parents, _l, Arrays.copyOf(_w, p - 1), varY);
+    }
+
+    int getY() {
+        return y;
+    }
+
+    int[] getParents() {
+        return parents;
+    }
+
+    /**
+     * @return var(y) minus the variance explained by the parents.
+     */
+    double getResidualVariance() {
+        return residualVariance;
+    }
+
+    private int indexOf(int x) {
+        for (int i = 0; i < parents.length; i++) {
+            if (parents[i] == x) return i;
+        }
+
+        return -1;
+    }
+}
@@ -25,7 +25,6 @@
         import edu.cmu.tetrad.graph.Node;
         import edu.cmu.tetrad.util.TetradMatrix;
         import org.apache.commons.math3.linear.RealMatrix;
-        import org.apache.commons.math3.stat.correlation.Covariance;
         import org.apache.commons.math3.util.FastMath;
 
         import java.util.*;
@@ -54,21 +53,15 @@ public class ConditionalGaussianLikelihood {
     // The mixedVariables of the mixed data set.
     private List<Node> mixedVariables;
 
-    // Indices of mixedVariables.
-    private Map<Node, Integer> nodesHash;
-
     // Continuous data only.
     private double[][] continuousData;
 
-    // The AD Tree used to count discrete cells.
-    private AdLeafTree adTree;
+    // The partitions of the rows by values of the discrete (or discretized) variables.
+    private CellPartitions partitions;
 
     // Multiplier on degrees of freedom for the continuous portion of those degrees.
     private double penaltyDiscount = 1;
 
-    // "Cell" consisting of all rows.
-    private final ArrayList<Integer> all;
-
     // Discretize the parents
     private boolean discretize = false;
 
@@ -118,29 +111,21 @@ public class ConditionalGaussianLikelihood {
             Node v = dataSet.getVariable(j);
 
             if (v instanceof ContinuousVariable) {
-                double[] col = new double[dataSet.getNumRows()];
-
-                for (int i = 0; i < dataSet.getNumRows(); i++) {
-                    col[i] = dataSet.getDouble(i, j);
-                }
-
-                continuousData[j] = col;
+                continuousData[j] = dataSet.getDoubleColumn(j);
             }
         }
 
-        nodesHash = new HashMap<>();
+        this.dataSet = useErsatzVariables();
+
+        int[][] discreteData = new int[dataSet.getNumColumns()][];
+        int[] dims = new int[dataSet.getNumColumns()];
 
         for (int j = 0; j < dataSet.getNumColumns(); j++) {
-            Node v = dataSet.getVariable(j);
-            nodesHash.put(v, j);
+            discreteData[j] = this.dataSet.getIntColumn(j);
+            dims[j] = ((DiscreteVariable) this.dataSet.getVariable(j)).getNumCategories();
         }
 
-        this.dataSet = useErsatzVariables();
-        this.adTree = new AdLeafTree(this.dataSet);
-
-        all = new ArrayList<>();
-        for (int i = 0; i < dataSet.getNumRows(); i++) all.add(i);
-
+        this.partitions = new CellPartitions(discreteData, dims, continuousData);
     }
 
     private DataSet useErsatzVariables() {
@@ -155,13 +140,11 @@ public class ConditionalGaussianLikelihood {
             }
         }
 
-        DataSet replaced = new BoxDataSet(new VerticalIntDataBox(mixedDataSet.getNumRows(), mixedDataSet.getNumColumns()), nodes);
+        int[][] discreteData = new int[mixedVariables.size()][];
 
         for (int j = 0; j < mixedVariables.size(); j++) {
             if (mixedVariables.get(j) instanceof DiscreteVariable) {
-                for (int i = 0; i < mixedDataSet.getNumRows(); i++) {
-                    replaced.setInt(i, j, mixedDataSet.getInt(i, j));
-                }
+                discreteData[j] = mixedDataSet.getIntColumn(j);
             } else {
                 double[] column = continuousData[j];
 
@@ -174,14 +157,11 @@ public class ConditionalGaussianLikelihood {
                 }
 
                 Discretization d = discretize(column, breakpoints, mixedVariables.get(j).getName(), categoryNames);
-
-                for (int i = 0; i < mixedDataSet.getNumRows(); i++) {
-                    replaced.setInt(i, j, d.getData()[i]);
-                }
+                discreteData[j] = d.getData();
             }
         }
 
-        return replaced;
+        return new BoxDataSet(new VerticalIntDataBox(discreteData), nodes);
     }
 
     /**
@@ -193,32 +173,31 @@ public class ConditionalGaussianLikelihood {
      * @return The likelihood.
      */
     public Ret getLikelihood(int i, int[] parents) {
-        Node target = mixedVariables.get(i);
+        boolean targetDiscrete = mixedVariables.get(i) instanceof DiscreteVariable;
 
-        List<ContinuousVariable> X = new ArrayList<>();
-        List<DiscreteVariable> A = new ArrayList<>();
+        int[] X = new int[parents.length];
+        int[] A = new int[parents.length];
+        int numX = 0, numA = 0;
 
         for (int p : parents) {
-            Node parent = mixedVariables.get(p);
-
-            if (parent instanceof ContinuousVariable) {
-                X.add((ContinuousVariable) parent);
+            if (mixedVariables.get(p) instanceof ContinuousVariable) {
+                X[numX++] = p;
             } else {
-                A.add((DiscreteVariable) parent);
+                A[numA++] = p;
             }
         }
 
-        List<ContinuousVariable> XPlus = new ArrayList<>(X);
-        List<DiscreteVariable> APlus = new ArrayList<>(A);
+        int[] XPlus = Arrays.copyOf(X, numX + (targetDiscrete ? 0 : 1));
+        int[] APlus = Arrays.copyOf(A, numA + (targetDiscrete ? 1 : 0));
 
-        if (target instanceof ContinuousVariable) {
-            XPlus.add((ContinuousVariable) target);
-        } else if (target instanceof DiscreteVariable) {
-            APlus.add((DiscreteVariable) target);
+        if (targetDiscrete) {
+            APlus[numA] = i;
+        } else {
+            XPlus[numX] = i;
         }
 
-        Ret ret1 = likelihoodJoint(XPlus, APlus, target);
-        Ret ret2 = likelihoodJoint(X, A, target);
+        Ret ret1 = likelihoodJoint(XPlus, APlus, targetDiscrete);
+        Ret ret2 = likelihoodJoint(Arrays.copyOf(X, numX), Arrays.copyOf(A, numA), targetDiscrete);
 
         return new Ret(ret1.getLik() - ret2.getLik(), ret1.getDof() - ret2.getDof());
     }
@@ -240,52 +219,39 @@ public class ConditionalGaussianLikelihood {
     }
 
     // The likelihood of the joint over all of these mixedVariables, assuming conditional Gaussian,
-    // continuous and discrete.
-    private Ret likelihoodJoint(List<ContinuousVariable> X, List<DiscreteVariable> A, Node target) {
-        A = new ArrayList<>(A);
-        X = new ArrayList<>(X);
-
-        if (discretize) {
-            if (target instanceof DiscreteVariable) {
-                for (ContinuousVariable x : new ArrayList<>(X)) {
-                    final Node variable = dataSet.getVariable(x.getName());
-
-                    if (variable != null) {
-                        A.add((DiscreteVariable) variable);
-                        X.remove(x);
-                    }
-                }
-            }
+    // continuous and discrete, given by column.
+    private Ret likelihoodJoint(int[] X, int[] A, boolean targetDiscrete) {
+        if (discretize && targetDiscrete) {
+            int[] _A = Arrays.copyOf(A, A.length + X.length);
+            System.arraycopy(X, 0, _A, A.length, X.length);
+            A = _A;
+            X = new int[0];
         }
 
-        int k = X.size();
-
-        int[] continuousCols = new int[k];
-        for (int j = 0; j < k; j++) continuousCols[j] = nodesHash.get(X.get(j));
+        int k = X.length;
         int N = mixedDataSet.getNumRows();
 
         double c1 = 0, c2 = 0;
 
-        List<List<Integer>> cells = adTree.getCellLeaves(A);
-        //List<List<Integer>> cells = partition(A);
+        CellPartitions.Partition cells = partitions.getPartition(A);
+        CellPartitions.Partition all = partitions.getPartition(new int[0]);
 
-        for (List<Integer> cell : cells) {
-            int a = cell.size();
-            if (a == 0) continue;
+        for (int cell = 0; cell < cells.getNumCells(); cell++) {
+            int a = cells.getSize(cell);
 
-            if (A.size() > 0) {
+            if (A.length > 0) {
                 c1 += a * multinomialLikelihood(a, N);
             }
 
-            if (X.size() > 0) {
+            if (k > 0) {
                 try {
 
                     // Determinant will be zero if data are linearly dependent.
-                    if (a > continuousCols.length + 5) {
-                        TetradMatrix cov = cov(getSubsample(continuousCols, cell));
+                    if (a > k + 5) {
+                        TetradMatrix cov = cells.getCovariance(cell, X);
                         c2 += a * gaussianLikelihood(k, cov);
                     } else {
-                        TetradMatrix cov = cov(getSubsample(continuousCols, all));
+                        TetradMatrix cov = all.getCovariance(0, X);
                         c2 += a * gaussianLikelihood(k, cov);
                     }
                 } catch (Exception e) {
@@ -322,30 +288,13 @@ public class ConditionalGaussianLikelihood {
         return 2.0 * sum;
     }
 
-    private TetradMatrix cov(TetradMatrix x) {
-        return new TetradMatrix(new Covariance(x.getRealMatrix(), true).getCovarianceMatrix());
-    }
-
-    // Subsample of the continuous mixedVariables conditioning on the given cell.
-    private TetradMatrix getSubsample(int[] continuousCols, List<Integer> cell) {
-        TetradMatrix subset = new TetradMatrix(cell.size(), continuousCols.length);
-
-        for (int i = 0; i < cell.size(); i++) {
-            for (int j = 0; j < continuousCols.length; j++) {
-                subset.set(i, j, continuousData[continuousCols[j]][cell.get(i)]);
-            }
-        }
-
-        return subset;
-    }
-
     // Degrees of freedom for a discrete distribution is the product of the number of categories for each
     // variable.
-    private int f(List<DiscreteVariable> A) {
+    private int f(int[] A) {
         int f = 1;
 
-        for (DiscreteVariable V : A) {
-            f *= V.getNumCategories();
+        for (int a : A) {
+            f *= ((DiscreteVariable) dataSet.getVariable(a)).getNumCategories();
         }
 
         return f;
@@ -353,8 +302,8 @@ public class ConditionalGaussianLikelihood {
 
     // Degrees of freedom for a multivariate Gaussian distribution is p * (p + 1) / 2, where p is the number
     // of mixedVariables. This is the number of unique entries in the covariance matrix over X.
-    private int h(List<ContinuousVariable> X) {
-        int p = X.size();
+    private int h(int[] X) {
+        int p = X.length;
         return p * (p + 1) / 2;
     }
 }
\ No newline at end of file
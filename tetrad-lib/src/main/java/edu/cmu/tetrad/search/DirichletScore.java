@@ -31,9 +31,11 @@ import java.util.List;
  */
 public class DirichletScore implements LocalDiscreteScore, Score {
     private List<Node> variables;
-    private int[][] data;
     private int sampleSize;
 
+    // Counts the data.
+    private DiscreteCounts counts;
+
     private double samplePrior = 1;
     private double structurePrior = 1;
 
@@ -46,33 +48,9 @@ public class DirichletScore implements LocalDiscreteScore, Score {
             throw new NullPointerException();
         }
 
-        if (dataSet instanceof BoxDataSet) {
-            DataBox dataBox = ((BoxDataSet) dataSet).getDataBox();
-
-            this.variables = dataSet.getVariables();
-
-            if (!(((BoxDataSet) dataSet).getDataBox() instanceof VerticalIntDataBox)) {
-                throw new IllegalArgumentException();
-            }
-
-            VerticalIntDataBox box = (VerticalIntDataBox) dataBox;
-
-            data = box.getVariableVectors();
-            this.sampleSize = dataSet.getNumRows();
-        } else {
-            data = new int[dataSet.getNumColumns()][];
-            this.variables = dataSet.getVariables();
-
-            for (int j = 0; j < dataSet.getNumColumns(); j++) {
-                data[j] = new int[dataSet.getNumRows()];
-
-                for (int i = 0; i < dataSet.getNumRows(); i++) {
-                    data[j][i] = dataSet.getInt(i, j);
-                }
-            }
-
-            this.sampleSize = dataSet.getNumRows();
-        }
+        this.variables = dataSet.getVariables();
+        this.sampleSize = dataSet.getNumRows();
+        this.counts = new DiscreteCounts(dataSet);
 
         final List<Node> variables = dataSet.getVariables();
         numCategories = new int[variables.size()];
@@ -109,31 +87,21 @@ public class DirichletScore implements LocalDiscreteScore, Score {
         int n_jk[][] = new int[q][r];
         int n_j[] = new int[q];
 
-        int[] parentValues = new int[parents.length];
-
-        int[][] myParents = new int[parents.length][];
-        for (int i = 0; i < parents.length; i++) {
-            myParents[i] = data[parents[i]];
-        }
-
-        int[] myChild = data[node];
-
-        for (int i = 0; i < sampleSize; i++) {
-            for (int p = 0; p < parents.length; p++) {
-                parentValues[p] = myParents[p][i];
-            }
-
-            int childValue = myChild[i];
-
-            if (childValue == -99) {
+        for (int col : append(parents, node)) {
+            if (counts.hasMissingValues(col)) {
                 throw new IllegalStateException("Please remove or impute missing " +
-                        "values (record " + i + " column " + i + ")");
+                        "values (column " + col + ")");
             }
+        }
 
-            int rowIndex = getRowIndex(dims, parentValues);
+        // The parents and the node are counted together.
+        int[] counts = this.counts.getCounts(append(parents, node));
 
-            n_jk[rowIndex][childValue]++;
-            n_j[rowIndex]++;
+        for (int j = 0; j < q; j++) {
+            for (int k = 0; k < r; k++) {
+                n_jk[j][k] = counts[j * r + k];
+                n_j[j] += n_jk[j][k];
+            }
         }
 
         //Finally, compute the score
@@ -177,7 +145,7 @@ public class DirichletScore implements LocalDiscreteScore, Score {
     private double getPriorForStructure(int numParents) {
         double e = getStructurePrior();
         double k = numParents;
-        double n = data.length;
+        double n = variables.size();
         return k * Math.log(e / n) + (n - k) * Math.log(1.0 - (e / n));
     }
 
@@ -305,15 +273,6 @@ public class DirichletScore implements LocalDiscreteScore, Score {
         throw new UnsupportedOperationException();
     }
 
-    private static int getRowIndex(int[] dim, int[] values) {
-        int rowIndex = 0;
-        for (int i = 0; i < dim.length; i++) {
-            rowIndex *= dim[i];
-            rowIndex += values[i];
-        }
-        return rowIndex;
-    }
-
     public double getStructurePrior() {
         return structurePrior;
     }
@@ -0,0 +1,286 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.MemoryBudget;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the rows of a discrete data set having each combination of values of given variables, for the
+ * discrete scores and tests. The counts for each set of variables are kept, up to a memory budget, so
+ * that asking for them again, as searches often do, costs only the size of the table rather than a pass
+ * over the data; once the budget is used up, new sets are counted but not kept. The counts may be asked
+ * for from several threads at once.
+ * <p>
+ * Rows missing a value of any of the variables counted are skipped. Data in a PackedDiscreteDataBox are
+ * counted in place. The data are read when the counts are constructed, so they should be constructed
+ * again if the data change.
+ *
+ * @author Joseph Ramsey
+ */
+public final class DiscreteCounts {
+
+    private final List<Node> variables;
+    private final int numRows;
+
+    // The columns of the data and their numbers of categories, or null and 0 for columns that are not
+    // discrete.
+    private final int[][] columns;
+    private final int[] dims;
+
+    // Whether each column has missing values.
+    private final boolean[] missing;
+
+    // The data if they are bit-packed, in which case columns is null.
+    private final PackedDiscreteDataBox packedData;
+
+    // The counts for sets of sorted columns that have been counted, and the account their approximate
+    // size in bytes is reserved from.
+    private final Map<Key, int[]> tables = new ConcurrentHashMap<>();
+    private final MemoryBudget.Account account;
+
+    /**
+     * Constructs counts for the given data set, keeping them within the budget shared by all caches that
+     * are not given one of their own, so that the counts of many scores and tests together stay within
+     * it.
+     */
+    public DiscreteCounts(DataSet dataSet) {
+        this(dataSet, MemoryBudget.shared());
+    }
+
+    /**
+     * Constructs counts for the given data set, keeping at most about the given number of bytes of them.
+     * Only the discrete variables of the data set can be counted.
+     */
+    public DiscreteCounts(DataSet dataSet, long maxBytes) {
+        this(dataSet, new MemoryBudget(maxBytes));
+    }
+
+    /**
+     * Constructs counts for the given data set, keeping them within the given budget.
+     */
+    public DiscreteCounts(DataSet dataSet, MemoryBudget budget) {
+        this.variables = dataSet.getVariables();
+        this.numRows = dataSet.getNumRows();
+        this.account = budget.open(this);
+        this.dims = new int[variables.size()];
+        this.missing = new boolean[variables.size()];
+
+        DataBox box = dataSet instanceof BoxDataSet ? ((BoxDataSet) dataSet).getDataBox() : null;
+        this.packedData = box instanceof PackedDiscreteDataBox ? (PackedDiscreteDataBox) box : null;
+        this.columns = packedData == null ? new int[variables.size()][] : null;
+
+        for (int j = 0; j < variables.size(); j++) {
+            if (!(variables.get(j) instanceof DiscreteVariable)) {
+                continue;
+            }
+
+            dims[j] = ((DiscreteVariable) variables.get(j)).getNumCategories();
+            int[] column = dataSet.getIntColumn(j);
+
+            for (int value : column) {
+                if (value == DiscreteVariable.MISSING_VALUE) {
+                    missing[j] = true;
+                    break;
+                }
+            }
+
+            if (columns != null) {
+                columns[j] = column;
+            }
+        }
+    }
+
+    /**
+     * @return the counts of the rows having each combination of values of the given columns, skipping rows
+     * with missing values, in the order of MultiDimIntTable: the count for values (v_0, ..., v_m-1) of
+     * cols[0], ..., cols[m - 1] is at (...(v_0 * d_1 + v_1) * d_2 + ...) * d_m-1 + v_m-1, where d_i is the
+     * number of categories of cols[i].
+     */
+    public int[] getCounts(int[] cols) {
+        int numCells = 1;
+
+        for (int col : cols) {
+            numCells *= dims[col];
+        }
+
+        int[] counts = new int[numCells];
+        count(cols, counts);
+        return counts;
+    }
+
+    /**
+     * Adds the counts of getCounts(cols) to the given array.
+     */
+    public void count(int[] cols, int[] counts) {
+        int m = cols.length;
+
+        // Tables are kept for sorted columns, so the columns are sorted, carrying along the stride of each
+        // in the counts.
+        int[] sorted = new int[m];
+        int[] strides = new int[m];
+        int stride = 1;
+
+        for (int i = m - 1; i >= 0; i--) {
+            int k = i + 1;
+
+            while (k < m && sorted[k] < cols[i]) {
+                sorted[k - 1] = sorted[k];
+                strides[k - 1] = strides[k];
+                k++;
+            }
+
+            if (dims[cols[i]] == 0) {
+                throw new IllegalArgumentException("Not discrete: " + variables.get(cols[i]));
+            }
+
+            if (k < m && sorted[k] == cols[i]) {
+                throw new IllegalArgumentException("Column " + cols[i] + " is repeated.");
+            }
+
+            sorted[k - 1] = cols[i];
+            strides[k - 1] = stride;
+            stride *= dims[cols[i]];
+        }
+
+        int[] table = getTable(sorted);
+        int[] values = new int[m];
+        int index = 0;
+
+        for (int cell = 0; cell < table.length; cell++) {
+            counts[index] += table[cell];
+
+            // The next cell, with the last column varying fastest.
+            for (int l = m - 1; l >= 0; l--) {
+                index += strides[l];
+
+                if (++values[l] < dims[sorted[l]]) {
+                    break;
+                }
+
+                index -= values[l] * strides[l];
+                values[l] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the variables of the data set.
+     */
+    public List<Node> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the number of rows of the data set.
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the number of categories of the variable in the given column, or 0 if it is not discrete.
+     */
+    public int getNumCategories(int col) {
+        return dims[col];
+    }
+
+    /**
+     * @return true if the given column has missing values.
+     */
+    public boolean hasMissingValues(int col) {
+        return missing[col];
+    }
+
+    /**
+     * @return the approximate size in bytes of the counts kept.
+     */
+    public long getNumBytes() {
+        return account.getNumBytes();
+    }
+
+    // Returns the counts for the given sorted columns, from the table kept for them if there is one.
+    private int[] getTable(int[] cols) {
+        Key key = new Key(cols);
+        int[] table = tables.get(key);
+
+        if (table != null) {
+            return table;
+        }
+
+        int m = cols.length;
+        int[] _dims = new int[m];
+        int numCells = 1;
+
+        for (int l = 0; l < m; l++) {
+            _dims[l] = dims[cols[l]];
+            numCells *= _dims[l];
+        }
+
+        table = new int[numCells];
+
+        if (packedData != null) {
+            packedData.count(cols, _dims, table);
+        } else {
+            int[][] _columns = new int[m][];
+
+            for (int l = 0; l < m; l++) {
+                _columns[l] = columns[cols[l]];
+            }
+
+            CellCounter.count(_columns, _dims, null, numRows, DiscreteVariable.MISSING_VALUE, table);
+        }
+
+        if (account.reserve(64 + 4L * m + 4L * numCells) && tables.putIfAbsent(key, table) != null) {
+            account.release(64 + 4L * m + 4L * numCells);
+        }
+
+        return table;
+    }
+
+    // A set of sorted columns, as a key.
+    private static final class Key {
+        private final int[] cols;
+        private final int hashCode;
+
+        private Key(int[] cols) {
+            this.cols = cols;
+            this.hashCode = Arrays.hashCode(cols);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(cols, ((Key) o).cols);
+        }
+    }
+}
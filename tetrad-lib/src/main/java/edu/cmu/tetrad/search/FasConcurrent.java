@@ -25,7 +25,7 @@ import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.SearchExecutor;
 import edu.cmu.tetrad.util.TetradLogger;
 
 import java.io.PrintStream;
@@ -92,8 +92,8 @@ public class FasConcurrent implements IFas {
      */
     private boolean verbose = false;
 
-    // The concurrency pool.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    // The executor the tests at each depth are run on.
+    private SearchExecutor executor = SearchExecutor.shared();
 
     /**
      * Where verbose output is sent.
@@ -168,7 +168,7 @@ public class FasConcurrent implements IFas {
                 more = searchAtDepth(d, nodes, adjacencies);
             }
 
-            if (!more) {
+            if (!more || executor.isCanceled()) {
                 break;
             }
         }
@@ -225,17 +225,13 @@ public class FasConcurrent implements IFas {
             tasks.add(new Depth0Task(i));
         }
 
-        ExecutorService pool = Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors());
-
         try {
-            List<Future<Boolean>> futures = pool.invokeAll(tasks);
+            executor.invokeAll(tasks);
         } catch (InterruptedException exception) {
             this.out.print("Task has been interrupted");
             Thread.currentThread().interrupt();
         }
 
-        shutdownAndAwaitTermination(pool);
-
         return freeDegree(nodes, adjacencies) > depth;
     }
 
@@ -284,17 +280,13 @@ public class FasConcurrent implements IFas {
             tasks.add(new DepthTask(i, depth));
         }
 
-        ExecutorService pool = Executors.newWorkStealingPool(Runtime.getRuntime().availableProcessors());
-
         try {
-            List<Future<Boolean>> futures = pool.invokeAll(tasks);
+            executor.invokeAll(tasks);
         } catch (InterruptedException exception) {
             this.out.printf("Task has been interrupted");//, dateTimeNow(), task.run.index + 1);
             Thread.currentThread().interrupt();
         }
 
-        shutdownAndAwaitTermination(pool);
-
         return freeDegree(nodes, adjacencies) > depth;
     }
 
@@ -359,7 +351,7 @@ public class FasConcurrent implements IFas {
             if ((i + 1) % 100 == 0) out.println("Node # " + (i + 1));
         }
 
-        if (Thread.currentThread().isInterrupted()) {
+        if (Thread.currentThread().isInterrupted() || executor.isCanceled()) {
             return;
         }
 
@@ -409,7 +401,7 @@ public class FasConcurrent implements IFas {
 
         Node x = nodes.get(i);
 
-        if (Thread.currentThread().isInterrupted()) {
+        if (Thread.currentThread().isInterrupted() || executor.isCanceled()) {
             return;
         }
 
@@ -426,7 +418,7 @@ public class FasConcurrent implements IFas {
                 int[] choice;
 
                 while ((choice = cg.next()) != null) {
-                    if (Thread.currentThread().isInterrupted()) {
+                    if (Thread.currentThread().isInterrupted() || executor.isCanceled()) {
                         return;
                     }
 
@@ -579,27 +571,23 @@ public class FasConcurrent implements IFas {
         return out;
     }
 
-    private void shutdownAndAwaitTermination(ExecutorService pool) {
-        pool.shutdown(); // Disable new tasks from being submitted
-        try {
-            // Wait a while for existing tasks to terminate
-            if (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
-                pool.shutdownNow(); // Cancel currently executing tasks
-                // Wait a while for tasks to respond to being cancelled
-                if (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
-                    System.err.println("Pool did not terminate");
-                }
-            }
-        } catch (InterruptedException ie) {
-            // (Re-)Cancel if current thread also interrupted
-            pool.shutdownNow();
-            // Preserve interrupt status
-            Thread.currentThread().interrupt();
+    public void setStable(boolean stable) {
+        this.stable = stable;
+    }
+
+    /**
+     * Sets the executor the tests at each depth are run on. By default this is the shared pool.
+     */
+    public void setExecutor(SearchExecutor executor) {
+        if (executor == null) {
+            throw new NullPointerException("Executor not provided.");
         }
+
+        this.executor = executor;
     }
 
-    public void setStable(boolean stable) {
-        this.stable = stable;
+    public SearchExecutor getExecutor() {
+        return executor;
     }
 }
 
@@ -25,12 +25,17 @@ import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
+import edu.cmu.tetrad.util.SearchExecutor;
 import edu.cmu.tetrad.util.TetradLogger;
 
 import java.io.PrintStream;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Implements the "fast adjacency search" used in several causal algorithm in this package. In the fast adjacency
@@ -119,6 +124,16 @@ public class FasStable implements IFas {
 
     private PrintStream out = System.out;
 
+    /**
+     * True iff the tests at each depth should be run in parallel. The result is the same either way.
+     */
+    private boolean parallel = false;
+
+    /**
+     * The executor the tests at each depth are run on in parallel mode.
+     */
+    private SearchExecutor executor = SearchExecutor.shared();
+
     //==========================CONSTRUCTORS=============================//
 
     /**
@@ -262,47 +277,36 @@ public class FasStable implements IFas {
 
     //==============================PRIVATE METHODS======================/
 
-    private boolean searchAtDepth0(List<Node> nodes, IndependenceTest test, Map<Node, Set<Node>> adjacencies) {
-        List<Node> empty = Collections.emptyList();
+    private boolean searchAtDepth0(final List<Node> nodes, final IndependenceTest test, Map<Node, Set<Node>> adjacencies) {
+        final List<Node> empty = Collections.emptyList();
+        List<Callable<NodeResult>> tasks = new ArrayList<>();
+
         for (int i = 0; i < nodes.size(); i++) {
+            final int _i = i;
+
+            tasks.add(new Callable<NodeResult>() {
+                public NodeResult call() {
+                    return testNodeAtDepth0(_i, nodes, test);
+                }
+            });
+        }
+
+        List<NodeResult> results = runAll(tasks);
+
+        for (int i = 0; i < results.size(); i++) {
             if (verbose) {
                 if ((i + 1) % 100 == 0) out.println("Node # " + (i + 1));
             }
 
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
+            NodeResult result = results.get(i);
+            if (result == null) break;
+            addCounts(result);
 
             Node x = nodes.get(i);
 
-            for (int j = i + 1; j < nodes.size(); j++) {
-
-                Node y = nodes.get(j);
-
-                if (initialGraph != null) {
-                    Node x2 = initialGraph.getNode(x.getName());
-                    Node y2 = initialGraph.getNode(y.getName());
-
-                    if (!initialGraph.isAdjacentTo(x2, y2)) {
-                        continue;
-                    }
-                }
-
-                boolean independent;
-
-                try {
-                    numIndependenceTests++;
-                    independent = test.isIndependent(x, y, empty);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    independent = false;
-                }
-
-                if (independent) {
-                    numIndependenceJudgements++;
-                } else {
-                    numDependenceJudgement++;
-                }
+            for (int k = 0; k < result.ys.size(); k++) {
+                Node y = result.ys.get(k);
+                boolean independent = result.sepsets.get(k) != null;
 
                 boolean noEdgeRequired =
                         knowledge.noEdgeRequired(x.getName(), y.getName());
@@ -315,19 +319,14 @@ public class FasStable implements IFas {
 
                     if (verbose) {
                         TetradLogger.getInstance().forceLogMessage(SearchLogUtils.independenceFact(x, y, empty) + " p = " +
-                                nf.format(test.getPValue()));
+                                nf.format(result.pValues[k]));
                         out.println(SearchLogUtils.independenceFact(x, y, empty) + " p = " +
-                                nf.format(test.getPValue()));
+                                nf.format(result.pValues[k]));
                     }
 
                 } else if (!forbiddenEdge(x, y)) {
                     adjacencies.get(x).add(y);
                     adjacencies.get(y).add(x);
-
-//                    if (verbose) {
-//                        TetradLogger.getInstance().log("dependencies", SearchLogUtils.independenceFact(x, y, empty) + " p = " +
-//                                nf.format(test.getPValue()));
-//                    }
                 }
             }
         }
@@ -335,6 +334,72 @@ public class FasStable implements IFas {
         return freeDegree(nodes, adjacencies) > 0;
     }
 
+    // Tests x against each later node given the empty set, all at once if the test can do that.
+    private NodeResult testNodeAtDepth0(int i, List<Node> nodes, IndependenceTest test) {
+        List<Node> empty = Collections.emptyList();
+        NodeResult result = new NodeResult(nodes.size() - i - 1);
+        Node x = nodes.get(i);
+
+        if (Thread.currentThread().isInterrupted() || executor.isCanceled()) {
+            return null;
+        }
+
+        List<Node> ys = new ArrayList<>();
+
+        for (int j = i + 1; j < nodes.size(); j++) {
+
+            Node y = nodes.get(j);
+
+            if (initialGraph != null) {
+                Node x2 = initialGraph.getNode(x.getName());
+                Node y2 = initialGraph.getNode(y.getName());
+
+                if (!initialGraph.isAdjacentTo(x2, y2)) {
+                    continue;
+                }
+            }
+
+            ys.add(y);
+        }
+
+        boolean[] independent = new boolean[ys.size()];
+        double[] pValues = new double[ys.size()];
+        Arrays.fill(pValues, Double.NaN);
+
+        if (test instanceof BatchIndependenceTest && !ys.isEmpty()) {
+            try {
+                independent = ((BatchIndependenceTest) test).testAll(x, ys, empty, pValues);
+            } catch (Exception e) {
+                e.printStackTrace();
+                Arrays.fill(independent, false);
+            }
+        } else {
+            for (int k = 0; k < ys.size(); k++) {
+                try {
+                    independent[k] = test.isIndependent(x, ys.get(k), empty);
+                    pValues[k] = lastPValue(test);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    independent[k] = false;
+                }
+            }
+        }
+
+        result.numTests += ys.size();
+
+        for (int k = 0; k < ys.size(); k++) {
+            if (independent[k]) {
+                result.numIndependent++;
+            } else {
+                result.numDependent++;
+            }
+
+            result.add(ys.get(k), independent[k] ? empty : null, pValues[k]);
+        }
+
+        return result;
+    }
+
     private int freeDegree(List<Node> nodes, Map<Node, Set<Node>> adjacencies) {
         int max = 0;
 
@@ -369,7 +434,8 @@ public class FasStable implements IFas {
         return false;
     }
 
-    private boolean searchAtDepth(List<Node> nodes, final IndependenceTest test, Map<Node, Set<Node>> adjacencies, int depth) {
+    private boolean searchAtDepth(final List<Node> nodes, final IndependenceTest test, Map<Node, Set<Node>> adjacencies,
+                                  final int depth) {
         int count = 0;
 
         final Map<Node, Set<Node>> adjacenciesCopy = new HashMap<>();
@@ -378,68 +444,229 @@ public class FasStable implements IFas {
             adjacenciesCopy.put(node, new HashSet<>(adjacencies.get(node)));
         }
 
-        for (Node x : nodes) {
+        // Each node's edges are tested against the adjacencies as they were at the start of this depth, so the
+        // tests can be run in any order, or in parallel; removals are then made in node order.
+        List<Callable<NodeResult>> tasks = new ArrayList<>();
+
+        for (final Node x : nodes) {
+            tasks.add(new Callable<NodeResult>() {
+                public NodeResult call() {
+                    return testNodeAtDepth(x, test, adjacenciesCopy, depth);
+                }
+            });
+        }
+
+        List<NodeResult> results = runAll(tasks);
+
+        for (int i = 0; i < results.size(); i++) {
             if (verbose) {
                 if (++count % 100 == 0) out.println("count " + count + " of " + nodes.size());
             }
 
-            List<Node> adjx = new ArrayList<>(adjacenciesCopy.get(x));
+            NodeResult result = results.get(i);
+            if (result == null) break;
+            addCounts(result);
 
-            EDGE:
-            for (Node y : adjx) {
-                List<Node> _adjx = new ArrayList<>(adjx);
-                _adjx.remove(y);
-                List<Node> ppx = possibleParents(x, _adjx, knowledge);
+            Node x = nodes.get(i);
 
-                if (ppx.size() >= depth) {
-                    ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
-                    int[] choice;
+            for (int k = 0; k < result.ys.size(); k++) {
+                Node y = result.ys.get(k);
+                List<Node> condSet = result.sepsets.get(k);
 
-                    while ((choice = cg.next()) != null) {
-                        if (Thread.currentThread().isInterrupted()) {
-                            break;
-                        }
+                if (condSet != null) {
+                    adjacencies.get(x).remove(y);
+                    adjacencies.get(y).remove(x);
 
-                        List<Node> condSet = GraphUtils.asList(choice, ppx);
+                    getSepsets().set(x, y, condSet);
 
-                        boolean independent;
+                    if (verbose) {
+                        TetradLogger.getInstance().forceLogMessage(SearchLogUtils.independenceFact(x, y, condSet) + " p = " +
+                                nf.format(result.pValues[k]));
+                        out.println(SearchLogUtils.independenceFactMsg(x, y, condSet, result.pValues[k]));
+                    }
+                }
+            }
+        }
 
-                        try {
-                            numIndependenceTests++;
-                            independent = test.isIndependent(x, y, condSet);
-                        } catch (Exception e) {
-                            independent = false;
-                        }
+        return freeDegree(nodes, adjacencies) > depth;
+    }
 
-                        if (independent) {
-                            numIndependenceJudgements++;
-                        } else {
-                            numDependenceJudgement++;
-                        }
+    // Tests each edge x--y against subsets of size depth of the other adjacents of x, stopping at the first
+    // subset that separates x from y.
+    private NodeResult testNodeAtDepth(Node x, IndependenceTest test, Map<Node, Set<Node>> adjacenciesCopy, int depth) {
+        if (test instanceof BatchIndependenceTest) {
+            return testNodeAtDepthBatch(x, (BatchIndependenceTest) test, adjacenciesCopy, depth);
+        }
 
-                        boolean noEdgeRequired =
-                                knowledge.noEdgeRequired(x.getName(), y.getName());
+        List<Node> adjx = new ArrayList<>(adjacenciesCopy.get(x));
+        NodeResult result = new NodeResult(adjx.size());
 
-                        if (independent && noEdgeRequired) {
-                            adjacencies.get(x).remove(y);
-                            adjacencies.get(y).remove(x);
+        EDGE:
+        for (Node y : adjx) {
+            List<Node> _adjx = new ArrayList<>(adjx);
+            _adjx.remove(y);
+            List<Node> ppx = possibleParents(x, _adjx, knowledge);
 
-                            getSepsets().set(x, y, condSet);
+            if (ppx.size() >= depth) {
+                ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
+                int[] choice;
 
-                            if (verbose) {
-                                TetradLogger.getInstance().forceLogMessage(SearchLogUtils.independenceFact(x, y, condSet) + " p = " +
-                                        nf.format(test.getPValue()));
-                                out.println(SearchLogUtils.independenceFactMsg(x, y, condSet, test.getPValue()));
-                            }
+                while ((choice = cg.next()) != null) {
+                    if (Thread.currentThread().isInterrupted() || executor.isCanceled()) {
+                        break;
+                    }
 
-                            continue EDGE;
-                        }
+                    List<Node> condSet = GraphUtils.asList(choice, ppx);
+
+                    boolean independent;
+
+                    try {
+                        result.numTests++;
+                        independent = test.isIndependent(x, y, condSet);
+                    } catch (Exception e) {
+                        independent = false;
+                    }
+
+                    if (independent) {
+                        result.numIndependent++;
+                    } else {
+                        result.numDependent++;
+                    }
+
+                    boolean noEdgeRequired =
+                            knowledge.noEdgeRequired(x.getName(), y.getName());
+
+                    if (independent && noEdgeRequired) {
+                        result.add(y, condSet, lastPValue(test));
+                        continue EDGE;
                     }
                 }
             }
         }
 
-        return freeDegree(nodes, adjacencies) > depth;
+        return result;
+    }
+
+    // Does the same tests as testNodeAtDepth, but with the loops turned around: the conditioning sets are visited
+    // once, in the order testNodeAtDepth visits them for each edge, and each set is tested against all of the edges
+    // that would try it and are not yet removed in a single call to testAll. Every edge sees the same sets in the
+    // same order as before, so the same sepsets are found with the same number of tests.
+    private NodeResult testNodeAtDepthBatch(Node x, BatchIndependenceTest test, Map<Node, Set<Node>> adjacenciesCopy,
+                                            int depth) {
+        List<Node> adjx = new ArrayList<>(adjacenciesCopy.get(x));
+        NodeResult result = new NodeResult(adjx.size());
+        List<Node> ppx = possibleParents(x, adjx, knowledge);
+
+        List<List<Node>> sepsets = new ArrayList<>(Collections.<List<Node>>nCopies(adjx.size(), null));
+        double[] pValues = new double[adjx.size()];
+        int numRemoved = 0;
+
+        if (ppx.size() >= depth) {
+            ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
+            int[] choice;
+
+            while (numRemoved < adjx.size() && (choice = cg.next()) != null) {
+                if (Thread.currentThread().isInterrupted() || executor.isCanceled()) {
+                    break;
+                }
+
+                List<Node> condSet = GraphUtils.asList(choice, ppx);
+                List<Integer> pending = new ArrayList<>();
+                List<Node> ys = new ArrayList<>();
+
+                for (int i = 0; i < adjx.size(); i++) {
+                    if (sepsets.get(i) == null && !condSet.contains(adjx.get(i))) {
+                        pending.add(i);
+                        ys.add(adjx.get(i));
+                    }
+                }
+
+                if (ys.isEmpty()) continue;
+
+                double[] _pValues = new double[ys.size()];
+                boolean[] independent;
+
+                try {
+                    independent = test.testAll(x, ys, condSet, _pValues);
+                } catch (Exception e) {
+                    independent = new boolean[ys.size()];
+                }
+
+                result.numTests += ys.size();
+
+                for (int k = 0; k < ys.size(); k++) {
+                    Node y = ys.get(k);
+
+                    if (independent[k]) {
+                        result.numIndependent++;
+                    } else {
+                        result.numDependent++;
+                    }
+
+                    if (independent[k] && knowledge.noEdgeRequired(x.getName(), y.getName())) {
+                        sepsets.set(pending.get(k), condSet);
+                        pValues[pending.get(k)] = _pValues[k];
+                        numRemoved++;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < adjx.size(); i++) {
+            if (sepsets.get(i) != null) {
+                result.add(adjx.get(i), sepsets.get(i), pValues[i]);
+            }
+        }
+
+        return result;
+    }
+
+    // The p value of the test this thread just did, or NaN in parallel mode, where another thread may have
+    // used the test since. Tests that implement BatchIndependenceTest give their p values with each call.
+    private double lastPValue(IndependenceTest test) {
+        return parallel ? Double.NaN : test.getPValue();
+    }
+
+    // Runs the tasks on the executor if the search is parallel, otherwise in order on this thread. A null
+    // result marks a task that was skipped because the search was interrupted.
+    private List<NodeResult> runAll(List<Callable<NodeResult>> tasks) {
+        List<NodeResult> results = new ArrayList<>();
+
+        if (!parallel) {
+            for (Callable<NodeResult> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            return results;
+        }
+
+        try {
+            for (Future<NodeResult> future : executor.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        results.add(null);
+                    } else {
+                        throw new RuntimeException(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return results;
+    }
+
+    private void addCounts(NodeResult result) {
+        numIndependenceTests += result.numTests;
+        numIndependenceJudgements += result.numIndependent;
+        numDependenceJudgement += result.numDependent;
     }
 
     private List<Node> possibleParents(Node x, List<Node> adjx,
@@ -490,6 +717,36 @@ public class FasStable implements IFas {
         return verbose;
     }
 
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * If true, the edges at each depth are tested in parallel, one task per node, and the edges found to be
+     * independent are removed once all of the tasks for the depth are done. The adjacencies and sepsets found are
+     * the same as for the sequential search, provided the independence test may be called from several threads.
+     * The p values logged are then NaN unless the test implements BatchIndependenceTest, since the p value a
+     * test keeps from its last call may be another thread's.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Sets the executor the tests at each depth are run on in parallel mode. By default this is the shared pool.
+     */
+    public void setExecutor(SearchExecutor executor) {
+        if (executor == null) {
+            throw new NullPointerException("Executor not provided.");
+        }
+
+        this.executor = executor;
+    }
+
+    public SearchExecutor getExecutor() {
+        return executor;
+    }
+
     public void setVerbose(boolean verbose) {
         this.verbose = verbose;
     }
@@ -537,5 +794,31 @@ public class FasStable implements IFas {
     public void setOut(PrintStream out) {
         this.out = out;
     }
-}
 
+    // The edges of one node removed at one depth, with their sepsets, and the tests it took to find them. At
+    // depth 0 every edge tested is listed, with a null sepset if the edge stays.
+    private static class NodeResult {
+        private final List<Node> ys;
+        private final List<List<Node>> sepsets;
+        private double[] pValues;
+        private int numTests;
+        private int numIndependent;
+        private int numDependent;
+
+        private NodeResult(int capacity) {
+            this.ys = new ArrayList<>(capacity);
+            this.sepsets = new ArrayList<>(capacity);
+            this.pValues = new double[Math.max(capacity, 1)];
+        }
+
+        private void add(Node y, List<Node> sepset, double pValue) {
+            if (ys.size() == pValues.length) {
+                pValues = Arrays.copyOf(pValues, 2 * pValues.length);
+            }
+
+            pValues[ys.size()] = pValue;
+            ys.add(y);
+            sepsets.add(sepset);
+        }
+    }
+}
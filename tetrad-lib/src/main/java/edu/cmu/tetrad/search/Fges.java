@@ -23,7 +23,7 @@ package edu.cmu.tetrad.search;
 import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.SearchExecutor;
 import edu.cmu.tetrad.util.TaskManager;
 import edu.cmu.tetrad.util.TetradLogger;
 
@@ -32,6 +32,7 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * GesSearch is an implementation of the GES algorithm, as specified in
@@ -127,11 +128,9 @@ public final class Fges implements GraphSearch, GraphScorer {
      */
     private boolean verbose = false;
 
-    // Potential arrows sorted by bump high to low. The first one is a candidate for adding to the graph.
-    private SortedSet<Arrow> sortedArrows = null;
-
-    // Arrows added to sortedArrows for each <i, j>.
-    private Map<OrderedPair<Node>, Set<Arrow>> lookupArrows = null;
+    // Potential arrows sorted by bump high to low, filed under <i, j>. The first one is a candidate for adding
+    // to the graph.
+    private IndexedPairHeap<Arrow> sortedArrows = null;
 
     // A utility map to help with orientation.
     private Map<Node, Set<Node>> neighbors = null;
@@ -139,8 +138,8 @@ public final class Fges implements GraphSearch, GraphScorer {
     // Map from variables to their column indices in the data set.
     private ConcurrentMap<Node, Integer> hashIndices;
 
-    // The static ForkJoinPool instance.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    // The executor parallel work is run on; by default the shared pool.
+    private SearchExecutor executor = SearchExecutor.shared();
 
     // A running tally of the total BIC totalScore.
     private double totalScore;
@@ -162,7 +161,7 @@ public final class Fges implements GraphSearch, GraphScorer {
 
     // Arrows with the same totalScore are stored in this list to distinguish their order in sortedArrows.
     // The ordering doesn't matter; it just have to be transitive.
-    int arrowIndex = 0;
+    private final AtomicInteger arrowIndex = new AtomicInteger();
 
     // The final totalScore after search.
     private double modelScore;
@@ -182,7 +181,8 @@ public final class Fges implements GraphSearch, GraphScorer {
     // for each edge with the maximum score chosen.
     private boolean symmetricFirstStep = false;
 
-    final int maxThreads = 10 * ForkJoinPoolInstance.getInstance().getPool().getParallelism();
+    // The maximum number of tasks forked at once.
+    int maxThreads = 10 * executor.getParallelism();
 
     //===========================CONSTRUCTORS=============================//
 
@@ -231,17 +231,17 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         topGraphs.clear();
 
-        lookupArrows = new ConcurrentHashMap<>();
         final List<Node> nodes = new ArrayList<>(variables);
-        graph = new EdgeListGraphSingleConnections(nodes);
+
+        // The search runs on an int-indexed graph; the result is copied back to an edge list graph.
+        graph = new IntIndexedGraph(nodes);
 
         if (adjacencies != null) {
             adjacencies = GraphUtils.replaceNodes(adjacencies, nodes);
         }
 
         if (initialGraph != null) {
-            graph = new EdgeListGraphSingleConnections(initialGraph);
-            graph = GraphUtils.replaceNodes(graph, nodes);
+            graph = new IntIndexedGraph(GraphUtils.replaceNodes(initialGraph, nodes));
         }
 
         try {
@@ -278,6 +278,8 @@ public final class Fges implements GraphSearch, GraphScorer {
             bes();
         }
 
+        graph = new EdgeListGraphSingleConnections(graph);
+
         this.modelScore = totalScore;
 
         this.out.println("Model Score = " + modelScore);
@@ -462,7 +464,31 @@ public final class Fges implements GraphSearch, GraphScorer {
      * Creates a new processors pool with the specified number of threads.
      */
     public void setParallelism(int numProcessors) {
-        this.pool = new ForkJoinPool(numProcessors);
+        setExecutor(SearchExecutor.create(numProcessors));
+    }
+
+    /**
+     * Sets the executor parallel work is run on. Giving each search its own executor keeps concurrent
+     * searches from competing for the same threads and lets each be canceled separately.
+     */
+    public void setExecutor(SearchExecutor executor) {
+        if (executor == null) {
+            throw new NullPointerException("Executor not provided.");
+        }
+
+        this.executor = executor;
+        this.maxThreads = 10 * executor.getParallelism();
+    }
+
+    public SearchExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Asks a running search to stop; search() then returns the graph found so far.
+     */
+    public void cancel() {
+        executor.cancel();
     }
 
     /**
@@ -594,7 +620,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                 Node y = nodes.get(i);
                 neighbors.put(y, emptySet);
 
-                for (int j = i + 1; j < nodes.size() && !Thread.currentThread().isInterrupted(); j++) {
+                for (int j = i + 1; j < nodes.size() && !Thread.currentThread().isInterrupted() && !executor.isCanceled(); j++) {
                     Node x = nodes.get(j);
 
                     if (existsKnowledge()) {
@@ -645,8 +671,7 @@ public final class Fges implements GraphSearch, GraphScorer {
 //            System.out.println("heuristicSpeedup = true");
 //        }
 
-        sortedArrows = new ConcurrentSkipListSet<>();
-        lookupArrows = new ConcurrentHashMap<>();
+        sortedArrows = new IndexedPairHeap<>();
         neighbors = new ConcurrentHashMap<>();
         final Set<Node> emptySet = new HashSet<>();
 
@@ -691,7 +716,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             }
         }
 
-        pool.invoke(new InitializeFromEmptyGraphTask());
+        executor.invoke(new InitializeFromEmptyGraphTask());
 
         long stop = System.currentTimeMillis();
 
@@ -707,8 +732,7 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         count[0] = 0;
 
-        sortedArrows = new ConcurrentSkipListSet<>();
-        lookupArrows = new ConcurrentHashMap<>();
+        sortedArrows = new IndexedPairHeap<>();
         neighbors = new ConcurrentHashMap<>();
 
         if (this.effectEdgesGraph == null) {
@@ -739,7 +763,7 @@ public final class Fges implements GraphSearch, GraphScorer {
 
             @Override
             protected Boolean compute() {
-                if (TaskManager.getInstance().isCanceled()) {
+                if (TaskManager.getInstance().isCanceled() || executor.isCanceled()) {
                     return false;
                 }
 
@@ -823,7 +847,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             }
         }
 
-        pool.invoke(new InitializeFromExistingGraphTask(getMinChunk(nodes.size()), 0, nodes.size()));
+        executor.invoke(new InitializeFromExistingGraphTask(getMinChunk(nodes.size()), 0, nodes.size()));
     }
 
     private void initializeForwardEdgesFromExistingGraph(final List<Node> nodes) {
@@ -833,8 +857,7 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         count[0] = 0;
 
-        sortedArrows = new ConcurrentSkipListSet<>();
-        lookupArrows = new ConcurrentHashMap<>();
+        sortedArrows = new IndexedPairHeap<>();
         neighbors = new ConcurrentHashMap<>();
 
         if (this.effectEdgesGraph == null) {
@@ -869,7 +892,7 @@ public final class Fges implements GraphSearch, GraphScorer {
 
             @Override
             protected Boolean compute() {
-                if (TaskManager.getInstance().isCanceled()) {
+                if (TaskManager.getInstance().isCanceled() || executor.isCanceled()) {
                     return false;
                 }
 
@@ -928,7 +951,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             }
         }
 
-        pool.invoke(new InitializeFromExistingGraphTask(getMinChunk(nodes.size()), 0, nodes.size()));
+        executor.invoke(new InitializeFromExistingGraphTask(getMinChunk(nodes.size()), 0, nodes.size()));
     }
 
     private void fes() {
@@ -939,9 +962,8 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         int maxDegree = this.maxDegree == -1 ? 1000 : this.maxDegree;
 
-        while (!sortedArrows.isEmpty()) {
-            Arrow arrow = sortedArrows.first();
-            sortedArrows.remove(arrow);
+        while (!sortedArrows.isEmpty() && !executor.isCanceled()) {
+            Arrow arrow = sortedArrows.poll();
 
             Node x = arrow.getA();
             Node y = arrow.getB();
@@ -1005,15 +1027,13 @@ public final class Fges implements GraphSearch, GraphScorer {
             out.println("** BACKWARD EQUIVALENCE SEARCH");
         }
 
-        sortedArrows = new ConcurrentSkipListSet<>();
-        lookupArrows = new ConcurrentHashMap<>();
+        sortedArrows = new IndexedPairHeap<>();
         neighbors = new ConcurrentHashMap<>();
 
         initializeArrowsBackward();
 
-        while (!sortedArrows.isEmpty()) {
-            Arrow arrow = sortedArrows.first();
-            sortedArrows.remove(arrow);
+        while (!sortedArrows.isEmpty() && !executor.isCanceled()) {
+            Arrow arrow = sortedArrows.poll();
 
             Node x = arrow.getA();
             Node y = arrow.getB();
@@ -1193,7 +1213,6 @@ public final class Fges implements GraphSearch, GraphScorer {
                             }
 
                             if (!graph.isAdjacentTo(w, x)) {
-                                clearArrow(w, x);
                                 calculateArrowsForward(w, x);
                             }
                         }
@@ -1216,16 +1235,22 @@ public final class Fges implements GraphSearch, GraphScorer {
         }
 
         final AdjTask task = new AdjTask(getMinChunk(nodes.size()), new ArrayList<>(nodes), 0, nodes.size());
-        pool.invoke(task);
+        executor.invoke(task);
     }
 
-    // Calculates the new arrows for an a->b edge.
+    // Calculates the new arrows for an a->b edge, replacing any previous ones.
     private void calculateArrowsForward(Node a, Node b) {
+        sortedArrows.replace(hashIndices.get(a), hashIndices.get(b), arrowsForward(a, b));
+    }
+
+    private List<Arrow> arrowsForward(Node a, Node b) {
+        List<Arrow> arrows = new ArrayList<>();
+
         if (mode == Mode.heuristicSpeedup && !effectEdgesGraph.isAdjacentTo(a, b)) {
-            return;
+            return arrows;
         }
         if (adjacencies != null && !adjacencies.isAdjacentTo(a, b)) {
-            return;
+            return arrows;
         }
         this.neighbors.put(b, getNeighbors(b));
 
@@ -1235,13 +1260,13 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         if (existsKnowledge()) {
             if (getKnowledge().isForbidden(a.getName(), b.getName())) {
-                return;
+                return arrows;
             }
         }
 
         Set<Node> naYX = getNaYX(a, b);
         if (!isClique(naYX)) {
-            return;
+            return arrows;
         }
 
         List<Node> TNeighbors = getTNeighbors(a, b);
@@ -1282,7 +1307,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                 double bump = insertEval(a, b, T, naYX, hashIndices);
 
                 if (bump > 0) {
-                    addArrow(a, b, naYX, T, bump);
+                    arrows.add(newArrow(a, b, naYX, T, bump));
                 }
 
 //                if (mode == Mode.heuristicSpeedup && union.isEmpty() && score.isEffectEdge(bump) &&
@@ -1294,12 +1319,16 @@ public final class Fges implements GraphSearch, GraphScorer {
             previousCliques = newCliques;
             newCliques = new HashSet<>();
         }
+
+        return arrows;
+    }
+
+    private Arrow newArrow(Node a, Node b, Set<Node> naYX, Set<Node> hOrT, double bump) {
+        return new Arrow(bump, a, b, hOrT, naYX, arrowIndex.getAndIncrement());
     }
 
     private void addArrow(Node a, Node b, Set<Node> naYX, Set<Node> hOrT, double bump) {
-        Arrow arrow = new Arrow(bump, a, b, hOrT, naYX, arrowIndex++);
-        sortedArrows.add(arrow);
-        addLookupArrow(a, b, arrow);
+        sortedArrows.add(hashIndices.get(a), hashIndices.get(b), newArrow(a, b, naYX, hOrT, bump));
     }
 
     // Reevaluates arrows after removing an edge from the graph.
@@ -1332,14 +1361,10 @@ public final class Fges implements GraphSearch, GraphScorer {
 
                         if (e != null) {
                             if (e.pointsTowards(r)) {
-                                clearArrow(w, r);
                                 clearArrow(r, w);
 
                                 calculateArrowsBackward(w, r);
                             } else if (Edges.isUndirectedEdge(graph.getEdge(w, r))) {
-                                clearArrow(w, r);
-                                clearArrow(r, w);
-
                                 calculateArrowsBackward(w, r);
                                 calculateArrowsBackward(r, w);
                             }
@@ -1365,16 +1390,22 @@ public final class Fges implements GraphSearch, GraphScorer {
         for (Node r : toProcess) {
             this.neighbors.put(r, getNeighbors(r));
             List<Node> adjacentNodes = graph.getAdjacentNodes(r);
-            pool.invoke(new BackwardTask(r, adjacentNodes, getMinChunk(adjacentNodes.size()), 0,
+            executor.invoke(new BackwardTask(r, adjacentNodes, getMinChunk(adjacentNodes.size()), 0,
                     adjacentNodes.size(), hashIndices));
         }
     }
 
-    // Calculates the arrows for the removal in the backward direction.
+    // Calculates the arrows for the removal in the backward direction, replacing any previous ones.
     private void calculateArrowsBackward(Node a, Node b) {
+        sortedArrows.replace(hashIndices.get(a), hashIndices.get(b), arrowsBackward(a, b));
+    }
+
+    private List<Arrow> arrowsBackward(Node a, Node b) {
+        List<Arrow> arrows = new ArrayList<>();
+
         if (existsKnowledge()) {
             if (!getKnowledge().noEdgeRequired(a.getName(), b.getName())) {
-                return;
+                return arrows;
             }
         }
 
@@ -1403,10 +1434,12 @@ public final class Fges implements GraphSearch, GraphScorer {
                 double bump = deleteEval(a, b, diff, naYX, hashIndices);
 
                 if (bump > 0.0) {
-                    addArrow(a, b, naYX, h, bump);
+                    arrows.add(newArrow(a, b, naYX, h, bump));
                 }
             }
         }
+
+        return arrows;
     }
 
     public double getModelScore() {
@@ -1969,30 +2002,9 @@ public final class Fges implements GraphSearch, GraphScorer {
         }
     }
 
-    // Removes information associated with an edge x->y.
-    private synchronized void clearArrow(Node x, Node y) {
-        final OrderedPair<Node> pair = new OrderedPair<>(x, y);
-        final Set<Arrow> lookupArrows = this.lookupArrows.get(pair);
-
-        if (lookupArrows != null) {
-            sortedArrows.removeAll(lookupArrows);
-        }
-
-        this.lookupArrows.remove(pair);
-    }
-
-    // Adds the given arrow for the adjacency i->j. These all are for i->j but may have
-    // different T or H or NaYX sets, and so different bumps.
-    private void addLookupArrow(Node i, Node j, Arrow arrow) {
-        OrderedPair<Node> pair = new OrderedPair<>(i, j);
-        Set<Arrow> arrows = lookupArrows.get(pair);
-
-        if (arrows == null) {
-            arrows = new ConcurrentSkipListSet<>();
-            lookupArrows.put(pair, arrows);
-        }
-
-        arrows.add(arrow);
+    // Removes the arrows for x->y.
+    private void clearArrow(Node x, Node y) {
+        sortedArrows.remove(hashIndices.get(x), hashIndices.get(y));
     }
 
     //===========================SCORING METHODS===================//
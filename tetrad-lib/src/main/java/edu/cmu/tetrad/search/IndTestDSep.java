@@ -23,6 +23,7 @@ package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.DSeparationOracle;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.IndependenceFact;
 import edu.cmu.tetrad.graph.Node;
@@ -33,7 +34,8 @@ import java.util.*;
 
 /**
  * Checks independence facts for variables associated with the nodes in a given graph by checking d-separation facts on
- * the underlying nodes.
+ * the underlying nodes. The graph is compiled into a DSeparationOracle on the first query, so it should not be changed
+ * after that except through setGraph.
  *
  * @author Joseph Ramsey
  */
@@ -44,6 +46,11 @@ public class IndTestDSep implements IndependenceTest {
      */
     private Graph graph;
 
+    /**
+     * Answers d-separation queries for the graph; built on first use.
+     */
+    private volatile DSeparationOracle oracle;
+
     /**
      * The list of observed variables (i.e. variables for observed nodes).
      */
@@ -152,7 +159,7 @@ public class IndTestDSep implements IndependenceTest {
             }
         }
 
-        boolean dSeparated = !getGraph().isDConnectedTo(x, y, z);
+        boolean dSeparated = getOracle().isDSeparatedFrom(x, y, z);
 
         if (verbose) {
             if (dSeparated) {
@@ -207,7 +214,7 @@ public class IndTestDSep implements IndependenceTest {
             }
         }
 
-        return getGraph().isDSeparatedFrom(x, y, z);
+        return getOracle().isDSeparatedFrom(x, y, z);
     }
 
     /**
@@ -268,6 +275,27 @@ public class IndTestDSep implements IndependenceTest {
     
     public void setGraph(Graph graph) {
         this.graph = graph;
+        this.oracle = null;
+    }
+
+    /**
+     * @return the d-separation oracle for the graph.
+     */
+    public DSeparationOracle getOracle() {
+        DSeparationOracle oracle = this.oracle;
+
+        if (oracle == null) {
+            synchronized (this) {
+                oracle = this.oracle;
+
+                if (oracle == null) {
+                    oracle = new DSeparationOracle(graph);
+                    this.oracle = oracle;
+                }
+            }
+        }
+
+        return oracle;
     }
 
     public String toString() {
@@ -0,0 +1,235 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.util.*;
+
+/**
+ * A binary heap of elements, each filed under an ordered pair of node indices (a, b), with the least
+ * element (by compareTo) on top. The elements filed under a pair can be removed or replaced in place in
+ * O(k log n) time for k elements under the pair, so the heap holds only live elements and no stale entries
+ * need to be skipped over when polling.
+ * <p>
+ * All methods lock the heap itself; each holds the lock only for its own O(log n) sift operations.
+ *
+ * @author Joseph Ramsey
+ */
+public final class IndexedPairHeap<E extends Comparable<E>> {
+
+    // Heap slots; slots 0 to size - 1 are in use.
+    private Entry<E>[] heap;
+    private int size = 0;
+
+    // The first entry filed under each pair, keyed by pairKey(a, b).
+    private final Map<Long, Entry<E>> pairs = new HashMap<>();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public IndexedPairHeap() {
+        this.heap = (Entry<E>[]) new Entry[64];
+    }
+
+    /**
+     * Files the element under (a, b), alongside any elements already there.
+     */
+    public synchronized void add(int a, int b, E element) {
+        long key = pairKey(a, b);
+        Entry<E> entry = new Entry<>(key, element);
+
+        Entry<E> first = pairs.get(key);
+        entry.next = first;
+        if (first != null) first.prev = entry;
+        pairs.put(key, entry);
+
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * heap.length);
+        }
+
+        entry.pos = size;
+        heap[size++] = entry;
+        siftUp(entry.pos);
+    }
+
+    /**
+     * Replaces the elements filed under (a, b) with the given ones, reusing the existing slots where
+     * possible so that an updated element is moved up or down from where it already is.
+     */
+    public synchronized void replace(int a, int b, List<E> elements) {
+        long key = pairKey(a, b);
+        Entry<E> entry = pairs.get(key);
+        int i = 0;
+
+        for (; entry != null && i < elements.size(); entry = entry.next, i++) {
+            entry.element = elements.get(i);
+            reposition(entry.pos);
+        }
+
+        while (entry != null) {
+            Entry<E> next = entry.next;
+            removeEntry(entry);
+            entry = next;
+        }
+
+        for (; i < elements.size(); i++) {
+            add(a, b, elements.get(i));
+        }
+    }
+
+    /**
+     * Removes all elements filed under (a, b).
+     */
+    public synchronized void remove(int a, int b) {
+        Entry<E> entry = pairs.get(pairKey(a, b));
+
+        while (entry != null) {
+            Entry<E> next = entry.next;
+            removeEntry(entry);
+            entry = next;
+        }
+    }
+
+    /**
+     * Removes and returns the least element, or returns null if the heap is empty.
+     */
+    public synchronized E poll() {
+        if (size == 0) return null;
+        Entry<E> first = heap[0];
+        removeEntry(first);
+        return first.element;
+    }
+
+    public synchronized E peek() {
+        return size == 0 ? null : heap[0].element;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of elements filed under (a, b).
+     */
+    public synchronized int size(int a, int b) {
+        int count = 0;
+        for (Entry<E> e = pairs.get(pairKey(a, b)); e != null; e = e.next) count++;
+        return count;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(heap, 0, size, null);
+        size = 0;
+        pairs.clear();
+    }
+
+    private void removeEntry(Entry<E> entry) {
+        // Unlink from the pair's list.
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else if (entry.next != null) {
+            pairs.put(entry.key, entry.next);
+        } else {
+            pairs.remove(entry.key);
+        }
+
+        if (entry.next != null) entry.next.prev = entry.prev;
+
+        // Move the last slot into the hole and restore heap order.
+        int pos = entry.pos;
+        Entry<E> last = heap[--size];
+        heap[size] = null;
+
+        if (pos != size) {
+            heap[pos] = last;
+            last.pos = pos;
+            reposition(pos);
+        }
+    }
+
+    private void reposition(int pos) {
+        if (pos > 0 && less(heap[pos], heap[(pos - 1) >>> 1])) {
+            siftUp(pos);
+        } else {
+            siftDown(pos);
+        }
+    }
+
+    private void siftUp(int pos) {
+        Entry<E> entry = heap[pos];
+
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!less(entry, heap[parent])) break;
+            heap[pos] = heap[parent];
+            heap[pos].pos = pos;
+            pos = parent;
+        }
+
+        heap[pos] = entry;
+        entry.pos = pos;
+    }
+
+    private void siftDown(int pos) {
+        Entry<E> entry = heap[pos];
+        int half = size >>> 1;
+
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+
+            if (right < size && less(heap[right], heap[child])) {
+                child = right;
+            }
+
+            if (!less(heap[child], entry)) break;
+            heap[pos] = heap[child];
+            heap[pos].pos = pos;
+            pos = child;
+        }
+
+        heap[pos] = entry;
+        entry.pos = pos;
+    }
+
+    private static <E extends Comparable<E>> boolean less(Entry<E> e1, Entry<E> e2) {
+        return e1.element.compareTo(e2.element) < 0;
+    }
+
+    private static long pairKey(int a, int b) {
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+
+    private static class Entry<E> {
+        private final long key;
+        private E element;
+        private int pos;
+        private Entry<E> prev;
+        private Entry<E> next;
+
+        Entry(long key, E element) {
+            this.key = key;
+            this.element = element;
+        }
+    }
+}
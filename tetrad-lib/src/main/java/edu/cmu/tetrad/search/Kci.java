@@ -7,6 +7,7 @@ import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.IndependenceFact;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TetradLogger;
 import edu.cmu.tetrad.util.TetradMatrix;
 import edu.cmu.tetrad.util.TetradVector;
@@ -65,11 +66,11 @@ public class Kci implements IndependenceTest, ScoreForFact {
     // P value used to judge independence. This is the last p value calculated.
     private double p;
 
-    // Centering matrix.
-    private TetradMatrix H;
+    // How kernel matrices are formed; see KernelApproximation.
+    private KernelApproximation kernelApproximation = KernelApproximation.NONE;
 
-    // Identity N x N
-    private TetradMatrix I;
+    // Number of landmarks or random features for the low-rank approximations.
+    private int rank = 100;
 
     // A normal distribution with 1 degree of freedom.
     private NormalDistribution normal = new NormalDistribution(new SynchronizedRandomGenerator(
@@ -105,6 +106,15 @@ public class Kci implements IndependenceTest, ScoreForFact {
     private boolean verbose = false;
     private boolean fastFDR = false;
 
+    /**
+     * How kernel matrices are formed. NONE forms the exact N x N kernel matrices. NYSTROM and
+     * RANDOM_FOURIER_FEATURES instead represent each centered kernel matrix K as F F' for an N x rank
+     * feature matrix F, using rank randomly chosen landmark rows or rank random Fourier features of
+     * the Gaussian kernel, so that memory is O(N rank) and time O(N rank^2) per test. For Proposition 5,
+     * only the rank largest products of eigenvectors of kx and ky are used.
+     */
+    public enum KernelApproximation {NONE, NYSTROM, RANDOM_FOURIER_FEATURES}
+
     /**
      * Constructor.
      *
@@ -116,12 +126,6 @@ public class Kci implements IndependenceTest, ScoreForFact {
         this.variables = data.getVariables();
         this._data = this.data.getDoubleData().transpose().toArray();
         this.N = this.data.getNumRows();
-        this.I = TetradMatrix.identity(N);
-
-        TetradMatrix Ones = new TetradMatrix(N, 1);
-        for (int j = 0; j < N; j++) Ones.set(j, 0, 1);
-
-        this.H = TetradMatrix.identity(N).minus(Ones.times(Ones.transpose()).scalarMult(1.0 / N));
 
         this.alpha = alpha;
         this.p = -1;
@@ -367,6 +371,28 @@ public class Kci implements IndependenceTest, ScoreForFact {
         this.epsilon = epsilon;
     }
 
+    public KernelApproximation getKernelApproximation() {
+        return kernelApproximation;
+    }
+
+    public void setKernelApproximation(KernelApproximation kernelApproximation) {
+        if (kernelApproximation == null) throw new NullPointerException("Kernel approximation not provided.");
+        this.kernelApproximation = kernelApproximation;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    /**
+     * Sets the number of landmarks (Nystrom) or random features (random Fourier features) used when
+     * the kernel approximation is not NONE.
+     */
+    public void setRank(int rank) {
+        if (rank < 1) throw new IllegalArgumentException("Rank should be >= 1: " + rank);
+        this.rank = rank;
+    }
+
     //====================================PRIVATE METHODS==================================//
 
     /**
@@ -375,52 +401,17 @@ public class Kci implements IndependenceTest, ScoreForFact {
      * @return true just in case independence holds.
      */
     private boolean isIndependentUnconditional(Node x, Node y, IndependenceFact fact) {
-        TetradMatrix kx = center(kernelMatrix(_data, x, null, getWidthMultiplier()));
-        TetradMatrix ky = center(kernelMatrix(_data, y, null, getWidthMultiplier()));
-
         try {
+            if (kernelApproximation != KernelApproximation.NONE) {
+                return isIndependentUnconditionalLowRank(x, y, fact);
+            }
+
+            TetradMatrix kx = center(kernelMatrix(_data, x, null, getWidthMultiplier()));
+            TetradMatrix ky = center(kernelMatrix(_data, y, null, getWidthMultiplier()));
+
             if (isApproximate()) {
-                double sta = kx.times(ky).trace();
-                double mean_appr = kx.trace() * ky.trace() / N;
-                double var_appr = 2 * kx.times(kx).trace() * ky.times(ky).trace() / (N * N);
-                double k_appr = mean_appr * mean_appr / var_appr;
-                double theta_appr = var_appr / mean_appr;
-                double p_appr = 1.0 - new GammaDistribution(k_appr, theta_appr).cumulativeProbability(sta);
-                p = p_appr;
-                pValues.put(fact, p);
-
-                if (fastFDR) {
-                    final int d1 = 0; // reference
-                    final int d2 = fact.getZ().size();
-                    final int v = variables.size() - 2;
-
-                    double alpha2 = (exp(log(alpha) + logChoose(v, d1) - logChoose(v, d2)));
-                    final boolean independent = p > alpha2;
-
-//                    if (independent) {
-//                        System.out.println(fact + " INDEPENDENT p = " + p);
-//                        TetradLogger.getInstance().log("info", fact + " Independent");
-//
-//                    } else {
-//                        System.out.println(fact + " dependent p = " + p);
-//                        TetradLogger.getInstance().log("info", fact.toString());
-//                    }
-
-                    return independent;
-                } else {
-                    final boolean independent = p > alpha;
-
-//                    if (independent) {
-//                        System.out.println(fact + " INDEPENDENT p = " + p);
-//                        TetradLogger.getInstance().log("info", fact + " Independent");
-//
-//                    } else {
-//                        System.out.println(fact + " dependent p = " + p);
-//                        TetradLogger.getInstance().log("info", fact.toString());
-//                    }
-
-                    return independent;
-                }
+                return gammaApproximation(kx.times(ky).trace(), kx.trace(), ky.trace(),
+                        kx.times(kx).trace(), ky.times(ky).trace(), fact);
             } else {
                 return theorem4(kx, ky, fact);
             }
@@ -432,6 +423,53 @@ public class Kci implements IndependenceTest, ScoreForFact {
         }
     }
 
+    /**
+     * The unconditional test with kx = fx fx' and ky = fy fy' for low-rank feature matrices fx and fy.
+     * Then tr(kx ky) = |fx' fy|^2, and the nonzero eigenvalues of kx are those of the small matrix fx' fx.
+     */
+    private boolean isIndependentUnconditionalLowRank(Node x, Node y, IndependenceFact fact) {
+        TetradMatrix fx = features(x, null);
+        TetradMatrix fy = features(y, null);
+
+        TetradMatrix gx = fx.transpose().times(fx);
+        TetradMatrix gy = fy.transpose().times(fy);
+        double sta = squaredNorm(fx.transpose().times(fy));
+
+        if (isApproximate()) {
+            return gammaApproximation(sta, gx.trace(), gy.trace(), squaredNorm(gx), squaredNorm(gy), fact);
+        } else {
+            List<Double> evx = new Eigendecomposition(gx).invoke().getTopEigenvalues();
+            List<Double> evy = new Eigendecomposition(gy).invoke().getTopEigenvalues();
+            return theorem4(sta / N, evx, evy, fact);
+        }
+    }
+
+    /**
+     * The gamma approximation for the unconditional case, given tr(kx ky), tr(kx), tr(ky), tr(kx kx)
+     * and tr(ky ky).
+     */
+    private boolean gammaApproximation(double sta, double traceX, double traceY, double traceXX, double traceYY,
+                                       IndependenceFact fact) {
+        double mean_appr = traceX * traceY / N;
+        double var_appr = 2 * traceXX * traceYY / (N * N);
+        double k_appr = mean_appr * mean_appr / var_appr;
+        double theta_appr = var_appr / mean_appr;
+        double p_appr = 1.0 - new GammaDistribution(k_appr, theta_appr).cumulativeProbability(sta);
+        p = p_appr;
+        pValues.put(fact, p);
+
+        if (fastFDR) {
+            final int d1 = 0; // reference
+            final int d2 = fact.getZ().size();
+            final int v = variables.size() - 2;
+
+            double alpha2 = (exp(log(alpha) + logChoose(v, d1) - logChoose(v, d2)));
+            return p > alpha2;
+        } else {
+            return p > alpha;
+        }
+    }
+
     /**
      * KCI independence for the conditional case. Uses Theorem 3 from the paper.
      *
@@ -442,11 +480,16 @@ public class Kci implements IndependenceTest, ScoreForFact {
         TetradMatrix ky = null;
 
         try {
+            if (kernelApproximation != KernelApproximation.NONE) {
+                return isIndependentConditionalLowRank(x, y, z, fact);
+            }
+
             TetradMatrix KXZ = center(kernelMatrix(_data, x, z, getWidthMultiplier()));
             TetradMatrix Ky = center(kernelMatrix(_data, y, null, getWidthMultiplier()));
             TetradMatrix KZ = center(kernelMatrix(_data, null, z, getWidthMultiplier()));
 
-            TetradMatrix Rz = (KZ.plus(I.scalarMult(epsilon)).inverse().scalarMult(epsilon));
+            for (int i = 0; i < N; i++) KZ.set(i, i, KZ.get(i, i) + epsilon);
+            TetradMatrix Rz = KZ.inverse().scalarMult(epsilon);
 
             kx = symmetrized(Rz.times(KXZ).times(Rz.transpose()));
             ky = symmetrized(Rz.times(Ky).times(Rz.transpose()));
@@ -460,6 +503,62 @@ public class Kci implements IndependenceTest, ScoreForFact {
         }
     }
 
+    /**
+     * The conditional test with KXZ, Ky and KZ replaced by low-rank factorizations f f'. By the Woodbury
+     * identity, Rz = epsilon (fz fz' + epsilon I)^-1 = I - fz (fz' fz + epsilon I)^-1 fz', so that
+     * kx = a a' for a = Rz fxz and ky = b b' for b = Rz fy, none of which needs an N x N matrix.
+     */
+    private boolean isIndependentConditionalLowRank(Node x, Node y, List<Node> z, IndependenceFact fact) {
+        TetradMatrix fxz = features(x, z);
+        TetradMatrix fy = features(y, null);
+        TetradMatrix fz = features(null, z);
+
+        TetradMatrix gz = fz.transpose().times(fz);
+        for (int i = 0; i < gz.rows(); i++) gz.set(i, i, gz.get(i, i) + epsilon);
+        TetradMatrix gzInv = gz.inverse();
+
+        TetradMatrix a = fxz.minus(fz.times(gzInv.times(fz.transpose().times(fxz))));
+        TetradMatrix b = fy.minus(fz.times(gzInv.times(fz.transpose().times(fy))));
+
+        double T = (1.0 / N) * squaredNorm(a.transpose().times(b));
+
+        // The top eigenvectors of a a' scaled by the square roots of their eigenvalues are a v, for v
+        // the top eigenvectors of a' a.
+        Eigendecomposition eigendecompositionx = new Eigendecomposition(a.transpose().times(a)).invoke();
+        TetradMatrix vdx = a.times(eigendecompositionx.getV());
+        List<Double> evx = eigendecompositionx.getTopEigenvalues();
+
+        Eigendecomposition eigendecompositiony = new Eigendecomposition(b.transpose().times(b)).invoke();
+        TetradMatrix vdy = b.times(eigendecompositiony.getV());
+        List<Double> evy = eigendecompositiony.getTopEigenvalues();
+
+        // Stacking all products of columns of vdx and vdy could take up to rank^2 columns, so only the
+        // rank products with the largest eigenvalue products are kept.
+        List<int[]> pairs = new ArrayList<>();
+
+        for (int i = 0; i < evx.size(); i++) {
+            for (int j = 0; j < evy.size(); j++) {
+                pairs.add(new int[]{i, j});
+            }
+        }
+
+        pairs.sort((p1, p2) -> Double.compare(evx.get(p2[0]) * evy.get(p2[1]), evx.get(p1[0]) * evy.get(p1[1])));
+        int prod = min(rank, pairs.size());
+
+        TetradMatrix UU = new TetradMatrix(N, prod);
+
+        for (int c = 0; c < prod; c++) {
+            int i = pairs.get(c)[0];
+            int j = pairs.get(c)[1];
+
+            for (int k = 0; k < N; k++) {
+                UU.set(k, c, vdx.get(k, i) * vdy.get(k, j));
+            }
+        }
+
+        return proposition5(T, UU, fact);
+    }
+
     private boolean theorem4(TetradMatrix kx, TetradMatrix ky, IndependenceFact fact) {
 
         double T = (1.0 / N) * (kx.times(ky).trace());
@@ -471,6 +570,11 @@ public class Kci implements IndependenceTest, ScoreForFact {
         Eigendecomposition eigendecompositiony = new Eigendecomposition(ky).invoke();
         List<Double> evy = eigendecompositiony.getTopEigenvalues();
 
+        return theorem4(T, evx, evy, fact);
+    }
+
+    private boolean theorem4(double T, List<Double> evx, List<Double> evy, IndependenceFact fact) {
+
         // Calculate formula (9).
         int sum = 0;
 
@@ -553,15 +657,21 @@ public class Kci implements IndependenceTest, ScoreForFact {
             }
         }
 
+        return proposition5(T, UU, fact);
+    }
+
+    private boolean proposition5(double T, TetradMatrix UU, IndependenceFact fact) {
+        final int prod = UU.columns();
+
         TetradMatrix uuprod = prod > N ? UU.times(UU.transpose()) : UU.transpose().times(UU);
 
         if (isApproximate()) {
-            double sta = kx.times(ky).trace();
+            double sta = T * N;
             double mean_appr = uuprod.trace();
             double var_appr = 2.0 * uuprod.times(uuprod).trace();
             double k_appr = mean_appr * mean_appr / var_appr;
             double theta_appr = var_appr / mean_appr;
-            double p = 1.0 - new GammaDistribution(k_appr, theta_appr).cumulativeProbability(sta);
+            this.p = 1.0 - new GammaDistribution(k_appr, theta_appr).cumulativeProbability(sta);
             pValues.put(fact, p);
             return p > getAlpha();
         } else {
@@ -632,8 +742,59 @@ public class Kci implements IndependenceTest, ScoreForFact {
         return series;
     }
 
+    // H K H for the centering matrix H = I - 11'/N, calculated without forming H. K is overwritten.
     private TetradMatrix center(TetradMatrix K) {
-        return H.times(K).times(H);
+        double[] rowMeans = new double[N];
+        double[] colMeans = new double[N];
+        double grandMean = 0.0;
+
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                double k = K.get(i, j);
+                rowMeans[i] += k;
+                colMeans[j] += k;
+                grandMean += k;
+            }
+        }
+
+        for (int i = 0; i < N; i++) {
+            rowMeans[i] /= N;
+            colMeans[i] /= N;
+        }
+
+        grandMean /= (double) N * N;
+
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                K.set(i, j, K.get(i, j) - rowMeans[i] - colMeans[j] + grandMean);
+            }
+        }
+
+        return K;
+    }
+
+    // Subtracts from each column of f its mean, so that f f' becomes H f f' H.
+    private void centerColumns(TetradMatrix f) {
+        for (int j = 0; j < f.columns(); j++) {
+            double mean = 0.0;
+            for (int i = 0; i < f.rows(); i++) mean += f.get(i, j);
+            mean /= f.rows();
+            for (int i = 0; i < f.rows(); i++) f.set(i, j, f.get(i, j) - mean);
+        }
+    }
+
+    // The squared Frobenius norm, which for symmetric m is tr(m m).
+    private double squaredNorm(TetradMatrix m) {
+        double sum = 0.0;
+
+        for (int i = 0; i < m.rows(); i++) {
+            for (int j = 0; j < m.columns(); j++) {
+                double v = m.get(i, j);
+                sum += v * v;
+            }
+        }
+
+        return sum;
     }
 
     private double getChisqSample() {
@@ -671,19 +832,7 @@ public class Kci implements IndependenceTest, ScoreForFact {
     }
 
     private TetradMatrix kernelMatrix(double[][] _data, Node x, List<Node> z, double widthMultiplier) {
-
-        List<Integer> _z = new ArrayList<>();
-
-        if (x != null) {
-            _z.add(hash.get(x));
-        }
-
-        if (z != null) {
-            for (Node z2 : z) {
-                _z.add(hash.get(z2));
-            }
-        }
-
+        List<Integer> _z = columns(x, z);
         double h = getH(_z);
 
         TetradMatrix result = new TetradMatrix(N, N);
@@ -706,6 +855,133 @@ public class Kci implements IndependenceTest, ScoreForFact {
         return result;
     }
 
+    /**
+     * An N x m matrix f with centered columns such that f f' approximates the centered kernel matrix
+     * for x and z, by Nystrom or random Fourier features depending on the kernel approximation.
+     */
+    private TetradMatrix features(Node x, List<Node> z) {
+        List<Integer> _z = columns(x, z);
+        double width = getWidthMultiplier() * getH(_z);
+
+        if (width == 0) {
+            throw new IllegalArgumentException("Width is zero.");
+        }
+
+        TetradMatrix f;
+
+        if (kernelApproximation == KernelApproximation.NYSTROM) {
+            f = nystromFeatures(_z, width);
+        } else if (kernelApproximation == KernelApproximation.RANDOM_FOURIER_FEATURES) {
+            f = randomFourierFeatures(_z, width);
+        } else {
+            throw new IllegalStateException("Not a low-rank approximation: " + kernelApproximation);
+        }
+
+        centerColumns(f);
+        return f;
+    }
+
+    // f = Knm U D^-1/2 for the kernel Knm between all rows and rank random landmark rows and the
+    // eigendecomposition U D U' of the kernel among the landmarks, so that f f' = Knm Kmm^-1 Kmn.
+    private TetradMatrix nystromFeatures(List<Integer> cols, double width) {
+        int m = min(rank, N);
+
+        // A random sample of m distinct rows, by a partial Fisher-Yates shuffle.
+        int[] rows = new int[N];
+        for (int i = 0; i < N; i++) rows[i] = i;
+
+        for (int i = 0; i < m; i++) {
+            int j = i + RandomUtil.getInstance().nextInt(N - i);
+            int t = rows[i];
+            rows[i] = rows[j];
+            rows[j] = t;
+        }
+
+        TetradMatrix kmm = new TetradMatrix(m, m);
+
+        for (int i = 0; i < m; i++) {
+            for (int j = i; j < m; j++) {
+                double k = kernelGaussian(distance(_data, cols, rows[i], rows[j]), width);
+                kmm.set(i, j, k);
+                kmm.set(j, i, k);
+            }
+        }
+
+        EigenDecomposition ed = new EigenDecomposition(kmm.getRealMatrix());
+        double[] eigenvalues = ed.getRealEigenvalues();
+        double max = 0.0;
+        for (double e : eigenvalues) max = Math.max(max, e);
+
+        List<Integer> kept = new ArrayList<>();
+
+        for (int i = 0; i < eigenvalues.length; i++) {
+            if (eigenvalues[i] > 1e-10 * max) kept.add(i);
+        }
+
+        TetradMatrix projection = new TetradMatrix(m, kept.size());
+
+        for (int j = 0; j < kept.size(); j++) {
+            RealVector u = ed.getEigenvector(kept.get(j));
+            double scale = 1.0 / sqrt(eigenvalues[kept.get(j)]);
+            for (int i = 0; i < m; i++) projection.set(i, j, u.getEntry(i) * scale);
+        }
+
+        TetradMatrix knm = new TetradMatrix(N, m);
+
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < m; j++) {
+                knm.set(i, j, kernelGaussian(distance(_data, cols, i, rows[j]), width));
+            }
+        }
+
+        return knm.times(projection);
+    }
+
+    // The kernel exp(-|(a - b) / 2|^2 / width^2) is Gaussian with variance 2 width^2, so its spectral
+    // density is normal with standard deviation 1 / (sqrt(2) width) in each coordinate. Each of the rank
+    // features is sqrt(2 / rank) cos(w'a + b) for w drawn from that density and b uniform on [0, 2 pi].
+    private TetradMatrix randomFourierFeatures(List<Integer> cols, double width) {
+        double sd = 1.0 / (sqrt(2.0) * width);
+        double scale = sqrt(2.0 / rank);
+        double[] w = new double[cols.size()];
+
+        TetradMatrix f = new TetradMatrix(N, rank);
+
+        for (int k = 0; k < rank; k++) {
+            for (int c = 0; c < w.length; c++) w[c] = RandomUtil.getInstance().nextNormal(0, sd);
+            double b = RandomUtil.getInstance().nextUniform(0, 2 * PI);
+
+            for (int i = 0; i < N; i++) {
+                double s = b;
+
+                for (int c = 0; c < w.length; c++) {
+                    double v = _data[cols.get(c)][i];
+                    if (!Double.isNaN(v)) s += w[c] * v;
+                }
+
+                f.set(i, k, scale * cos(s));
+            }
+        }
+
+        return f;
+    }
+
+    private List<Integer> columns(Node x, List<Node> z) {
+        List<Integer> _z = new ArrayList<>();
+
+        if (x != null) {
+            _z.add(hash.get(x));
+        }
+
+        if (z != null) {
+            for (Node z2 : z) {
+                _z.add(hash.get(z2));
+            }
+        }
+
+        return _z;
+    }
+
     private double getH(List<Integer> _z) {
         double h = 0;
 
@@ -21,48 +21,158 @@
 
 package edu.cmu.tetrad.search;
 
-import org.apache.commons.collections4.map.MultiKeyMap;
-
-import java.util.HashSet;
-import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Stores a map from (variable, parents) to score.
+ * <p>
+ * Keys are the variable index together with a sorted copy of the parent indices, so the order in which
+ * parents are given does not matter. The map is split into a number of stripes, each an LRU map guarded
+ * by its own lock, so that a single cache can be shared by the worker threads of a search. The total
+ * number of entries is bounded; once a stripe is full its least recently used entry is evicted.
  *
  * @author Joseph Ramsey
  */
 public class LocalScoreCache {
-    private MultiKeyMap map;
+
+    // The default bound on the number of stored scores.
+    public static final int DEFAULT_MAX_SIZE = 1000000;
+
+    private final Stripe[] stripes;
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
 
     public LocalScoreCache() {
-        map = new MultiKeyMap();
+        this(DEFAULT_MAX_SIZE);
     }
 
-    public void add(int variable, int[] parents, double score) {
-        Set<Integer> _parents = new HashSet<>(parents.length);
+    /**
+     * @param maxSize The maximum number of scores to keep. Must be at least 1.
+     */
+    public LocalScoreCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be at least 1: " + maxSize);
+        }
 
-        for (int parent : parents) {
-            _parents.add(parent);
+        int numStripes = 1;
+
+        while (numStripes < 4 * Runtime.getRuntime().availableProcessors() && numStripes < maxSize) {
+            numStripes <<= 1;
         }
 
-        map.put(variable, _parents, score);
+        this.maxSize = maxSize;
+        this.stripes = new Stripe[numStripes];
+
+        int perStripe = Math.max(1, maxSize / numStripes);
+
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
     }
 
+    public void add(int variable, int[] parents, double score) {
+        ParentSetKey key = new ParentSetKey(variable, parents);
+        Stripe stripe = stripeFor(key);
+
+        synchronized (stripe) {
+            stripe.put(key, score);
+        }
+    }
+
+    /**
+     * @return the stored score for the variable given the parents, or Double.NaN if none is stored.
+     */
     public double get(int variable, int[] parents) {
-        Set<Integer> _parents = new HashSet<>(parents.length);
+        ParentSetKey key = new ParentSetKey(variable, parents);
+        Stripe stripe = stripeFor(key);
+        Double _score;
+
+        synchronized (stripe) {
+            _score = stripe.get(key);
+        }
 
-        for (int parent : parents) {
-            _parents.add(parent);
+        if (_score == null) {
+            misses.incrementAndGet();
+            return Double.NaN;
         }
 
-        Double _score = (Double) map.get(variable, _parents);
-        return _score == null ? Double.NaN : (_score);
+        hits.incrementAndGet();
+        return _score;
     }
 
     public void clear() {
-        map.clear();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+
+        hits.set(0);
+        misses.set(0);
     }
-}
 
+    /**
+     * @return the number of scores currently stored.
+     */
+    public int size() {
+        int size = 0;
 
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
 
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return hits / (hits + misses), or 0 if there have been no lookups.
+     */
+    public double getHitRate() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0.0 : hits / (double) total;
+    }
+
+    public String toString() {
+        return "LocalScoreCache size = " + size() + " hits = " + getHits() + " misses = " + getMisses();
+    }
+
+    private Stripe stripeFor(ParentSetKey key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    // An access-ordered map that drops its eldest entry once it grows past its capacity.
+    private static class Stripe extends LinkedHashMap<ParentSetKey, Double> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ParentSetKey, Double> eldest) {
+            return size() > capacity;
+        }
+    }
+}
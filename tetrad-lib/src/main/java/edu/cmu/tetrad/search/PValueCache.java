@@ -0,0 +1,337 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * A map from 128 bit keys to p values, kept in a memory-mapped file so that it survives from one run to the next.
+ * The file is an open addressing hash table of (key, p value) slots behind a short header; when it is three quarters
+ * full it is doubled in size and rehashed. Keys are made with key(String...), which hashes a description of an
+ * independence fact; see CachingIndependenceTest.
+ * <p>
+ * Only one cache may have a given file open at a time, in this or any other process; the file is locked while it is
+ * open. Writes reach the disk when the operating system flushes the mapping, or on force() or close(). Instances are
+ * thread safe.
+ *
+ * @author Joseph Ramsey
+ */
+public class PValueCache implements Closeable {
+
+    // The default number of slots in a new file.
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // "PVALCACH", marks a cache file.
+    private static final long MAGIC = 0x5056414c43414348L;
+    private static final int VERSION = 1;
+
+    // Header: magic, version, capacity, size.
+    private static final int HEADER_SIZE = 32;
+
+    // Slot: two longs of key followed by the p value. A key of (0, 0) marks an empty slot.
+    private static final int SLOT_SIZE = 24;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    public PValueCache(File file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens the cache in the given file, creating it if it does not exist.
+     *
+     * @param capacity The initial number of slots, for a new file; rounded up to a power of two.
+     * @throws IOException           if the file cannot be opened or mapped.
+     * @throws IllegalStateException if the file is open in another cache.
+     */
+    public PValueCache(File file, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+
+        FileLock lock;
+
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+
+        if (lock == null) {
+            raf.close();
+            throw new IllegalStateException("P value cache file is in use: " + file);
+        }
+
+        this.lock = lock;
+
+        if (raf.length() >= HEADER_SIZE) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+            if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION) {
+                close();
+                throw new IOException("Not a p value cache file: " + file);
+            }
+
+            this.capacity = buffer.getInt(12);
+            this.size = buffer.getInt(16);
+            map(this.capacity);
+        } else {
+            int _capacity = Integer.highestOneBit(capacity);
+            if (_capacity < capacity) _capacity <<= 1;
+            this.capacity = _capacity;
+            this.size = 0;
+            map(this.capacity);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, VERSION);
+            writeHeader();
+        }
+    }
+
+    /**
+     * @return the p value stored for the key, or Double.NaN if there is none.
+     */
+    public synchronized double get(long[] key) {
+        checkOpen();
+        int slot = find(key[0], key[1]);
+        if (slot == -1 || isEmpty(slot)) return Double.NaN;
+        return buffer.getDouble(offset(slot) + 16);
+    }
+
+    /**
+     * Stores the p value for the key, replacing any value already stored. NaN values are not stored.
+     */
+    public synchronized void put(long[] key, double pValue) {
+        checkOpen();
+        if (Double.isNaN(pValue)) return;
+
+        if (4L * (size + 1) > 3L * capacity) {
+            grow();
+        }
+
+        int slot = find(key[0], key[1]);
+
+        if (isEmpty(slot)) {
+            int offset = offset(slot);
+            buffer.putLong(offset, key[0]);
+            buffer.putLong(offset + 8, key[1]);
+            size++;
+            writeHeader();
+        }
+
+        buffer.putDouble(offset(slot) + 16, pValue);
+    }
+
+    /**
+     * @return the number of stored p values.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        checkOpen();
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = offset(slot);
+            buffer.putLong(offset, 0L);
+            buffer.putLong(offset + 8, 0L);
+        }
+
+        size = 0;
+        writeHeader();
+    }
+
+    /**
+     * Writes the cache to disk.
+     */
+    public synchronized void force() {
+        checkOpen();
+        buffer.force();
+    }
+
+    /**
+     * Writes the cache to disk and releases the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) return;
+        if (buffer != null) buffer.force();
+        lock.release();
+        raf.close();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return a 128 bit key for the given strings, in order. Two independent 64 bit hashes are used, so distinct
+     * facts collide with negligible probability.
+     */
+    public static long[] key(String... parts) {
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x84222325cbf29ce4L;
+
+        for (String part : parts) {
+            for (int i = 0; i < part.length(); i++) {
+                char c = part.charAt(i);
+                h1 = (h1 ^ c) * 0x100000001b3L;
+                h2 = (h2 + c) * 0xc6a4a7935bd1e995L;
+                h2 ^= h2 >>> 47;
+            }
+
+            // Separate the parts so that ("ab", "c") and ("a", "bc") differ.
+            h1 = (h1 ^ 0xffff) * 0x100000001b3L;
+            h2 = (h2 + 0xffff) * 0xc6a4a7935bd1e995L;
+            h2 ^= h2 >>> 47;
+        }
+
+        h1 = mix(h1);
+        h2 = mix(h2);
+
+        // Keep clear of the empty slot marker.
+        if (h1 == 0 && h2 == 0) h2 = 1;
+
+        return new long[]{h1, h2};
+    }
+
+    // The slot holding the key, or the empty slot where it would go.
+    private int find(long k1, long k2) {
+        int mask = capacity - 1;
+        int slot = (int) (k1 ^ (k1 >>> 32)) & mask;
+
+        while (true) {
+            int offset = offset(slot);
+            long _k1 = buffer.getLong(offset);
+            long _k2 = buffer.getLong(offset + 8);
+
+            if ((_k1 == k1 && _k2 == k2) || (_k1 == 0 && _k2 == 0)) {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean isEmpty(int slot) {
+        int offset = offset(slot);
+        return buffer.getLong(offset) == 0 && buffer.getLong(offset + 8) == 0;
+    }
+
+    // Doubles the table, rehashing the stored entries into it.
+    private void grow() {
+        int oldCapacity = capacity;
+        long[] k1 = new long[size];
+        long[] k2 = new long[size];
+        double[] p = new double[size];
+        int n = 0;
+
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if (!isEmpty(slot)) {
+                int offset = offset(slot);
+                k1[n] = buffer.getLong(offset);
+                k2[n] = buffer.getLong(offset + 8);
+                p[n] = buffer.getDouble(offset + 16);
+                n++;
+            }
+        }
+
+        try {
+            map(2 * oldCapacity);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not grow p value cache " + file, e);
+        }
+
+        capacity = 2 * oldCapacity;
+
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int offset = offset(slot);
+            buffer.putLong(offset, 0L);
+            buffer.putLong(offset + 8, 0L);
+        }
+
+        for (int i = 0; i < n; i++) {
+            int offset = offset(find(k1[i], k2[i]));
+            buffer.putLong(offset, k1[i]);
+            buffer.putLong(offset + 8, k2[i]);
+            buffer.putDouble(offset + 16, p[i]);
+        }
+
+        writeHeader();
+    }
+
+    private void map(int capacity) throws IOException {
+        long length = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("P value cache is too large to map: " + capacity + " slots.");
+        }
+
+        if (raf.length() < length) {
+            raf.setLength(length);
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+
+    private void writeHeader() {
+        buffer.putInt(12, capacity);
+        buffer.putInt(16, size);
+    }
+
+    private void checkOpen() {
+        if (!channel.isOpen()) {
+            throw new IllegalStateException("P value cache is closed: " + file);
+        }
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // The finalizer of MurmurHash3.
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
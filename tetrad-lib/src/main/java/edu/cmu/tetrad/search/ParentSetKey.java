@@ -0,0 +1,56 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.util.Arrays;
+
+/**
+ * A (variable, parents) key for score caches. The parents are copied and sorted, so the order in which
+ * they are given does not matter, and the hash code is computed once.
+ *
+ * @author Joseph Ramsey
+ */
+final class ParentSetKey {
+    private final int variable;
+    private final int[] parents;
+    private final int hash;
+
+    ParentSetKey(int variable, int[] parents) {
+        int[] _parents = Arrays.copyOf(parents, parents.length);
+        Arrays.sort(_parents);
+
+        this.variable = variable;
+        this.parents = _parents;
+        this.hash = 31 * variable + Arrays.hashCode(_parents);
+    }
+
+    public int hashCode() {
+        return hash;
+    }
+
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof ParentSetKey)) return false;
+        ParentSetKey key = (ParentSetKey) o;
+        return hash == key.hash && variable == key.variable && Arrays.equals(parents, key.parents);
+    }
+}
@@ -302,8 +302,8 @@ public final class PcAll implements GraphSearch {
             if (concurrent == Concurrent.NO) {
                 fas = new FasStable(initialGraph, getIndependenceTest());
             } else {
-                fas = new FasConcurrent(initialGraph, getIndependenceTest());
-                ((FasConcurrent) fas).setStable(true);
+                fas = new FasStable(initialGraph, getIndependenceTest());
+                ((FasStable) fas).setParallel(true);
             }
         }
 
@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.search;
 
+import edu.cmu.tetrad.data.CovarianceMatrixOnTheFly;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.Node;
@@ -69,6 +70,15 @@ public class SemBicScore implements Score {
 
     private Map<String, Integer> indexMap;
 
+    // True if score differences should be calculated by updating cached Cholesky factors.
+    private boolean useCholeskyUpdates = true;
+
+    // Cached regressions of children onto parent sets, least recently used first.
+    private final Map<ParentSetKey, CholeskyRegression> regressions;
+
+    // The maximum number of cached regressions.
+    private int maxCachedRegressions = 10000;
+
 
     /**
      * Constructs the score using a covariance matrix.
@@ -82,6 +92,21 @@ public class SemBicScore implements Score {
         this.variables = covariances.getVariables();
         this.sampleSize = covariances.getSampleSize();
         this.indexMap = indexMap(this.variables);
+
+        this.regressions = new LinkedHashMap<ParentSetKey, CholeskyRegression>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ParentSetKey, CholeskyRegression> eldest) {
+                return size() > maxCachedRegressions;
+            }
+        };
+    }
+
+    /**
+     * Constructs the score using a continuous data set, whose covariances are computed as they are
+     * needed; for single-precision data they are kept as floats.
+     */
+    public SemBicScore(DataSet dataSet) {
+        this(new CovarianceMatrixOnTheFly(dataSet));
     }
 
     /**
@@ -140,6 +165,13 @@ public class SemBicScore implements Score {
 
     @Override
     public double localScoreDiff(int x, int y, int[] z) {
+        if (useCholeskyUpdates && forbidden.isEmpty()) {
+            double diff = localScoreDiffCholesky(x, y, z);
+
+            if (!Double.isNaN(diff)) {
+                return diff;
+            }
+        }
 
         Node _x = variables.get(x);
         Node _y = variables.get(y);
@@ -161,6 +193,55 @@ public class SemBicScore implements Score {
         return localScore(y, append(z, x)) - localScore(y, z);
     }
 
+    // Scores y given z and z + x from a cached regression of y onto z or z + x, so that only one
+    // Cholesky row needs to be added or removed. Returns NaN if the regression can't be done this way,
+    // in which case the caller falls back to localScore.
+    private double localScoreDiffCholesky(int x, int y, int[] z) {
+        int[] zx = append(z, x);
+        ParentSetKey keyZ = new ParentSetKey(y, z);
+        ParentSetKey keyZx = new ParentSetKey(y, zx);
+
+        CholeskyRegression withoutX = getCachedRegression(keyZ);
+        CholeskyRegression withX = getCachedRegression(keyZx);
+
+        if (withoutX == null && withX != null) {
+            withoutX = withX.remove(x);
+            cacheRegression(keyZ, withoutX);
+        } else if (withoutX == null) {
+            withoutX = CholeskyRegression.regress(getCovariances(), y, z);
+            if (withoutX == null) return Double.NaN;
+            cacheRegression(keyZ, withoutX);
+        }
+
+        if (withX == null) {
+            withX = withoutX.extend(getCovariances(), x);
+            if (withX == null) return Double.NaN;
+            cacheRegression(keyZx, withX);
+        }
+
+        double s2z = withoutX.getResidualVariance();
+        double s2zx = withX.getResidualVariance();
+
+        if (s2z <= 0 || s2zx <= 0) {
+            return Double.NaN;
+        }
+
+        int n = getSampleSize();
+        return -n * log(s2zx) + n * log(s2z) - getPenaltyDiscount() * log(n);
+    }
+
+    private CholeskyRegression getCachedRegression(ParentSetKey key) {
+        synchronized (regressions) {
+            return regressions.get(key);
+        }
+    }
+
+    private void cacheRegression(ParentSetKey key, CholeskyRegression regression) {
+        synchronized (regressions) {
+            regressions.put(key, regression);
+        }
+    }
+
     private List<Node> getVariableList(int[] indices) {
         List<Node> variables = new ArrayList<>();
         for (int i : indices) {
@@ -190,7 +271,7 @@ public class SemBicScore implements Score {
 
     @Override
     public double localScoreDiff(int x, int y) {
-        return localScore(y, x) - localScore(y);
+        return localScoreDiff(x, y, new int[0]);
     }
 
     private int[] append(int[] parents, int extra) {
@@ -301,6 +382,31 @@ public class SemBicScore implements Score {
         this.verbose = verbose;
     }
 
+    /**
+     * True if score differences are calculated by adding or removing one row of a cached Cholesky
+     * factor of the parents' covariance matrix, in O(p^2) time, instead of inverting the covariance
+     * matrix of each parent set.
+     */
+    public boolean isUseCholeskyUpdates() {
+        return useCholeskyUpdates;
+    }
+
+    public void setUseCholeskyUpdates(boolean useCholeskyUpdates) {
+        this.useCholeskyUpdates = useCholeskyUpdates;
+    }
+
+    /**
+     * Sets the maximum number of Cholesky factors kept for reuse; the least recently used ones are
+     * dropped first.
+     */
+    public void setMaxCachedRegressions(int maxCachedRegressions) {
+        if (maxCachedRegressions < 1) {
+            throw new IllegalArgumentException("Must cache at least one regression: " + maxCachedRegressions);
+        }
+
+        this.maxCachedRegressions = maxCachedRegressions;
+    }
+
     @Override
     public List<Node> getVariables() {
         return variables;
@@ -72,6 +72,7 @@ public final class LargeScaleSimulation {
 
     private boolean errorsNormal = true;
     private double selfLoopCoef = 0.0;
+    private SearchExecutor executor = SearchExecutor.shared();
 
     //=============================CONSTRUCTORS============================//
     public LargeScaleSimulation(Graph graph) {
@@ -180,9 +181,9 @@ public final class LargeScaleSimulation {
 
         double[][] all = new double[variableNodes.size()][sampleSize];
 
-        int chunk = sampleSize / ForkJoinPoolInstance.getInstance().getPool().getParallelism() + 1;
+        int chunk = sampleSize / executor.getParallelism() + 1;
 
-        ForkJoinPoolInstance.getInstance().getPool().invoke(new SimulateTask(0, sampleSize, all, chunk));
+        executor.invoke(new SimulateTask(0, sampleSize, all, chunk));
 
         if (graph instanceof TimeLagGraph) {
             int[] rem = new int[200];
@@ -866,4 +867,15 @@ public final class LargeScaleSimulation {
     public void setSelfLoopCoef(double selfLoopCoef) {
         this.selfLoopCoef = selfLoopCoef;
     }
+
+    /**
+     * Sets the executor rows are simulated on. By default this is the shared pool.
+     */
+    public void setExecutor(SearchExecutor executor) {
+        if (executor == null) {
+            throw new NullPointerException("Executor not provided.");
+        }
+
+        this.executor = executor;
+    }
 }
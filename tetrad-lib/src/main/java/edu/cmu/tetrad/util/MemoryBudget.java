@@ -0,0 +1,161 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.util;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A number of bytes that caches may use among them. Each cache opens an account and reserves bytes from
+ * it before keeping something, releasing them when it lets the thing go; a reservation that would take the
+ * total over the budget is refused, and the cache should then compute again rather than keep. The bytes
+ * of an account are returned to the budget when the account is closed or, failing that, once its owner
+ * has been garbage collected, so that caches that are dropped without being closed do not hold on to them.
+ * <p>
+ * The shared budget, an eighth of the maximum heap, is for caches that are made in numbers, such as those
+ * of scores and tests built for each of many resamples, so that together they stay within it.
+ *
+ * @author Joseph Ramsey
+ */
+public final class MemoryBudget {
+
+    private static final MemoryBudget SHARED = new MemoryBudget(Runtime.getRuntime().maxMemory() / 8);
+
+    private final long maxBytes;
+    private final AtomicLong numBytes = new AtomicLong();
+
+    // The accounts open, so that they are reachable until they are closed or their owners are collected,
+    // and the queue their owners' collections are reported on.
+    private final Set<Account> accounts = Collections.newSetFromMap(new ConcurrentHashMap<Account, Boolean>());
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    /**
+     * Constructs a budget of the given number of bytes.
+     */
+    public MemoryBudget(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Memory budget must be non-negative: " + maxBytes);
+        }
+
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the budget shared by caches that are not given one of their own.
+     */
+    public static MemoryBudget shared() {
+        return SHARED;
+    }
+
+    /**
+     * Opens an account for the given owner, typically the cache itself. The account must not refer to the
+     * owner, or the owner will never be collected.
+     */
+    public Account open(Object owner) {
+        expunge();
+        Account account = new Account(owner);
+        accounts.add(account);
+        return account;
+    }
+
+    /**
+     * @return the number of bytes of the budget.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the number of bytes reserved from the budget by all accounts.
+     */
+    public long getNumBytes() {
+        return numBytes.get();
+    }
+
+    // Closes the accounts whose owners have been collected.
+    private void expunge() {
+        Reference<?> reference;
+
+        while ((reference = collected.poll()) != null) {
+            ((Account) reference).close();
+        }
+    }
+
+    /**
+     * The bytes reserved by one cache.
+     */
+    public final class Account extends PhantomReference<Object> {
+        private final AtomicLong numBytes = new AtomicLong();
+
+        private Account(Object owner) {
+            super(owner, collected);
+        }
+
+        /**
+         * Reserves the given number of bytes, if the budget has room for them.
+         *
+         * @return true if they were reserved.
+         */
+        public boolean reserve(long bytes) {
+            expunge();
+
+            while (true) {
+                long current = MemoryBudget.this.numBytes.get();
+                if (current + bytes > maxBytes) return false;
+                if (MemoryBudget.this.numBytes.compareAndSet(current, current + bytes)) break;
+            }
+
+            numBytes.addAndGet(bytes);
+            return true;
+        }
+
+        /**
+         * Returns the given number of bytes, which must have been reserved, to the budget.
+         */
+        public void release(long bytes) {
+            numBytes.addAndGet(-bytes);
+            MemoryBudget.this.numBytes.addAndGet(-bytes);
+        }
+
+        /**
+         * Returns all of the bytes of the account to the budget. Nothing more should be reserved.
+         */
+        public void close() {
+            if (accounts.remove(this)) {
+                MemoryBudget.this.numBytes.addAndGet(-numBytes.getAndSet(0));
+            }
+        }
+
+        /**
+         * @return the number of bytes reserved by this account.
+         */
+        public long getNumBytes() {
+            return numBytes.get();
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.util;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,10 +38,22 @@ import java.util.Map;
 public class MultiDimIntTable {
 
     /**
-     * A single-dimension array containing all of the cells of the table. Must
-     * be at least long enough to contain data for each cell allowed for by the
-     * given dimension array--in other words, the length must be greater than or
-     * equal to dims[0] & dims[1] ... * dims[dims.length - 1].
+     * Tables with at most this many cells are stored in an array; larger
+     * ones, which are usually sparse, in a map.
+     */
+    private static final int MAX_DENSE_CELLS = 1 << 16;
+
+    /**
+     * A single-dimension array containing all of the cells of the table, if it
+     * is stored densely. Must be at least long enough to contain data for each
+     * cell allowed for by the given dimension array--in other words, the
+     * length must be greater than or equal to dims[0] & dims[1] ... *
+     * dims[dims.length - 1]. It is reused when the table is reset.
+     */
+    private long[] values;
+
+    /**
+     * The nonzero cells of the table, by index, if it is stored sparsely.
      */
     private Map<Integer, Long> cells;
 
@@ -114,14 +127,26 @@ public class MultiDimIntTable {
      * @return the new value at that table cell.
      */
     public synchronized long increment(int[] coords, int value) {
-        int cellIndex = getCellIndex(coords);
+        return increment(getCellIndex(coords), value);
+    }
 
-        if (!cells.containsKey(cellIndex)) {
-            cells.put(cellIndex, 0L);
+    /**
+     * Increments the value of the cell with the given index by the specified
+     * amount, returning the new value.
+     *
+     * @param cellIndex The index of the cell, as given by getCellIndex().
+     * @param value     The amount by which the cell should be incremented.
+     * @return the new value at that table cell.
+     */
+    public synchronized long increment(int cellIndex, int value) {
+        if (values != null) {
+            return values[cellIndex] += value;
         }
 
-        cells.put(cellIndex, cells.get(cellIndex) + value);
-        return cells.get(cellIndex);
+        Long current = cells.get(cellIndex);
+        long newValue = (current == null ? 0L : current) + value;
+        cells.put(cellIndex, newValue);
+        return newValue;
     }
 
     /**
@@ -136,8 +161,14 @@ public class MultiDimIntTable {
     @SuppressWarnings({"UnusedDeclaration"})
     public synchronized long setValue(int[] coords, int value) {
         int cellIndex = getCellIndex(coords);
-        cells.put(cellIndex, (long) value);
-        return cells.get(cellIndex);
+
+        if (values != null) {
+            values[cellIndex] = value;
+        } else {
+            cells.put(cellIndex, (long) value);
+        }
+
+        return value;
     }
 
     /**
@@ -147,7 +178,9 @@ public class MultiDimIntTable {
     public synchronized long getValue(int[] coords) {
         int cellIndex = getCellIndex(coords);
 
-        if (cells == null || !cells.containsKey(cellIndex)) {
+        if (values != null) {
+            return values[cellIndex];
+        } else if (cells == null || !cells.containsKey(cellIndex)) {
             return 0L;
         } else {
             return cells.get(cellIndex);
@@ -194,6 +227,7 @@ public class MultiDimIntTable {
      */
     public synchronized final void reset(int[] dims) {
         if (dims == null) {
+            values = null;
             cells = null;
         } else {
             if (dims.length < 1) {
@@ -215,8 +249,24 @@ public class MultiDimIntTable {
                 this.numCells *= dim;
             }
 
-            // Construct (or reset) cells array.
-            cells = new HashMap<>();
+            // Construct (or reset) the cells.
+            if (numCells <= MAX_DENSE_CELLS) {
+                if (values == null || values.length < numCells) {
+                    values = new long[numCells];
+                } else {
+                    Arrays.fill(values, 0, numCells, 0L);
+                }
+
+                cells = null;
+            } else {
+                if (cells == null) {
+                    cells = new HashMap<>();
+                } else {
+                    cells.clear();
+                }
+
+                values = null;
+            }
 
             // Store the dimensions, making a copy for security.
             this.dims = new int[dims.length];
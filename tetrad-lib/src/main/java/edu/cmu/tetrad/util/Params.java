@@ -41,6 +41,7 @@ public final class Params {
     public static final String APPLY_R1 = "applyR1";
     public static final String AVG_DEGREE = "avgDegree";
     public static final String BASIS_TYPE = "basisType";
+    public static final String CACHE_SCORES = "cacheScores";
     public static final String CCI_SCORE_ALPHA = "cciScoreAlpha";
     public static final String CG_EXACT = "cgExact";
     public static final String COEF_HIGH = "coefHigh";
@@ -86,7 +87,9 @@ public final class Params {
     public static final String KCI_ALPHA = "kciAlpha";
     public static final String KCI_CUTOFF = "kciCutoff";
     public static final String KCI_EPSILON = "kciEpsilon";
+    public static final String KCI_KERNEL_APPROXIMATION = "kciKernelApproximation";
     public static final String KCI_NUM_BOOTSTRAPS = "kciNumBootstraps";
+    public static final String KCI_RANK = "kciRank";
     public static final String KCI_USE_APPROMATION = "kciUseAppromation";
     public static final String KERNEL_MULTIPLIER = "kernelMultiplier";
     public static final String KERNEL_REGRESSION_SAMPLE_SIZE = "kernelRegressionSampleSize";
@@ -148,6 +151,7 @@ public final class Params {
     public static final String SCALE_FREE_DELTA_IN = "scaleFreeDeltaIn";
     public static final String SCALE_FREE_DELTA_OUT = "scaleFreeDeltaOut";
     public static final String SELF_LOOP_COEF = "selfLoopCoef";
+    public static final String SINGLE_PRECISION = "singlePrecision";
     public static final String SKIP_NUM_RECORDS = "skipNumRecords";
     public static final String STABLE_FAS = "stableFAS";
     public static final String STANDARDIZE = "standardize";
@@ -175,7 +179,7 @@ public final class Params {
 
     // All parameters that are found in HTML manual documentation
     private static final Set<String> ALL_PARAMS_IN_HTML_MANUAL = new HashSet<>(Arrays.asList(
-            ADD_ORIGINAL_DATASET, ALPHA, APPLY_R1, AVG_DEGREE, BASIS_TYPE,
+            ADD_ORIGINAL_DATASET, ALPHA, APPLY_R1, AVG_DEGREE, BASIS_TYPE, CACHE_SCORES,
             CCI_SCORE_ALPHA, CG_EXACT, COEF_HIGH, COEF_LOW, COEF_SYMMETRIC,
             COLLIDER_DISCOVERY_RULE, COMPLETE_RULE_SET_USED, CONCURRENT_FAS,
             CONFLICT_RULE, CONNECTED, COV_HIGH, COV_LOW, COV_SYMMETRIC,
@@ -188,7 +192,7 @@ public final class Params {
             INCLUDE_NEGATIVE_SKEWS_FOR_BETA, INCLUDE_POSITIVE_COEFS,
             INCLUDE_POSITIVE_SKEWS_FOR_BETA, INCLUDE_STRUCTURE_MODEL,
             INTERVAL_BETWEEN_RECORDINGS, INTERVAL_BETWEEN_SHOCKS, IPEN, IS, ITR,
-            KCI_ALPHA, KCI_CUTOFF, KCI_EPSILON, KCI_NUM_BOOTSTRAPS, KCI_USE_APPROMATION,
+            KCI_ALPHA, KCI_CUTOFF, KCI_EPSILON, KCI_KERNEL_APPROXIMATION, KCI_NUM_BOOTSTRAPS, KCI_RANK, KCI_USE_APPROMATION,
             KERNEL_MULTIPLIER, KERNEL_REGRESSION_SAMPLE_SIZE, KERNEL_TYPE, KERNEL_WIDTH,
             LATENT_MEASURED_IMPURE_PARENTS, LOWER_BOUND, MAX_CATEGORIES, MAX_DEGREE,
             MAX_DISTINCT_VALUES_DISCRETE, MAX_INDEGREE, MAX_ITERATIONS, MAX_OUTDEGREE,
@@ -204,7 +208,7 @@ public final class Params {
             PROB_CYCLE, PROB_TWO_CYCLE, RANDOM_SELECTION_SIZE, RANDOMIZE_COLUMNS,
             RCIT_NUM_FEATURES, RESAMPLING_ENSEMBLE, RESAMPLING_WITH_REPLACEMENT, SAMPLE_PRIOR,
             SAMPLE_SIZE, SAVE_LATENT_VARS, SCALE_FREE_ALPHA, SCALE_FREE_BETA, SCALE_FREE_DELTA_IN,
-            SCALE_FREE_DELTA_OUT, SELF_LOOP_COEF, SKIP_NUM_RECORDS, STABLE_FAS, STANDARDIZE,
+            SCALE_FREE_DELTA_OUT, SELF_LOOP_COEF, SINGLE_PRECISION, SKIP_NUM_RECORDS, STABLE_FAS, STANDARDIZE,
             STRUCTURE_PRIOR, SYMMETRIC_FIRST_STEP, TARGET_NAME, THR, THRESHOLD_FOR_NUM_EIGENVALUES,
             THRESHOLD_NO_RANDOM_CONSTRAIN_SEARCH, THRESHOLD_NO_RANDOM_DATA_SEARCH, TWO_CYCLE_ALPHA,
             UPPER_BOUND, USE_CORR_DIFF_ADJACENCIES, USE_FAS_ADJACENCIES, USE_GAP,
@@ -0,0 +1,179 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * The pool a search runs its parallel work on, together with a cancellation flag for that search.
+ * <p>
+ * By default searches share the JVM-wide pool in ForkJoinPoolInstance; searches that should not compete
+ * with one another for threads can each be given an executor from create(parallelism), which owns a
+ * pool of its own. Cancellation is cooperative: cancel() sets a flag that the search checks between
+ * units of work, so one search can be stopped without interrupting the others sharing its pool.
+ * The pool's queue and steal counts are exposed for monitoring.
+ *
+ * @author Joseph Ramsey
+ */
+public class SearchExecutor {
+
+    private final ForkJoinPool pool;
+
+    // True if the pool was created for this executor and should be shut down with it.
+    private final boolean ownsPool;
+
+    private volatile boolean canceled = false;
+
+    private SearchExecutor(ForkJoinPool pool, boolean ownsPool) {
+        if (pool == null) {
+            throw new NullPointerException("Pool not provided.");
+        }
+
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    /**
+     * @return an executor for the JVM-wide pool in ForkJoinPoolInstance. Each call returns a new
+     * executor, so each has its own cancellation flag.
+     */
+    public static SearchExecutor shared() {
+        return new SearchExecutor(ForkJoinPoolInstance.getInstance().getPool(), false);
+    }
+
+    /**
+     * @param parallelism The maximum number of threads the search may use at once.
+     * @return an executor with a pool of its own.
+     */
+    public static SearchExecutor create(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+
+        return new SearchExecutor(new ForkJoinPool(parallelism), true);
+    }
+
+    /**
+     * @return an executor for the given pool, which the caller remains responsible for shutting down.
+     */
+    public static SearchExecutor wrap(ForkJoinPool pool) {
+        return new SearchExecutor(pool, false);
+    }
+
+    /**
+     * Runs the task on the pool and waits for its result. The task is expected to check isCanceled()
+     * itself.
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        return pool.invoke(task);
+    }
+
+    /**
+     * Runs the tasks on the pool and waits for all of them to finish. Tasks not yet started when the
+     * executor is canceled are skipped; their futures then throw an ExecutionException.
+     */
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        List<Callable<T>> _tasks = new ArrayList<>();
+
+        for (final Callable<T> task : tasks) {
+            _tasks.add(new Callable<T>() {
+                public T call() throws Exception {
+                    if (canceled) throw new CancellationException();
+                    return task.call();
+                }
+            });
+        }
+
+        return pool.invokeAll(_tasks);
+    }
+
+    /**
+     * Asks the search to stop. Work already running finishes its current unit; nothing further is started.
+     */
+    public void cancel() {
+        this.canceled = true;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Clears the cancellation flag so the executor can be used for another search.
+     */
+    public void reset() {
+        this.canceled = false;
+    }
+
+    /**
+     * Shuts down the pool if this executor created it; the shared pool is left running.
+     */
+    public void shutdown() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    public boolean ownsPool() {
+        return ownsPool;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @return an estimate of the number of tasks waiting in the pool's worker queues.
+     */
+    public long getQueuedTaskCount() {
+        return pool.getQueuedTaskCount();
+    }
+
+    /**
+     * @return an estimate of the number of tasks submitted to the pool not yet taken by a worker.
+     */
+    public int getQueuedSubmissionCount() {
+        return pool.getQueuedSubmissionCount();
+    }
+
+    /**
+     * @return an estimate of the number of tasks taken from one worker's queue by another.
+     */
+    public long getStealCount() {
+        return pool.getStealCount();
+    }
+
+    public int getActiveThreadCount() {
+        return pool.getActiveThreadCount();
+    }
+
+    public String toString() {
+        return "SearchExecutor parallelism = " + getParallelism()
+                + " queued = " + getQueuedTaskCount()
+                + " submissions = " + getQueuedSubmissionCount()
+                + " steals = " + getStealCount()
+                + (canceled ? " (canceled)" : "");
+    }
+}
@@ -34,12 +34,15 @@ import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.search.GraphSearch;
 import edu.cmu.tetrad.sem.GeneralizedSemIm;
 import edu.cmu.tetrad.sem.GeneralizedSemPm;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
 import edu.cmu.tetrad.util.StatUtils;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 //import cern.colt.Arrays;
 //import la.matrix.Matrix;
@@ -69,8 +72,9 @@ public class MGM extends ConvexProximal implements GraphSearch{
     private List<Node> variables;
     private List<Node> initVariables = null;
 
-    //Discrete Data coded as dummy variables
-    private DoubleMatrix2D dDat;
+    //Continuous data by column and discrete data by column as zero indexed levels, for the smooth part
+    private double[][] xCols;
+    private int[][] yCols;
 
 
     private DoubleMatrix1D lambda;
@@ -89,6 +93,21 @@ public class MGM extends ConvexProximal implements GraphSearch{
     //parameter weights
     private DoubleMatrix1D weights;
 
+    //Edges screened out of the current fit, whose parameters are kept at zero: cc edges by s < t,
+    //cd edges by continuous then discrete variable, and dd edges by r < r2
+    private boolean[][] screenedBeta;
+    private boolean[][] screenedTheta;
+    private boolean[][] screenedPhi;
+
+    //Whether to screen out edges before each fit
+    private boolean screening = true;
+
+    //lambda of the last fit, which the parameters are the solution for, or null if none
+    private DoubleMatrix1D lastLambda = null;
+
+    //fewest rows summed in a block of the smooth part
+    private static final int MIN_BLOCK_ROWS = 256;
+
     public MGM(DoubleMatrix2D x, DoubleMatrix2D y, List<Node> variables, int[] l, double[] lambda){
 
         if(l.length != y.columns())
@@ -348,13 +367,6 @@ public class MGM extends ConvexProximal implements GraphSearch{
         //lambda = factory1D.make(3);
     }
 
-    // avoid underflow in log(sum(exp(x))) calculation
-    private double logsumexp(DoubleMatrix1D x){
-        DoubleMatrix1D myX = x.copy();
-        double maxX = StatUtils.max(myX.toArray());
-        return Math.log(myX.assign(Functions.minus(maxX)).assign(Functions.exp).zSum()) + maxX;
-    }
-
     //calculate parameter weights as in Lee and Hastie
     private void calcWeights(){
         weights = factory1D.make(p+q);
@@ -372,18 +384,32 @@ public class MGM extends ConvexProximal implements GraphSearch{
     }
 
     /**
-     * Convert discrete data (in yDat) to a matrix of dummy variables (stored in dDat)
+     * Copy the data into columns (xCols and yCols), checking that every level of each discrete variable occurs.
+     * Rows of the matrix of dummy variables for the discrete data are formed from yCols as needed.
      */
     private void makeDummy(){
-        dDat = factory2D.make(n, lsum);
+        xCols = new double[p][];
+        for(int i = 0; i < p; i++){
+            xCols[i] = xDat.viewColumn(i).toArray();
+        }
+
+        yCols = new int[q][n];
         for(int i = 0; i < q; i++){
+            int[] counts = new int[l[i]];
+            for(int k = 0; k < n; k++){
+                yCols[i][k] = (int) yDat.getQuick(k, i) - 1;
+                counts[yCols[i][k]]++;
+            }
+
             for(int j = 0; j < l[i]; j++){
-                DoubleMatrix1D curCol = yDat.viewColumn(i).copy().assign(Functions.equals(j+1));
-                if(curCol.zSum() == 0)
+                if(counts[j] == 0)
                     throw new IllegalArgumentException("Discrete data is missing a level: variable " + i + " level " + j);
-                dDat.viewColumn(lcumsum[i]+j).assign(curCol);
             }
         }
+
+        screenedBeta = new boolean[p][p];
+        screenedTheta = new boolean[p][q];
+        screenedPhi = new boolean[q][q];
     }
 
     /**
@@ -412,79 +438,12 @@ public class MGM extends ConvexProximal implements GraphSearch{
      * @return
      */
     public double smoothValue(DoubleMatrix1D parIn){
-        //work with copy
-        MGMParams par = new MGMParams(parIn, p, lsum);
-
-        for(int i = 0; i < par.betad.size(); i++){
-            if(par.betad.get(i)<0)
+        for(int i = 0; i < p; i++){
+            if(parIn.get(p*p + i)<0)
                 return Double.POSITIVE_INFINITY;
         }
-        //double nll = 0;
-        //int n = xDat.rows();
-        //beta=beta+beta';
-        //phi=phi+phi';
-        upperTri(par.beta, 1);
-        par.beta.assign(alg.transpose(par.beta), Functions.plus);
-
-        for(int i = 0; i < q; i++){
-            par.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
-        }
-        // ensure mats are upper triangular
-        upperTri(par.phi,0);
-        par.phi.assign(alg.transpose(par.phi), Functions.plus);
-
-
-        //Xbeta=X*beta*diag(1./betad);
-        DoubleMatrix2D divBetaD = factory2D.diagonal(factory1D.make(p,1.0).assign(par.betad, Functions.div));
-        DoubleMatrix2D xBeta = alg.mult(xDat,alg.mult(par.beta, divBetaD));
-
-        //Dtheta=D*theta*diag(1./betad);
-        DoubleMatrix2D dTheta = alg.mult(alg.mult(dDat, par.theta), divBetaD);
-
-        // Squared loss
-        //sqloss=-n/2*sum(log(betad))+...
-        //.5*norm((X-e*alpha1'-Xbeta-Dtheta)*diag(sqrt(betad)),'fro')^2;
-        DoubleMatrix2D tempLoss = factory2D.make(n, xDat.columns());
-
-        //wxprod=X*(theta')+D*phi+e*alpha2';
-        DoubleMatrix2D wxProd = alg.mult(xDat, alg.transpose(par.theta));
-        wxProd.assign(alg.mult(dDat, par.phi), Functions.plus);
-        for(int i = 0; i < n; i++){
-            for(int j = 0; j < xDat.columns(); j++){
-                tempLoss.set(i,j,xDat.get(i,j) - par.alpha1.get(j) - xBeta.get(i,j) - dTheta.get(i,j));
-            }
-            for(int j = 0; j < dDat.columns(); j++){
-                wxProd.set(i,j,wxProd.get(i,j) + par.alpha2.get(j));
-            }
-        }
-
-        double sqloss = -n/2.0*par.betad.copy().assign(Functions.log).zSum() +
-                .5 * Math.pow(alg.normF(alg.mult(tempLoss, factory2D.diagonal(par.betad.copy().assign(Functions.sqrt)))), 2);
-
-
-        // categorical loss
-        /*catloss=0;
-        wxprod=X*(theta')+D*phi+e*alpha2'; %this is n by Ltot
-        for r=1:q
-            wxtemp=wxprod(:,Lsum(r)+1:Lsum(r)+L(r));
-            denom= logsumexp(wxtemp,2); %this is n by 1
-            catloss=catloss-sum(wxtemp(sub2ind([n L(r)],(1:n)',Y(:,r))));
-            catloss=catloss+sum(denom);
-        end
-        */
-
-        double catloss = 0;
-        for(int i = 0; i < yDat.columns(); i++){
-            DoubleMatrix2D wxTemp = wxProd.viewPart(0, lcumsum[i], n, l[i]);
-            for(int k = 0; k < n; k++){
-                DoubleMatrix1D curRow = wxTemp.viewRow(k);
-
-                catloss -= curRow.get((int) yDat.get(k, i) - 1);
-                catloss += logsumexp(curRow);
-            }
-        }
 
-        return (sqloss + catloss)/((double) n);
+        return computeSmooth(parIn, null);
     }
 
     /**
@@ -498,169 +457,15 @@ public class MGM extends ConvexProximal implements GraphSearch{
      * @return
      */
     public double smooth(DoubleMatrix1D parIn, DoubleMatrix1D gradOutVec){
-        //work with copy
-        MGMParams par = new MGMParams(parIn, p, lsum);
-        MGMParams gradOut = new MGMParams();
-
-        for(int i = 0; i < par.betad.size(); i++){
-            if(par.betad.get(i)<0)
-                return Double.POSITIVE_INFINITY;
-        }
-
-        //beta=beta-diag(diag(beta));
-        //for r=1:q
-        //  phi(Lsum(r)+1:Lsum(r+1),Lsum(r)+1:Lsum(r+1))=0;
-        //end
-        //beta=triu(beta); phi=triu(phi);
-        //beta=beta+beta';
-        //phi=phi+phi';
-        upperTri(par.beta, 1);
-        par.beta.assign(alg.transpose(par.beta), Functions.plus);
-
-        for(int i = 0; i < q; i++){
-            par.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
-        }
-        //ensure matrix is upper triangular
-        upperTri(par.phi,0);
-        par.phi.assign(alg.transpose(par.phi), Functions.plus);
-
-        //Xbeta=X*beta*diag(1./betad);
-        DoubleMatrix2D divBetaD = factory2D.diagonal(factory1D.make(p,1.0).assign(par.betad, Functions.div));
-        DoubleMatrix2D xBeta = alg.mult(xDat,alg.mult(par.beta, divBetaD));
-
-        //Dtheta=D*theta*diag(1./betad);
-        DoubleMatrix2D dTheta = alg.mult(alg.mult(dDat, par.theta), divBetaD);
-
-        // Squared loss
-        //tempLoss =  (X-e*alpha1'-Xbeta-Dtheta) = -res (in gradient code)
-        DoubleMatrix2D tempLoss = factory2D.make(n, xDat.columns());
-
-        //wxprod=X*(theta')+D*phi+e*alpha2';
-        DoubleMatrix2D wxProd = alg.mult(xDat, alg.transpose(par.theta));
-        wxProd.assign(alg.mult(dDat, par.phi), Functions.plus);
-        for(int i = 0; i < n; i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
-            for(int j = 0; j < xDat.columns(); j++){
-                tempLoss.set(i,j,xDat.get(i,j) - par.alpha1.get(j) - xBeta.get(i,j) - dTheta.get(i,j));
-            }
-            for(int j = 0; j < dDat.columns(); j++){
-                wxProd.set(i,j,wxProd.get(i,j) + par.alpha2.get(j));
-            }
-        }
-
-        //sqloss=-n/2*sum(log(betad))+...
-        //.5*norm((X-e*alpha1'-Xbeta-Dtheta)*diag(sqrt(betad)),'fro')^2;
-        double sqloss = -n/2.0*par.betad.copy().assign(Functions.log).zSum() +
-                .5 * Math.pow(alg.normF(alg.mult(tempLoss, factory2D.diagonal(par.betad.copy().assign(Functions.sqrt)))), 2);
-
-        //ok now tempLoss = res
-        tempLoss.assign(Functions.mult(-1));
-
-        //gradbeta=X'*(res);
-        gradOut.beta = alg.mult(alg.transpose(xDat), tempLoss);
-
-        //gradbeta=gradbeta-diag(diag(gradbeta)); % zero out diag
-        //gradbeta=tril(gradbeta)'+triu(gradbeta);
-        DoubleMatrix2D lowerBeta = alg.transpose(lowerTri(gradOut.beta.copy(), -1));
-        upperTri(gradOut.beta, 1).assign(lowerBeta, Functions.plus);
-
-        //gradalpha1=diag(betad)*sum(res,1)';
-        gradOut.alpha1 = alg.mult(factory2D.diagonal(par.betad),margSum(tempLoss, 1));
-
-        //gradtheta=D'*(res);
-        gradOut.theta = alg.mult(alg.transpose(dDat), tempLoss);
-
-        // categorical loss
-        /*catloss=0;
-        wxprod=X*(theta')+D*phi+e*alpha2'; %this is n by Ltot
-        for r=1:q
-            wxtemp=wxprod(:,Lsum(r)+1:Lsum(r)+L(r));
-            denom= logsumexp(wxtemp,2); %this is n by 1
-            catloss=catloss-sum(wxtemp(sub2ind([n L(r)],(1:n)',Y(:,r))));
-            catloss=catloss+sum(denom);
-        end
-        */
-
-        double catloss = 0;
-        for(int i = 0; i < yDat.columns(); i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
-            DoubleMatrix2D wxTemp = wxProd.viewPart(0, lcumsum[i], n, l[i]);
-            //need to copy init values for calculating nll
-            DoubleMatrix2D wxTemp0 = wxTemp.copy();
-
-            // does this need to be done in log space??
-            wxTemp.assign(Functions.exp);
-            DoubleMatrix1D invDenom = factory1D.make(n,1.0).assign(margSum(wxTemp, 2), Functions.div);
-            wxTemp.assign(alg.mult(factory2D.diagonal(invDenom), wxTemp));
-            for(int k = 0; k < n; k++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                DoubleMatrix1D curRow = wxTemp.viewRow(k);
-                DoubleMatrix1D curRow0 = wxTemp0.viewRow(k);
-
-                catloss -= curRow0.get((int) yDat.get(k, i) - 1);
-                catloss += logsumexp(curRow0);
-
-
-                //wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))=wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))-1;
-                curRow.set((int) yDat.get(k,i)-1, curRow.get((int) yDat.get(k,i)-1) - 1);
-            }
-        }
-
-        //gradalpha2=sum(wxprod,1)';
-        gradOut.alpha2 = margSum(wxProd,1);
-
-        //gradw=X'*wxprod;
-        DoubleMatrix2D gradW = alg.mult(alg.transpose(xDat), wxProd);
-
-        //gradtheta=gradtheta+gradw';
-        gradOut.theta.assign(alg.transpose(gradW), Functions.plus);
-
-        //gradphi=D'*wxprod;
-        gradOut.phi = alg.mult(alg.transpose(dDat), wxProd);
-
-        //zero out gradphi diagonal
-        //for r=1:q
-        //gradphi(Lsum(r)+1:Lsum(r+1),Lsum(r)+1:Lsum(r+1))=0;
-        //end
-        for(int i = 0; i < q; i++){
-            gradOut.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
-        }
-
-        //gradphi=tril(gradphi)'+triu(gradphi);
-        DoubleMatrix2D lowerPhi = alg.transpose(lowerTri(gradOut.phi.copy(), 0));
-        upperTri(gradOut.phi, 0).assign(lowerPhi, Functions.plus);
-
-        /*
-        for s=1:p
-            gradbetad(s)=-n/(2*betad(s))+1/2*norm(res(:,s))^2-res(:,s)'*(Xbeta(:,s)+Dtheta(:,s));
-        end
-         */
-        gradOut.betad = factory1D.make(xDat.columns());
         for(int i = 0; i < p; i++){
-            gradOut.betad.set(i, -n / (2.0 * par.betad.get(i)) + alg.norm2(tempLoss.viewColumn(i)) / 2.0 -
-                    alg.mult(tempLoss.viewColumn(i), xBeta.viewColumn(i).copy().assign(dTheta.viewColumn(i), Functions.plus)));
+            if(parIn.get(p*p + i)<0)
+                return Double.POSITIVE_INFINITY;
         }
 
-        gradOut.alpha1.assign(Functions.div((double) n));
-        gradOut.alpha2.assign(Functions.div((double) n));
-        gradOut.betad.assign(Functions.div((double) n));
-        gradOut.beta.assign(Functions.div((double) n));
-        gradOut.theta.assign(Functions.div((double) n));
-        gradOut.phi.assign(Functions.div((double) n));
-
-        gradOutVec.assign(gradOut.toMatrix1D());
-        return (sqloss + catloss)/((double) n);
+        return computeSmooth(parIn, gradOutVec);
     }
 
+
     /**
      * Calculates penalty term of objective function
      *
@@ -753,149 +558,313 @@ public class MGM extends ConvexProximal implements GraphSearch{
      * @return
      */
     public DoubleMatrix1D smoothGradient(DoubleMatrix1D parIn){
-        int n = xDat.rows();
-        MGMParams grad = new MGMParams();
+        DoubleMatrix1D grad = factory1D.make(parIn.size());
+        computeSmooth(parIn, grad);
+        return grad;
+    }
 
-        //
-        MGMParams par = new MGMParams(parIn, p, lsum);
-        upperTri(par.beta, 1);
-        par.beta.assign(alg.transpose(par.beta), Functions.plus);
+    /*
+     * The smooth part, with beta and phi made symmetric and the within variable blocks of phi zeroed:
+     *
+     *     res = X - e*alpha1' - X*beta*diag(1./betad) - D*theta'*diag(1./betad)
+     *     sqloss = -n/2*sum(log(betad)) + .5*norm(res*diag(sqrt(betad)),'fro')^2
+     *     wxprod = X*theta' + D*phi + e*alpha2'
+     *     catloss = sum over r of sum(logsumexp(wxprod(:,Lr),2) - wxprod(sub2ind([n Ltot],(1:n)',Y(:,r))))
+     *
+     * It is summed one row at a time, over blocks of rows in parallel, which keeps the work in memory the
+     * size of the parameters rather than of the data. D is never formed; a row of it picks out one level
+     * of each discrete variable. Zero blocks of the parameters are skipped, and so are the gradients of
+     * screened edges, which are left at zero.
+     */
+    private double computeSmooth(DoubleMatrix1D parIn, DoubleMatrix1D gradOutVec){
+        final Smooth smooth = new Smooth(new MGMParams(parIn, p, lsum), gradOutVec != null);
+        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        int chunk = Math.max(MIN_BLOCK_ROWS, n / (2 * pool.getParallelism()) + 1);
 
-        for(int i = 0; i < q; i++){
-            par.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
+        double[] sums = pool.invoke(new SmoothTask(smooth, chunk, 0, n));
+
+        double[] betad = smooth.betad;
+        double sqloss = 0;
+
+        for(int s = 0; s < p; s++){
+            sqloss -= n/2.0*Math.log(betad[s]);
         }
-        upperTri(par.phi, 0);
-        par.phi.assign(alg.transpose(par.phi), Functions.plus);
 
-        //Xbeta=X*beta*diag(1./betad);
-        //Dtheta=D*theta*diag(1./betad);
-        DoubleMatrix2D divBetaD = factory2D.diagonal(factory1D.make(p, 1.0).assign(par.betad, Functions.div));
+        sqloss += .5*sums[0];
+        double catloss = sums[1];
 
-        DoubleMatrix2D xBeta = alg.mult(alg.mult(xDat, par.beta), divBetaD);
-        DoubleMatrix2D dTheta = alg.mult(alg.mult(dDat, par.theta), divBetaD);
+        if(gradOutVec != null){
+            MGMParams grad = new MGMParams(factory2D.make(p, p), factory1D.make(p), factory2D.make(lsum, p),
+                    factory2D.make(lsum, lsum), factory1D.make(p), factory1D.make(lsum));
+            int k = 2;
 
-        //res=Xbeta-X+e*alpha1'+Dtheta;
-        DoubleMatrix2D negLoss = factory2D.make(n, xDat.columns());
+            for(int s = 0; s < p; s++) grad.alpha1.setQuick(s, betad[s]*sums[k++]/n);
+            for(int s = 0; s < p; s++) grad.betad.setQuick(s, (-n/(2.0*betad[s]) + sums[k++])/n);
+            for(int m = 0; m < lsum; m++) grad.alpha2.setQuick(m, sums[k++]/n);
+            for(int s = 0; s < p; s++) for(int t = 0; t < p; t++) grad.beta.setQuick(s, t, sums[k++]/n);
+            for(int m = 0; m < lsum; m++) for(int s = 0; s < p; s++) grad.theta.setQuick(m, s, sums[k++]/n);
+            for(int a = 0; a < lsum; a++) for(int b = 0; b < lsum; b++) grad.phi.setQuick(a, b, sums[k++]/n);
 
-        //wxprod=X*(theta')+D*phi+e*alpha2';
-        DoubleMatrix2D wxProd = alg.mult(xDat, alg.transpose(par.theta));
-        wxProd.assign(alg.mult(dDat, par.phi), Functions.plus);
-        for(int i = 0; i < n; i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
+            gradOutVec.assign(grad.toMatrix1D());
+        }
+
+        return (sqloss + catloss)/((double) n);
+    }
+
+    //the parameters in arrays for the smooth computation, with the nonzero and unscreened parts listed
+    private class Smooth {
+        final boolean gradient;
+        final double[][] beta; //symmetric
+        final double[] betad;
+        final double[][] theta;
+        final double[][] phi; //symmetric, zero within variables
+        final double[] alpha1;
+        final double[] alpha2;
+
+        final int[][] betaNz; //for each s, the t with beta(t,s) nonzero
+        final int[][] thetaNz; //for each level m, the s with theta(m,s) nonzero
+        final int[][] thetaBlocks; //for each r, the s with a nonzero theta block (r,s)
+        final int[][] phiBlocks; //for each r, the r2 with a nonzero phi block (r,r2)
+
+        final int[][] betaActive; //unscreened pairs s < t
+        final int[][] thetaActive; //for each s, the unscreened r
+        final int[][] phiActive; //unscreened pairs r < r2
+
+        final int size; //length of the sums
+
+        Smooth(MGMParams par, boolean gradient){
+            this.gradient = gradient;
+            beta = new double[p][p];
+            betad = par.betad.toArray();
+            theta = par.theta.toArray();
+            phi = new double[lsum][lsum];
+            alpha1 = par.alpha1.toArray();
+            alpha2 = par.alpha2.toArray();
+
+            for(int s = 0; s < p; s++){
+                for(int t = s+1; t < p; t++){
+                    beta[s][t] = beta[t][s] = par.beta.getQuick(s, t);
+                }
             }
 
-            for(int j = 0; j < p; j++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
+            for(int r = 0; r < q; r++){
+                for(int r2 = r+1; r2 < q; r2++){
+                    for(int a = lcumsum[r]; a < lcumsum[r+1]; a++){
+                        for(int b = lcumsum[r2]; b < lcumsum[r2+1]; b++){
+                            phi[a][b] = phi[b][a] = par.phi.getQuick(a, b);
+                        }
+                    }
                 }
+            }
 
-                negLoss.set(i,j, xBeta.get(i,j) - xDat.get(i,j) + par.alpha1.get(j) + dTheta.get(i,j));
+            betaNz = new int[p][];
+            for(int s = 0; s < p; s++){
+                betaNz[s] = nonzero(beta[s]);
             }
-            for(int j = 0; j < dDat.columns(); j++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
+
+            thetaNz = new int[lsum][];
+            for(int m = 0; m < lsum; m++){
+                thetaNz[m] = nonzero(theta[m]);
+            }
+
+            thetaBlocks = new int[q][];
+            phiBlocks = new int[q][];
+            for(int r = 0; r < q; r++){
+                List<Integer> ss = new ArrayList<>();
+                for(int s = 0; s < p; s++){
+                    for(int m = lcumsum[r]; m < lcumsum[r+1]; m++){
+                        if(theta[m][s] != 0){ ss.add(s); break; }
+                    }
+                }
+                thetaBlocks[r] = toArray(ss);
+
+                List<Integer> rs = new ArrayList<>();
+                for(int r2 = 0; r2 < q; r2++){
+                    BLOCK:
+                    for(int a = lcumsum[r]; a < lcumsum[r+1]; a++){
+                        for(int b = lcumsum[r2]; b < lcumsum[r2+1]; b++){
+                            if(phi[a][b] != 0){ rs.add(r2); break BLOCK; }
+                        }
+                    }
+                }
+                phiBlocks[r] = toArray(rs);
+            }
+
+            List<int[]> bPairs = new ArrayList<>();
+            List<int[]> pPairs = new ArrayList<>();
+            thetaActive = new int[p][];
+
+            if(gradient){
+                for(int s = 0; s < p; s++){
+                    for(int t = s+1; t < p; t++){
+                        if(!screenedBeta[s][t]) bPairs.add(new int[]{s, t});
+                    }
+
+                    List<Integer> rs = new ArrayList<>();
+                    for(int r = 0; r < q; r++){
+                        if(!screenedTheta[s][r]) rs.add(r);
+                    }
+                    thetaActive[s] = toArray(rs);
                 }
 
-                wxProd.set(i,j,wxProd.get(i,j) + par.alpha2.get(j));
+                for(int r = 0; r < q; r++){
+                    for(int r2 = r+1; r2 < q; r2++){
+                        if(!screenedPhi[r][r2]) pPairs.add(new int[]{r, r2});
+                    }
+                }
             }
+
+            betaActive = bPairs.toArray(new int[0][]);
+            phiActive = pPairs.toArray(new int[0][]);
+            size = gradient ? 2 + 2*p + lsum + p*p + lsum*p + lsum*lsum : 2;
         }
 
-        //gradbeta=X'*(res);
-        grad.beta = alg.mult(alg.transpose(xDat), negLoss);
+        //adds to sums the terms for rows from, ..., to - 1: the squared loss weighted by betad, the
+        //categorical loss, and the gradient sums, laid out as alpha1, betad, alpha2, beta, theta, phi.
+        void addRows(int from, int to, double[] sums){
+            double[] x = new double[p];
+            double[] xb = new double[p];
+            double[] dt = new double[p];
+            double[] neg = new double[p];
+            double[] wx = new double[lsum];
+            int[] y = new int[q];
 
-        //gradbeta=gradbeta-diag(diag(gradbeta)); % zero out diag
-        //gradbeta=tril(gradbeta)'+triu(gradbeta);
-        DoubleMatrix2D lowerBeta = alg.transpose(lowerTri(grad.beta.copy(), -1));
-        upperTri(grad.beta, 1).assign(lowerBeta, Functions.plus);
+            int a1 = 2, bd = a1 + p, a2 = bd + p, b0 = a2 + lsum, t0 = b0 + p*p, p0 = t0 + lsum*p;
 
-        //gradalpha1=diag(betad)*sum(res,1)';
-        grad.alpha1 = alg.mult(factory2D.diagonal(par.betad),margSum(negLoss, 1));
+            for(int i = from; i < to; i++){
+                for(int s = 0; s < p; s++) x[s] = xCols[s][i];
+                for(int r = 0; r < q; r++) y[r] = lcumsum[r] + yCols[r][i];
 
-        //gradtheta=D'*(res);
-        grad.theta = alg.mult(alg.transpose(dDat), negLoss);
+                for(int s = 0; s < p; s++){
+                    double sum = 0;
+                    for(int t : betaNz[s]) sum += x[t]*beta[t][s];
+                    xb[s] = sum/betad[s];
+                    dt[s] = 0;
+                }
 
-        /*
-        wxprod=X*(theta')+D*phi+e*alpha2'; %this is n by Ltot
-        Lsum=[0;cumsum(L)];
-        for r=1:q
-            idx=Lsum(r)+1:Lsum(r)+L(r);
-            wxtemp=wxprod(:,idx); %n by L(r)
-            denom=sum(exp(wxtemp),2); % this is n by 1
-            wxtemp=diag(sparse(1./denom))*exp(wxtemp);
-            wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))=wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))-1;
-            wxprod(:,idx)=wxtemp;
-        end
-        */
+                for(int r = 0; r < q; r++){
+                    double[] row = theta[y[r]];
+                    for(int s : thetaBlocks[r]) dt[s] += row[s];
+                }
 
-        for(int i = 0; i < yDat.columns(); i++){
-            DoubleMatrix2D wxTemp = wxProd.viewPart(0, lcumsum[i], n, l[i]);
+                for(int s = 0; s < p; s++){
+                    dt[s] /= betad[s];
+                    double res = x[s] - alpha1[s] - xb[s] - dt[s];
+                    sums[0] += res*res*betad[s];
+                    neg[s] = -res;
+                }
 
-            // does this need to be done in log space??
-            wxTemp.assign(Functions.exp);
-            DoubleMatrix1D invDenom = factory1D.make(n,1.0).assign(margSum(wxTemp, 2), Functions.div);
-            wxTemp.assign(alg.mult(factory2D.diagonal(invDenom), wxTemp));
-            for(int k = 0; k < n; k++){
-                DoubleMatrix1D curRow = wxTemp.viewRow(k);
+                for(int m = 0; m < lsum; m++){
+                    double sum = alpha2[m];
+                    double[] row = theta[m];
+                    for(int s : thetaNz[m]) sum += x[s]*row[s];
+                    wx[m] = sum;
+                }
 
-                //wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))=wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))-1;
-                curRow.set((int) yDat.get(k,i)-1, curRow.get((int) yDat.get(k,i)-1) - 1);
-            }
-        }
+                for(int r = 0; r < q; r++){
+                    double[] row = phi[y[r]];
+                    for(int r2 : phiBlocks[r]){
+                        for(int b = lcumsum[r2]; b < lcumsum[r2+1]; b++) wx[b] += row[b];
+                    }
+                }
 
-        //gradalpha2=sum(wxprod,1)';
-        grad.alpha2 = margSum(wxProd,1);
+                //catloss, and wx replaced by the softmax of each variable less its indicator
+                for(int r = 0; r < q; r++){
+                    double max = Double.NEGATIVE_INFINITY;
+                    for(int m = lcumsum[r]; m < lcumsum[r+1]; m++) max = Math.max(max, wx[m]);
 
-        //gradw=X'*wxprod;
-        DoubleMatrix2D gradW = alg.mult(alg.transpose(xDat), wxProd);
+                    double denom = 0;
+                    for(int m = lcumsum[r]; m < lcumsum[r+1]; m++) denom += Math.exp(wx[m] - max);
 
-        //gradtheta=gradtheta+gradw';
-        grad.theta.assign(alg.transpose(gradW), Functions.plus);
+                    double logDenom = Math.log(denom) + max;
+                    sums[1] += logDenom - wx[y[r]];
 
-        //gradphi=D'*wxprod;
-        grad.phi = alg.mult(alg.transpose(dDat), wxProd);
+                    if(gradient){
+                        for(int m = lcumsum[r]; m < lcumsum[r+1]; m++) wx[m] = Math.exp(wx[m] - logDenom);
+                        wx[y[r]] -= 1;
+                    }
+                }
 
-        //zero out gradphi diagonal
-        //for r=1:q
-        //gradphi(Lsum(r)+1:Lsum(r+1),Lsum(r)+1:Lsum(r+1))=0;
-        //end
-        for(int i = 0; i < q; i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
+                if(!gradient) continue;
 
-            grad.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
-        }
+                for(int s = 0; s < p; s++){
+                    sums[a1 + s] += neg[s];
+                    sums[bd + s] += neg[s]*neg[s]/2.0 - neg[s]*(xb[s] + dt[s]);
+                }
 
-        //gradphi=tril(gradphi)'+triu(gradphi);
-        DoubleMatrix2D lowerPhi = alg.transpose(lowerTri(grad.phi.copy(), 0));
-        upperTri(grad.phi, 0).assign(lowerPhi, Functions.plus);
+                for(int m = 0; m < lsum; m++) sums[a2 + m] += wx[m];
 
-        /*
-        for s=1:p
-            gradbetad(s)=-n/(2*betad(s))+1/2*norm(res(:,s))^2-res(:,s)'*(Xbeta(:,s)+Dtheta(:,s));
-        end
-         */
-        grad.betad = factory1D.make(xDat.columns());
-        for(int i = 0; i < p; i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
+                for(int[] pair : betaActive){
+                    int s = pair[0], t = pair[1];
+                    sums[b0 + s*p + t] += x[s]*neg[t] + x[t]*neg[s];
+                }
+
+                for(int s = 0; s < p; s++){
+                    for(int r : thetaActive[s]){
+                        sums[t0 + y[r]*p + s] += neg[s];
+                        for(int m = lcumsum[r]; m < lcumsum[r+1]; m++) sums[t0 + m*p + s] += x[s]*wx[m];
+                    }
+                }
+
+                for(int[] pair : phiActive){
+                    int r = pair[0], r2 = pair[1];
+                    for(int b = lcumsum[r2]; b < lcumsum[r2+1]; b++) sums[p0 + y[r]*lsum + b] += wx[b];
+                    for(int a = lcumsum[r]; a < lcumsum[r+1]; a++) sums[p0 + a*lsum + y[r2]] += wx[a];
+                }
+            }
+        }
+    }
+
+    //sums the smooth terms over rows from, ..., to - 1, splitting them into chunks
+    private static class SmoothTask extends RecursiveTask<double[]> {
+        private final Smooth smooth;
+        private final int chunk;
+        private final int from;
+        private final int to;
+
+        SmoothTask(Smooth smooth, int chunk, int from, int to){
+            this.smooth = smooth;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute(){
+            if(to - from <= chunk){
+                double[] sums = new double[smooth.size];
+                if(!Thread.currentThread().isInterrupted()) smooth.addRows(from, to, sums);
+                return sums;
             }
 
-            grad.betad.set(i, -n / (2.0 * par.betad.get(i)) + alg.norm2(negLoss.viewColumn(i)) / 2.0 -
-                    alg.mult(negLoss.viewColumn(i), xBeta.viewColumn(i).copy().assign(dTheta.viewColumn(i), Functions.plus)));
+            int mid = (from + to) / 2;
+            SmoothTask left = new SmoothTask(smooth, chunk, from, mid);
+            left.fork();
+            double[] sums = new SmoothTask(smooth, chunk, mid, to).compute();
+            double[] leftSums = left.join();
+
+            for(int k = 0; k < sums.length; k++) sums[k] += leftSums[k];
+            return sums;
         }
+    }
 
-        grad.alpha1.assign(Functions.div((double) n));
-        grad.alpha2.assign(Functions.div((double) n));
-        grad.betad.assign(Functions.div((double) n));
-        grad.beta.assign(Functions.div((double) n));
-        grad.theta.assign(Functions.div((double) n));
-        grad.phi.assign(Functions.div((double) n));
+    private static int[] nonzero(double[] v){
+        int count = 0;
+        for(double d : v) if(d != 0) count++;
 
-        return grad.toMatrix1D();
+        int[] nz = new int[count];
+        count = 0;
+        for(int k = 0; k < v.length; k++) if(v[k] != 0) nz[count++] = k;
+        return nz;
     }
 
+    private static int[] toArray(List<Integer> list){
+        int[] a = new int[list.size()];
+        for(int k = 0; k < a.length; k++) a[k] = list.get(k);
+        return a;
+    }
+
+
     /**
      * A proximal operator for the MGM
      *
@@ -1174,7 +1143,7 @@ public class MGM extends ConvexProximal implements GraphSearch{
      */
     public void learn(double epsilon, int iterLimit){
         ProximalGradient pg = new ProximalGradient();
-        setParams(new MGMParams(pg.learnBackTrack(this, params.toMatrix1D(), epsilon, iterLimit), p, lsum));
+        fit(pg, epsilon, iterLimit);
     }
 
     /**
@@ -1185,7 +1154,7 @@ public class MGM extends ConvexProximal implements GraphSearch{
      */
     public void learnEdges(int iterLimit){
         ProximalGradient pg = new ProximalGradient(.5, .9, true);
-        setParams(new MGMParams(pg.learnBackTrack(this, params.toMatrix1D(), 0.0, iterLimit), p, lsum));
+        fit(pg, 0.0, iterLimit);
     }
 
     /**
@@ -1198,7 +1167,221 @@ public class MGM extends ConvexProximal implements GraphSearch{
     public void learnEdges(int iterLimit, int edgeChangeTol){
         ProximalGradient pg = new ProximalGradient(.5, .9, true);
         pg.setEdgeChangeTol(edgeChangeTol);
-        setParams(new MGMParams(pg.learnBackTrack(this, params.toMatrix1D(), 0.0, iterLimit), p, lsum));
+        fit(pg, 0.0, iterLimit);
+    }
+
+    /**
+     * Learn MGM for each of the given lambdas in turn, as in search(), and return the graphs. Each fit starts from
+     * the one before, so sweeping the lambdas from largest to smallest, as for StARS, costs much less than fitting
+     * each one afresh: most edges are screened out of the sparse early fits, and each later fit starts close to its
+     * solution.
+     *
+     * @param lambdas lambdas for cc, cd, and dd edges for each fit
+     * @return the graph for each lambda
+     */
+    public List<Graph> searchPath(double[][] lambdas){
+        long startTime = System.currentTimeMillis();
+        List<Graph> graphs = new ArrayList<>();
+
+        for(double[] lambda : lambdas){
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            setLambda(lambda);
+            learnEdges(1000);
+            graphs.add(graphFromMGM());
+        }
+
+        elapsedTime = System.currentTimeMillis() - startTime;
+        return graphs;
+    }
+
+    /**
+     * Sets the lambdas for cc, cd, and dd edges. The parameters are kept, so the next fit starts from the last one.
+     */
+    public void setLambda(double[] lambda){
+        if(lambda.length != 3)
+            throw new IllegalArgumentException("Lambda should have three values for cc, cd, and dd edges respectively");
+
+        this.lambda = factory1D.make(lambda);
+    }
+
+    /**
+     * Whether to screen edges out of each fit by the sequential strong rule (Tibshirani et al 2012), using the
+     * gradient at the parameters the fit starts from. Edges wrongly screened out are found by checking the
+     * optimality conditions at the end of the fit, and the fit is continued with them, so screening changes only
+     * the time taken. Default is true.
+     */
+    public void setScreening(boolean screening){
+        this.screening = screening;
+    }
+
+    //run the proximal gradient from the current parameters, over the edges left after screening, until no
+    //screened edge violates the optimality conditions
+    private void fit(ProximalGradient pg, double epsilon, int iterLimit){
+        try {
+            screen();
+
+            while(true){
+                setParams(new MGMParams(pg.learnBackTrack(this, params.toMatrix1D(), epsilon, iterLimit), p, lsum));
+
+                if(!unscreenViolators() || Thread.currentThread().isInterrupted())
+                    break;
+            }
+
+            lastLambda = lambda.copy();
+        } finally {
+            screenAll(false);
+        }
+    }
+
+    //screen out each edge whose parameters are zero and whose gradient is less than w*(2*lambda - lambdaOld),
+    //where lambdaOld is the lambda of the last fit or, for the first fit, the least lambda for which all edges
+    //are zero at the starting point
+    private void screen(){
+        screenAll(false);
+
+        if(!screening)
+            return;
+
+        MGMParams grad = new MGMParams(smoothGradient(params.toMatrix1D()), p, lsum);
+        DoubleMatrix1D lambdaOld = lastLambda;
+
+        if(lambdaOld == null){
+            lambdaOld = factory1D.make(3);
+
+            for(int s = 0; s < p; s++){
+                for(int t = s+1; t < p; t++)
+                    lambdaOld.set(0, Math.max(lambdaOld.get(0), gradNorm(grad, 0, s, t) / weight(s, t)));
+                for(int r = 0; r < q; r++)
+                    lambdaOld.set(1, Math.max(lambdaOld.get(1), gradNorm(grad, 1, s, r) / weight(s, p+r)));
+            }
+
+            for(int r = 0; r < q; r++){
+                for(int r2 = r+1; r2 < q; r2++)
+                    lambdaOld.set(2, Math.max(lambdaOld.get(2), gradNorm(grad, 2, r, r2) / weight(p+r, p+r2)));
+            }
+        }
+
+        for(int s = 0; s < p; s++){
+            for(int t = s+1; t < p; t++){
+                screenedBeta[s][t] = isZero(0, s, t) &&
+                        gradNorm(grad, 0, s, t) < weight(s, t) * (2*lambda.get(0) - lambdaOld.get(0));
+            }
+
+            for(int r = 0; r < q; r++){
+                screenedTheta[s][r] = isZero(1, s, r) &&
+                        gradNorm(grad, 1, s, r) < weight(s, p+r) * (2*lambda.get(1) - lambdaOld.get(1));
+            }
+        }
+
+        for(int r = 0; r < q; r++){
+            for(int r2 = r+1; r2 < q; r2++){
+                screenedPhi[r][r2] = isZero(2, r, r2) &&
+                        gradNorm(grad, 2, r, r2) < weight(p+r, p+r2) * (2*lambda.get(2) - lambdaOld.get(2));
+            }
+        }
+    }
+
+    //bring back each screened edge whose gradient is more than w*lambda, so that it would not stay zero in a
+    //proximal step; returns true if there were any
+    private boolean unscreenViolators(){
+        boolean[][][] screened = {screenedBeta, screenedTheta, screenedPhi};
+        boolean any = false;
+
+        for(boolean[][] mat : screened)
+            for(boolean[] row : mat)
+                for(boolean b : row)
+                    any |= b;
+
+        if(!any)
+            return false;
+
+        boolean[][][] saved = new boolean[3][][];
+        for(int k = 0; k < 3; k++){
+            saved[k] = new boolean[screened[k].length][];
+            for(int i = 0; i < screened[k].length; i++) saved[k][i] = screened[k][i].clone();
+        }
+
+        screenAll(false);
+        MGMParams grad = new MGMParams(smoothGradient(params.toMatrix1D()), p, lsum);
+
+        for(int k = 0; k < 3; k++){
+            for(int i = 0; i < screened[k].length; i++) screened[k][i] = saved[k][i];
+        }
+
+        boolean violated = false;
+
+        for(int s = 0; s < p; s++){
+            for(int t = s+1; t < p; t++){
+                if(screenedBeta[s][t] && gradNorm(grad, 0, s, t) > weight(s, t) * lambda.get(0)){
+                    screenedBeta[s][t] = false;
+                    violated = true;
+                }
+            }
+
+            for(int r = 0; r < q; r++){
+                if(screenedTheta[s][r] && gradNorm(grad, 1, s, r) > weight(s, p+r) * lambda.get(1)){
+                    screenedTheta[s][r] = false;
+                    violated = true;
+                }
+            }
+        }
+
+        for(int r = 0; r < q; r++){
+            for(int r2 = r+1; r2 < q; r2++){
+                if(screenedPhi[r][r2] && gradNorm(grad, 2, r, r2) > weight(p+r, p+r2) * lambda.get(2)){
+                    screenedPhi[r][r2] = false;
+                    violated = true;
+                }
+            }
+        }
+
+        return violated;
+    }
+
+    private void screenAll(boolean screened){
+        for(boolean[] row : screenedBeta) Arrays.fill(row, screened);
+        for(boolean[] row : screenedTheta) Arrays.fill(row, screened);
+        for(boolean[] row : screenedPhi) Arrays.fill(row, screened);
+    }
+
+    private double weight(int i, int j){
+        return weights.get(i) * weights.get(j);
+    }
+
+    //norm of the gradient of a cc (type 0), cd (1), or dd (2) edge, as in the proximal operator
+    private double gradNorm(MGMParams grad, int type, int i, int j){
+        if(type == 0){
+            return Math.abs(grad.beta.get(i, j));
+        } else if(type == 1){
+            return norm2(grad.theta.viewColumn(i).viewPart(lcumsum[j], l[j]));
+        } else {
+            return norm2(grad.phi.viewPart(lcumsum[i], lcumsum[j], l[i], l[j]));
+        }
+    }
+
+    //whether the parameters of a cc (type 0), cd (1), or dd (2) edge are all zero
+    private boolean isZero(int type, int i, int j){
+        DoubleMatrix2D block;
+
+        if(type == 0){
+            return params.beta.get(i, j) == 0;
+        } else if(type == 1){
+            block = params.theta.viewPart(lcumsum[j], i, l[j], 1);
+        } else {
+            block = params.phi.viewPart(lcumsum[i], lcumsum[j], l[i], l[j]);
+        }
+
+        for(int a = 0; a < block.rows(); a++){
+            for(int b = 0; b < block.columns(); b++){
+                if(block.getQuick(a, b) != 0)
+                    return false;
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -1356,40 +1539,6 @@ public class MGM extends ConvexProximal implements GraphSearch{
      * PRIVATE UTILS
      */
     //Utils
-    //sum rows together if marg == 1 and cols together if marg == 2
-    //Using row-major speeds up marg=1 5x
-    private static DoubleMatrix1D margSum(DoubleMatrix2D mat, int marg){
-        int n = 0;
-        DoubleMatrix1D vec = null;
-        DoubleFactory1D fac = DoubleFactory1D.dense;
-
-        if(marg==1){
-            n = mat.columns();
-            vec = fac.make(n);
-            for (int j = 0; j < mat.rows(); j++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                for (int i = 0; i < n; i++){
-                    vec.setQuick(i, vec.getQuick(i) + mat.getQuick(j,i));
-                }
-            }
-        } else if (marg ==2){
-            n = mat.rows();
-            vec = fac.make(n);
-            for (int i = 0; i < n; i++) {
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                vec.setQuick(i, mat.viewRow(i).zSum());
-            }
-        }
-
-        return vec;
-    }
-
     //zeros out everthing below di-th diagonal
     public static DoubleMatrix2D upperTri(DoubleMatrix2D mat, int di){
         for(int i = Math.max(-di + 1, 0); i < mat.rows(); i++){
@@ -1409,25 +1558,6 @@ public class MGM extends ConvexProximal implements GraphSearch{
         return mat;
     }
 
-    //zeros out everthing above di-th diagonal
-    private static DoubleMatrix2D lowerTri(DoubleMatrix2D mat, int di){
-        for(int i = 0; i < mat.rows() - Math.max(di + 1, 0); i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
-            for(int j = Math.max(i + di + 1, 0); j <  mat.rows(); j++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                mat.set(i,j,0);
-            }
-        }
-
-        return mat;
-    }
-
     // should move somewhere else...
     private static double norm2(DoubleMatrix2D mat){
         //return Math.sqrt(mat.copy().assign(Functions.pow(2)).zSum());
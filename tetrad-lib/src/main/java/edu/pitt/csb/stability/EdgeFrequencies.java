@@ -0,0 +1,174 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.pitt.csb.stability;
+
+import cern.colt.matrix.DoubleFactory2D;
+import cern.colt.matrix.DoubleMatrix2D;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts how often each pair of variables is adjacent in the graphs found on subsamples, for stability
+ * selection and StARS. Graphs are added as they are found and then dropped, so the memory used is one count
+ * per pair of variables however many graphs there are. Graphs may be added from several threads at once.
+ * <p>
+ * The total instability of Liu et al (2010) is the average over pairs of 2 * theta * (1 - theta), where theta
+ * is the fraction of graphs in which the pair is adjacent. Bounds on what it will be once a planned number of
+ * graphs have been added can be had at any point, so that a search can stop as soon as the bounds settle
+ * whether it will exceed a cutoff.
+ *
+ * @author Joseph Ramsey
+ */
+public final class EdgeFrequencies {
+
+    // The variables, and their indices by name, since graphs found on different subsamples may have
+    // different nodes for them, in a different order.
+    private final List<Node> variables;
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    // The number of graphs in which each pair i < j is adjacent, at (i * (2p - i - 1)) / 2 + j - i - 1.
+    private final int[] counts;
+    private int numGraphs = 0;
+
+    /**
+     * Constructs frequencies for graphs over the given variables.
+     */
+    public EdgeFrequencies(List<Node> variables) {
+        this.variables = variables;
+        int p = variables.size();
+        this.counts = new int[p * (p - 1) / 2];
+
+        for (int i = 0; i < p; i++) {
+            indices.put(variables.get(i).getName(), i);
+        }
+    }
+
+    /**
+     * Counts the adjacencies of the given graph, whose nodes must be named as the variables are.
+     */
+    public synchronized void add(Graph graph) {
+        for (Edge edge : graph.getEdges()) {
+            Integer i = indices.get(edge.getNode1().getName());
+            Integer j = indices.get(edge.getNode2().getName());
+
+            if (i == null || j == null) {
+                throw new IllegalArgumentException("Not one of the variables: " + edge);
+            }
+
+            if (!i.equals(j)) {
+                counts[index(Math.min(i, j), Math.max(i, j))]++;
+            }
+        }
+
+        numGraphs++;
+    }
+
+    /**
+     * @return the number of graphs added.
+     */
+    public synchronized int getNumGraphs() {
+        return numGraphs;
+    }
+
+    /**
+     * @return the fraction of the graphs in which the variables at the given indices are adjacent.
+     */
+    public synchronized double getFrequency(int i, int j) {
+        if (i == j || numGraphs == 0) return 0.0;
+        return counts[index(Math.min(i, j), Math.max(i, j))] / (double) numGraphs;
+    }
+
+    /**
+     * @return the matrix of frequencies, symmetric, in the order of the variables, as StabilitySearch gives.
+     */
+    public synchronized DoubleMatrix2D toMatrix() {
+        int p = variables.size();
+        DoubleMatrix2D matrix = DoubleFactory2D.dense.make(p, p, 0.0);
+
+        for (int i = 0; i < p; i++) {
+            for (int j = i + 1; j < p; j++) {
+                double theta = getFrequency(i, j);
+                matrix.set(i, j, theta);
+                matrix.set(j, i, theta);
+            }
+        }
+
+        return matrix;
+    }
+
+    /**
+     * @return the total instability of the graphs added.
+     */
+    public synchronized double getInstability() {
+        return getInstabilityBounds(numGraphs)[0];
+    }
+
+    /**
+     * @return the least and greatest total instability there may be once the given number of graphs, counting
+     * those added so far, have been added. These are equal once all of them have been.
+     */
+    public synchronized double[] getInstabilityBounds(int numPlanned) {
+        if (numPlanned < numGraphs) {
+            throw new IllegalArgumentException("Already have " + numGraphs + " graphs.");
+        }
+
+        if (counts.length == 0 || numPlanned == 0) {
+            return new double[]{0.0, 0.0};
+        }
+
+        int remaining = numPlanned - numGraphs;
+        double low = 0.0, high = 0.0;
+
+        for (int count : counts) {
+
+            // The final frequency will be between these; 2 * theta * (1 - theta) is least at the end
+            // further from 1/2 and greatest at 1/2 or the end nearer to it.
+            double theta1 = count / (double) numPlanned;
+            double theta2 = (count + remaining) / (double) numPlanned;
+            double xi1 = 2 * theta1 * (1 - theta1);
+            double xi2 = 2 * theta2 * (1 - theta2);
+
+            low += Math.min(xi1, xi2);
+            high += theta1 <= 0.5 && theta2 >= 0.5 ? 0.5 : Math.max(xi1, xi2);
+        }
+
+        return new double[]{low / counts.length, high / counts.length};
+    }
+
+    /**
+     * @return the variables.
+     */
+    public List<Node> getVariables() {
+        return variables;
+    }
+
+    private int index(int i, int j) {
+        int p = variables.size();
+        return (i * (2 * p - i - 1)) / 2 + j - i - 1;
+    }
+}
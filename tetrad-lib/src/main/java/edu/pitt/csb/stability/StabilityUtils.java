@@ -30,6 +30,7 @@ import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.RandomUtil;
 import edu.pitt.csb.mgm.MGM;
 import edu.pitt.csb.mgm.MixedUtils;
 
@@ -38,8 +39,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Runs a search algorithm over a N subsamples of size b to asses stability
@@ -137,6 +141,129 @@ public class StabilityUtils {
         return thetaMat;
     }
 
+    /**
+     * The result of StARSPar: the search chosen, and the edge frequencies found for each search run.
+     */
+    public static class StARSResult {
+        private final EdgeFrequencies[] frequencies;
+        private final int chosen;
+        private final int numFits;
+
+        private StARSResult(EdgeFrequencies[] frequencies, int chosen, int numFits){
+            this.frequencies = frequencies;
+            this.chosen = chosen;
+            this.numFits = numFits;
+        }
+
+        //index of the densest search whose instability, and that of every sparser search, is under the cutoff,
+        //or -1 if there is none
+        public int getChosen(){
+            return chosen;
+        }
+
+        //edge frequencies over the subsamples the given search was run on, or null if it was not run
+        public EdgeFrequencies getFrequencies(int search){
+            return frequencies[search];
+        }
+
+        //number of subsample fits that were run
+        public int getNumFits(){
+            return numFits;
+        }
+    }
+
+    /**
+     * StARS (Liu et al 2010) over the given searches, ordered from sparsest to densest (for example MGM wrappers for
+     * decreasing lambda), on N subsamples of size b without replacement, the same subsamples for each search.
+     * The fits for a search are run in parallel and their adjacencies counted as each finishes, so only O(p^2)
+     * memory is kept however many subsamples there are. The remaining fits for a search are skipped once the
+     * bounds on its total instability settle whether it is over the cutoff, and the sweep stops at the first search
+     * that is, or that is not settled under it because the fits were interrupted.
+     */
+    public static StARSResult StARSPar(final DataSet data, List<DataGraphSearch> searches, final int N, final int b,
+                                       final double cutoff){
+        if (b < 1 || b > data.getNumRows()) {
+            throw new IllegalArgumentException("Subsample size must be between 1 and the sample size: " + b);
+        }
+
+        //each subsample is drawn from its seed when it is needed, rather than all being kept
+        final long[] seeds = new long[N];
+        for(int s = 0; s < N; s++){
+            seeds[s] = RandomUtil.getInstance().nextLong();
+        }
+
+        final ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        final AtomicInteger numFits = new AtomicInteger();
+        EdgeFrequencies[] frequencies = new EdgeFrequencies[searches.size()];
+        int chosen = -1;
+
+        for(int k = 0; k < searches.size(); k++){
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            final DataGraphSearch gs = searches.get(k);
+            final EdgeFrequencies freq = new EdgeFrequencies(data.getVariables());
+            final AtomicBoolean settled = new AtomicBoolean(false);
+            final AtomicInteger next = new AtomicInteger(0);
+            frequencies[k] = freq;
+
+            //each worker takes the next subsample until all are taken or the bounds are settled, so at most one fit
+            //per worker is run past the point where the bounds settle
+            class StreamAction extends RecursiveAction{
+                private int from;
+                private int to;
+
+                public StreamAction(int from, int to){
+                    this.from = from;
+                    this.to = to;
+                }
+
+                @Override
+                protected void compute(){
+                    if (to - from <= 1) {
+                        while (!settled.get() && !Thread.currentThread().isInterrupted()) {
+                            int s = next.getAndIncrement();
+                            if (s >= N) {
+                                return;
+                            }
+
+                            DataSet dataSubSamp = data.subsetRows(subSampleIndices(data.getNumRows(), b, seeds[s])).copy();
+                            Graph g = gs.copy().search(dataSubSamp);
+                            freq.add(g);
+                            numFits.incrementAndGet();
+
+                            double[] bounds = freq.getInstabilityBounds(N);
+
+                            if (bounds[1] <= cutoff || bounds[0] > cutoff) {
+                                settled.set(true);
+                            }
+                        }
+                    } else {
+                        final int mid = (to + from) / 2;
+
+                        StreamAction left = new StreamAction(from, mid);
+                        left.fork();
+                        new StreamAction(mid, to).compute();
+                        left.join();
+                    }
+                }
+            }
+
+            pool.invoke(new StreamAction(0, Math.min(N, pool.getParallelism())));
+
+            //unless the search is settled under the cutoff, which it is once all of its fits are in if it is not over
+            //it, the sweep stops here; it may not be if the fits were interrupted
+            if (freq.getInstabilityBounds(N)[1] > cutoff) {
+                break;
+            }
+
+            chosen = k;
+        }
+
+        return new StARSResult(frequencies, chosen, numFits.get());
+    }
+
     //needs a symmetric matrix
     //array of averages of instability matrix over [all, cc, cd, dd] edges
     public static double[] totalInstabilityUndir(DoubleMatrix2D xi, List<Node> vars){
@@ -235,6 +362,26 @@ public class StabilityUtils {
 
 
 
+    //sorted subsample of size subSize of 0, ..., N - 1, drawn from the given seed
+    private static int[] subSampleIndices(int N, int subSize, long seed){
+        Random random = new Random(seed);
+        int[] indices = new int[N];
+        for (int i = 0; i < N; i++) {
+            indices[i] = i;
+        }
+
+        for (int i = 0; i < subSize; i++) {
+            int j = i + random.nextInt(N - i);
+            int temp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = temp;
+        }
+
+        int[] samp = Arrays.copyOf(indices, subSize);
+        Arrays.sort(samp);
+        return samp;
+    }
+
     //some tests...
     public static void main(String[] args){
         String fn = "/Users/ajsedgewick/tetrad_mgm_runs/run2/networks/DAG_0_graph.txt";
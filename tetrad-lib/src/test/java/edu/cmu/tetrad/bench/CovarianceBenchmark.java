@@ -0,0 +1,120 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bench;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.stat.correlation.RealCovarianceMatrix;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.TetradMatrix;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the construction of covariance matrices from continuous data. CovarianceMatrix(DataSet) sums
+ * products a tile of pairs at a time when there are no missing values; given a data set with a missing
+ * value it sums them one pair at a time, as it used to for all data. These are compared with
+ * BlockedCovariance on bare columns and with RealCovarianceMatrix on rows.
+ * <p>
+ * Run with, e.g., "-p sampleSize=100000 -p numVariables=5000" for wide data.
+ *
+ * @author Joseph Ramsey
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CovarianceBenchmark {
+
+    @Param({"10000"})
+    public int sampleSize;
+
+    @Param({"100", "500"})
+    public int numVariables;
+
+    private DataSet dataSet;
+    private DataSet withMissing;
+    private double[][] columns;
+    private double[][] rows;
+
+    @Setup
+    public void setup() {
+        RandomUtil.getInstance().setSeed(3829384L);
+
+        List<Node> variables = new ArrayList<>();
+
+        for (int j = 0; j < numVariables; j++) {
+            variables.add(new ContinuousVariable("X" + j));
+        }
+
+        dataSet = new BoxDataSet(new VerticalDoubleDataBox(sampleSize, numVariables), variables);
+
+        for (int i = 0; i < sampleSize; i++) {
+            for (int j = 0; j < numVariables; j++) {
+                dataSet.setDouble(i, j, RandomUtil.getInstance().nextNormal(0, 1));
+            }
+        }
+
+        withMissing = dataSet.copy();
+        withMissing.setDouble(sampleSize - 1, numVariables - 1, Double.NaN);
+
+        columns = new double[numVariables][];
+
+        for (int j = 0; j < numVariables; j++) {
+            columns[j] = dataSet.getDoubleColumn(j);
+        }
+
+        rows = dataSet.getDoubleData().toArray();
+    }
+
+    @Benchmark
+    public ICovarianceMatrix covarianceMatrix() {
+        return new CovarianceMatrix(dataSet);
+    }
+
+    @Benchmark
+    public ICovarianceMatrix covarianceMatrixPairwise() {
+        return new CovarianceMatrix(withMissing);
+    }
+
+    @Benchmark
+    public TetradMatrix blockedCovariance() {
+        return BlockedCovariance.covariance(columns);
+    }
+
+    @Benchmark
+    public double[][] realCovarianceMatrix() {
+        return new RealCovarianceMatrix(rows).compute(true);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CovarianceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -273,6 +273,174 @@ public final class TestBoxDataSet {
             fail("Missing row in permutation.");
         }
     }
+
+    @Test
+    public void testPrimitiveAccessors() {
+        int rows = 20;
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X1"));
+        variables.add(new DiscreteVariable("X2", 3));
+
+        DataBox[] boxes = {
+                new VerticalDoubleDataBox(rows, 2),
+                new DoubleDataBox(rows, 2),
+                new VerticalIntDataBox(rows, 2),
+                new MixedDataBox(variables, rows),
+                new ShortDataBox(rows, 2)
+        };
+
+        RandomUtil randomUtil = RandomUtil.getInstance();
+
+        for (DataBox box : boxes) {
+            for (int i = 0; i < rows; i++) {
+                box.set(i, 0, i == 3 ? null : randomUtil.nextUniform(-10, 10));
+                box.set(i, 1, i == 5 ? null : randomUtil.nextInt(3));
+            }
+
+            for (int j = 0; j < 2; j++) {
+                double[] doubleColumn = box.getDoubleColumn(j);
+                int[] intColumn = box.getIntColumn(j);
+
+                for (int i = 0; i < rows; i++) {
+                    Number value = box.get(i, j);
+                    double d = value == null ? Double.NaN : value.doubleValue();
+                    int n = value == null ? DiscreteVariable.MISSING_VALUE : value.intValue();
+
+                    assertEquals(d, box.getDouble(i, j), 0.0);
+                    assertEquals(d, doubleColumn[i], 0.0);
+                    assertEquals(n, box.getInt(i, j));
+                    assertEquals(n, intColumn[i]);
+                }
+            }
+        }
+
+        // Column-major boxes hand out their stored columns.
+        DataSet dataSet = new BoxDataSet(boxes[0], variables);
+        assertSame(dataSet.getDoubleColumn(0), dataSet.getDoubleColumn(0));
+
+        dataSet = new BoxDataSet(boxes[3], variables);
+        assertSame(dataSet.getDoubleColumn(0), dataSet.getDoubleColumn(0));
+        assertSame(dataSet.getIntColumn(1), dataSet.getIntColumn(1));
+    }
+
+    @Test
+    public void testRowIndexedView() {
+        RandomUtil.getInstance().setSeed(3820402L);
+
+        int rows = 50;
+        List<Node> variables = new ArrayList<>();
+
+        for (int j = 0; j < 4; j++) {
+            variables.add(new ContinuousVariable("X" + j));
+        }
+
+        DataSet dataSet = new BoxDataSet(new VerticalDoubleDataBox(rows, variables.size()), variables);
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                dataSet.setDouble(i, j, RandomUtil.getInstance().nextNormal(j, 1));
+            }
+        }
+
+        int[] sample = new int[rows];
+        for (int i = 0; i < rows; i++) sample[i] = RandomUtil.getInstance().nextInt(rows);
+
+        DataSet view = DataUtils.viewRows(dataSet, sample);
+        DataSet copy = dataSet.subsetRows(sample);
+
+        assertTrue(((BoxDataSet) view).getDataBox() instanceof RowIndexedDataBox);
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                assertEquals(copy.getDouble(i, j), view.getDouble(i, j), 0.0);
+            }
+        }
+
+        assertTrue(new CovarianceMatrix(copy).getMatrix().equals(new CovarianceMatrix(view).getMatrix(), 1e-12));
+
+        // A view of a view indexes the original box.
+        int[] sample2 = {3, 3, 0};
+        DataSet view2 = DataUtils.viewRows(view, sample2);
+        assertSame(((BoxDataSet) dataSet).getDataBox(),
+                ((RowIndexedDataBox) ((BoxDataSet) view2).getDataBox()).getParent());
+        assertEquals(dataSet.getDouble(sample[3], 1), view2.getDouble(1, 1), 0.0);
+
+        // Writing to a view does not change the original.
+        double before = dataSet.getDouble(sample[0], 0);
+        view.setDouble(0, 0, 1000.0);
+        assertEquals(1000.0, view.getDouble(0, 0), 0.0);
+        assertEquals(before, dataSet.getDouble(sample[0], 0), 0.0);
+        assertEquals(copy.getDouble(1, 1), view.getDouble(1, 1), 0.0);
+    }
+
+    // Adding a variable to a bootstrap sample adds a column of missing values and keeps the others.
+    @Test
+    public void testAddVariableToBootstrapSample() {
+        RandomUtil.getInstance().setSeed(2039481L);
+
+        int rows = 30;
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X1"));
+        variables.add(new ContinuousVariable("X2"));
+
+        DataSet dataSet = new BoxDataSet(new VerticalDoubleDataBox(rows, variables.size()), variables);
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < variables.size(); j++) {
+                dataSet.setDouble(i, j, RandomUtil.getInstance().nextNormal(0, 1));
+            }
+        }
+
+        DataSet sample = DataUtils.getBootstrapSample(dataSet, 20);
+        DataSet copy = sample.copy();
+        assertTrue(((BoxDataSet) sample).getDataBox() instanceof RowIndexedDataBox);
+
+        sample.addVariable(new ContinuousVariable("X3"));
+
+        assertEquals(3, sample.getNumColumns());
+        assertEquals(20, sample.getNumRows());
+
+        for (int i = 0; i < sample.getNumRows(); i++) {
+            assertEquals(copy.getDouble(i, 0), sample.getDouble(i, 0), 0.0);
+            assertEquals(copy.getDouble(i, 1), sample.getDouble(i, 1), 0.0);
+            assertTrue(Double.isNaN(sample.getDouble(i, 2)));
+        }
+
+        assertEquals(2, dataSet.getNumColumns());
+        assertEquals(copy.getDouble(0, 1), sample.getDouble(0, 1), 0.0);
+    }
+
+    @Test
+    public void testRowIndexedCounts() {
+        RandomUtil.getInstance().setSeed(492034L);
+
+        int rows = 100;
+        List<Node> variables = new ArrayList<>();
+        variables.add(new DiscreteVariable("X1", 2));
+        variables.add(new DiscreteVariable("X2", 3));
+
+        DataSet dataSet = new BoxDataSet(new VerticalIntDataBox(rows, variables.size()), variables);
+
+        for (int i = 0; i < rows; i++) {
+            dataSet.setInt(i, 0, RandomUtil.getInstance().nextInt(2));
+            dataSet.setInt(i, 1, RandomUtil.getInstance().nextInt(3));
+        }
+
+        DataSet view = DataUtils.getBootstrapSample(dataSet, 70);
+        DataSet copy = view.copy();
+
+        int[] indices = {0, 1};
+        CellTable viewTable = new CellTable(new int[]{2, 3});
+        viewTable.addToTable(view, indices);
+        CellTable copyTable = new CellTable(new int[]{2, 3});
+        copyTable.addToTable(copy, indices);
+
+        for (int a = 0; a < 2; a++) {
+            for (int b = 0; b < 3; b++) {
+                assertEquals(copyTable.getValue(new int[]{a, b}), viewTable.getValue(new int[]{a, b}));
+            }
+        }
+    }
 }
 
 
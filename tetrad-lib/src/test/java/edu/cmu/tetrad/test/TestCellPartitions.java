@@ -0,0 +1,130 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.search.CellPartitions;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.TetradMatrix;
+import org.apache.commons.math3.stat.correlation.Covariance;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestCellPartitions {
+
+    private static final int N = 2000;
+    private static final int[] DIMS = {3, 0, 2, 0, 4, 0, 3};
+    private static final int[][] QUERIES = {{}, {0}, {2, 0}, {0, 2}, {0, 2, 4}, {4, 2}, {6, 4, 2, 0}, {2}};
+
+    // The cells and covariances are those of grouping the rows directly, with or without a budget.
+    @Test
+    public void testPartitions() {
+        RandomUtil.getInstance().setSeed(482934L);
+
+        int[][] discreteData = new int[DIMS.length][];
+        double[][] continuousData = new double[DIMS.length][];
+
+        for (int j = 0; j < DIMS.length; j++) {
+            if (DIMS[j] > 0) {
+                discreteData[j] = new int[N];
+
+                for (int i = 0; i < N; i++) {
+                    discreteData[j][i] = i % 53 == j ? -99 : RandomUtil.getInstance().nextInt(DIMS[j]);
+                }
+            } else {
+                continuousData[j] = new double[N];
+
+                for (int i = 0; i < N; i++) {
+                    continuousData[j][i] = 1000 + RandomUtil.getInstance().nextNormal(0, 1)
+                            + (discreteData[0][i] == 1 ? 2 : 0);
+                }
+            }
+        }
+
+        int[] cols = {1, 3, 5};
+
+        for (long maxBytes : new long[]{Long.MAX_VALUE, 0}) {
+            CellPartitions partitions = new CellPartitions(discreteData, DIMS, continuousData, maxBytes);
+
+            for (int pass = 0; pass < 2; pass++) {
+                for (int[] query : QUERIES) {
+                    List<List<Integer>> expected = group(discreteData, query);
+                    CellPartitions.Partition partition = partitions.getPartition(query);
+
+                    assertEquals(expected.size(), partition.getNumCells());
+
+                    for (int c = 0; c < expected.size(); c++) {
+                        List<Integer> cell = expected.get(c);
+                        assertEquals(cell.size(), partition.getSize(c));
+
+                        double[][] x = new double[cell.size()][cols.length];
+
+                        for (int i = 0; i < cell.size(); i++) {
+                            for (int j = 0; j < cols.length; j++) {
+                                x[i][j] = continuousData[cols[j]][cell.get(i)];
+                            }
+                        }
+
+                        TetradMatrix cov = new TetradMatrix(new Covariance(x, true).getCovarianceMatrix().getData());
+                        TetradMatrix cov2 = partition.getCovariance(c, cols);
+
+                        for (int a = 0; a < cols.length; a++) {
+                            for (int b = 0; b < cols.length; b++) {
+                                assertEquals(cov.get(a, b), cov2.get(a, b), 1e-9);
+                            }
+                        }
+                    }
+                }
+            }
+
+            assertTrue(maxBytes == 0 ? partitions.getNumBytes() == 0 : partitions.getNumBytes() > 0);
+        }
+    }
+
+    // Groups the rows with no missing values by their values of the given columns, in the order of the
+    // first row of each group.
+    private List<List<Integer>> group(int[][] discreteData, int[] query) {
+        Map<List<Integer>, List<Integer>> groups = new LinkedHashMap<>();
+
+        ROWS:
+        for (int i = 0; i < N; i++) {
+            List<Integer> values = new ArrayList<>();
+
+            for (int col : query) {
+                if (discreteData[col][i] == -99) continue ROWS;
+                values.add(discreteData[col][i]);
+            }
+
+            if (!groups.containsKey(values)) groups.put(values, new ArrayList<Integer>());
+            groups.get(values).add(i);
+        }
+
+        return new ArrayList<>(groups.values());
+    }
+}
@@ -21,14 +21,17 @@
 
 package edu.cmu.tetrad.test;
 
+import edu.cmu.tetrad.data.CellCounter;
 import edu.cmu.tetrad.data.CellTable;
 import edu.cmu.tetrad.data.ColtDataSet;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.MultiDimIntTable;
 import edu.cmu.tetrad.util.RandomUtil;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -408,6 +411,60 @@ public final class TestCellTable {
         }
     }
 
+    // Dense and sparse counts, of all rows and of some, with missing values, twice over to reuse the
+    // buffers.
+    @Test
+    public void testCounter() {
+        RandomUtil.getInstance().setSeed(2934857L);
+        int numRows = 3000;
+        int[] dims = {3, 4, 5, 2, 7, 6, 5};
+        int[][] columns = new int[dims.length][numRows];
+
+        for (int j = 0; j < dims.length; j++) {
+            for (int i = 0; i < numRows; i++) {
+                columns[j][i] = RandomUtil.getInstance().nextInt(50) == 0 ? -99
+                        : RandomUtil.getInstance().nextInt(dims[j]);
+            }
+        }
+
+        int[] rows = new int[numRows / 2];
+
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = RandomUtil.getInstance().nextInt(numRows);
+        }
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int m : new int[]{2, 4, 7}) {
+                int[][] _columns = Arrays.copyOf(columns, m);
+                int[] _dims = Arrays.copyOf(dims, m);
+
+                for (int[] _rows : new int[][]{null, rows}) {
+                    int n = _rows == null ? numRows : _rows.length;
+                    MultiDimIntTable table = new MultiDimIntTable(_dims);
+                    CellCounter.count(_columns, _dims, _rows, n, -99, table);
+
+                    MultiDimIntTable expected = new MultiDimIntTable(_dims);
+                    int[] coords = new int[m];
+
+                    ROW:
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < m; j++) {
+                            coords[j] = _columns[j][_rows == null ? i : _rows[i]];
+                            if (coords[j] == -99) continue ROW;
+                        }
+
+                        expected.increment(coords, 1);
+                    }
+
+                    for (int c = 0; c < table.getNumCells(); c++) {
+                        coords = table.getCoordinates(c);
+                        assertEquals(expected.getValue(coords), table.getValue(coords));
+                    }
+                }
+            }
+        }
+    }
+
     private static int[] pickRandomCell(int size) {
 
         int[] cell = new int[size];
@@ -45,6 +45,11 @@ public final class TestCollisions {
         checkGraph(new EdgeListGraph());
     }
 
+    @Test
+    public void testIntIndexedGraph() {
+        checkGraph(new IntIndexedGraph());
+    }
+
     private void checkGraph(Graph graph) {
         Node x1 = new GraphNode("x1");
         Node x2 = new GraphNode("x2");
@@ -0,0 +1,108 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestColumnarDataFile {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        RandomUtil.getInstance().setSeed(2938492L);
+
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X1"));
+        variables.add(new DiscreteVariable("X2", 3));
+        variables.add(new ContinuousVariable("X3"));
+
+        DataSet dataSet = new BoxDataSet(new MixedDataBox(variables, 101), variables);
+
+        for (int i = 0; i < 101; i++) {
+            dataSet.setDouble(i, 0, RandomUtil.getInstance().nextNormal(0, 1));
+            dataSet.setInt(i, 1, i % 10 == 0 ? -99 : RandomUtil.getInstance().nextInt(3));
+            dataSet.setDouble(i, 2, i % 7 == 0 ? Double.NaN : RandomUtil.getInstance().nextNormal(0, 1));
+        }
+
+        IKnowledge knowledge = new Knowledge2();
+        knowledge.addToTier(0, "X1");
+        knowledge.addToTier(1, "X2");
+        knowledge.setForbidden("X3", "X1");
+        dataSet.setKnowledge(knowledge);
+
+        File file = File.createTempFile("data", ColumnarDataFile.EXTENSION);
+        file.deleteOnExit();
+
+        DataWriter.writeColumnarData(dataSet, file);
+        assertTrue(ColumnarDataFile.isColumnar(file));
+
+        DataSet mapped = new DataReader().parseColumnar(file);
+
+        assertTrue(((BoxDataSet) mapped).getDataBox() instanceof MappedDataBox);
+        assertEquals(dataSet.getVariableNames(), mapped.getVariableNames());
+        assertEquals(((DiscreteVariable) dataSet.getVariable(1)).getCategories(),
+                ((DiscreteVariable) mapped.getVariable(1)).getCategories());
+        assertTrue(mapped.getKnowledge().isForbidden("X3", "X1"));
+        assertTrue(mapped.getKnowledge().isForbiddenByTiers("X2", "X1"));
+
+        for (int i = 0; i < 101; i++) {
+            assertEquals(dataSet.getDouble(i, 0), mapped.getDouble(i, 0), 0.0);
+            assertEquals(dataSet.getInt(i, 1), mapped.getInt(i, 1));
+            assertEquals(dataSet.getDouble(i, 2), mapped.getDouble(i, 2), 0.0);
+        }
+
+        // Setting a value copies the column and leaves the file alone.
+        mapped.setDouble(5, 0, 100.0);
+        assertEquals(100.0, mapped.getDouble(5, 0), 0.0);
+        assertEquals(dataSet.getDouble(5, 0), new DataReader().parseColumnar(file).getDouble(5, 0), 0.0);
+
+        // Copies and serialized forms are on the heap.
+        DataSet copy = mapped.copy();
+        assertTrue(((BoxDataSet) copy).getDataBox() instanceof MixedDataBox);
+        assertEquals(100.0, copy.getDouble(5, 0), 0.0);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(mapped);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            DataSet read = (DataSet) in.readObject();
+            assertEquals(dataSet.getInt(17, 1), read.getInt(17, 1));
+            assertEquals(dataSet.getDouble(17, 2), read.getDouble(17, 2), 0.0);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
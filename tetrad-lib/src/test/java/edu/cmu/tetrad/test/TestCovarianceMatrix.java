@@ -22,7 +22,14 @@
 package edu.cmu.tetrad.test;
 
 import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.MemoryBudget;
 import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TetradMatrix;
 import org.junit.Test;
@@ -31,6 +38,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests CovarianceMatrix.
@@ -83,9 +91,252 @@ public final class TestCovarianceMatrix {
         assertEquals(-.051, c2.getValue(0, 1), 0.001);
         assertEquals(-.609, c3.getValue(0, 1), 0.001);
     }
-}
 
+    /**
+     * Tests that weighting rows by their counts in a bootstrap sample gives the covariance matrix of
+     * the sample.
+     */
+    @Test
+    public void testWeights() {
+        RandomUtil.getInstance().setSeed(2938483L);
 
+        List<Node> variables = new LinkedList<>();
+
+        for (int i = 0; i < 4; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
 
+        DataSet dataSet = new BoxDataSet(new VerticalDoubleDataBox(200, 4), variables);
 
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 4; j++) {
+                dataSet.setDouble(i, j, RandomUtil.getInstance().nextNormal(j, 1 + j));
+            }
+        }
+
+        DataSet original = dataSet.copy();
+
+        int[] sample = new int[200];
+        double[] counts = new double[200];
+
+        for (int i = 0; i < 200; i++) {
+            sample[i] = RandomUtil.getInstance().nextInt(200);
+            counts[sample[i]]++;
+        }
+
+        DataSet view = DataUtils.viewRows(dataSet, sample);
+        TetradMatrix expected = new CovarianceMatrix(dataSet.subsetRows(sample)).getMatrix();
+
+        ICovarianceMatrix c1 = new CovarianceMatrix(dataSet, counts);
+        ICovarianceMatrix c2 = new CovarianceMatrixOnTheFly(dataSet, counts);
+        ICovarianceMatrix c3 = new CovarianceMatrix(view);
+        ICovarianceMatrix c4 = new CovarianceMatrixOnTheFly(view);
+
+        for (ICovarianceMatrix c : new ICovarianceMatrix[]{c1, c2, c3, c4}) {
+            assertEquals(200, c.getSampleSize());
+
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    assertEquals(expected.get(i, j), c.getValue(i, j), 1e-10);
+                }
+            }
+        }
+
+        // The shared data are not centered.
+        assertEquals(original.getDouble(7, 2), dataSet.getDouble(7, 2), 0.0);
+    }
+
+    // Weights given for a view are used over a subset of its rows as over all of them.
+    @Test
+    public void testViewWeightsRows() {
+        RandomUtil.getInstance().setSeed(2938487L);
+
+        List<Node> variables = new LinkedList<>();
 
+        for (int i = 0; i < 4; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        DataSet dataSet = new BoxDataSet(new VerticalDoubleDataBox(200, 4), variables);
+
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < 4; j++) {
+                dataSet.setDouble(i, j, RandomUtil.getInstance().nextNormal(j, 1 + j));
+            }
+        }
+
+        int[] sample = new int[150];
+        double[] weights = new double[150];
+
+        for (int i = 0; i < 150; i++) {
+            sample[i] = RandomUtil.getInstance().nextInt(200);
+            weights[i] = RandomUtil.getInstance().nextInt(4);
+        }
+
+        int[] rows = new int[60];
+        for (int i = 0; i < 60; i++) rows[i] = RandomUtil.getInstance().nextInt(150);
+
+        DataSet view = DataUtils.viewRows(dataSet, sample);
+        assertTrue(((BoxDataSet) view).getDataBox() instanceof RowIndexedDataBox);
+
+        CovarianceMatrixOnTheFly cov = new CovarianceMatrixOnTheFly(view, weights);
+        CovarianceMatrixOnTheFly expected = new CovarianceMatrixOnTheFly(dataSet.subsetRows(sample), weights);
+
+        assertTrue(expected.getMatrix().equals(cov.getMatrix(), 1e-10));
+        assertTrue(expected.getMatrix(rows).equals(cov.getMatrix(rows), 1e-10));
+        assertEquals(expected.getValue(1, 2, rows), cov.getValue(1, 2, rows), 1e-10);
+    }
+
+    // The tiled sums are those of summing the products one pair at a time, in row order.
+    @Test
+    public void testBlocked() {
+        RandomUtil.getInstance().setSeed(4938484L);
+
+        int n = 1000;
+        int p = 150;
+
+        List<Node> variables = new LinkedList<>();
+
+        for (int j = 0; j < p; j++) {
+            variables.add(new ContinuousVariable("X" + j));
+        }
+
+        DataSet dataSet = new BoxDataSet(new VerticalDoubleDataBox(n, p), variables);
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                dataSet.setDouble(i, j, RandomUtil.getInstance().nextNormal(j, 1));
+            }
+        }
+
+        double[] weights = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            weights[i] = RandomUtil.getInstance().nextInt(3);
+        }
+
+        TetradMatrix blocked = new CovarianceMatrix(dataSet).getMatrix();
+        TetradMatrix weighted = new CovarianceMatrix(dataSet, weights).getMatrix();
+
+        double[] means = new double[p];
+        double[] weightedMeans = new double[p];
+        double total = 0.0;
+
+        for (int i = 0; i < n; i++) {
+            if (weights[i] != 0) total += weights[i];
+        }
+
+        for (int j = 0; j < p; j++) {
+            double sum = 0.0;
+            double weightedSum = 0.0;
+
+            for (int i = 0; i < n; i++) {
+                sum += dataSet.getDouble(i, j);
+                if (weights[i] != 0) weightedSum += weights[i] * dataSet.getDouble(i, j);
+            }
+
+            means[j] = sum / n;
+            weightedMeans[j] = weightedSum / total;
+        }
+
+        for (int j1 = 0; j1 < p; j1++) {
+            for (int j2 = 0; j2 < p; j2++) {
+                double d = 0.0;
+                double weightedD = 0.0;
+
+                for (int i = 0; i < n; i++) {
+                    d += (dataSet.getDouble(i, j1) - means[j1]) * (dataSet.getDouble(i, j2) - means[j2]);
+
+                    if (weights[i] != 0) {
+                        weightedD += weights[i] * (dataSet.getDouble(i, j1) - weightedMeans[j1])
+                                * (dataSet.getDouble(i, j2) - weightedMeans[j2]);
+                    }
+                }
+
+                assertEquals(d / (n - 1), blocked.get(j1, j2), 0.0);
+                assertEquals(weightedD / (total - 1), weighted.get(j1, j2), 0.0);
+            }
+        }
+
+        // With a missing value, pairs are summed over the rows where both are present.
+        dataSet.setDouble(3, 5, Double.NaN);
+        TetradMatrix missing = new CovarianceMatrix(dataSet).getMatrix();
+        assertEquals(blocked.get(6, 7), missing.get(6, 7), 1e-15);
+        assertEquals(blocked.get(5, 7), missing.get(5, 7), 0.01);
+    }
+
+    @Test
+    public void testCache() {
+        RandomUtil.getInstance().setSeed(2938485L);
+
+        int n = 100;
+        int p = 300;
+
+        List<Node> variables = new LinkedList<>();
+
+        for (int j = 0; j < p; j++) {
+            variables.add(new ContinuousVariable("X" + j));
+        }
+
+        DataSet dataSet = new BoxDataSet(new VerticalDoubleDataBox(n, p), variables);
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                dataSet.setDouble(i, j, RandomUtil.getInstance().nextNormal(0, 1));
+            }
+        }
+
+        CovarianceMatrixOnTheFly cov = new CovarianceMatrixOnTheFly(dataSet);
+        cov.setCacheSize(0);
+        TetradMatrix expected = cov.getMatrix();
+        assertEquals(0, cov.getCacheHits());
+
+        // By default, covariances are remembered within the budget shared by all caches.
+        CovarianceMatrixOnTheFly shared = new CovarianceMatrixOnTheFly(dataSet.copy());
+        assertEquals(CovarianceMatrixOnTheFly.SHARED_CACHE_SIZE, shared.getCacheSize());
+        assertTrue(expected.equals(shared.getMatrix(), 1e-12));
+        assertTrue(MemoryBudget.shared().getNumBytes() > 0);
+
+        cov.setCacheSize(1 << 30);
+        assertTrue(expected.equals(cov.getMatrix(), 0.0));
+        assertTrue(expected.equals(cov.getMatrix(), 0.0));
+
+        // Each pair is computed once; the second visit and the transpose are remembered.
+        assertEquals(p * (p - 1) / 2, cov.getCacheMisses());
+        assertEquals(3 * p * (p - 1) / 2, cov.getCacheHits());
+
+        // Room for a tile per segment; far fewer than are needed, so tiles are forgotten and recomputed.
+        cov.setCacheSize(1);
+        assertTrue(expected.equals(cov.getMatrix(), 0.0));
+        assertTrue(expected.equals(cov.getMatrix(), 0.0));
+        assertTrue(cov.getCacheMisses() > p * (p - 1) / 2);
+        assertTrue(cov.getCacheHitRate() > 0.0 && cov.getCacheHitRate() < 0.75);
+    }
+
+    @Test
+    public void testSinglePrecision() {
+        RandomUtil.getInstance().setSeed(2938486L);
+
+        Graph graph = GraphUtils.randomGraph(20, 0, 20, 10, 10, 10, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(1000, false);
+        DataSet floatData = DataUtils.toSinglePrecision(data);
+
+        assertTrue(((BoxDataSet) floatData).getDataBox() instanceof VerticalFloatDataBox);
+        assertEquals((float) data.getDouble(10, 3), floatData.getDouble(10, 3), 0.0);
+
+        TetradMatrix expected = new CovarianceMatrix(data).getMatrix();
+        CovarianceMatrixOnTheFly cov = new CovarianceMatrixOnTheFly(floatData);
+
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 20; j++) {
+                double value = cov.getValue(i, j);
+                assertEquals((float) value, value, 0.0);
+                assertEquals(expected.get(i, j), value, 1e-5 * Math.sqrt(expected.get(i, i) * expected.get(j, j)));
+                assertEquals(value, cov.getValue(i, j), 0.0);
+            }
+        }
+
+        assertEquals(new Fges(new SemBicScore(new CovarianceMatrix(data))).search(),
+                new Fges(new SemBicScore(floatData)).search());
+    }
+}
@@ -0,0 +1,126 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.search.DagToPag;
+import edu.cmu.tetrad.search.IndTestDSep;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestDSeparationOracle {
+
+    @Test
+    public void testDag() {
+        RandomUtil.getInstance().setSeed(2939492944L);
+
+        for (int i = 0; i < 5; i++) {
+            Graph dag = GraphUtils.randomGraph(30, 0, 45, 10, 10, 10, false);
+            checkQueries(dag, 2000);
+        }
+    }
+
+    @Test
+    public void testPag() {
+        RandomUtil.getInstance().setSeed(394949202L);
+
+        for (int i = 0; i < 5; i++) {
+            Graph dag = GraphUtils.randomGraph(30, 5, 45, 10, 10, 10, false);
+            Graph pag = new DagToPag(dag).convert();
+            checkQueries(pag, 2000);
+        }
+    }
+
+    @Test
+    public void testUnderlines() {
+        RandomUtil.getInstance().setSeed(192939495L);
+
+        Graph graph = new EdgeListGraph(GraphUtils.randomGraph(20, 0, 30, 10, 10, 10, false));
+
+        for (Node b : graph.getNodes()) {
+            List<Node> parents = graph.getParents(b);
+
+            if (parents.size() >= 2) {
+                graph.addUnderlineTriple(parents.get(0), b, parents.get(1));
+            }
+        }
+
+        assertTrue(!graph.getUnderLines().isEmpty());
+        checkQueries(graph, 2000);
+    }
+
+    @Test
+    public void testMemo() {
+        RandomUtil.getInstance().setSeed(48383838L);
+
+        Graph dag = GraphUtils.randomGraph(20, 0, 30, 10, 10, 10, false);
+        List<Node> nodes = dag.getNodes();
+        IndTestDSep test = new IndTestDSep(dag);
+
+        Node x = nodes.get(0);
+        Node y = nodes.get(1);
+        List<Node> z = new ArrayList<>();
+        z.add(nodes.get(2));
+        z.add(nodes.get(3));
+
+        List<Node> z2 = new ArrayList<>();
+        z2.add(nodes.get(3));
+        z2.add(nodes.get(2));
+
+        boolean independent = test.isIndependent(x, y, z);
+        assertEquals(1, test.getOracle().getMemoSize());
+
+        assertEquals(independent, test.isIndependent(y, x, z2));
+        assertEquals(1, test.getOracle().getMemoSize());
+        assertEquals(independent, dag.isDSeparatedFrom(x, y, z));
+    }
+
+    private void checkQueries(Graph graph, int numQueries) {
+        DSeparationOracle oracle = new DSeparationOracle(graph, 0);
+        List<Node> nodes = graph.getNodes();
+        RandomUtil random = RandomUtil.getInstance();
+
+        for (int q = 0; q < numQueries; q++) {
+            Node x = nodes.get(random.nextInt(nodes.size()));
+            Node y = nodes.get(random.nextInt(nodes.size()));
+            List<Node> z = new ArrayList<>();
+            int size = random.nextInt(5);
+
+            while (z.size() < size) {
+                Node w = nodes.get(random.nextInt(nodes.size()));
+                if (w != x && w != y && !z.contains(w)) z.add(w);
+            }
+
+            assertEquals(x + " " + y + " " + z, GraphUtils.isDConnectedTo(x, y, z, graph),
+                    oracle.isDConnectedTo(x, y, z));
+        }
+    }
+}
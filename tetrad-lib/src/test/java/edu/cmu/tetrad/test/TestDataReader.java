@@ -22,15 +22,15 @@
 package edu.cmu.tetrad.test;
 
 import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TetradLogger;
 import org.junit.Test;
 
-import java.io.CharArrayWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public final class TestDataReader {
 
@@ -91,6 +91,91 @@ public final class TestDataReader {
 
     }
 
+    @Test
+    public void testParallel() throws IOException {
+        String[] files = {"src/test/resources/dataLG.txt", "src/test/resources/determinationtest.dat",
+                "src/test/resources/sim_discrete_data_20vars_100cases.txt"};
+
+        for (String file : files) {
+            DataReader reader = new DataReader();
+            reader.setDelimiter(DelimiterType.WHITESPACE);
+            reader.setMaxIntegralDiscrete(10);
+            DataSet expected = reader.parseTabular(new File(file));
+
+            reader.setParallel(true);
+            DataSet data = reader.parseTabular(new File(file));
+
+            assertTrue(data instanceof BoxDataSet);
+            assertSameData(expected, data);
+        }
+    }
+
+    // A file of several chunks, with a column that looks continuous until a value that is not a number
+    // appears after the rows sampled for types.
+    @Test
+    public void testParallelChunks() throws IOException {
+        RandomUtil.getInstance().setSeed(3829483L);
+
+        File file = File.createTempFile("tabular", ".csv");
+        file.deleteOnExit();
+
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            out.println("// A comment");
+            out.println("X1,X2,X3,X4,X5");
+
+            for (int i = 0; i < 100000; i++) {
+                if (i % 1000 == 7) out.println();
+
+                double x = RandomUtil.getInstance().nextNormal(0, 1);
+                String x2 = i % 97 == 0 ? "*" : Integer.toString(RandomUtil.getInstance().nextInt(3));
+                String x4 = i == 50000 ? "high" : (RandomUtil.getInstance().nextInt(3) + 0.5) + "";
+
+                out.println(x + "," + x2 + ",c" + RandomUtil.getInstance().nextInt(4) + ","
+                        + x4 + "," + RandomUtil.getInstance().nextInt(1000) + "\r");
+            }
+        }
+
+        assertTrue(file.length() > (2 << 20));
+
+        DataReader reader = new DataReader();
+        reader.setDelimiter(DelimiterType.COMMA);
+        reader.setMaxIntegralDiscrete(5);
+        DataSet expected = reader.parseTabular(file);
+
+        reader.setParallel(true);
+        DataSet data = reader.parseTabular(file);
+
+        assertSameData(expected, data);
+        assertTrue(data.getVariable("X2") instanceof DiscreteVariable);
+        assertTrue(data.getVariable("X4") instanceof DiscreteVariable);
+        assertTrue(data.getVariable("X5") instanceof ContinuousVariable);
+    }
+
+    private void assertSameData(DataSet expected, DataSet data) {
+        assertEquals(expected.getNumRows(), data.getNumRows());
+        assertEquals(expected.getNumColumns(), data.getNumColumns());
+
+        for (int j = 0; j < expected.getNumColumns(); j++) {
+            Node v1 = expected.getVariable(j);
+            Node v2 = data.getVariable(j);
+
+            assertEquals(v1.getName(), v2.getName());
+            assertEquals(v1.getClass(), v2.getClass());
+
+            if (v1 instanceof DiscreteVariable) {
+                assertEquals(((DiscreteVariable) v1).getCategories(), ((DiscreteVariable) v2).getCategories());
+            }
+
+            for (int i = 0; i < expected.getNumRows(); i++) {
+                if (v1 instanceof DiscreteVariable) {
+                    assertEquals(expected.getInt(i, j), data.getInt(i, j));
+                } else {
+                    assertEquals(expected.getDouble(i, j), data.getDouble(i, j), 0.0);
+                }
+            }
+        }
+    }
+
     private char[] fileToCharArray(File file) {
         try {
             FileReader reader = new FileReader(file);
@@ -0,0 +1,164 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.bayes.BayesIm;
+import edu.cmu.tetrad.bayes.BayesPm;
+import edu.cmu.tetrad.bayes.MlBayesIm;
+import edu.cmu.tetrad.data.CellTable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DataUtils;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.search.DiscreteCounts;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.MemoryBudget;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestDiscreteCounts {
+
+    private static final int[][] QUERIES = {{4}, {2, 0}, {0, 2}, {7, 1, 3}, {1, 3, 7}, {3, 7, 1},
+            {5, 0, 6, 2}, {9, 8, 7, 6, 5}, {2, 0}};
+
+    @Test
+    public void testCounts() {
+        DataSet data = simulate();
+
+        for (int i = 0; i < data.getNumRows(); i += 23) {
+            data.setInt(i, i % data.getNumColumns(), -99);
+        }
+
+        DiscreteCounts counts = new DiscreteCounts(data);
+        DiscreteCounts packedCounts = new DiscreteCounts(DataUtils.toBitPacked(data));
+
+        for (int[] cols : QUERIES) {
+            int[] expected = cellTableCounts(data, cols);
+            assertArrayEquals(expected, counts.getCounts(cols));
+            assertArrayEquals(expected, packedCounts.getCounts(cols));
+        }
+
+        assertTrue(counts.hasMissingValues(0));
+        assertTrue(counts.getNumBytes() > 0);
+    }
+
+    // Nothing is kept without a budget, and the counts are the same from several threads.
+    @Test
+    public void testBudget() throws Exception {
+        DataSet data = simulate();
+        DiscreteCounts counts = new DiscreteCounts(data, 0);
+
+        for (int[] cols : QUERIES) {
+            assertArrayEquals(cellTableCounts(data, cols), counts.getCounts(cols));
+        }
+
+        assertEquals(0, counts.getNumBytes());
+
+        final DiscreteCounts shared = new DiscreteCounts(data);
+        List<Future<int[]>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 4 * QUERIES.length; t++) {
+            final int[] cols = QUERIES[t % QUERIES.length];
+            futures.add(ForkJoinPoolInstance.getInstance().getPool().submit(new Callable<int[]>() {
+                public int[] call() {
+                    return shared.getCounts(cols);
+                }
+            }));
+        }
+
+        for (int t = 0; t < futures.size(); t++) {
+            assertArrayEquals(cellTableCounts(data, QUERIES[t % QUERIES.length]), futures.get(t).get());
+        }
+    }
+
+    // Counts on a common budget keep no more among them than it allows.
+    @Test
+    public void testSharedBudget() {
+        DataSet data = simulate();
+        DiscreteCounts alone = new DiscreteCounts(data, Long.MAX_VALUE);
+
+        for (int[] cols : QUERIES) {
+            alone.getCounts(cols);
+        }
+
+        MemoryBudget budget = new MemoryBudget(alone.getNumBytes());
+        DiscreteCounts first = new DiscreteCounts(data, budget);
+        DiscreteCounts second = new DiscreteCounts(data, budget);
+
+        for (int[] cols : QUERIES) {
+            assertArrayEquals(alone.getCounts(cols), first.getCounts(cols));
+        }
+
+        for (int[] cols : QUERIES) {
+            assertArrayEquals(alone.getCounts(cols), second.getCounts(cols));
+        }
+
+        assertEquals(alone.getNumBytes(), first.getNumBytes());
+        assertEquals(0, second.getNumBytes());
+        assertEquals(alone.getNumBytes(), budget.getNumBytes());
+    }
+
+    private int[] cellTableCounts(DataSet data, int[] cols) {
+        CellTable table = new CellTable(null);
+        table.setMissingValue(-99);
+        table.addToTable(data, cols);
+
+        int numCells = 1;
+
+        for (int i = 0; i < cols.length; i++) {
+            numCells *= table.getNumValues(i);
+        }
+
+        int[] counts = new int[numCells];
+        int[] coords = new int[cols.length];
+
+        for (int cell = 0; cell < numCells; cell++) {
+            for (int i = cols.length - 1, c = cell; i >= 0; c /= table.getNumValues(i), i--) {
+                coords[i] = c % table.getNumValues(i);
+            }
+
+            counts[cell] = (int) table.getValue(coords);
+        }
+
+        return counts;
+    }
+
+    private DataSet simulate() {
+        RandomUtil.getInstance().setSeed(4928374L);
+        Graph graph = GraphUtils.randomGraph(10, 0, 12, 10, 10, 10, false);
+        BayesPm pm = new BayesPm(graph, 2, 4);
+        BayesIm im = new MlBayesIm(pm, MlBayesIm.RANDOM);
+        return im.simulateData(2000, false);
+    }
+}
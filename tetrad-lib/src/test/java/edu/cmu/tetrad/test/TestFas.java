@@ -22,16 +22,23 @@
 package edu.cmu.tetrad.test;
 
 import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.search.*;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Joseph Ramsey
@@ -58,9 +65,47 @@ public class TestFas {
 
         assertEquals(fasGraph, GraphUtils.undirectedGraph(pcGraph));
     }
-}
-
 
+    @Test
+    public void testParallelFasStable() {
+        RandomUtil.getInstance().setSeed(3929394L);
+
+        Graph graph = GraphUtils.randomGraph(40, 0, 60, 10, 10, 10, false);
+        SemIm im = new SemIm(new SemPm(graph));
+        DataSet data = im.simulateData(500, false);
+        IndependenceTest test = new IndTestFisherZ(data, 0.05);
+
+        // The p values logged are the same too, since IndTestFisherZ gives them with each call.
+        ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+        ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+
+        FasStable fas1 = new FasStable(test);
+        fas1.setVerbose(true);
+        fas1.setOut(new PrintStream(out1));
+        Graph graph1 = fas1.search();
+
+        FasStable fas2 = new FasStable(test);
+        fas2.setParallel(true);
+        fas2.setVerbose(true);
+        fas2.setOut(new PrintStream(out2));
+        Graph graph2 = fas2.search();
+
+        assertEquals(graph1, graph2);
+        assertEquals(out1.toString(), out2.toString());
+
+        for (String line : out2.toString().split("\n")) {
+            if (line.contains("_||_")) assertTrue(line, line.matches(".*p = [0-9].*"));
+        }
 
+        assertEquals(fas1.getNumIndependenceTests(), fas2.getNumIndependenceTests());
 
+        List<Node> nodes = test.getVariables();
 
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                assertEquals(fas1.getSepsets().get(nodes.get(i), nodes.get(j)),
+                        fas2.getSepsets().get(nodes.get(i), nodes.get(j)));
+            }
+        }
+    }
+}
@@ -220,6 +220,33 @@ public class TestFges {
         assertEquals(SearchGraphUtils.patternForDag(graph), pattern);
     }
 
+    @Test
+    public void testExecutor() {
+        RandomUtil.getInstance().setSeed(492939492L);
+
+        Graph graph = GraphUtils.randomGraph(30, 0, 30, 10, 10, 10, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(500, false);
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+
+        Graph pattern1 = new Fges(score).search();
+
+        SearchExecutor executor = SearchExecutor.create(2);
+        Fges fges = new Fges(score);
+        fges.setExecutor(executor);
+        Graph pattern2 = fges.search();
+        executor.shutdown();
+
+        assertEquals(pattern1, pattern2);
+
+        // A canceled search stops before adding any edges.
+        SearchExecutor canceled = SearchExecutor.create(2);
+        canceled.cancel();
+        Fges fges2 = new Fges(score);
+        fges2.setExecutor(canceled);
+        assertEquals(0, fges2.search().getNumEdges());
+        canceled.shutdown();
+    }
+
 
     @Test
     public void testFromGraphSimpleFges() {
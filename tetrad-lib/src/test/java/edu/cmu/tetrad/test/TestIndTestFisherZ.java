@@ -33,10 +33,18 @@ import edu.cmu.tetrad.util.StatUtils;
 import edu.cmu.tetrad.util.TetradMatrix;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static java.lang.Math.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 
 /**
@@ -181,6 +189,81 @@ public class TestIndTestFisherZ {
             System.out.println(abs(f1) > abs(f2));
         }
     }
-}
 
+    @Test
+    public void testBatch() {
+        RandomUtil.getInstance().setSeed(38384839L);
+
+        Graph graph = GraphUtils.randomGraph(20, 0, 30, 10, 10, 10, false);
+        SemIm im = new SemIm(new SemPm(graph));
+        DataSet data = im.simulateData(1000, false);
+
+        IndTestFisherZ test = new IndTestFisherZ(data, 0.05);
+        List<Node> nodes = test.getVariables();
+
+        for (int size = 0; size <= 3; size++) {
+            Node x = nodes.get(0);
+            List<Node> z = new ArrayList<>(nodes.subList(1, 1 + size));
+            List<Node> ys = new ArrayList<>(nodes.subList(1 + size, nodes.size()));
+
+            double[] pValues = new double[ys.size()];
+            boolean[] independent = test.testAll(x, ys, z, pValues);
+
+            for (int i = 0; i < ys.size(); i++) {
+                assertEquals(test.isIndependent(x, ys.get(i), z), independent[i]);
+                assertEquals(test.getPValue(), pValues[i], 1e-8);
+            }
+
+            // The test's own last p value is not changed.
+            double pValue = test.getPValue();
+            test.testAll(x, ys, z, pValues);
+            assertEquals(pValue, test.getPValue(), 0.0);
+        }
+    }
 
+    // Calls to testAll from several threads at once give the p values each would give alone.
+    @Test
+    public void testBatchThreads() throws Exception {
+        RandomUtil.getInstance().setSeed(38384840L);
+
+        Graph graph = GraphUtils.randomGraph(30, 0, 40, 10, 10, 10, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(500, false);
+
+        final IndTestFisherZ test = new IndTestFisherZ(data, 0.05);
+        final List<Node> nodes = test.getVariables();
+        final List<Node> empty = Collections.emptyList();
+        final double[][] expected = new double[nodes.size()][];
+
+        for (int i = 0; i < nodes.size(); i++) {
+            expected[i] = new double[nodes.size() - i - 1];
+            test.testAll(nodes.get(i), nodes.subList(i + 1, nodes.size()), empty, expected[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        for (int rep = 0; rep < 50; rep++) {
+                            for (int i = 0; i < nodes.size(); i++) {
+                                double[] pValues = new double[nodes.size() - i - 1];
+                                test.testAll(nodes.get(i), nodes.subList(i + 1, nodes.size()), empty, pValues);
+                                if (!Arrays.equals(expected[i], pValues)) return false;
+                            }
+                        }
+
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.search.IndexedPairHeap;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests IndexedPairHeap against a PriorityQueue with the elements under each pair kept alongside.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestIndexedPairHeap {
+
+    // Polling an element from the middle of a pair's list leaves the rest of the list in place.
+    @Test
+    public void testPairLists() {
+        IndexedPairHeap<Item> heap = new IndexedPairHeap<>();
+        Item i5 = new Item(0, 1, 5), i1 = new Item(0, 1, 1), i9 = new Item(0, 1, 9), i3 = new Item(1, 0, 3);
+
+        heap.add(0, 1, i5);
+        heap.add(0, 1, i1);
+        heap.add(0, 1, i9);
+        heap.add(1, 0, i3);
+
+        assertEquals(3, heap.size(0, 1));
+        assertEquals(1, heap.size(1, 0));
+
+        assertSame(i1, heap.poll());
+        assertEquals(2, heap.size(0, 1));
+
+        // Growing, then shrinking, the list under (0, 1).
+        Item i4 = new Item(0, 1, 4), i2 = new Item(0, 1, 2), i7 = new Item(0, 1, 7);
+        heap.replace(0, 1, Arrays.asList(i4, i7, i2));
+        assertEquals(3, heap.size(0, 1));
+        assertEquals(4, heap.size());
+
+        heap.replace(0, 1, Collections.singletonList(i7));
+        assertEquals(1, heap.size(0, 1));
+        assertEquals(2, heap.size());
+
+        assertSame(i3, heap.poll());
+        assertEquals(0, heap.size(1, 0));
+        heap.remove(0, 1);
+        assertEquals(0, heap.size(0, 1));
+        assertNull(heap.poll());
+    }
+
+    // Random operations give the same elements as the reference, in the same order.
+    @Test
+    public void testRandom() {
+        RandomUtil.getInstance().setSeed(2938491L);
+
+        IndexedPairHeap<Item> heap = new IndexedPairHeap<>();
+        PriorityQueue<Item> queue = new PriorityQueue<>();
+        Map<List<Integer>, List<Item>> pairs = new HashMap<>();
+        int numPairs = 5;
+        int serial = 0;
+
+        for (int step = 0; step < 20000; step++) {
+            int a = RandomUtil.getInstance().nextInt(numPairs);
+            int b = RandomUtil.getInstance().nextInt(numPairs);
+            List<Item> list = pairs.computeIfAbsent(Arrays.asList(a, b), k -> new ArrayList<>());
+            int op = RandomUtil.getInstance().nextInt(10);
+
+            if (op < 3) {
+                Item item = new Item(a, b, randomKey(serial++));
+                heap.add(a, b, item);
+                queue.add(item);
+                list.add(item);
+            } else if (op < 5) {
+                List<Item> elements = new ArrayList<>();
+                int n = RandomUtil.getInstance().nextInt(5);
+                for (int k = 0; k < n; k++) elements.add(new Item(a, b, randomKey(serial++)));
+
+                heap.replace(a, b, elements);
+                for (Item item : list) queue.remove(item);
+                queue.addAll(elements);
+                list.clear();
+                list.addAll(elements);
+            } else if (op < 6) {
+                heap.remove(a, b);
+                for (Item item : list) queue.remove(item);
+                list.clear();
+            } else {
+                Item item = heap.poll();
+                assertSame(queue.poll(), item);
+                if (item != null) pairs.get(Arrays.asList(item.a, item.b)).remove(item);
+            }
+
+            assertEquals(queue.size(), heap.size());
+            assertSame(queue.peek(), heap.peek());
+
+            for (int i = 0; i < numPairs; i++) {
+                for (int j = 0; j < numPairs; j++) {
+                    List<Item> _list = pairs.get(Arrays.asList(i, j));
+                    assertEquals(_list == null ? 0 : _list.size(), heap.size(i, j));
+                }
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            assertSame(queue.poll(), heap.poll());
+        }
+
+        assertEquals(0, heap.size());
+    }
+
+    // A distinct key in random order.
+    private static long randomKey(int serial) {
+        return ((long) RandomUtil.getInstance().nextInt(1000) << 32) | serial;
+    }
+
+    // An element filed under (a, b), ordered by its key.
+    private static class Item implements Comparable<Item> {
+        private final int a;
+        private final int b;
+        private final long key;
+
+        Item(int a, int b, long key) {
+            this.a = a;
+            this.b = b;
+            this.key = key;
+        }
+
+        public int compareTo(Item item) {
+            return Long.compare(key, item.key);
+        }
+    }
+}
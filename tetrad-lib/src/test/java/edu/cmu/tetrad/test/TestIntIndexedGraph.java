@@ -0,0 +1,226 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.search.DagToPag;
+import edu.cmu.tetrad.search.MeekRules;
+import edu.cmu.tetrad.search.SearchGraphUtils;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks IntIndexedGraph against EdgeListGraph.
+ *
+ * @author Joseph Ramsey
+ */
+public class TestIntIndexedGraph {
+
+    @Test
+    public void testSameAsEdgeListGraph() {
+        RandomUtil.getInstance().setSeed(492939492L);
+
+        for (int trial = 0; trial < 5; trial++) {
+            Graph dag = GraphUtils.randomGraph(30, 0, 40, 10, 10, 10, false);
+            Graph pattern = SearchGraphUtils.patternForDag(dag);
+
+            checkSame(new EdgeListGraph(dag), new IntIndexedGraph(dag));
+            checkSame(new EdgeListGraph(pattern), new IntIndexedGraph(pattern));
+        }
+    }
+
+    @Test
+    public void testConversion() {
+        RandomUtil.getInstance().setSeed(492939492L);
+
+        Graph graph = SearchGraphUtils.patternForDag(GraphUtils.randomGraph(20, 0, 30, 10, 10, 10, false));
+        IntIndexedGraph graph2 = new IntIndexedGraph(graph);
+
+        assertEquals(graph, graph2);
+        assertEquals(graph2, graph);
+        assertEquals(graph, graph2.toEdgeListGraph());
+        assertEquals(graph.getNumEdges(), graph2.getNumEdges());
+    }
+
+    @Test
+    public void testEditing() {
+        Node x1 = new GraphNode("X1");
+        Node x2 = new GraphNode("X2");
+        Node x3 = new GraphNode("X3");
+        Node x4 = new GraphNode("X4");
+
+        IntIndexedGraph graph = new IntIndexedGraph();
+        graph.addNode(x1);
+        graph.addNode(x2);
+        graph.addNode(x3);
+        graph.addNode(x4);
+
+        assertTrue(graph.addDirectedEdge(x1, x2));
+        assertTrue(graph.addDirectedEdge(x3, x2));
+        assertTrue(graph.addUndirectedEdge(x2, x4));
+        assertFalse(graph.addDirectedEdge(x2, x1));
+        assertFalse(graph.addDirectedEdge(x1, x1));
+
+        assertTrue(graph.isDefCollider(x1, x2, x3));
+        assertTrue(graph.isParentOf(0, 1));
+        assertTrue(graph.isUndirected(3, 1));
+
+        int[] parents = new int[graph.getDegree(1)];
+        assertEquals(2, graph.getParents(1, parents));
+
+        graph.setEndpoint(x4, x2, Endpoint.ARROW);
+        assertTrue(graph.isParentOf(x4, x2));
+        assertEquals(3, graph.getIndegree(x2));
+
+        graph.removeNode(x1);
+        assertEquals(3, graph.getNumNodes());
+        assertEquals(2, graph.getNumEdges());
+        assertEquals(x4, graph.getNode(0));
+        assertTrue(graph.isParentOf(0, 1));
+        assertFalse(graph.existsDirectedCycle());
+
+        graph.addDirectedEdge(x2, x3);
+        assertFalse(graph.existsDirectedCycle());
+        graph.removeEdge(x3, x2);
+        graph.addDirectedEdge(x2, x3);
+        graph.addDirectedEdge(x3, x4);
+        assertTrue(graph.existsDirectedCycle());
+    }
+
+    @Test
+    public void testMeekRules() {
+        RandomUtil.getInstance().setSeed(492939492L);
+
+        Graph dag = GraphUtils.randomGraph(30, 0, 40, 10, 10, 10, false);
+        Graph graph1 = new EdgeListGraph(dag);
+        Graph graph2 = new IntIndexedGraph(dag);
+
+        for (Graph graph : new Graph[]{graph1, graph2}) {
+            SearchGraphUtils.basicPattern(graph, false);
+            new MeekRules().orientImplied(graph);
+        }
+
+        assertEquals(graph1, graph2);
+    }
+
+    // Definite noncolliders in PAGs, where edges may have circle endpoints, are those of EdgeListGraph.
+    @Test
+    public void testDefNoncolliderPag() {
+        RandomUtil.getInstance().setSeed(492939493L);
+
+        Node x1 = new GraphNode("X1");
+        Node x2 = new GraphNode("X2");
+        Node x3 = new GraphNode("X3");
+
+        Graph graph = new EdgeListGraph();
+        graph.addNode(x1);
+        graph.addNode(x2);
+        graph.addNode(x3);
+        graph.addPartiallyOrientedEdge(x2, x1);
+        graph.addNondirectedEdge(x2, x3);
+
+        assertTrue(graph.isDefNoncollider(x1, x2, x3));
+        assertTrue(new IntIndexedGraph(graph).isDefNoncollider(x1, x2, x3));
+        assertTrue(new IntIndexedGraph(graph).isDefNoncollider(x3, x2, x1));
+
+        List<Graph> pags = new ArrayList<>();
+        pags.add(graph);
+        pags.add(new DagToPag(GraphUtils.randomGraph(20, 5, 30, 10, 10, 10, false)).convert());
+
+        Endpoint[] endpoints = {Endpoint.TAIL, Endpoint.ARROW, Endpoint.CIRCLE};
+        Graph random = GraphUtils.randomGraph(15, 0, 30, 10, 10, 10, false);
+
+        for (Edge edge : random.getEdges()) {
+            random.setEndpoint(edge.getNode1(), edge.getNode2(), endpoints[RandomUtil.getInstance().nextInt(3)]);
+            random.setEndpoint(edge.getNode2(), edge.getNode1(), endpoints[RandomUtil.getInstance().nextInt(3)]);
+        }
+
+        pags.add(random);
+
+        for (Graph pag : pags) {
+            Graph graph1 = new EdgeListGraph(pag);
+            IntIndexedGraph graph2 = new IntIndexedGraph(pag);
+            List<Node> nodes = graph1.getNodes();
+
+            for (Node x : nodes) {
+                for (Node w : graph1.getAdjacentNodes(x)) {
+                    for (Node y : nodes) {
+                        if (y == x || y == w) continue;
+                        assertEquals(graph1.isDefNoncollider(x, w, y), graph2.isDefNoncollider(x, w, y));
+                        assertEquals(graph1.isDefCollider(x, w, y), graph2.isDefCollider(x, w, y));
+                    }
+                }
+            }
+        }
+    }
+
+    private void checkSame(Graph graph1, IntIndexedGraph graph2) {
+        List<Node> nodes = graph1.getNodes();
+
+        assertFalse(graph2.existsDirectedCycle());
+
+        for (Node x : nodes) {
+            assertEquals(new HashSet<>(graph1.getParents(x)), new HashSet<>(graph2.getParents(x)));
+            assertEquals(new HashSet<>(graph1.getChildren(x)), new HashSet<>(graph2.getChildren(x)));
+            assertEquals(new HashSet<>(graph1.getAdjacentNodes(x)), new HashSet<>(graph2.getAdjacentNodes(x)));
+            assertEquals(new HashSet<>(graph1.getEdges(x)), new HashSet<>(graph2.getEdges(x)));
+            assertEquals(graph1.getIndegree(x), graph2.getIndegree(x));
+            assertEquals(graph1.getOutdegree(x), graph2.getOutdegree(x));
+
+            List<Node> single = new ArrayList<>();
+            single.add(x);
+            assertEquals(new HashSet<>(graph1.getAncestors(single)), new HashSet<>(graph2.getAncestors(single)));
+            assertEquals(new HashSet<>(graph1.getDescendants(single)), new HashSet<>(graph2.getDescendants(single)));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            Node x = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            Node y = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            Node w = nodes.get(RandomUtil.getInstance().nextInt(nodes.size()));
+            if (x == y) continue;
+
+            List<Node> z = new ArrayList<>();
+            z.add(w);
+
+            assertEquals(graph1.isAdjacentTo(x, y), graph2.isAdjacentTo(x, y));
+            assertEquals(graph1.getEdge(x, y), graph2.getEdge(x, y));
+            assertEquals(graph1.getEndpoint(x, y), graph2.getEndpoint(x, y));
+            assertEquals(graph1.isParentOf(x, y), graph2.isParentOf(x, y));
+            assertEquals(graph1.isAncestorOf(x, y), graph2.isAncestorOf(x, y));
+            assertEquals(graph1.existsDirectedPathFromTo(x, y), graph2.existsDirectedPathFromTo(x, y));
+            assertEquals(graph1.existsTrek(x, y), graph2.existsTrek(x, y));
+            assertEquals(graph1.possibleAncestor(x, y), graph2.possibleAncestor(x, y));
+            assertEquals(graph1.isDefCollider(x, w, y), graph2.isDefCollider(x, w, y));
+            assertEquals(graph1.isDefNoncollider(x, w, y), graph2.isDefNoncollider(x, w, y));
+
+            if (w != x && w != y) {
+                assertEquals(graph1.isDSeparatedFrom(x, y, z), graph2.isDSeparatedFrom(x, y, z));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Kci;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestKci {
+
+    @Test
+    public void testExact() {
+        DataSet data = chain(300);
+        Kci kci = new Kci(data, 0.01);
+        kci.setApproximate(true);
+        checkChain(kci, data);
+    }
+
+    @Test
+    public void testNystrom() {
+        DataSet data = chain(3000);
+        Kci kci = new Kci(data, 0.01);
+        kci.setApproximate(true);
+        kci.setKernelApproximation(Kci.KernelApproximation.NYSTROM);
+        kci.setRank(50);
+        checkChain(kci, data);
+    }
+
+    @Test
+    public void testRandomFourierFeatures() {
+        DataSet data = chain(3000);
+        Kci kci = new Kci(data, 0.01);
+        kci.setKernelApproximation(Kci.KernelApproximation.RANDOM_FOURIER_FEATURES);
+        kci.setRank(50);
+        kci.setNumBootstraps(500);
+        checkChain(kci, data);
+    }
+
+    // X -> Y -> Z.
+    private DataSet chain(int sampleSize) {
+        RandomUtil.getInstance().setSeed(392949L);
+
+        Node x = new GraphNode("X");
+        Node y = new GraphNode("Y");
+        Node z = new GraphNode("Z");
+
+        Graph graph = new EdgeListGraph(Arrays.asList(x, y, z));
+        graph.addDirectedEdge(x, y);
+        graph.addDirectedEdge(y, z);
+
+        SemIm im = new SemIm(new SemPm(graph));
+        return im.simulateData(sampleSize, false);
+    }
+
+    private void checkChain(Kci kci, DataSet data) {
+        Node x = data.getVariable("X");
+        Node y = data.getVariable("Y");
+        Node z = data.getVariable("Z");
+
+        assertFalse(kci.isIndependent(x, y, Collections.<Node>emptyList()));
+        assertFalse(kci.isIndependent(x, z, Collections.<Node>emptyList()));
+        assertFalse(kci.isIndependent(x, y, Collections.singletonList(z)));
+        assertTrue(kci.isIndependent(x, z, Collections.singletonList(y)));
+    }
+}
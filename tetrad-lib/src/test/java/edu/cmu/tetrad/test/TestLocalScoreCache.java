@@ -0,0 +1,93 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.search.CachingScore;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.LocalScoreCache;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestLocalScoreCache {
+
+    @Test
+    public void testParentOrder() {
+        LocalScoreCache cache = new LocalScoreCache();
+
+        cache.add(0, new int[]{3, 1, 2}, 5.0);
+
+        assertEquals(5.0, cache.get(0, new int[]{1, 2, 3}), 0.0);
+        assertEquals(5.0, cache.get(0, new int[]{2, 3, 1}), 0.0);
+        assertTrue(Double.isNaN(cache.get(1, new int[]{1, 2, 3})));
+        assertTrue(Double.isNaN(cache.get(0, new int[]{1, 2})));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testBounded() {
+        LocalScoreCache cache = new LocalScoreCache(100);
+
+        for (int i = 0; i < 10000; i++) {
+            cache.add(i, new int[]{i + 1}, i);
+        }
+
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    public void testCachingScore() {
+        RandomUtil.getInstance().setSeed(492939492L);
+
+        Graph graph = GraphUtils.randomGraph(20, 0, 20, 10, 10, 10, false);
+        SemIm im = new SemIm(new SemPm(graph));
+        DataSet data = im.simulateData(500, false);
+
+        SemBicScore score = new SemBicScore(new CovarianceMatrix(data));
+        CachingScore cachingScore = new CachingScore(score);
+
+        assertEquals(score.localScore(3, 1, 2), cachingScore.localScore(3, 1, 2), 1e-10);
+        assertEquals(score.localScore(3, 1, 2), cachingScore.localScore(3, 2, 1), 1e-10);
+        assertEquals(score.localScoreDiff(4, 3, new int[]{1, 2}),
+                cachingScore.localScoreDiff(4, 3, new int[]{1, 2}), 1e-10);
+        assertTrue(cachingScore.getCache().getHits() >= 2);
+
+        Graph pattern1 = new Fges(score).search();
+        Graph pattern2 = new Fges(cachingScore).search();
+
+        assertEquals(pattern1, pattern2);
+    }
+}
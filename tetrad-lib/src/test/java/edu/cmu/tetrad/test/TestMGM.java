@@ -0,0 +1,137 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.test;
+
+import cern.colt.matrix.DoubleFactory1D;
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.pitt.csb.mgm.MGM;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestMGM {
+
+    // The gradient of the smooth part agrees with its differences.
+    @Test
+    public void testGradient() {
+        DataSet data = simulate(300, 6);
+        MGM mgm = new MGM(data, new double[]{.1, .1, .1});
+
+        int p = 3, lsum = 9;
+        int size = p * p + p + p * lsum + lsum * lsum + p + lsum;
+        DoubleMatrix1D par = DoubleFactory1D.dense.make(size);
+
+        for (int i = 0; i < size; i++) {
+            par.set(i, RandomUtil.getInstance().nextNormal(0, .1));
+        }
+
+        for (int i = 0; i < p; i++) {
+            par.set(p * p + i, 1 + RandomUtil.getInstance().nextUniform(0, 1));
+        }
+
+        DoubleMatrix1D grad = DoubleFactory1D.dense.make(size);
+        double value = mgm.smooth(par, grad);
+        assertEquals(value, mgm.smoothValue(par), 1e-12);
+
+        double h = 1e-6;
+
+        for (int i = 0; i < size; i++) {
+            DoubleMatrix1D plus = par.copy();
+            DoubleMatrix1D minus = par.copy();
+            plus.set(i, par.get(i) + h);
+            minus.set(i, par.get(i) - h);
+
+            double diff = (mgm.smoothValue(plus) - mgm.smoothValue(minus)) / (2 * h);
+            assertEquals("Parameter " + i, diff, grad.get(i), 1e-6);
+        }
+    }
+
+    // Fitting a path of lambdas with screening gives the same solutions as fitting without it.
+    @Test
+    public void testScreening() {
+        DataSet data = simulate(400, 10);
+        double[][] lambdas = {{.4, .4, .4}, {.25, .25, .25}, {.15, .15, .15}};
+
+        MGM screened = new MGM(data, lambdas[0]);
+        MGM unscreened = new MGM(data, lambdas[0]);
+        unscreened.setScreening(false);
+
+        for (double[] lambda : lambdas) {
+            screened.setLambda(lambda);
+            unscreened.setLambda(lambda);
+            screened.learn(1e-8, 5000);
+            unscreened.learn(1e-8, 5000);
+
+            DoubleMatrix2D adj1 = screened.adjMatFromMGM();
+            DoubleMatrix2D adj2 = unscreened.adjMatFromMGM();
+
+            for (int i = 0; i < adj1.rows(); i++) {
+                for (int j = 0; j < adj1.columns(); j++) {
+                    assertEquals(adj2.get(i, j) == 0, adj1.get(i, j) == 0);
+                    assertEquals(adj2.get(i, j), adj1.get(i, j), 1e-3);
+                }
+            }
+        }
+    }
+
+    // Alternating discrete and continuous variables, each depending on the two before it.
+    private DataSet simulate(int n, int numVars) {
+        RandomUtil.getInstance().setSeed(3948238L);
+
+        List<Node> variables = new ArrayList<>();
+
+        for (int j = 0; j < numVars; j++) {
+            variables.add(j % 2 == 0 ? new DiscreteVariable("D" + j, 3) : new ContinuousVariable("C" + j));
+        }
+
+        DataSet data = new BoxDataSet(new MixedDataBox(variables, n), variables);
+
+        for (int i = 0; i < n; i++) {
+            double x = 0;
+            int d = 0;
+
+            for (int j = 0; j < numVars; j++) {
+                if (j % 2 == 0) {
+                    d = x > 1 ? 2 : RandomUtil.getInstance().nextUniform(0, 1) < .5 ? d
+                            : RandomUtil.getInstance().nextInt(3);
+                    data.setInt(i, j, d);
+                } else {
+                    x = .5 * x + d + RandomUtil.getInstance().nextNormal(0, 1);
+                    data.setDouble(i, j, x);
+                }
+            }
+        }
+
+        return data;
+    }
+}
@@ -0,0 +1,96 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.search.*;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestPValueCache {
+
+    @Test
+    public void testPersistence() throws IOException {
+        File file = File.createTempFile("pvalues", ".cache");
+        file.deleteOnExit();
+
+        PValueCache cache = new PValueCache(file, 4);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(PValueCache.key("fact", Integer.toString(i)), i / 1000.0);
+        }
+
+        assertEquals(1000, cache.size());
+        assertEquals(0.5, cache.get(PValueCache.key("fact", "500")), 0.0);
+        assertTrue(Double.isNaN(cache.get(PValueCache.key("fact", "1000"))));
+        cache.close();
+
+        cache = new PValueCache(file);
+        assertEquals(1000, cache.size());
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i / 1000.0, cache.get(PValueCache.key("fact", Integer.toString(i))), 0.0);
+        }
+
+        cache.close();
+    }
+
+    @Test
+    public void testCachingIndependenceTest() throws IOException {
+        RandomUtil.getInstance().setSeed(3848283L);
+
+        Graph graph = GraphUtils.randomGraph(20, 0, 30, 10, 10, 10, false);
+        SemIm im = new SemIm(new SemPm(graph));
+        DataSet data = im.simulateData(500, false);
+
+        File file = File.createTempFile("pvalues", ".cache");
+        file.deleteOnExit();
+        PValueCache cache = new PValueCache(file);
+
+        for (double alpha : new double[]{0.01, 0.05}) {
+            Graph pattern1 = new PcStable(new IndTestFisherZ(data, alpha)).search();
+            Graph pattern2 = new PcStable(new CachingIndependenceTest(new IndTestFisherZ(data, alpha), cache)).search();
+            assertEquals(pattern1, pattern2);
+        }
+
+        int size = cache.size();
+        assertTrue(size > 0);
+
+        new PcStable(new CachingIndependenceTest(new IndTestFisherZ(data, 0.01), cache)).search();
+        assertEquals(size, cache.size());
+
+        cache.close();
+    }
+}
@@ -0,0 +1,158 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.bayes.BayesIm;
+import edu.cmu.tetrad.bayes.BayesPm;
+import edu.cmu.tetrad.bayes.MlBayesIm;
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.BDeuScore;
+import edu.cmu.tetrad.search.IndTestChiSquare;
+import edu.cmu.tetrad.search.IndTestGSquare;
+import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestPackedDiscreteDataBox {
+
+    @Test
+    public void testValues() {
+        DataSet data = simulate(1000);
+        DataSet packed = DataUtils.toBitPacked(data);
+
+        assertTrue(((BoxDataSet) packed).getDataBox() instanceof PackedDiscreteDataBox);
+        assertSameData(data, packed);
+        assertSameData(data, packed.copy());
+
+        int[] rows = {999, 3, 3, 64, 0, 128};
+        int[] cols = {5, 0, 2};
+        assertSameData(data.subsetRows(rows).subsetColumns(cols), packed.subsetRows(rows).subsetColumns(cols));
+
+        PackedDiscreteDataBox box = (PackedDiscreteDataBox) ((BoxDataSet) packed).getDataBox();
+
+        for (int j = 0; j < data.getNumColumns(); j++) {
+            int numCategories = ((DiscreteVariable) data.getVariable(j)).getNumCategories();
+            assertEquals(numCategories <= 2 ? 1 : numCategories <= 4 ? 2 : 3, box.getNumBits(j));
+        }
+
+        packed.setInt(70, 1, -99);
+        packed.setInt(71, 1, 1);
+        assertEquals(-99, packed.getInt(70, 1));
+        assertEquals(1, packed.getInt(71, 1));
+    }
+
+    // Counts, scores and tests are the same as for unpacked data, with missing values.
+    @Test
+    public void testCounts() {
+        DataSet data = simulate(1000);
+
+        for (int i = 0; i < 1000; i += 37) {
+            data.setInt(i, i % data.getNumColumns(), -99);
+        }
+
+        DataSet packed = DataUtils.toBitPacked(data);
+
+        // Fewer and more cells than rows in a word.
+        assertSameCounts(data, packed, new int[]{3, 0, 5});
+        assertSameCounts(data, packed, new int[]{3, 0, 5, 1, 7, 2, 6, 4});
+
+        BDeuScore score1 = new BDeuScore(data);
+        BDeuScore score2 = new BDeuScore(packed);
+        assertEquals(score1.localScore(2, new int[]{0, 4, 6}), score2.localScore(2, new int[]{0, 4, 6}), 0.0);
+        assertEquals(score1.localScore(7), score2.localScore(7), 0.0);
+
+        List<Node> v = data.getVariables();
+        List<Node> z = Collections.singletonList(v.get(2));
+
+        IndependenceTest chi1 = new IndTestChiSquare(data, 0.05);
+        IndependenceTest chi2 = new IndTestChiSquare(packed, 0.05);
+        chi1.isIndependent(v.get(0), v.get(1), z);
+        chi2.isIndependent(v.get(0), v.get(1), z);
+        assertEquals(chi1.getPValue(), chi2.getPValue(), 0.0);
+
+        IndependenceTest g1 = new IndTestGSquare(data, 0.05);
+        IndependenceTest g2 = new IndTestGSquare(packed, 0.05);
+        g1.isIndependent(v.get(3), v.get(4), z);
+        g2.isIndependent(v.get(3), v.get(4), z);
+        assertEquals(g1.getPValue(), g2.getPValue(), 0.0);
+    }
+
+    private void assertSameCounts(DataSet data, DataSet packed, int[] indices) {
+        CellTable expected = new CellTable(null);
+        expected.addToTable(data, indices);
+        CellTable table = new CellTable(null);
+        table.addToTable(packed, indices);
+
+        int[] dims = new int[indices.length];
+        int numCells = 1;
+
+        for (int i = 0; i < indices.length; i++) {
+            dims[i] = ((DiscreteVariable) data.getVariable(indices[i])).getNumCategories();
+            numCells *= dims[i];
+        }
+
+        int total = 0;
+        int[] coords = new int[indices.length];
+
+        for (int cell = 0; cell < numCells; cell++) {
+            for (int i = indices.length - 1, c = cell; i >= 0; c /= dims[i], i--) {
+                coords[i] = c % dims[i];
+            }
+
+            assertEquals(expected.getValue(coords), table.getValue(coords));
+            total += table.getValue(coords);
+        }
+
+        assertTrue(total > 700 && total < 1000);
+    }
+
+    private DataSet simulate(int sampleSize) {
+        RandomUtil.getInstance().setSeed(3928473L);
+        Graph graph = GraphUtils.randomGraph(8, 0, 10, 10, 10, 10, false);
+        BayesPm pm = new BayesPm(graph, 2, 5);
+        BayesIm im = new MlBayesIm(pm, MlBayesIm.RANDOM);
+        return im.simulateData(sampleSize, false);
+    }
+
+    private void assertSameData(DataSet expected, DataSet data) {
+        assertEquals(expected.getNumRows(), data.getNumRows());
+        assertEquals(expected.getVariables(), data.getVariables());
+
+        for (int i = 0; i < expected.getNumRows(); i++) {
+            for (int j = 0; j < expected.getNumColumns(); j++) {
+                assertEquals(expected.getInt(i, j), data.getInt(i, j));
+            }
+        }
+    }
+}
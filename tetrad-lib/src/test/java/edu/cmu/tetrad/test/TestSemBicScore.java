@@ -0,0 +1,90 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestSemBicScore {
+
+    @Test
+    public void testCholeskyUpdates() {
+        RandomUtil.getInstance().setSeed(3928474L);
+
+        Graph graph = GraphUtils.randomGraph(15, 0, 30, 10, 10, 10, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(1000, false);
+        ICovarianceMatrix cov = new CovarianceMatrix(data);
+
+        SemBicScore direct = new SemBicScore(cov);
+        direct.setUseCholeskyUpdates(false);
+
+        SemBicScore updated = new SemBicScore(cov);
+        updated.setUseCholeskyUpdates(true);
+
+        // Extending z one variable at a time.
+        int[][] z = {{}, {1}, {1, 2}, {1, 2, 3}, {1, 2, 3, 4}};
+
+        for (int[] _z : z) {
+            assertEquals(direct.localScoreDiff(5, 0, _z), updated.localScoreDiff(5, 0, _z), 1e-6);
+        }
+
+        // Removing a variable from a cached regression.
+        assertEquals(direct.localScoreDiff(2, 0, new int[]{1, 3, 4, 5}),
+                updated.localScoreDiff(2, 0, new int[]{1, 3, 4, 5}), 1e-6);
+        assertEquals(direct.localScoreDiff(1, 0, new int[]{2, 3, 4, 5}),
+                updated.localScoreDiff(1, 0, new int[]{2, 3, 4, 5}), 1e-6);
+
+        assertEquals(direct.localScoreDiff(7, 6), updated.localScoreDiff(7, 6), 1e-6);
+    }
+
+    @Test
+    public void testFgesSameResult() {
+        RandomUtil.getInstance().setSeed(3928475L);
+
+        Graph graph = GraphUtils.randomGraph(20, 0, 30, 10, 10, 10, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(1000, false);
+        ICovarianceMatrix cov = new CovarianceMatrix(data);
+
+        SemBicScore direct = new SemBicScore(cov);
+        direct.setUseCholeskyUpdates(false);
+
+        SemBicScore updated = new SemBicScore(cov);
+        updated.setUseCholeskyUpdates(true);
+
+        assertEquals(new Fges(direct).search(), new Fges(updated).search());
+    }
+}
@@ -0,0 +1,156 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+
+package edu.cmu.tetrad.test;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.pitt.csb.stability.DataGraphSearch;
+import edu.pitt.csb.stability.EdgeFrequencies;
+import edu.pitt.csb.stability.SearchWrappers;
+import edu.pitt.csb.stability.StabilityUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestStabilityUtils {
+
+    // Frequencies and instability agree with counting over all of the graphs, and the bounds contain the
+    // final instability at every point.
+    @Test
+    public void testEdgeFrequencies() {
+        RandomUtil.getInstance().setSeed(2938481L);
+
+        List<Node> variables = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            variables.add(new ContinuousVariable("X" + i));
+        }
+
+        List<Graph> graphs = new ArrayList<>();
+
+        for (int k = 0; k < 30; k++) {
+            graphs.add(GraphUtils.randomGraph(variables, 0, 8 + k % 5, 30, 15, 15, false));
+        }
+
+        int p = variables.size();
+        double expected = 0.0;
+
+        for (int i = 0; i < p; i++) {
+            for (int j = i + 1; j < p; j++) {
+                double theta = 0.0;
+
+                for (Graph graph : graphs) {
+                    if (graph.isAdjacentTo(graph.getNode("X" + i), graph.getNode("X" + j))) theta++;
+                }
+
+                theta /= graphs.size();
+                expected += 2 * theta * (1 - theta);
+            }
+        }
+
+        expected /= p * (p - 1) / 2;
+
+        EdgeFrequencies frequencies = new EdgeFrequencies(variables);
+
+        for (Graph graph : graphs) {
+            double[] bounds = frequencies.getInstabilityBounds(graphs.size());
+            assertTrue(bounds[0] <= expected + 1e-12 && expected <= bounds[1] + 1e-12);
+            frequencies.add(graph);
+        }
+
+        assertEquals(expected, frequencies.getInstability(), 1e-12);
+        assertEquals(graphs.size(), frequencies.getNumGraphs());
+
+        DoubleMatrix2D matrix = frequencies.toMatrix();
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                double theta = 0.0;
+
+                if (i != j) {
+                    for (Graph graph : graphs) {
+                        if (graph.isAdjacentTo(graph.getNode("X" + i), graph.getNode("X" + j))) theta++;
+                    }
+                }
+
+                assertEquals(theta / graphs.size(), matrix.get(i, j), 1e-12);
+            }
+        }
+    }
+
+    // The search chosen is the densest one settled under the cutoff with all sparser ones, and the first
+    // one over it is settled over it before all of its fits are run. Each worker may run one fit past the
+    // point where the bounds settle, so there are enough subsamples per worker for that to leave some
+    // unrun however many processors there are.
+    @Test
+    public void testStARSPar() {
+        RandomUtil.getInstance().setSeed(4829384L);
+
+        Graph dag = GraphUtils.randomGraph(10, 0, 12, 30, 15, 15, false);
+        DataSet data = new SemIm(new SemPm(dag)).simulateData(300, false);
+
+        List<DataGraphSearch> searches = new ArrayList<>();
+
+        for (double penalty : new double[]{40, 20, 10, 5, 2, 1, .5}) {
+            searches.add(new SearchWrappers.FgesWrapper(penalty));
+        }
+
+        int N = 20 + 4 * ForkJoinPoolInstance.getInstance().getPool().getParallelism();
+        double cutoff = .02;
+        StabilityUtils.StARSResult result = StabilityUtils.StARSPar(data, searches, N, 100, cutoff);
+        int chosen = result.getChosen();
+        assertTrue(chosen >= 0 && chosen + 1 < searches.size());
+
+        int numFits = 0;
+
+        for (int k = 0; k <= chosen; k++) {
+            EdgeFrequencies frequencies = result.getFrequencies(k);
+            assertTrue(frequencies.getInstabilityBounds(N)[1] <= cutoff);
+            numFits += frequencies.getNumGraphs();
+        }
+
+        EdgeFrequencies over = result.getFrequencies(chosen + 1);
+        assertTrue(over.getInstabilityBounds(N)[0] > cutoff);
+        assertTrue(over.getNumGraphs() < N);
+        numFits += over.getNumGraphs();
+
+        for (int k = chosen + 2; k < searches.size(); k++) {
+            assertTrue(result.getFrequencies(k) == null);
+        }
+
+        assertEquals(numFits, result.getNumFits());
+    }
+}
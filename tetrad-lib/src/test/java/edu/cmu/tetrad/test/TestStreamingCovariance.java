@@ -0,0 +1,172 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.*;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Joseph Ramsey
+ */
+public class TestStreamingCovariance {
+
+    @Test
+    public void testBlocks() throws IOException {
+        RandomUtil.getInstance().setSeed(4829384L);
+
+        Graph graph = GraphUtils.randomGraph(10, 0, 10, 10, 10, 10, false);
+        SemIm im = new SemIm(new SemPm(graph));
+        DataSet data = im.simulateData(5000, false);
+
+        ICovarianceMatrix expected = new CovarianceMatrix(data);
+
+        assertSameCovariance(expected, StreamingCovariance.covariance(data, 1));
+        assertSameCovariance(expected, StreamingCovariance.covariance(data, 333));
+        assertSameCovariance(expected, StreamingCovariance.covariance(data, 100000));
+
+        StreamingCovariance rows = new StreamingCovariance(data.getVariables());
+
+        for (int i = 0; i < data.getNumRows(); i++) {
+            rows.addRow(data.getDoubleData().getRow(i).toArray());
+        }
+
+        assertSameCovariance(expected, rows.getCovarianceMatrix());
+
+        File columnar = File.createTempFile("data", ColumnarDataFile.EXTENSION);
+        columnar.deleteOnExit();
+        DataWriter.writeColumnarData(data, columnar);
+        ICovarianceMatrix fromColumnar = StreamingCovariance.covariance(columnar);
+        assertSameCovariance(expected, fromColumnar);
+
+        File text = File.createTempFile("data", ".txt");
+        text.deleteOnExit();
+
+        try (Writer out = new FileWriter(text)) {
+            DataWriter.writeRectangularData(data, out, '\t');
+        }
+
+        assertSameCovariance(new CovarianceMatrix(new DataReader().parseTabular(text)),
+                StreamingCovariance.covariance(text, DelimiterType.TAB, "*"));
+
+        assertEquals(new Fges(new SemBicScore(expected)).search(),
+                new Fges(new SemBicScore(fromColumnar)).search());
+    }
+
+    // Deviations that are small relative to the means are not lost.
+    @Test
+    public void testLargeMeans() {
+        RandomUtil.getInstance().setSeed(3849234L);
+
+        Graph graph = GraphUtils.randomGraph(4, 0, 4, 10, 10, 10, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(2000, false);
+
+        for (int i = 0; i < data.getNumRows(); i++) {
+            for (int j = 0; j < data.getNumColumns(); j++) {
+                data.setDouble(i, j, 1e8 + data.getDouble(i, j));
+            }
+        }
+
+        assertSameCovariance(new CovarianceMatrix(data), StreamingCovariance.covariance(data, 100));
+    }
+
+    // A token that is neither a number nor missing is an error, not a missing value.
+    @Test
+    public void testBadToken() throws IOException {
+        File text = File.createTempFile("data", ".txt");
+        text.deleteOnExit();
+
+        try (Writer out = new FileWriter(text)) {
+            out.write("X1\tX2\n1.0\t2.0\n\n*\t3.5\n2.5\t3,0\n");
+        }
+
+        try {
+            StreamingCovariance.covariance(text, DelimiterType.TAB, "*");
+            fail("Expected a bad token to be reported.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 5, column 2:"));
+        }
+    }
+
+    // A line with too few or too many values is an error; an empty last value is missing.
+    @Test
+    public void testRaggedLine() throws IOException {
+        File text = File.createTempFile("data", ".txt");
+        text.deleteOnExit();
+
+        try (Writer out = new FileWriter(text)) {
+            out.write("X1,X2,X3\n1,2,3\n4,5,\n6,7,8\n2,1,0\n");
+        }
+
+        assertEquals(3, StreamingCovariance.covariance(text, DelimiterType.COMMA, "*").getSampleSize());
+
+        for (String line : new String[]{"4,5", "4,5,6,7"}) {
+            try (Writer out = new FileWriter(text)) {
+                out.write("X1,X2,X3\n1,2,3\n\n" + line + "\n6,7,8\n");
+            }
+
+            try {
+                StreamingCovariance.covariance(text, DelimiterType.COMMA, "*");
+                fail("Expected a ragged line to be reported.");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Line 4: Expected 3 values"));
+            }
+        }
+    }
+
+    // Blocks with enough variables to be split over threads give the covariance matrix of the data.
+    @Test
+    public void testWide() {
+        RandomUtil.getInstance().setSeed(5820394L);
+
+        Graph graph = GraphUtils.randomGraph(150, 0, 150, 10, 10, 10, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(300, false);
+
+        assertSameCovariance(new CovarianceMatrix(data), StreamingCovariance.covariance(data, 70));
+    }
+
+    private void assertSameCovariance(ICovarianceMatrix expected, ICovarianceMatrix cov) {
+        assertEquals(expected.getSampleSize(), cov.getSampleSize());
+        assertEquals(expected.getVariableNames(), cov.getVariableNames());
+
+        for (int i = 0; i < expected.getDimension(); i++) {
+            for (int j = 0; j < expected.getDimension(); j++) {
+                assertEquals(expected.getValue(i, j), cov.getValue(i, j), 1e-8 * Math.abs(expected.getValue(i, i)));
+            }
+        }
+    }
+}